@@ -0,0 +1,179 @@
+package frc.lib.profiles;
+
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import frc.lib.generic.ProfiledPID;
+import frc.lib.scurve.InputParameter;
+import frc.lib.scurve.OutputParameter;
+import frc.lib.scurve.Result;
+import frc.lib.scurve.SCurveGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the three profile engines we use: WPILib's {@link TrapezoidProfile}, {@link ProfiledPID} and {@link SCurveGenerator}.
+ * <p>
+ * "Creation" benchmarks plan a new profile from a random start to a random target, like a new goal does.
+ * "Sampling" benchmarks advance an already planned profile by one loop, like every cycle after that, and move on to the next random move once a profile finishes.
+ * Run with {@code ./gradlew jmh}, the gc profiler reports the allocation rate of each benchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MotionProfileBenchmark {
+    /**
+     * The ranges and constraints of our profiled mechanisms, in mechanism rotations.
+     * These are copied from the constants classes, since loading those creates the real motors.
+     */
+    public enum Mechanism {
+        // ElevatorConstants: FEEDER to L4, and the PROFILE_MAX_* limits
+        ELEVATOR(0, 3.11, 8, 75, 750),
+        // AlgaeBlasterConstants: BlasterArmState.HORIZONTAL_IN to BlasterArmState.INTAKE_L4
+        ALGAE_BLASTER(0.1, 23.988644790649414, 60, 37, 370);
+
+        final double minimumPosition, maximumPosition, maxVelocity, maxAcceleration, maxJerk;
+
+        Mechanism(double minimumPosition, double maximumPosition, double maxVelocity, double maxAcceleration, double maxJerk) {
+            this.minimumPosition = minimumPosition;
+            this.maximumPosition = maximumPosition;
+            this.maxVelocity = maxVelocity;
+            this.maxAcceleration = maxAcceleration;
+            this.maxJerk = maxJerk;
+        }
+    }
+
+    private static final int NUMBER_OF_MOVES = 1024;
+    /**
+     * Same as GlobalConstants.ROBOT_PERIODIC_LOOP_TIME, which isn't used since GlobalConstants needs the HAL to load.
+     */
+    private static final double PERIOD_SECONDS = 0.02;
+
+    @Param
+    public Mechanism mechanism;
+
+    private final double[] startPositions = new double[NUMBER_OF_MOVES], targetPositions = new double[NUMBER_OF_MOVES];
+    private final double[] startVelocities = new double[NUMBER_OF_MOVES], startAccelerations = new double[NUMBER_OF_MOVES];
+    private int moveIndex = 0;
+
+    private TrapezoidProfile trapezoidProfile;
+    private TrapezoidProfile.State trapezoidSetpoint, trapezoidGoal;
+
+    private ProfiledPID profiledPID;
+
+    private SCurveGenerator scurveGenerator;
+    private final InputParameter scurveInput = new InputParameter();
+    private final OutputParameter scurveOutput = new OutputParameter();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final Random random = new Random(5987);
+        final double range = mechanism.maximumPosition - mechanism.minimumPosition;
+
+        for (int i = 0; i < NUMBER_OF_MOVES; i++) {
+            startPositions[i] = mechanism.minimumPosition + random.nextDouble() * range;
+            targetPositions[i] = mechanism.minimumPosition + random.nextDouble() * range;
+            startVelocities[i] = (random.nextDouble() * 2 - 1) * mechanism.maxVelocity;
+            startAccelerations[i] = (random.nextDouble() * 2 - 1) * mechanism.maxAcceleration;
+        }
+
+        final TrapezoidProfile.Constraints constraints = new TrapezoidProfile.Constraints(mechanism.maxVelocity, mechanism.maxAcceleration);
+
+        trapezoidProfile = new TrapezoidProfile(constraints);
+        profiledPID = new ProfiledPID(1, 0, 0, constraints);
+        scurveGenerator = new SCurveGenerator(PERIOD_SECONDS, mechanism.maxVelocity, mechanism.maxAcceleration, mechanism.maxJerk);
+
+        startNextMove();
+    }
+
+    @Benchmark
+    public void trapezoidCreation(Blackhole blackhole) {
+        nextMoveIndex();
+
+        final TrapezoidProfile profile = new TrapezoidProfile(new TrapezoidProfile.Constraints(mechanism.maxVelocity, mechanism.maxAcceleration));
+
+        blackhole.consume(profile.calculate(PERIOD_SECONDS,
+                new TrapezoidProfile.State(startPositions[moveIndex], 0),
+                new TrapezoidProfile.State(targetPositions[moveIndex], 0)));
+    }
+
+    @Benchmark
+    public void trapezoidSampling(Blackhole blackhole) {
+        trapezoidSetpoint = trapezoidProfile.calculate(PERIOD_SECONDS, trapezoidSetpoint, trapezoidGoal);
+
+        if (trapezoidSetpoint.equals(trapezoidGoal)) startNextMove();
+
+        blackhole.consume(trapezoidSetpoint);
+    }
+
+    @Benchmark
+    public double profiledPIDCreation() {
+        nextMoveIndex();
+
+        profiledPID.reset(startPositions[moveIndex]);
+
+        return profiledPID.calculate(startPositions[moveIndex], targetPositions[moveIndex]);
+    }
+
+    @Benchmark
+    public double profiledPIDSampling() {
+        final double output = profiledPID.calculate(profiledPID.getSetpoint().position);
+
+        if (profiledPID.getSetpoint().equals(profiledPID.getGoal())) startNextMove();
+
+        return output;
+    }
+
+    @Benchmark
+    public double scurveCreation() {
+        nextMoveIndex();
+
+        scurveInput.set(startPositions[moveIndex], 0, 0, targetPositions[moveIndex]);
+        scurveGenerator.reset();
+        scurveGenerator.update(scurveInput, scurveOutput);
+
+        return scurveOutput.new_position;
+    }
+
+    /**
+     * Plans from a moving start, like a new goal mid move does. The solver has no closed form for that and searches instead.
+     */
+    @Benchmark
+    public double scurveMovingStartCreation() {
+        nextMoveIndex();
+
+        scurveInput.set(startPositions[moveIndex], startVelocities[moveIndex], startAccelerations[moveIndex], targetPositions[moveIndex]);
+        scurveGenerator.reset();
+        scurveGenerator.update(scurveInput, scurveOutput);
+
+        return scurveOutput.new_position;
+    }
+
+    @Benchmark
+    public double scurveSampling() {
+        if (scurveGenerator.update(scurveInput, scurveOutput) == Result.Finished) startNextMove();
+
+        return scurveOutput.new_position;
+    }
+
+    private void startNextMove() {
+        nextMoveIndex();
+
+        trapezoidSetpoint = new TrapezoidProfile.State(startPositions[moveIndex], 0);
+        trapezoidGoal = new TrapezoidProfile.State(targetPositions[moveIndex], 0);
+
+        profiledPID.reset(startPositions[moveIndex]);
+        profiledPID.setGoal(targetPositions[moveIndex]);
+
+        scurveInput.set(startPositions[moveIndex], 0, 0, targetPositions[moveIndex]);
+        scurveGenerator.reset();
+    }
+
+    private void nextMoveIndex() {
+        moveIndex = (moveIndex + 1) % NUMBER_OF_MOVES;
+    }
+}
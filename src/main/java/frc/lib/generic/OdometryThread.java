@@ -27,6 +27,8 @@ public class OdometryThread {
     private final Queue<Double> timestamps = new ArrayBlockingQueue<>(100);
 
     private BaseStatusSignal[] ctreThreadedSignals = new BaseStatusSignal[0];
+    private double[] latestSignalValues = new double[0];
+    private volatile double latestTimestamp = 0;
 
     private final ThreadInputsAutoLogged threadInputs = new ThreadInputsAutoLogged();
 
@@ -75,12 +77,15 @@ public class OdometryThread {
         try {
             for (int i = 0; i < ctreThreadedSignals.length; i++) {
                 if (ctreThreadedSignals[i].getName() == "Yaw") {
-                    queues.get(i).offer((ctreThreadedSignals[i].getValueAsDouble() / 360));
+                    latestSignalValues[i] = ctreThreadedSignals[i].getValueAsDouble() / 360;
                 } else
-                    queues.get(i).offer(ctreThreadedSignals[i].getValueAsDouble());
+                    latestSignalValues[i] = ctreThreadedSignals[i].getValueAsDouble();
+
+                queues.get(i).offer(latestSignalValues[i]);
             }
 
             timestamps.offer(currentTimestamp);
+            latestTimestamp = currentTimestamp;
         } finally {
             FASTER_THREAD_LOCK.unlock();
         }
@@ -93,6 +98,7 @@ public class OdometryThread {
         newSignals[ctreThreadedSignals.length] = statusSignal;
 
         ctreThreadedSignals = newSignals;
+        latestSignalValues = new double[newSignals.length];
     }
 
     public void updateLatestTimestamps() {
@@ -116,6 +122,27 @@ public class OdometryThread {
         return threadInputs.timestamps;
     }
 
+    /**
+     * Gets the latest sample of a threaded signal, without draining its queue.
+     * This is meant for code that runs faster than the main loop. Hold {@link frc.robot.GlobalConstants#FASTER_THREAD_LOCK}
+     * while reading several signals, so they all come from the same sample.
+     *
+     * @param queue the queue returned when the signal was registered
+     * @return the latest value of the signal, or NaN if the queue isn't registered
+     */
+    public double getLatestValue(Queue<Double> queue) {
+        final int index = queues.indexOf(queue);
+
+        return index == -1 ? Double.NaN : latestSignalValues[index];
+    }
+
+    /**
+     * @return the FPGA timestamp of the latest sample, in seconds
+     */
+    public double getLatestSampleTimestamp() {
+        return latestTimestamp;
+    }
+
     @AutoLog
     public static class ThreadInputs {
         public double[] timestamps;
@@ -15,6 +15,9 @@ public class PID  {
 
     private final double kS;
 
+    // The period (in seconds) of the loop that calls the controller
+    private final double period;
+
     // The error range where "integral" control applies
     private double iZone = Double.POSITIVE_INFINITY;
 
@@ -58,10 +61,19 @@ public class PID  {
     }
 
     public PID(double kp, double ki, double kd, double kS) {
+        this(kp, ki, kd, kS, 0.02);
+    }
+
+    public PID(double kp, double ki, double kd, double kS, double period) {
         this.kP = kp;
         this.kI = ki;
         this.kD = kd;
         this.kS = kS;
+        this.period = period;
+
+        if (period <= 0.0) {
+            throw new IllegalArgumentException("Controller period must be a positive number!");
+        }
 
         if (kp < 0.0) {
             throw new IllegalArgumentException("Kp must be a non-negative number!");
@@ -203,7 +215,7 @@ public class PID  {
             positionError = m_setpoint - m_measurement;
         }
 
-        velocityError = (positionError - prevError) / 0.02;
+        velocityError = (positionError - prevError) / period;
     }
 
     /**
@@ -341,7 +353,7 @@ public class PID  {
             positionError = m_setpoint - m_measurement;
         }
 
-        velocityError = (positionError - prevError) / 0.02;
+        velocityError = (positionError - prevError) / period;
 
         // If the absolute value of the position error is greater than IZone, reset the total error
         if (Math.abs(positionError) > iZone) {
@@ -349,7 +361,7 @@ public class PID  {
         } else if (kI != 0) {
             totalError =
                     MathUtil.clamp(
-                            totalError + positionError * 0.02,
+                            totalError + positionError * period,
                             minimumIntegral / kI,
                             maximumIntegral / kI);
         }
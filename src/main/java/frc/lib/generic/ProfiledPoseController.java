@@ -0,0 +1,217 @@
+package frc.lib.generic;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+
+/**
+ * Drives a holonomic robot to a pose along a single motion profile, instead of profiling X and Y independently.
+ * <p>
+ * The translation is profiled along the straight line from the setpoint to the goal, using one combined velocity and acceleration constraint,
+ * so diagonal moves respect the real speed limit and both axes arrive together.
+ * The heading is profiled alongside it, slowed down so it reaches the goal heading at the same time as the translation.
+ * <p>
+ * The profile is replanned from the current setpoint every cycle, so the goal can move while driving.
+ * Call {@link #reset(Pose2d, ChassisSpeeds)} to replan from the measured state instead.
+ * Nothing is allocated while calculating, and instances hold mutable state, so each one should only be used from a single thread.
+ */
+public class ProfiledPoseController {
+    private static final double EPSILON = 1E-9;
+
+    private final PID translationController, rotationController;
+    private final double maxVelocity, maxAcceleration, maxAngularVelocity, maxAngularAcceleration;
+    private final double periodSeconds;
+
+    private double goalX, goalY, goalHeading;
+
+    private double setpointX, setpointY, setpointHeading;
+    private double setpointVx, setpointVy, setpointOmega;
+
+    private double stepRemaining, stepVelocity;
+
+    /**
+     * @param translationController    the feedback on the distance from the setpoint, in metres, with an output in metres per second
+     * @param rotationController       the feedback on the heading error from the setpoint, in radians, with an output in radians per second
+     * @param maxVelocity              the maximum translational speed, in metres per second
+     * @param maxAcceleration          the maximum translational acceleration, in metres per second squared
+     * @param maxAngularVelocity       the maximum angular velocity, in radians per second
+     * @param maxAngularAcceleration   the maximum angular acceleration, in radians per second squared
+     * @param periodSeconds            the period of the loop that calls the controller
+     */
+    public ProfiledPoseController(PID translationController, PID rotationController,
+                                  double maxVelocity, double maxAcceleration,
+                                  double maxAngularVelocity, double maxAngularAcceleration,
+                                  double periodSeconds) {
+        this.translationController = translationController;
+        this.rotationController = rotationController;
+        this.maxVelocity = maxVelocity;
+        this.maxAcceleration = maxAcceleration;
+        this.maxAngularVelocity = maxAngularVelocity;
+        this.maxAngularAcceleration = maxAngularAcceleration;
+        this.periodSeconds = periodSeconds;
+
+        if (maxVelocity <= 0 || maxAcceleration <= 0 || maxAngularVelocity <= 0 || maxAngularAcceleration <= 0) {
+            new IllegalArgumentException("Profile constraints must be positive").printStackTrace();
+        }
+    }
+
+    /**
+     * Replans the profile from the measured state. Should be called when the controller starts running.
+     *
+     * @param measuredPose          the current pose of the robot
+     * @param fieldRelativeVelocity the current velocity of the robot, relative to the field
+     */
+    public void reset(Pose2d measuredPose, ChassisSpeeds fieldRelativeVelocity) {
+        setpointX = measuredPose.getX();
+        setpointY = measuredPose.getY();
+        setpointHeading = measuredPose.getRotation().getRadians();
+
+        setpointVx = fieldRelativeVelocity.vxMetersPerSecond;
+        setpointVy = fieldRelativeVelocity.vyMetersPerSecond;
+        setpointOmega = fieldRelativeVelocity.omegaRadiansPerSecond;
+
+        translationController.reset();
+        rotationController.reset();
+    }
+
+    public void setGoal(Pose2d goal) {
+        goalX = goal.getX();
+        goalY = goal.getY();
+        goalHeading = goal.getRotation().getRadians();
+    }
+
+    /**
+     * Advances the profile by one period and calculates the field relative speeds needed to follow it.
+     *
+     * @param measuredPose the current pose of the robot
+     * @param output       the field relative speeds to write into
+     */
+    public void calculate(Pose2d measuredPose, ChassisSpeeds output) {
+        advanceTranslation();
+        advanceHeading();
+
+        final double errorX = setpointX - measuredPose.getX(), errorY = setpointY - measuredPose.getY();
+        final double errorDistance = Math.hypot(errorX, errorY);
+        final double translationFeedback = errorDistance > EPSILON ? translationController.calculate(0, errorDistance) / errorDistance : 0;
+
+        output.vxMetersPerSecond = setpointVx + errorX * translationFeedback;
+        output.vyMetersPerSecond = setpointVy + errorY * translationFeedback;
+        output.omegaRadiansPerSecond = setpointOmega + rotationController.calculate(
+                0, MathUtil.angleModulus(setpointHeading - measuredPose.getRotation().getRadians()));
+    }
+
+    /**
+     * Steps the translation along the line between the setpoint and the goal.
+     * Velocity perpendicular to that line is dropped, so a moving goal is tracked along the new line.
+     */
+    private void advanceTranslation() {
+        final double dx = goalX - setpointX, dy = goalY - setpointY;
+        final double distance = Math.hypot(dx, dy);
+
+        if (distance < EPSILON) {
+            setpointX = goalX;
+            setpointY = goalY;
+            setpointVx = 0;
+            setpointVy = 0;
+            return;
+        }
+
+        final double directionX = dx / distance, directionY = dy / distance;
+        final double velocityTowardsGoal = setpointVx * directionX + setpointVy * directionY;
+
+        step(distance, velocityTowardsGoal, maxVelocity, maxAcceleration);
+
+        setpointX = goalX - directionX * stepRemaining;
+        setpointY = goalY - directionY * stepRemaining;
+        setpointVx = directionX * stepVelocity;
+        setpointVy = directionY * stepVelocity;
+    }
+
+    /**
+     * Steps the heading, with its velocity limited so it arrives no sooner than the translation.
+     */
+    private void advanceHeading() {
+        final double headingError = MathUtil.angleModulus(goalHeading - setpointHeading);
+        final double remainingAngle = Math.abs(headingError);
+
+        if (remainingAngle < EPSILON) {
+            setpointHeading = goalHeading;
+            setpointOmega = 0;
+            return;
+        }
+
+        final double direction = Math.signum(headingError);
+        final double translationTime = getTimeToGoal(
+                Math.hypot(goalX - setpointX, goalY - setpointY),
+                Math.hypot(setpointVx, setpointVy),
+                maxVelocity,
+                maxAcceleration
+        );
+
+        step(remainingAngle, setpointOmega * direction, getSynchronizedAngularVelocity(remainingAngle, translationTime), maxAngularAcceleration);
+
+        setpointHeading = MathUtil.angleModulus(goalHeading - direction * stepRemaining);
+        setpointOmega = direction * stepVelocity;
+    }
+
+    /**
+     * The cruise angular velocity that makes a trapezoid from rest cover the given angle in the given time, capped by the constraint.
+     * A trapezoid from rest takes {@code angle / cruise + cruise / acceleration}, solved here for the cruise velocity.
+     */
+    private double getSynchronizedAngularVelocity(double remainingAngle, double targetTime) {
+        final double discriminant = maxAngularAcceleration * maxAngularAcceleration * targetTime * targetTime - 4 * maxAngularAcceleration * remainingAngle;
+
+        if (discriminant <= 0) return maxAngularVelocity;
+
+        final double synchronizedVelocity = 0.5 * (maxAngularAcceleration * targetTime - Math.sqrt(discriminant));
+
+        return MathUtil.clamp(synchronizedVelocity, EPSILON, maxAngularVelocity);
+    }
+
+    /**
+     * Advances a one dimensional profile by one period. The velocity is moved towards the fastest velocity
+     * that can still stop at the goal, by at most one period of acceleration.
+     * Writes the results into {@link #stepRemaining} and {@link #stepVelocity}.
+     */
+    private void step(double remaining, double velocity, double maxVelocity, double maxAcceleration) {
+        final double velocityChange = maxAcceleration * periodSeconds;
+
+        // Solves nextVelocity^2 / 2a = remaining - (velocity + nextVelocity) * dt / 2, so braking starts on the right step
+        final double halfPeriod = 0.5 * periodSeconds;
+        final double brakingTerm = halfPeriod * halfPeriod + 2 * (remaining - halfPeriod * velocity) / maxAcceleration;
+        final double stoppingVelocity = brakingTerm > 0
+                ? Math.min(maxVelocity, maxAcceleration * (Math.sqrt(brakingTerm) - halfPeriod))
+                : 0;
+        final double nextVelocity = MathUtil.clamp(stoppingVelocity, velocity - velocityChange, velocity + velocityChange);
+        final double nextRemaining = remaining - 0.5 * (velocity + nextVelocity) * periodSeconds;
+
+        if (nextRemaining <= 0 || (nextRemaining < velocityChange * periodSeconds && nextVelocity <= velocityChange)) {
+            stepRemaining = 0;
+            stepVelocity = 0;
+            return;
+        }
+
+        stepRemaining = nextRemaining;
+        stepVelocity = nextVelocity;
+    }
+
+    /**
+     * Estimates how long a trapezoid profile takes to cover the given distance, starting at the given velocity and ending at rest.
+     */
+    private static double getTimeToGoal(double distance, double velocity, double maxVelocity, double maxAcceleration) {
+        if (distance < EPSILON) return 0;
+
+        final double peakVelocity = Math.sqrt(maxAcceleration * distance + 0.5 * velocity * velocity);
+
+        if (peakVelocity < velocity)
+            return 2 * distance / velocity;
+
+        if (peakVelocity <= maxVelocity)
+            return (2 * peakVelocity - velocity) / maxAcceleration;
+
+        final double accelerationDistance = (maxVelocity * maxVelocity - velocity * velocity) / (2 * maxAcceleration);
+        final double decelerationDistance = maxVelocity * maxVelocity / (2 * maxAcceleration);
+
+        return (2 * maxVelocity - velocity) / maxAcceleration + (distance - accelerationDistance - decelerationDistance) / maxVelocity;
+    }
+}
@@ -0,0 +1,146 @@
+package frc.lib.generic.hardware;
+
+import org.littletonrobotics.junction.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Applies device configurations in parallel while the robot boots.
+ * <p>
+ * Until {@link #applyQueuedConfigurations()} is called, devices queue their blocking configuration instead of applying it.
+ * A device that is configured several times (e.g. once per signal) only keeps its latest configuration.
+ * Afterwards, configurations are applied on a background thread, so reconfiguring (e.g. for a new idle mode) never blocks the main loop.
+ */
+public class DeviceConfigurator {
+    private static final int MAX_ATTEMPTS = 10, MAX_THREADS = 8;
+    private static final String LOG_DIRECTORY = "DeviceConfiguration/";
+
+    private static final Map<String, BooleanSupplier> QUEUED_CONFIGURATIONS = new LinkedHashMap<>();
+    /**
+     * Configurations requested after boot that the background thread hasn't applied yet, only the latest one of each device.
+     */
+    private static final Map<String, BooleanSupplier> PENDING_RECONFIGURATIONS = new LinkedHashMap<>();
+    private static final ExecutorService RECONFIGURATION_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "DeviceConfigurator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static boolean isBooting = true;
+
+    /**
+     * Apply a configuration, or queue it while the robot boots.
+     *
+     * @param deviceName The unique name of the device, a newer configuration of the same device replaces a queued one
+     * @param applier    Applies the configuration once and waits for the device to acknowledge it
+     * @return Whether the configuration was accepted. The result of applying it is reported by {@link #applyQueuedConfigurations()}
+     * while booting, and printed by the background thread afterwards.
+     */
+    public static synchronized boolean configure(String deviceName, BooleanSupplier applier) {
+        if (isBooting) {
+            QUEUED_CONFIGURATIONS.put(deviceName, applier);
+            return true;
+        }
+
+        if (PENDING_RECONFIGURATIONS.put(deviceName, applier) == null)
+            RECONFIGURATION_EXECUTOR.execute(() -> reconfigure(deviceName));
+
+        return true;
+    }
+
+    /**
+     * Devices that persist their configuration should only do so while booting, since reconfiguring wears their flash.
+     *
+     * @return Whether configurations are still queued for boot
+     */
+    public static synchronized boolean isBooting() {
+        return isBooting;
+    }
+
+    /**
+     * Apply all queued configurations, and log how long each device took.
+     * <p>
+     * Call this at the end of <code>robotInit()</code>, after the logger was started.
+     *
+     * @return Whether every queued configuration was applied
+     */
+    public static synchronized boolean applyQueuedConfigurations() {
+        isBooting = false;
+
+        if (QUEUED_CONFIGURATIONS.isEmpty()) return true;
+
+        final long startTime = System.nanoTime();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_THREADS, QUEUED_CONFIGURATIONS.size()));
+        final List<Future<Long>> results = new ArrayList<>();
+
+        for (BooleanSupplier applier : QUEUED_CONFIGURATIONS.values()) {
+            results.add(executor.submit(() -> {
+                final long deviceStartTime = System.nanoTime();
+                return applyWithRetries(applier) == -1 ? -1 : System.nanoTime() - deviceStartTime;
+            }));
+        }
+
+        boolean allSucceeded = true;
+        int i = 0;
+
+        for (String deviceName : QUEUED_CONFIGURATIONS.keySet()) {
+            long deviceTime;
+
+            try {
+                deviceTime = results.get(i++).get();
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+                deviceTime = -1;
+            }
+
+            if (deviceTime == -1) {
+                new RuntimeException("Failed to configure " + deviceName + " after " + MAX_ATTEMPTS + " attempts").printStackTrace();
+                allSucceeded = false;
+            }
+
+            Logger.recordOutput(LOG_DIRECTORY + deviceName + "/Succeeded", deviceTime != -1);
+            Logger.recordOutput(LOG_DIRECTORY + deviceName + "/TimeMilliseconds", deviceTime / 1e6);
+        }
+
+        executor.shutdown();
+
+        Logger.recordOutput(LOG_DIRECTORY + "TotalTimeMilliseconds", (System.nanoTime() - startTime) / 1e6);
+        Logger.recordOutput(LOG_DIRECTORY + "AllSucceeded", allSucceeded);
+        QUEUED_CONFIGURATIONS.clear();
+
+        return allSucceeded;
+    }
+
+    /**
+     * Runs on the background thread, which can't use the logger, so failures are only printed.
+     */
+    private static void reconfigure(String deviceName) {
+        final BooleanSupplier applier;
+
+        synchronized (DeviceConfigurator.class) {
+            applier = PENDING_RECONFIGURATIONS.remove(deviceName);
+        }
+
+        if (applyWithRetries(applier) == -1)
+            new RuntimeException("Failed to reconfigure " + deviceName + " after " + MAX_ATTEMPTS + " attempts").printStackTrace();
+    }
+
+    /**
+     * @return The number of attempts it took, or -1 if all of them failed
+     */
+    private static int applyWithRetries(BooleanSupplier applier) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            if (applier.getAsBoolean()) return attempt;
+        }
+
+        return -1;
+    }
+}
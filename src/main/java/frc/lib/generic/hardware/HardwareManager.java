@@ -3,7 +3,7 @@ package frc.lib.generic.hardware;
 import com.ctre.phoenix6.BaseStatusSignal;
 import frc.lib.generic.OdometryThread;
 import frc.lib.generic.advantagekit.LoggableHardware;
-import frc.lib.generic.hardware.motor.MotorFactory;
+import frc.lib.generic.simulation.SimulationScheduler;
 import frc.robot.GlobalConstants;
 import org.littletonrobotics.junction.LogFileUtil;
 import org.littletonrobotics.junction.LoggedRobot;
@@ -28,6 +28,8 @@ public enum HardwareManager {
     private static LoggableHardware[] HARDWARE = new LoggableHardware[0];
     private static BaseStatusSignal[] CTRE_NON_THREADED_SIGNALS = new BaseStatusSignal[0];
 
+    private static boolean isHeadless = false;
+
     /**
      * Update all hardware devices
      * <p>
@@ -58,6 +60,12 @@ public enum HardwareManager {
      * @param robot Robot object
      */
     public static void initialize(LoggedRobot robot) {
+        if (isHeadless) {
+            Logger.start();
+            Logger.disableConsoleCapture();
+            return;
+        }
+
         String logPath = CURRENT_MODE == Mode.REAL ? "/media/sda1/logs" : "logs";
 
         final File logsDirectory = new File(logPath);
@@ -88,6 +96,13 @@ public enum HardwareManager {
         Logger.disableConsoleCapture();
     }
 
+    /**
+     * Logs nothing to NetworkTables or to files, so many headless runs can share a machine. Call this before {@link #initialize}.
+     */
+    public static void setHeadless() {
+        isHeadless = true;
+    }
+
     /**
      * Add hardware device to hardware logging manager
      * <p>
@@ -105,7 +120,7 @@ public enum HardwareManager {
     }
 
     public static void updateSimulation() {
-        MotorFactory.updateAllSimulations();
+        SimulationScheduler.update();
     }
 
     /**
@@ -22,6 +22,10 @@ public class Encoder implements LoggableHardware {
         HardwareManager.addHardware(this);
     }
 
+    public String getName() {
+        return name;
+    }
+
     /** This is required for sim to function correctly. In real, this won't do anything. */
     public void setSimulatedEncoderPositionSource(DoubleSupplier positionSource) {}
     /** This is required for sim to function correctly. In real, this won't do anything. */
@@ -33,6 +37,11 @@ public class Encoder implements LoggableHardware {
         return inputs.position;
     }
 
+    /** Returns the latest position sample of the odometry thread, in Rotations. Falls back to {@link #getEncoderPosition()} when the position isn't threaded. */
+    public double getLatestThreadedPosition() {
+        return getEncoderPosition();
+    }
+
     public double getEncoderVelocity() {
         if (!getSignalsToLog()[1]) printSignalError("VELOCITY");
         return inputs.velocity;
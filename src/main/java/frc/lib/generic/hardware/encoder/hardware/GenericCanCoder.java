@@ -9,6 +9,7 @@ import com.ctre.phoenix6.signals.SensorDirectionValue;
 import edu.wpi.first.units.measure.Angle;
 import edu.wpi.first.units.measure.AngularVelocity;
 import frc.lib.generic.OdometryThread;
+import frc.lib.generic.hardware.DeviceConfigurator;
 import frc.lib.generic.hardware.HardwareManager;
 import frc.lib.generic.hardware.encoder.*;
 
@@ -85,15 +86,7 @@ public class GenericCanCoder extends Encoder {
     }
 
     private boolean applyConfig() {
-        int counter = 10;
-        StatusCode statusCode = null;
-
-        while (statusCode != StatusCode.OK && counter > 0) {
-            statusCode = canCoder.getConfigurator().apply(canCoderConfig);
-            counter--;
-        }
-
-        return statusCode == StatusCode.OK;
+        return DeviceConfigurator.configure(getName(), () -> canCoder.getConfigurator().apply(canCoderConfig) == StatusCode.OK);
     }
 
     @Override
@@ -116,6 +109,15 @@ public class GenericCanCoder extends Encoder {
         inputs.threadVelocity = queueToDoubleArray(signalQueueList.get("velocity"));
     }
 
+    @Override
+    public double getLatestThreadedPosition() {
+        final Queue<Double> positionQueue = signalQueueList.get("position");
+
+        if (positionQueue == null) return super.getLatestThreadedPosition();
+
+        return OdometryThread.getInstance().getLatestValue(positionQueue);
+    }
+
     private void setupNonThreadedSignal(final BaseStatusSignal correspondingSignal) {
         correspondingSignal.setUpdateFrequency(50);
         HardwareManager.registerCTREStatusSignal(correspondingSignal);
@@ -110,6 +110,17 @@ public class Motor implements LoggableHardware {
      */
     public void setOutput(MotorProperties.ControlMode controlMode, double output, double feedforward) { }
 
+    /**
+     * Same as {@link #setOutput(MotorProperties.ControlMode, double, double)}, with the system position measured by the caller.
+     * Use this from threads that can't read the inputs, e.g. with a position snapshot taken under
+     * {@link frc.robot.GlobalConstants#FASTER_THREAD_LOCK}. Motors with an onboard closed loop ignore the measurement.
+     *
+     * @param measuredPosition the current system position, in rotations
+     */
+    public void setOutput(MotorProperties.ControlMode controlMode, double output, double feedforward, double measuredPosition) {
+        setOutput(controlMode, output, feedforward);
+    }
+
     /**
      * Set the idle mode of the motor
      *
@@ -213,6 +224,16 @@ public class Motor implements LoggableHardware {
         return inputs.systemPosition;
     }
 
+    /**
+     * The latest position sample of the odometry thread, for code that runs faster than the main loop.
+     * Falls back to {@link #getSystemPosition()} when the position isn't updated by the odometry thread.
+     *
+     * @Units In rotations
+     */
+    public double getLatestThreadedSystemPosition() {
+        return getSystemPosition();
+    }
+
     /**
      * Gearing applied
      *
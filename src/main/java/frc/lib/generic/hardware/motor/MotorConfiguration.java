@@ -101,6 +101,87 @@ public class MotorConfiguration {
      */
     public double profileMaxJerk = 0;
 
+    /**
+     * How long an unchanged control request may go without being sent to the motor controller again.
+     *
+     * <p>Commands usually set the same output every loop, which doesn't need a new CAN frame each time.</p>
+     *
+     * <ul>
+     *   <li><b>Minimum:</b> 0</li>
+     *   <li><b>Default:</b> 0.1</li>
+     *   <li><b>Units:</b> seconds</li>
+     * </ul>
+     *
+     * <p>Every request is sent if set to 0.</p>
+     */
+    public double controlRequestRefreshPeriod = 0.1;
+
+    /**
+     * Runs trapezoidal position profiles on the motor controller instead of on the roboRIO.
+     *
+     * <p>On Sparks this uses MAXMotion, which follows the profile at 1 kHz and only needs the goal over CAN.
+     * Profiles with a jerk limit, velocity profiles and mechanisms measured by an external sensor stay on the roboRIO.</p>
+     *
+     * <p><b>Default:</b> {@code false}</p>
+     */
+    public boolean useOnboardMotionProfile = false;
+
+    /**
+     * The shape of profiles followed on the motor controller. Only TalonFX motors support the non default types.
+     *
+     * <p><b>Default:</b> {@code MOTION_MAGIC}</p>
+     */
+    public MotorProperties.ProfileType profileType = MotorProperties.ProfileType.MOTION_MAGIC;
+
+    /**
+     * Voltage needed to hold one unit of velocity, used for {@link MotorProperties.ProfileType#MOTION_MAGIC_EXPO} profiles.
+     * A smaller value gives a faster profile. Keep {@link #profileMaxVelocity} at 0 to not limit the cruise velocity.
+     *
+     * <ul>
+     *   <li><b>Minimum:</b> > 0</li>
+     *   <li><b>Default:</b> 0</li>
+     *   <li><b>Units:</b> volts per rotation per second</li>
+     * </ul>
+     */
+    public double profileExpoKV = 0;
+
+    /**
+     * Voltage needed to apply one unit of acceleration, used for {@link MotorProperties.ProfileType#MOTION_MAGIC_EXPO} profiles.
+     * A smaller value gives a faster profile.
+     *
+     * <ul>
+     *   <li><b>Minimum:</b> > 0</li>
+     *   <li><b>Default:</b> 0</li>
+     *   <li><b>Units:</b> volts per rotation per second²</li>
+     * </ul>
+     */
+    public double profileExpoKA = 0;
+
+    /**
+     * Closed-loop requests of TalonFX motors command torque current with FOC instead of voltage.
+     *
+     * <p>The response no longer depends on the battery voltage. The slot gains and custom feedforwards are then in amperes
+     * instead of volts, and the motor needs a Phoenix Pro license.</p>
+     *
+     * <p><b>Default:</b> {@code false}</p>
+     */
+    public boolean useTorqueCurrentFOC = false;
+
+    /**
+     * Positions the mechanism is commanded to repeatedly, such as scoring heights.
+     *
+     * <p>Rest-to-rest S-curve profiles between every pair of presets are calculated once in the background,
+     * so moves between them don't solve a profile on the control loop.</p>
+     *
+     * <ul>
+     *   <li><b>Default:</b> null</li>
+     *   <li><b>Units:</b> rotations</li>
+     * </ul>
+     *
+     * <p>Ignored if null, or if the profile has no jerk limit.</p>
+     */
+    public double[] profilePresets = null;
+
     /**
      * Tolerance for closed-loop control, used to determine if the target is reached.
      *
@@ -3,16 +3,12 @@ package frc.lib.generic.hardware.motor;
 import frc.lib.generic.hardware.motor.hardware.ctre.GenericTalonFX;
 import frc.lib.generic.hardware.motor.hardware.ctre.GenericTalonSRX;
 import frc.lib.generic.hardware.motor.hardware.simulated.SimulatedTalonMotor;
+import frc.lib.generic.simulation.SimulationScheduler;
 import frc.robot.GlobalConstants;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import static frc.robot.GlobalConstants.CURRENT_MODE;
 
 public class MotorFactory {
-    private static final List<SimulatedTalonMotor> REGISTERED_SIMULATIONS = new ArrayList<>();
-
     public static Motor createSpark(String name, int port, MotorProperties.SparkType type) {
         final Motor motor = createSimOrReplayMotor(name, port);
 
@@ -43,16 +39,10 @@ public class MotorFactory {
         if (CURRENT_MODE == GlobalConstants.Mode.SIMULATION) {
             final SimulatedTalonMotor simulation = new SimulatedTalonMotor(name, port);
 
-            REGISTERED_SIMULATIONS.add(simulation);
+            SimulationScheduler.register(simulation);
             return simulation;
         }
 
         return null;
     }
-
-    public static void updateAllSimulations() {
-        for (SimulatedTalonMotor simulation : REGISTERED_SIMULATIONS) {
-            simulation.updateSimulation();
-        }
-    }
 }
@@ -46,6 +46,27 @@ public class MotorProperties {
         public abstract Motor getSpark(String name, int deviceId);
     }
 
+    /**
+     * Shapes of the profiles followed on the motor controller.
+     */
+    public enum ProfileType {
+        /**
+         * Trapezoidal, or S-curve when a jerk limit is set.
+         */
+        MOTION_MAGIC,
+
+        /**
+         * Exponential, shaped by the mechanism's kV and kA instead of constraints. Position control only.
+         */
+        MOTION_MAGIC_EXPO,
+
+        /**
+         * Like {@link #MOTION_MAGIC}, but the constraints are sent with every request and can change on the fly.
+         * The motor needs a Phoenix Pro license.
+         */
+        DYNAMIC_MOTION_MAGIC
+    }
+
     /**
      * Enumeration of different control modes for a motor.
      */
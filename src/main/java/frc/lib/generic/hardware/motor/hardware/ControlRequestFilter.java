@@ -0,0 +1,82 @@
+package frc.lib.generic.hardware.motor.hardware;
+
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Skips control frames that repeat the last one sent, since the motor controller keeps following its last request.
+ * Repeated requests are still resent once per refresh period, so a lost frame can't leave the motor on a stale request.
+ * <p>
+ * The refresh is timed with the FPGA clock rather than the logger's timestamp, since the swerve control thread
+ * sends requests between main loop cycles.
+ */
+public class ControlRequestFilter {
+    private long refreshPeriodMicroseconds;
+
+    private Object lastRequest;
+    private double lastOutput, lastFeedforward;
+    private double lastMaxVelocity, lastMaxAcceleration, lastMaxJerk;
+    private long lastSendTimestamp;
+
+    private long savedFrames = 0;
+
+    public ControlRequestFilter(double refreshPeriodSeconds) {
+        setRefreshPeriod(refreshPeriodSeconds);
+    }
+
+    /**
+     * @param refreshPeriodSeconds How long an unchanged request may go without being resent. 0 sends every request.
+     */
+    public void setRefreshPeriod(double refreshPeriodSeconds) {
+        refreshPeriodMicroseconds = (long) (refreshPeriodSeconds * 1000000);
+        reset();
+    }
+
+    /**
+     * Forces the next request to be sent, e.g. after the device was reconfigured.
+     */
+    public void reset() {
+        lastRequest = null;
+    }
+
+    /**
+     * @param request The kind of request, compared by identity. Reused request objects and control type enums both work.
+     * @return Whether the request differs from the last one sent, or the last one is due for a refresh
+     */
+    public boolean shouldSend(Object request, double output, double feedforward) {
+        return shouldSend(request, output, feedforward, 0, 0, 0);
+    }
+
+    /**
+     * Also compares the profile constraints, for requests that carry their own, like Dynamic Motion Magic.
+     *
+     * @return Whether the request differs from the last one sent, or the last one is due for a refresh
+     */
+    public boolean shouldSend(Object request, double output, double feedforward, double maxVelocity, double maxAcceleration, double maxJerk) {
+        final long timestamp = RobotController.getFPGATime();
+
+        if (request == lastRequest
+                && output == lastOutput
+                && feedforward == lastFeedforward
+                && maxVelocity == lastMaxVelocity
+                && maxAcceleration == lastMaxAcceleration
+                && maxJerk == lastMaxJerk
+                && timestamp - lastSendTimestamp < refreshPeriodMicroseconds) {
+            savedFrames++;
+            return false;
+        }
+
+        lastRequest = request;
+        lastOutput = output;
+        lastFeedforward = feedforward;
+        lastMaxVelocity = maxVelocity;
+        lastMaxAcceleration = maxAcceleration;
+        lastMaxJerk = maxJerk;
+        lastSendTimestamp = timestamp;
+
+        return true;
+    }
+
+    public long getSavedFrames() {
+        return savedFrames;
+    }
+}
@@ -3,47 +3,96 @@ package frc.lib.generic.hardware.motor.hardware;
 import frc.lib.generic.hardware.motor.Motor;
 import frc.lib.generic.hardware.motor.MotorConfiguration;
 import frc.lib.generic.hardware.motor.MotorProperties;
+import frc.lib.generic.hardware.motor.MotorSignal;
+import org.littletonrobotics.junction.Logger;
 
+import java.util.Arrays;
+
+/**
+ * Motors that drive the same mechanism. The first motor is the leader, and readings come from it.
+ * <p>
+ * After {@link #followLeader(boolean...)}, the other motors follow the leader on the motor controllers themselves,
+ * so a group setpoint is a single request to the leader. Otherwise, every request is sent to every motor.
+ * <p>
+ * Each member's position and velocity are compared to the leader's and logged, to catch a slipping or disconnected motor.
+ */
 public class MotorGroup extends Motor {
-    private final Motor[] motors;
+    private final Motor[] motors, leaderOnly;
+
+    /**
+     * 1 for members turning the same way as the leader, -1 for inverted followers
+     */
+    private final double[] directions;
+
+    private boolean isFollowingLeader = false;
+    private long lastSetpointTimestamp = 0;
 
     public MotorGroup(String name, Motor... motors) {
         super(name);
+
         this.motors = motors;
+        this.leaderOnly = new Motor[]{motors[0]};
+        this.directions = new double[motors.length];
+
+        Arrays.fill(directions, 1);
+    }
+
+    /**
+     * Make every other motor follow the leader's output on its motor controller.
+     * All motors must be of the same vendor.
+     *
+     * @param invertFollowers Whether each follower, in order, turns opposite to the leader
+     */
+    public MotorGroup followLeader(boolean... invertFollowers) {
+        for (int i = 1; i < motors.length; i++) {
+            final boolean invert = i - 1 < invertFollowers.length && invertFollowers[i - 1];
+
+            directions[i] = invert ? -1 : 1;
+            motors[i].setFollower(motors[0], invert);
+        }
+
+        isFollowingLeader = true;
+        return this;
     }
 
     @Override
     public void setOutput(MotorProperties.ControlMode controlMode, double output) {
-        for(Motor motor : motors) {
+        lastSetpointTimestamp = Logger.getTimestamp();
+
+        for (Motor motor : getCommandedMotors()) {
             motor.setOutput(controlMode, output);
         }
     }
 
     @Override
     public void setOutput(MotorProperties.ControlMode controlMode, double output, double feedforward) {
-        for(Motor motor : motors) {
+        lastSetpointTimestamp = Logger.getTimestamp();
+
+        for (Motor motor : getCommandedMotors()) {
             motor.setOutput(controlMode, output, feedforward);
         }
     }
 
     @Override
     public void setIdleMode(MotorProperties.IdleMode idleMode) {
-        for(Motor motor : motors) {
+        for (Motor motor : motors) {
             motor.setIdleMode(idleMode);
         }
     }
 
     @Override
     public void stopMotor() {
-        for(Motor motor : motors) {
+        lastSetpointTimestamp = Logger.getTimestamp();
+
+        for (Motor motor : getCommandedMotors()) {
             motor.stopMotor();
         }
     }
 
     @Override
     public void setMotorEncoderPosition(double position) {
-        for(Motor motor : motors) {
-            motor.setMotorEncoderPosition(position);
+        for (int i = 0; i < motors.length; i++) {
+            motors[i].setMotorEncoderPosition(directions[i] * position);
         }
     }
 
@@ -52,14 +101,101 @@ public class MotorGroup extends Motor {
         return motors[0].getClosedLoopTarget();
     }
 
+    @Override
+    public double getVoltage() {
+        return motors[0].getVoltage();
+    }
+
+    @Override
+    public double getCurrent() {
+        return motors[0].getCurrent();
+    }
+
+    @Override
+    public double getTemperature() {
+        return motors[0].getTemperature();
+    }
+
+    @Override
+    public double getSystemPosition() {
+        return motors[0].getSystemPosition();
+    }
+
+    @Override
+    public double getLatestThreadedSystemPosition() {
+        return motors[0].getLatestThreadedSystemPosition();
+    }
+
+    @Override
+    public double getSystemVelocity() {
+        return motors[0].getSystemVelocity();
+    }
+
+    @Override
+    public double getSystemAcceleration() {
+        return motors[0].getSystemAcceleration();
+    }
+
+    @Override
+    public MotorConfiguration getCurrentConfiguration() {
+        return motors[0].getCurrentConfiguration();
+    }
+
+    /**
+     * Set up the signal on every member, so the divergence of the members can be logged.
+     */
+    @Override
+    public void setupSignalUpdates(MotorSignal signal, boolean useFasterThread) {
+        for (Motor motor : motors) {
+            motor.setupSignalUpdates(signal, useFasterThread);
+        }
+    }
+
+    /**
+     * @return Whether every member was configured successfully. Failing members are reported separately.
+     * While booting, configurations are only queued, and their results come from {@link frc.lib.generic.hardware.DeviceConfigurator#applyQueuedConfigurations()}.
+     */
     @Override
     public boolean configure(MotorConfiguration configuration) {
         boolean success = true;
 
-        for(Motor motor : motors) {
-            success = motor.configure(configuration);
+        for (Motor motor : motors) {
+            if (motor.configure(configuration)) continue;
+
+            new RuntimeException("Failed to configure " + motor.getName() + " of " + getName()).printStackTrace();
+            success = false;
         }
 
         return success;
     }
+
+    @Override
+    public void periodic() {
+        super.periodic();
+
+        // The motor constructor already runs a first update, before the members are set
+        if (motors == null) return;
+
+        final double leaderPosition = motors[0].getInputs().systemPosition;
+        final double leaderVelocity = motors[0].getInputs().systemVelocity;
+        final MotorConfiguration configuration = getCurrentConfiguration();
+        final double tolerance = configuration == null || configuration.closedLoopTolerance == 0
+                ? Double.POSITIVE_INFINITY
+                : configuration.closedLoopTolerance;
+
+        Logger.recordOutput(getName() + "/LastSetpointTimestamp", lastSetpointTimestamp);
+
+        for (int i = 1; i < motors.length; i++) {
+            final double positionDivergence = directions[i] * motors[i].getInputs().systemPosition - leaderPosition;
+            final double velocityDivergence = directions[i] * motors[i].getInputs().systemVelocity - leaderVelocity;
+
+            Logger.recordOutput(getName() + "/Members/" + i + "/PositionDivergence", positionDivergence);
+            Logger.recordOutput(getName() + "/Members/" + i + "/VelocityDivergence", velocityDivergence);
+            Logger.recordOutput(getName() + "/Members/" + i + "/IsHealthy", Math.abs(positionDivergence) <= tolerance);
+        }
+    }
+
+    private Motor[] getCommandedMotors() {
+        return isFollowingLeader ? leaderOnly : motors;
+    }
 }
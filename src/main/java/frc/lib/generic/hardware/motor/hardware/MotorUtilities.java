@@ -13,6 +13,7 @@ public class MotorUtilities {
         POSITION_PID_WITH_KG,
         POSITION_S_CURVE,
         POSITION_TRAPEZOIDAL,
+        POSITION_MAX_MOTION,
         VELOCITY_PID_FF,
         VELOCITY_TRAPEZOIDAL
     }
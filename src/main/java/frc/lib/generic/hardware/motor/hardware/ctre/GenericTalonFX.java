@@ -12,9 +12,12 @@ import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.signals.StaticFeedforwardSignValue;
 import edu.wpi.first.units.measure.*;
 import frc.lib.generic.OdometryThread;
+import frc.lib.generic.hardware.DeviceConfigurator;
 import frc.lib.generic.hardware.HardwareManager;
 import frc.lib.generic.hardware.motor.*;
+import frc.lib.generic.hardware.motor.hardware.ControlRequestFilter;
 import frc.lib.generic.hardware.motor.hardware.MotorUtilities;
+import org.littletonrobotics.junction.Logger;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -40,13 +43,9 @@ public class GenericTalonFX extends Motor {
     private final TalonFXConfiguration talonConfig = new TalonFXConfiguration();
     private final TalonFXConfigurator talonConfigurator;
 
-    private final VoltageOut voltageRequest = new VoltageOut(0);
+    private final TalonFXControlRequests controlRequests = new TalonFXControlRequests();
 
-    private final PositionVoltage positionVoltageRequest = new PositionVoltage(0);
-    private final VelocityVoltage velocityVoltageRequest = new VelocityVoltage(0);
-
-    private final MotionMagicVoltage positionMMRequest = new MotionMagicVoltage(0);
-    private final MotionMagicVelocityVoltage velocityMMRequest = new MotionMagicVelocityVoltage(0);
+    private final ControlRequestFilter controlRequestFilter = new ControlRequestFilter(0);
 
     private MotorConfiguration currentConfiguration;
 
@@ -74,49 +73,20 @@ public class GenericTalonFX extends Motor {
 
     @Override
     public void setOutput(MotorProperties.ControlMode mode, double output) {
-        switch (mode) {
-            case VOLTAGE -> talonFX.setControl(voltageRequest.withOutput(output));
-
-            case POSITION -> {
-                if (shouldUseProfile)
-                    talonFX.setControl(positionMMRequest.withPosition(output).withSlot(0));
-                else
-                    talonFX.setControl(positionVoltageRequest.withPosition(output).withSlot(0));
-            }
-
-            case VELOCITY -> {
-                if (shouldUseProfile)
-                    talonFX.setControl(velocityMMRequest.withVelocity(output).withSlot(0));
-                else
-                    talonFX.setControl(velocityVoltageRequest.withVelocity(output).withSlot(0));
-            }
-
-            case CURRENT ->
-                    new UnsupportedOperationException("CTRE LOVES money and wants $150!!! dollars for this.. wtf.").printStackTrace();
-        }
+        setOutput(mode, output, 0);
     }
 
     @Override
     public void setOutput(MotorProperties.ControlMode mode, double output, double feedforward) {
-        if (mode != MotorProperties.ControlMode.POSITION && mode != MotorProperties.ControlMode.VELOCITY)
-            setOutput(mode, output);
-
         switch (mode) {
-            case POSITION -> {
-                if (shouldUseProfile) {
-                    talonFX.setControl(positionMMRequest.withPosition(output).withSlot(0).withFeedForward(feedforward));
-                } else {
-                    talonFX.setControl(positionVoltageRequest.withPosition(output).withSlot(0).withFeedForward(feedforward));
-                }
-            }
+            case VOLTAGE -> setControl(controlRequests.getVoltageRequest(output), output, 0);
+            case CURRENT -> setControl(controlRequests.getCurrentRequest(output), output, 0);
 
-            case VELOCITY -> {
-                if (shouldUseProfile) {
-                    talonFX.setControl(velocityMMRequest.withVelocity(output).withSlot(0).withFeedForward(feedforward));
-                } else {
-                    talonFX.setControl(velocityVoltageRequest.withVelocity(output).withSlot(0).withFeedForward(feedforward));
-                }
-            }
+            case POSITION ->
+                    setProfiledControl(controlRequests.getPositionRequest(currentConfiguration, shouldUseProfile, output, feedforward), output, feedforward);
+
+            case VELOCITY ->
+                    setProfiledControl(controlRequests.getVelocityRequest(currentConfiguration, shouldUseProfile, output, feedforward), output, feedforward);
         }
     }
 
@@ -156,12 +126,15 @@ public class GenericTalonFX extends Motor {
             return;
 
         talonFX.setControl(new Follower(motor.getDeviceID(), invert));
+        controlRequestFilter.reset();
     }
 
     @Override
     public boolean configure(MotorConfiguration configuration) {
         this.currentConfiguration = configuration;
 
+        controlRequestFilter.setRefreshPeriod(configuration.controlRequestRefreshPeriod);
+
         talonConfig.MotorOutput.Inverted = configuration.inverted ? InvertedValue.Clockwise_Positive : InvertedValue.CounterClockwise_Positive;
         talonConfig.MotorOutput.NeutralMode = configuration.idleMode.getCTREIdleMode();
 
@@ -174,7 +147,7 @@ public class GenericTalonFX extends Motor {
 
         talonConfig.Feedback.SensorToMechanismRatio = configuration.gearRatio;
 
-        configureMotionMagic();
+        shouldUseProfile = TalonFXControlRequests.configureMotionMagic(talonConfig, configuration);
 
         setConfig0();
         applyCurrentLimits();
@@ -187,18 +160,6 @@ public class GenericTalonFX extends Motor {
         return applyConfig();
     }
 
-    private void configureMotionMagic() {
-        if (currentConfiguration.profileMaxVelocity == 0 && currentConfiguration.profileMaxAcceleration == 0 && currentConfiguration.profileMaxJerk == 0 ||
-                currentConfiguration.profileMaxVelocity != 0 && currentConfiguration.profileMaxAcceleration == 0 && currentConfiguration.profileMaxJerk == 0)
-            return;
-
-        talonConfig.MotionMagic.MotionMagicCruiseVelocity = currentConfiguration.profileMaxVelocity;
-        talonConfig.MotionMagic.MotionMagicAcceleration = currentConfiguration.profileMaxAcceleration;
-        talonConfig.MotionMagic.MotionMagicJerk = currentConfiguration.profileMaxJerk;
-
-        shouldUseProfile = true;
-    }
-
     private void setConfig0() {
         talonConfig.Slot0.kP = currentConfiguration.slot.kP;
         talonConfig.Slot0.kI = currentConfiguration.slot.kI;
@@ -246,15 +207,7 @@ public class GenericTalonFX extends Motor {
     }
 
     private boolean applyConfig() {
-        int counter = 10;
-        StatusCode statusCode = null;
-
-        while (statusCode != StatusCode.OK && counter > 0) {
-            statusCode = talonConfigurator.apply(talonConfig);
-            counter--;
-        }
-
-        return statusCode == StatusCode.OK;
+        return DeviceConfigurator.configure(getName(), () -> talonConfigurator.apply(talonConfig) == StatusCode.OK);
     }
 
     @Override
@@ -308,6 +261,39 @@ public class GenericTalonFX extends Motor {
         inputs.systemAcceleration = accelerationSignal.getValueAsDouble();
 
         MotorUtilities.handleThreadedInputs(inputs, signalQueueList);
+
+        Logger.recordOutput(getName() + "/SkippedControlRequests", controlRequestFilter.getSavedFrames());
+    }
+
+    @Override
+    public double getLatestThreadedSystemPosition() {
+        final Queue<Double> positionQueue = signalQueueList.get("position");
+
+        if (positionQueue == null) return super.getLatestThreadedSystemPosition();
+
+        return OdometryThread.getInstance().getLatestValue(positionQueue);
+    }
+
+    /**
+     * Phoenix keeps sending the last request by itself, so an unchanged one only costs a native call.
+     */
+    private void setControl(ControlRequest request, double output, double feedforward) {
+        if (controlRequestFilter.shouldSend(request, output, feedforward))
+            talonFX.setControl(request);
+    }
+
+    /**
+     * Dynamic Motion Magic requests carry the constraints, so a change to them alone is a new request.
+     */
+    private void setProfiledControl(ControlRequest request, double output, double feedforward) {
+        if (currentConfiguration == null) {
+            setControl(request, output, feedforward);
+            return;
+        }
+
+        if (controlRequestFilter.shouldSend(request, output, feedforward,
+                currentConfiguration.profileMaxVelocity, currentConfiguration.profileMaxAcceleration, currentConfiguration.profileMaxJerk))
+            talonFX.setControl(request);
     }
 
     private void setupNonThreadedSignal(final BaseStatusSignal signal) {
@@ -0,0 +1,117 @@
+package frc.lib.generic.hardware.motor.hardware.ctre;
+
+import com.ctre.phoenix6.configs.TalonFXConfiguration;
+import com.ctre.phoenix6.controls.*;
+import frc.lib.generic.hardware.motor.MotorConfiguration;
+import frc.lib.generic.hardware.motor.MotorProperties;
+
+/**
+ * The control requests of a TalonFX, shared by the real and the simulated motor.
+ * Picks the request matching the configured output type and profile type, and reuses it to avoid allocations.
+ */
+public class TalonFXControlRequests {
+    private final VoltageOut voltageRequest = new VoltageOut(0);
+    private final TorqueCurrentFOC currentRequest = new TorqueCurrentFOC(0);
+
+    private final PositionVoltage positionVoltageRequest = new PositionVoltage(0);
+    private final VelocityVoltage velocityVoltageRequest = new VelocityVoltage(0);
+    private final MotionMagicVoltage positionMMRequest = new MotionMagicVoltage(0);
+    private final MotionMagicExpoVoltage positionMMExpoRequest = new MotionMagicExpoVoltage(0);
+    private final DynamicMotionMagicVoltage positionDynamicMMRequest = new DynamicMotionMagicVoltage(0, 0, 0, 0);
+    private final MotionMagicVelocityVoltage velocityMMRequest = new MotionMagicVelocityVoltage(0);
+
+    private final PositionTorqueCurrentFOC positionFOCRequest = new PositionTorqueCurrentFOC(0);
+    private final VelocityTorqueCurrentFOC velocityFOCRequest = new VelocityTorqueCurrentFOC(0);
+    private final MotionMagicTorqueCurrentFOC positionMMFOCRequest = new MotionMagicTorqueCurrentFOC(0);
+    private final MotionMagicExpoTorqueCurrentFOC positionMMExpoFOCRequest = new MotionMagicExpoTorqueCurrentFOC(0);
+    private final DynamicMotionMagicTorqueCurrentFOC positionDynamicMMFOCRequest = new DynamicMotionMagicTorqueCurrentFOC(0, 0, 0, 0);
+    private final MotionMagicVelocityTorqueCurrentFOC velocityMMFOCRequest = new MotionMagicVelocityTorqueCurrentFOC(0);
+
+    /**
+     * Applies the profile constraints to the Talon configuration.
+     *
+     * @return Whether position and velocity requests should follow a Motion Magic profile
+     */
+    public static boolean configureMotionMagic(TalonFXConfiguration talonConfig, MotorConfiguration configuration) {
+        if (configuration.profileType == MotorProperties.ProfileType.MOTION_MAGIC_EXPO) {
+            talonConfig.MotionMagic.MotionMagicCruiseVelocity = configuration.profileMaxVelocity;
+            // Velocity requests have no Expo variant, and follow these constraints instead
+            talonConfig.MotionMagic.MotionMagicAcceleration = configuration.profileMaxAcceleration;
+            talonConfig.MotionMagic.MotionMagicJerk = configuration.profileMaxJerk;
+            talonConfig.MotionMagic.MotionMagicExpo_kV = configuration.profileExpoKV;
+            talonConfig.MotionMagic.MotionMagicExpo_kA = configuration.profileExpoKA;
+
+            return configuration.profileExpoKV != 0 && configuration.profileExpoKA != 0;
+        }
+
+        if (configuration.profileMaxVelocity == 0 && configuration.profileMaxAcceleration == 0 && configuration.profileMaxJerk == 0 ||
+                configuration.profileMaxVelocity != 0 && configuration.profileMaxAcceleration == 0 && configuration.profileMaxJerk == 0)
+            return false;
+
+        talonConfig.MotionMagic.MotionMagicCruiseVelocity = configuration.profileMaxVelocity;
+        talonConfig.MotionMagic.MotionMagicAcceleration = configuration.profileMaxAcceleration;
+        talonConfig.MotionMagic.MotionMagicJerk = configuration.profileMaxJerk;
+
+        return true;
+    }
+
+    public ControlRequest getVoltageRequest(double voltage) {
+        return voltageRequest.withOutput(voltage);
+    }
+
+    public ControlRequest getCurrentRequest(double current) {
+        return currentRequest.withOutput(current);
+    }
+
+    /**
+     * Dynamic Motion Magic reads the constraints from the configuration on every request,
+     * so they can be changed on the fly without reapplying the configuration. Like FOC, it needs a Phoenix Pro license.
+     * Before the motor is configured, the plain closed loop request is used.
+     */
+    public ControlRequest getPositionRequest(MotorConfiguration configuration, boolean shouldUseProfile, double position, double feedforward) {
+        if (configuration == null) return positionVoltageRequest.withPosition(position).withFeedForward(feedforward);
+
+        if (configuration.useTorqueCurrentFOC) {
+            if (!shouldUseProfile) return positionFOCRequest.withPosition(position).withFeedForward(feedforward);
+
+            return switch (configuration.profileType) {
+                case MOTION_MAGIC -> positionMMFOCRequest.withPosition(position).withFeedForward(feedforward);
+                case MOTION_MAGIC_EXPO -> positionMMExpoFOCRequest.withPosition(position).withFeedForward(feedforward);
+                case DYNAMIC_MOTION_MAGIC -> positionDynamicMMFOCRequest.withPosition(position).withFeedForward(feedforward)
+                        .withVelocity(configuration.profileMaxVelocity)
+                        .withAcceleration(configuration.profileMaxAcceleration)
+                        .withJerk(configuration.profileMaxJerk);
+            };
+        }
+
+        if (!shouldUseProfile) return positionVoltageRequest.withPosition(position).withFeedForward(feedforward);
+
+        return switch (configuration.profileType) {
+            case MOTION_MAGIC -> positionMMRequest.withPosition(position).withFeedForward(feedforward);
+            case MOTION_MAGIC_EXPO -> positionMMExpoRequest.withPosition(position).withFeedForward(feedforward);
+            case DYNAMIC_MOTION_MAGIC -> positionDynamicMMRequest.withPosition(position).withFeedForward(feedforward)
+                    .withVelocity(configuration.profileMaxVelocity)
+                    .withAcceleration(configuration.profileMaxAcceleration)
+                    .withJerk(configuration.profileMaxJerk);
+        };
+    }
+
+    /**
+     * Velocity profiles have no Expo variant, and the dynamic one only changes the acceleration.
+     */
+    public ControlRequest getVelocityRequest(MotorConfiguration configuration, boolean shouldUseProfile, double velocity, double feedforward) {
+        if (configuration == null) return velocityVoltageRequest.withVelocity(velocity).withFeedForward(feedforward);
+
+        if (configuration.useTorqueCurrentFOC) {
+            if (!shouldUseProfile) return velocityFOCRequest.withVelocity(velocity).withFeedForward(feedforward);
+
+            return velocityMMFOCRequest.withVelocity(velocity).withFeedForward(feedforward)
+                    .withAcceleration(configuration.profileType == MotorProperties.ProfileType.DYNAMIC_MOTION_MAGIC ? configuration.profileMaxAcceleration : 0);
+        }
+
+        if (!shouldUseProfile) return velocityVoltageRequest.withVelocity(velocity).withFeedForward(feedforward);
+
+        return velocityMMRequest.withVelocity(velocity).withFeedForward(feedforward)
+                .withAcceleration(configuration.profileType == MotorProperties.ProfileType.DYNAMIC_MOTION_MAGIC ? configuration.profileMaxAcceleration : 0);
+    }
+}
@@ -4,14 +4,16 @@ import com.revrobotics.RelativeEncoder;
 import com.revrobotics.spark.ClosedLoopSlot;
 import com.revrobotics.spark.SparkBase;
 import com.revrobotics.spark.SparkClosedLoopController;
-import com.revrobotics.spark.SparkFlex;
+import com.revrobotics.spark.config.ClosedLoopConfig;
+import com.revrobotics.spark.config.MAXMotionConfig;
 import com.revrobotics.spark.config.SignalsConfig;
 import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.wpilibj.RobotController;
 import frc.lib.generic.Feedforward;
 import frc.lib.generic.hardware.motor.*;
+import frc.lib.generic.hardware.motor.hardware.ControlRequestFilter;
 import frc.lib.generic.hardware.motor.hardware.MotorUtilities;
-import frc.lib.scurve.InputParameter;
-import frc.lib.scurve.OutputParameter;
+import frc.lib.scurve.ProfileCache;
 import frc.lib.scurve.SCurveGenerator;
 import org.littletonrobotics.junction.Logger;
 
@@ -20,6 +22,8 @@ import java.util.function.DoubleSupplier;
 import static frc.lib.generic.hardware.motor.MotorInputs.MOTOR_INPUTS_LENGTH;
 
 public abstract class GenericSparkBase extends Motor {
+    private static final ClosedLoopSlot MAX_MOTION_SLOT = ClosedLoopSlot.kSlot1;
+
     protected final SignalsConfig signalsConfig = new SignalsConfig();
 
     private MotorUtilities.MotionType motionType;
@@ -37,14 +41,24 @@ public abstract class GenericSparkBase extends Motor {
     private double previousVelocity = 0;
 
     private SCurveGenerator scurveGenerator;
+    private double restVelocityTolerance, restAccelerationTolerance;
+    private ProfileCache profileCache;
     private TrapezoidProfile motionProfile;
     private TrapezoidProfile.State goalState;
 
     private boolean hasStoppedOccurred = false;
 
+    private final ControlRequestFilter controlRequestFilter = new ControlRequestFilter(0);
+
     private MotorConfiguration currentConfiguration;
 
-    protected double target = 0;
+    /**
+     * Kept so reconfiguring a follower (e.g. for a new idle mode) doesn't stop it from following.
+     */
+    private SparkBase leader = null;
+    private boolean invertFollower = false;
+
+    protected volatile double target = 0;
 
     protected GenericSparkBase(String name, int deviceId) {
         super(name);
@@ -75,18 +89,29 @@ public abstract class GenericSparkBase extends Motor {
 
     @Override
     public void setOutput(MotorProperties.ControlMode mode, double output, double feedforward) {
-        setNewGoal(output);
+        setOutput(mode, output, feedforward, getEffectivePosition());
+    }
+
+    /**
+     * Reads neither the inputs nor the logger, and doesn't allocate, so it's safe to call from the swerve control thread.
+     */
+    @Override
+    public void setOutput(MotorProperties.ControlMode mode, double output, double feedforward, double measuredPosition) {
+        setNewGoal(output, measuredPosition);
 
         switch (mode) {
-            case POSITION, VELOCITY -> handleSmoothMotion(motionType, goalState, motionProfile, this.feedforward);
-            case VOLTAGE -> sparkController.setReference(output, SparkBase.ControlType.kVoltage, ClosedLoopSlot.kSlot0, 0);
-            case CURRENT -> sparkController.setReference(output, SparkBase.ControlType.kCurrent, ClosedLoopSlot.kSlot0, 0);
+            case POSITION, VELOCITY -> {
+                if (getActiveMotionType() == MotorUtilities.MotionType.POSITION_MAX_MOTION) handleMaxMotion(measuredPosition);
+                else handleSmoothMotion(getActiveMotionType(), goalState, motionProfile, this.feedforward, measuredPosition);
+            }
+            case VOLTAGE -> setReference(output, SparkBase.ControlType.kVoltage, 0);
+            case CURRENT -> setReference(output, SparkBase.ControlType.kCurrent, 0);
         }
     }
 
     @Override
     public boolean configure(MotorConfiguration configuration) {
-        return configureMotor(configuration, null, false);
+        return configureMotor(configuration, leader, invertFollower);
     }
 
     protected void setFeedforward(MotorProperties.Slot slot) {
@@ -104,7 +129,10 @@ public abstract class GenericSparkBase extends Motor {
         if (!(motor instanceof GenericSparkBase))
             return;
 
-        configureMotor(currentConfiguration, ((GenericSparkFlex) motor).getSpark(), invert);
+        leader = ((GenericSparkBase) motor).getSpark();
+        invertFollower = invert;
+
+        configureMotor(currentConfiguration, leader, invertFollower);
     }
 
     @Override
@@ -123,28 +151,37 @@ public abstract class GenericSparkBase extends Motor {
         return deviceId;
     }
 
-    private void setNewGoal(double goal) {
-        if (hasNoNewGoal(new TrapezoidProfile.State(goal, 0))) return;
+    private void setNewGoal(double goal, double position) {
+        if (hasNoNewGoal(goal)) return;
 
         hasStoppedOccurred = false;
         setNewGoalExtras();
 
-        if (motionType == MotorUtilities.MotionType.POSITION_TRAPEZOIDAL) {
-            setPreviousSetpoint(new TrapezoidProfile.State(getEffectivePosition(), getEffectiveVelocity()));
+        if (getActiveMotionType() == MotorUtilities.MotionType.POSITION_TRAPEZOIDAL) {
+            setPreviousSetpoint(new TrapezoidProfile.State(position, getEffectiveVelocity()));
         } else if (motionType == MotorUtilities.MotionType.VELOCITY_TRAPEZOIDAL) {
             setPreviousSetpoint(new TrapezoidProfile.State(getEffectiveVelocity(), getEffectiveAcceleration()));
         } else if (motionType == MotorUtilities.MotionType.POSITION_S_CURVE) {
-            setSCurveInputs(new InputParameter(
-                    getEffectivePosition(),
-                    getEffectiveVelocity(),
-                    getEffectiveAcceleration(),
+            final double velocity = getEffectiveVelocity(), acceleration = getEffectiveAcceleration();
+
+            // The measured acceleration is a finite difference, so it's never exactly zero at rest. Snapping noise like that lets
+            // the solver use its closed forms and the profile cache, instead of searching for a profile on every new goal.
+            final boolean isAtRest = Math.abs(velocity) < restVelocityTolerance && Math.abs(acceleration) < restAccelerationTolerance;
+
+            setSCurveInputs(
+                    position,
+                    isAtRest ? 0 : velocity,
+                    isAtRest ? 0 : acceleration,
                     goal
-            ));
+            );
 
-            setSCurveOutputs(new OutputParameter());
+            scurveGenerator.reset();
         }
 
-        goalState = new TrapezoidProfile.State(goal, 0);
+        if (goalState == null) goalState = new TrapezoidProfile.State();
+
+        goalState.position = goal;
+        goalState.velocity = 0;
     }
 
     /**
@@ -202,6 +239,8 @@ public abstract class GenericSparkBase extends Motor {
         inputs.systemPosition = getEffectivePosition();
         inputs.systemVelocity = getEffectiveVelocity();
         inputs.systemAcceleration = getEffectiveAcceleration();
+
+        Logger.recordOutput(getName() + "/SkippedControlRequests", controlRequestFilter.getSavedFrames());
     }
 
     private double getVoltagePrivate() {
@@ -240,6 +279,28 @@ public abstract class GenericSparkBase extends Motor {
                         configuration.profileMaxAcceleration,
                         configuration.profileMaxJerk);
 
+                restVelocityTolerance = configuration.profileMaxAcceleration * 0.02;
+                restAccelerationTolerance = configuration.profileMaxJerk * 0.02;
+
+                if (configuration.profilePresets != null) {
+                    // Reconfiguring (e.g. for a new idle mode or signal) keeps the limits, so there's no need to calculate the cache again
+                    if (profileCache == null || !profileCache.matches(configuration.profilePresets,
+                            configuration.profileMaxVelocity,
+                            configuration.profileMaxAcceleration,
+                            configuration.profileMaxJerk,
+                            configuration.closedLoopTolerance,
+                            restVelocityTolerance)) {
+                        profileCache = new ProfileCache(configuration.profilePresets,
+                                configuration.profileMaxVelocity,
+                                configuration.profileMaxAcceleration,
+                                configuration.profileMaxJerk,
+                                configuration.closedLoopTolerance,
+                                restVelocityTolerance);
+                    }
+
+                    scurveGenerator.set_profile_cache(profileCache);
+                }
+
                 motionType = MotorUtilities.MotionType.POSITION_S_CURVE;
             } else {
                 motionProfile = new TrapezoidProfile(
@@ -249,7 +310,9 @@ public abstract class GenericSparkBase extends Motor {
                         )
                 );
 
-                motionType = MotorUtilities.MotionType.POSITION_TRAPEZOIDAL;
+                motionType = configuration.useOnboardMotionProfile
+                        ? MotorUtilities.MotionType.POSITION_MAX_MOTION
+                        : MotorUtilities.MotionType.POSITION_TRAPEZOIDAL;
             }
         } else if (configuration.profileMaxAcceleration != 0 && configuration.profileMaxJerk != 0) {
             motionProfile =
@@ -270,20 +333,81 @@ public abstract class GenericSparkBase extends Motor {
         }
     }
 
-    private boolean hasNoNewGoal(TrapezoidProfile.State newGoal) {
+    /**
+     * The Spark's own closed loop only sees its encoder, so an external sensor falls back to the roboRIO profile.
+     */
+    private MotorUtilities.MotionType getActiveMotionType() {
+        if (motionType == MotorUtilities.MotionType.POSITION_MAX_MOTION && externalPositionSupplier != null)
+            return MotorUtilities.MotionType.POSITION_TRAPEZOIDAL;
+
+        return motionType;
+    }
+
+    /**
+     * The Spark profiles towards the goal by itself, so only gravity, and static friction towards the goal, are
+     * compensated from here. The profile's acceleration isn't reported back, so kA can't be applied.
+     */
+    private void handleMaxMotion(double position) {
+        if (goalState == null) return;
+
+        target = goalState.position;
+
+        final double positionError = goalState.position - position;
+        final double staticFeedforward = Math.abs(positionError) > currentConfiguration.closedLoopTolerance
+                ? Math.signum(positionError) * feedforward.getConstants().kS : 0;
+
+        setReference(goalState.position,
+                SparkBase.ControlType.kMAXMotionPositionControl,
+                MAX_MOTION_SLOT,
+                feedforward.calculate(position, 0, 0) + staticFeedforward);
+    }
+
+    /**
+     * Sends a slot 0 reference with a feedforward in volts, unless it repeats the last one sent.
+     */
+    protected void setReference(double value, SparkBase.ControlType controlType, double arbitraryFeedforward) {
+        setReference(value, controlType, ClosedLoopSlot.kSlot0, arbitraryFeedforward);
+    }
+
+    private void setReference(double value, SparkBase.ControlType controlType, ClosedLoopSlot slot, double arbitraryFeedforward) {
+        if (!controlRequestFilter.shouldSend(controlType, value, arbitraryFeedforward)) return;
+
+        sparkController.setReference(value, controlType, slot, arbitraryFeedforward,
+                SparkClosedLoopController.ArbFFUnits.kVoltage);
+    }
+
+    /**
+     * Configures MAXMotion in its own slot, with the constraints and the gains the Spark applies along its own profile.
+     *
+     * @param voltsToDutyCycle What the slot's kP, kI and kD are multiplied by on the Spark. 1 when they're already tuned
+     *                         for the Spark's closed loop, 1/12 when they're tuned in volts for the roboRIO's
+     */
+    protected static void configureMaxMotion(ClosedLoopConfig closedLoopConfig, MotorConfiguration configuration, double voltsToDutyCycle) {
+        closedLoopConfig.maxMotion.maxVelocity(configuration.profileMaxVelocity, MAX_MOTION_SLOT);
+        closedLoopConfig.maxMotion.maxAcceleration(configuration.profileMaxAcceleration, MAX_MOTION_SLOT);
+        closedLoopConfig.maxMotion.positionMode(MAXMotionConfig.MAXMotionPositionMode.kMAXMotionTrapezoidal, MAX_MOTION_SLOT);
+        closedLoopConfig.maxMotion.allowedClosedLoopError(configuration.closedLoopTolerance, MAX_MOTION_SLOT);
+
+        closedLoopConfig.pid(configuration.slot.kP * voltsToDutyCycle, configuration.slot.kI * voltsToDutyCycle,
+                configuration.slot.kD * voltsToDutyCycle, MAX_MOTION_SLOT);
+
+        // kV is in volts per rotation per second, the Spark's feedforward in duty cycle at the 12V compensation
+        closedLoopConfig.velocityFF(configuration.slot.kV / 12, MAX_MOTION_SLOT);
+    }
+
+    private boolean hasNoNewGoal(double newGoal) {
         return goalState != null
-                && goalState.equals(newGoal)
+                && goalState.position == newGoal
+                && goalState.velocity == 0
                 && !hasStoppedOccurred
-                && (Logger.getTimestamp() - getLastProfileCalculationTimestamp() <= 100000); //(0.1 sec has passed)
+                && (RobotController.getFPGATime() - getLastProfileCalculationTimestamp() <= 100000); //(0.1 sec has passed)
     }
 
     protected SCurveGenerator getSCurveGenerator() {
         return scurveGenerator;
     }
 
-    protected abstract void setSCurveInputs(InputParameter scurveInputs);
-
-    protected abstract void setSCurveOutputs(OutputParameter outputParameter);
+    protected abstract void setSCurveInputs(double position, double velocity, double acceleration, double goal);
 
     protected abstract SparkBase getSpark();
 
@@ -298,9 +422,10 @@ public abstract class GenericSparkBase extends Motor {
     /**
      * This exists because REV doesn't work properly with THEIR OW NFUCKING abstract configuration object
      */
-    protected abstract boolean configureMotorInternal(MotorConfiguration configuration, SparkFlex master, boolean invertFollower);
+    protected abstract boolean configureMotorInternal(MotorConfiguration configuration, SparkBase master, boolean invertFollower);
 
-    protected abstract void handleSmoothMotion(MotorUtilities.MotionType motionType, TrapezoidProfile.State goalState, TrapezoidProfile motionProfile, final Feedforward feedforward);
+    protected abstract void handleSmoothMotion(MotorUtilities.MotionType motionType, TrapezoidProfile.State goalState, TrapezoidProfile motionProfile,
+                                               final Feedforward feedforward, double position);
 
     protected abstract double getLastProfileCalculationTimestamp();
 
@@ -353,9 +478,11 @@ public abstract class GenericSparkBase extends Motor {
         signalsConfig.iAccumulationAlwaysOn(false);
     }
 
-    private boolean configureMotor(MotorConfiguration configuration, SparkFlex masterId, boolean invertFollower) {
+    private boolean configureMotor(MotorConfiguration configuration, SparkBase masterId, boolean invertFollower) {
         currentConfiguration = configuration;
 
+        controlRequestFilter.setRefreshPeriod(configuration.controlRequestRefreshPeriod);
+
         setFeedforward(configuration.slot);
         configureProfile(configuration);
 
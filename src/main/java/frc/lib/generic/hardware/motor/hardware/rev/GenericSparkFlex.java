@@ -3,26 +3,25 @@ package frc.lib.generic.hardware.motor.hardware.rev;
 import com.revrobotics.REVLibError;
 import com.revrobotics.RelativeEncoder;
 import com.revrobotics.spark.*;
-import com.revrobotics.spark.config.MAXMotionConfig;
 import com.revrobotics.spark.config.SparkFlexConfig;
 import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.Timer;
 import frc.lib.generic.Feedforward;
+import frc.lib.generic.hardware.DeviceConfigurator;
 import frc.lib.generic.hardware.motor.MotorConfiguration;
 import frc.lib.generic.hardware.motor.hardware.MotorUtilities;
 import frc.lib.math.Conversions;
 import frc.lib.scurve.InputParameter;
 import frc.lib.scurve.OutputParameter;
-import frc.lib.scurve.UpdateResult;
-import org.littletonrobotics.junction.Logger;
 
 public class GenericSparkFlex extends GenericSparkBase {
     private SparkFlex spark;
     private RelativeEncoder encoder;
     private SparkClosedLoopController sparkController;
 
-    private InputParameter scurveInputs;
-    private OutputParameter scurveOutput = new OutputParameter();
+    private final InputParameter scurveInputs = new InputParameter();
+    private final OutputParameter scurveOutput = new OutputParameter();
 
     private double lastProfileCalculationTimestamp;
     private TrapezoidProfile.State previousSetpoint;
@@ -77,18 +76,15 @@ public class GenericSparkFlex extends GenericSparkBase {
     }
 
     @Override
-    protected boolean configureMotorInternal(MotorConfiguration configuration, SparkFlex master, boolean invertFollower) {
+    protected boolean configureMotorInternal(MotorConfiguration configuration, SparkBase master, boolean invertFollower) {
         encoder.setPosition(getEffectivePosition());
 
         final SparkFlexConfig sparkConfig = new SparkFlexConfig();
 
-        sparkConfig.closedLoop.maxMotion.maxVelocity(configuration.profileMaxVelocity);
-        sparkConfig.closedLoop.maxMotion.maxAcceleration(configuration.profileMaxAcceleration);
-        sparkConfig.closedLoop.maxMotion.positionMode(MAXMotionConfig.MAXMotionPositionMode.kMAXMotionTrapezoidal);
+        configureMaxMotion(sparkConfig.closedLoop, configuration, 1);
 
         sparkConfig.idleMode(configuration.idleMode.getSparkIdleMode());
 
-        sparkConfig.closedLoop.maxMotion.allowedClosedLoopError(configuration.closedLoopTolerance);
         sparkConfig.closedLoop.pid(configuration.slot.kP, configuration.slot.kI, configuration.slot.kD);
         sparkConfig.closedLoop.positionWrappingEnabled(configuration.closedLoopContinuousWrap);
 
@@ -105,7 +101,7 @@ public class GenericSparkFlex extends GenericSparkBase {
         sparkConfig.inverted(configuration.inverted);
 
         if (master != null)
-            sparkConfig.follow(master, true);
+            sparkConfig.follow(master, invertFollower);
 
         if (configuration.statorCurrentLimit != -1) sparkConfig.smartCurrentLimit((int) configuration.statorCurrentLimit);
         if (configuration.supplyCurrentLimit != -1) sparkConfig.smartCurrentLimit((int) configuration.supplyCurrentLimit);
@@ -120,22 +116,18 @@ public class GenericSparkFlex extends GenericSparkBase {
             sparkConfig.softLimit.reverseSoftLimit(configuration.reverseSoftLimit * configuration.gearRatio);
         }
 
-        int i = 0;
+        // Only burn the configuration to flash while booting, changes afterwards (e.g. the idle mode) only last until a power cycle
+        final SparkBase.PersistMode persistMode = DeviceConfigurator.isBooting()
+                ? SparkBase.PersistMode.kPersistParameters
+                : SparkBase.PersistMode.kNoPersistParameters;
 
-        while (i <= 3 &&
-                spark.configureAsync(sparkConfig,
-                        SparkBase.ResetMode.kResetSafeParameters,
-                        SparkBase.PersistMode.kPersistParameters)
-                        != REVLibError.kOk) {
-            i++;
-        }
-
-        return spark.configureAsync(sparkConfig, SparkBase.ResetMode.kResetSafeParameters, SparkBase.PersistMode.kPersistParameters) == REVLibError.kOk;
+        return DeviceConfigurator.configure(getName(), () ->
+                spark.configure(sparkConfig, SparkBase.ResetMode.kResetSafeParameters, persistMode) == REVLibError.kOk);
     }
 
     protected void handleSmoothMotion(MotorUtilities.MotionType motionType,
                                       TrapezoidProfile.State goalState, TrapezoidProfile motionProfile,
-                                      Feedforward feedforward) {
+                                      Feedforward feedforward, double position) {
         if (goalState == null) return;
 
         double feedforwardOutput, acceleration;
@@ -144,19 +136,17 @@ public class GenericSparkFlex extends GenericSparkBase {
             case POSITION_PID, POSITION_PID_WITH_KG -> {
                 target = goalState.position;
 
-                sparkController.setReference(goalState.position,
-                    SparkBase.ControlType.kPosition, ClosedLoopSlot.kSlot0,
-                    feedforward.calculate(getEffectivePosition(), 0, 0),
-                    SparkClosedLoopController.ArbFFUnits.kVoltage);
+                setReference(goalState.position,
+                    SparkBase.ControlType.kPosition,
+                    feedforward.calculate(position, 0, 0));
             }
 
             case VELOCITY_PID_FF -> {
                 target = goalState.position;
 
-                sparkController.setReference(goalState.position, //todo: TEST, removed *60 cuz setThingy
-                        SparkBase.ControlType.kVelocity, ClosedLoopSlot.kSlot0,
-                        feedforward.calculate(goalState.position, goalState.velocity),
-                        SparkClosedLoopController.ArbFFUnits.kVoltage);
+                setReference(goalState.position, //todo: TEST, removed *60 cuz setThingy
+                        SparkBase.ControlType.kVelocity,
+                        feedforward.calculate(goalState.position, goalState.velocity));
             }
 
             case POSITION_TRAPEZOIDAL -> {
@@ -165,15 +155,14 @@ public class GenericSparkFlex extends GenericSparkBase {
                 target = currentSetpoint.position;
 
                 acceleration = (currentSetpoint.velocity - previousSetpoint.velocity) / 0.02;
-                feedforwardOutput = feedforward.calculate(getEffectivePosition(), currentSetpoint.velocity, acceleration);
+                feedforwardOutput = feedforward.calculate(position, currentSetpoint.velocity, acceleration);
 
-                sparkController.setReference(currentSetpoint.position,
+                setReference(currentSetpoint.position,
                         SparkBase.ControlType.kPosition,
-                        ClosedLoopSlot.kSlot0, feedforwardOutput,
-                        SparkClosedLoopController.ArbFFUnits.kVoltage);
+                        feedforwardOutput);
 
                 previousSetpoint = currentSetpoint;
-                lastProfileCalculationTimestamp = Logger.getTimestamp();
+                lastProfileCalculationTimestamp = RobotController.getFPGATime();
             }
 
             case VELOCITY_TRAPEZOIDAL -> {
@@ -183,40 +172,31 @@ public class GenericSparkFlex extends GenericSparkBase {
 
                 feedforwardOutput = feedforward.calculate(0, currentSetpoint.position, currentSetpoint.velocity);
 
-                sparkController.setReference(currentSetpoint.position * 60,
+                setReference(currentSetpoint.position * 60,
                         SparkBase.ControlType.kVelocity,
-                        ClosedLoopSlot.kSlot0, feedforwardOutput,
-                        SparkClosedLoopController.ArbFFUnits.kVoltage);
+                        feedforwardOutput);
 
                 previousSetpoint = currentSetpoint;
-                lastProfileCalculationTimestamp = Logger.getTimestamp();
+                lastProfileCalculationTimestamp = RobotController.getFPGATime();
             }
 
             case POSITION_S_CURVE -> {
-                final UpdateResult result = getSCurveGenerator().update(scurveInputs, scurveOutput);
-
-                scurveInputs = result.input_parameter;
-                scurveOutput = result.output_parameter;
+                getSCurveGenerator().update(scurveInputs, scurveOutput);
 
-                feedforwardOutput = feedforward.calculate(getEffectivePosition(), scurveOutput.new_velocity, scurveOutput.new_acceleration);
+                feedforwardOutput = feedforward.calculate(position, scurveOutput.new_velocity, scurveOutput.new_acceleration);
 
                 target = scurveOutput.new_position;
 
-                sparkController.setReference(scurveOutput.new_position,
-                        com.revrobotics.spark.SparkBase.ControlType.kPosition,
-                        ClosedLoopSlot.kSlot0, feedforwardOutput,
-                        SparkClosedLoopController.ArbFFUnits.kVoltage);
+                setReference(scurveOutput.new_position,
+                        SparkBase.ControlType.kPosition,
+                        feedforwardOutput);
 
-                lastProfileCalculationTimestamp = Logger.getTimestamp();
+                lastProfileCalculationTimestamp = RobotController.getFPGATime();
             }
         }
     }
 
-    protected void setSCurveInputs(InputParameter scurveInputs) {
-        this.scurveInputs = scurveInputs;
-    }
-
-    protected void setSCurveOutputs(OutputParameter scurveOutput) {
-        this.scurveOutput = scurveOutput;
+    protected void setSCurveInputs(double position, double velocity, double acceleration, double goal) {
+        scurveInputs.set(position, velocity, acceleration, goal);
     }
 }
@@ -5,15 +5,15 @@ import com.revrobotics.RelativeEncoder;
 import com.revrobotics.spark.*;
 import com.revrobotics.spark.config.SparkMaxConfig;
 import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.wpilibj.RobotController;
 import frc.lib.generic.Feedforward;
 import frc.lib.generic.PID;
+import frc.lib.generic.hardware.DeviceConfigurator;
 import frc.lib.generic.hardware.motor.MotorConfiguration;
 import frc.lib.generic.hardware.motor.hardware.MotorUtilities;
 import frc.lib.math.Conversions;
 import frc.lib.scurve.InputParameter;
 import frc.lib.scurve.OutputParameter;
-import frc.lib.scurve.UpdateResult;
-import org.littletonrobotics.junction.Logger;
 
 public class GenericSparkMax extends GenericSparkBase {
     private SparkBase spark;
@@ -22,8 +22,8 @@ public class GenericSparkMax extends GenericSparkBase {
 
     private PID feedback;
 
-    private InputParameter scurveInputs;
-    private OutputParameter scurveOutput = new OutputParameter();
+    private final InputParameter scurveInputs = new InputParameter();
+    private final OutputParameter scurveOutput = new OutputParameter();
 
     private double lastProfileCalculationTimestamp;
     private TrapezoidProfile.State previousSetpoint;
@@ -69,7 +69,7 @@ public class GenericSparkMax extends GenericSparkBase {
     }
 
     @Override
-    protected boolean configureMotorInternal(MotorConfiguration configuration, SparkFlex master, boolean invertFollower) {
+    protected boolean configureMotorInternal(MotorConfiguration configuration, SparkBase master, boolean invertFollower) {
         feedback = new PID(configuration.slot.kP, configuration.slot.kI, configuration.slot.kD, configuration.slot.kS);
 
         if (configuration.closedLoopContinuousWrap) feedback.enableContinuousInput(-0.5, 0.5);
@@ -78,7 +78,7 @@ public class GenericSparkMax extends GenericSparkBase {
 
         sparkConfig.idleMode(configuration.idleMode.getSparkIdleMode());
 
-        sparkConfig.closedLoop.maxMotion.allowedClosedLoopError(configuration.closedLoopTolerance);
+        configureMaxMotion(sparkConfig.closedLoop, configuration, 1.0 / 12);
         sparkConfig.closedLoop.pid(configuration.slot.kP, configuration.slot.kI, configuration.slot.kD);
         sparkConfig.closedLoop.positionWrappingEnabled(configuration.closedLoopContinuousWrap);
 
@@ -111,21 +111,17 @@ public class GenericSparkMax extends GenericSparkBase {
             sparkConfig.softLimit.reverseSoftLimit(configuration.reverseSoftLimit * configuration.gearRatio);
         }
 
-        int i = 0;
+        // Only burn the configuration to flash while booting, changes afterwards (e.g. the idle mode) only last until a power cycle
+        final SparkBase.PersistMode persistMode = DeviceConfigurator.isBooting()
+                ? SparkBase.PersistMode.kPersistParameters
+                : SparkBase.PersistMode.kNoPersistParameters;
 
-        while (i <= 3 &&
-                spark.configureAsync(sparkConfig,
-                        SparkBase.ResetMode.kResetSafeParameters,
-                        SparkBase.PersistMode.kPersistParameters)
-                        != REVLibError.kOk) {
-            i++;
-        }
-
-        return spark.configureAsync(sparkConfig, SparkBase.ResetMode.kResetSafeParameters, SparkBase.PersistMode.kPersistParameters) == REVLibError.kOk;
+        return DeviceConfigurator.configure(getName(), () ->
+                spark.configure(sparkConfig, SparkBase.ResetMode.kResetSafeParameters, persistMode) == REVLibError.kOk);
     }
 
     protected void handleSmoothMotion(MotorUtilities.MotionType motionType, TrapezoidProfile.State goalState, TrapezoidProfile motionProfile,
-                                      Feedforward feedforward) {
+                                      Feedforward feedforward, double position) {
         if (goalState == null) return;
 
         double feedbackOutput = 0, feedforwardOutput = 0, acceleration;
@@ -138,11 +134,11 @@ public class GenericSparkMax extends GenericSparkBase {
 
                 acceleration = (currentSetpoint.velocity - previousSetpoint.velocity) / 0.02;
 
-                feedforwardOutput = feedforward.calculate(getEffectivePosition(), currentSetpoint.velocity, acceleration);
-                feedbackOutput = feedback.calculate(getEffectivePosition(), currentSetpoint.position);
+                feedforwardOutput = feedforward.calculate(position, currentSetpoint.velocity, acceleration);
+                feedbackOutput = feedback.calculate(position, currentSetpoint.position);
 
                 previousSetpoint = currentSetpoint;
-                lastProfileCalculationTimestamp = Logger.getTimestamp();
+                lastProfileCalculationTimestamp = RobotController.getFPGATime();
             }
 
             case VELOCITY_TRAPEZOIDAL -> {
@@ -154,7 +150,7 @@ public class GenericSparkMax extends GenericSparkBase {
                 feedbackOutput = this.feedback.calculate(getEffectiveVelocity(), currentSetpoint.position);
 
                 previousSetpoint = currentSetpoint;
-                lastProfileCalculationTimestamp = Logger.getTimestamp();
+                lastProfileCalculationTimestamp = RobotController.getFPGATime();
             }
 
             case VELOCITY_PID_FF -> {
@@ -167,39 +163,31 @@ public class GenericSparkMax extends GenericSparkBase {
             case POSITION_PID -> {
                 target = goalState.position;
 
-                feedbackOutput = this.feedback.calculate(getEffectivePosition(), goalState.position);
+                feedbackOutput = this.feedback.calculate(position, goalState.position);
             }
 
             case POSITION_PID_WITH_KG -> {
                 target = goalState.position;
 
-                feedforwardOutput = feedforward.calculate(getEffectivePosition(), 0, 0);
-                feedbackOutput = this.feedback.calculate(getEffectivePosition(), goalState.position);
+                feedforwardOutput = feedforward.calculate(position, 0, 0);
+                feedbackOutput = this.feedback.calculate(position, goalState.position);
             }
 
             case POSITION_S_CURVE -> {
-                final UpdateResult result = getSCurveGenerator().update(scurveInputs, scurveOutput);
-
-                scurveInputs = result.input_parameter;
-                scurveOutput = result.output_parameter;
+                getSCurveGenerator().update(scurveInputs, scurveOutput);
 
                 target = scurveOutput.new_position;
 
-                feedforwardOutput = feedforward.calculate(getEffectivePosition(), scurveOutput.new_velocity, scurveOutput.new_acceleration);
-                feedbackOutput = feedback.calculate(getEffectivePosition(), scurveOutput.new_position);
+                feedforwardOutput = feedforward.calculate(position, scurveOutput.new_velocity, scurveOutput.new_acceleration);
+                feedbackOutput = feedback.calculate(position, scurveOutput.new_position);
             }
         }
 
-        sparkController.setReference(feedforwardOutput + feedbackOutput, SparkBase.ControlType.kVoltage);
-    }
-
-    @Override
-    protected void setSCurveInputs(InputParameter scurveInputs) {
-        this.scurveInputs = scurveInputs;
+        setReference(feedforwardOutput + feedbackOutput, SparkBase.ControlType.kVoltage, 0);
     }
 
     @Override
-    protected void setSCurveOutputs(OutputParameter outputParameter) {
-        this.scurveOutput = outputParameter;
+    protected void setSCurveInputs(double position, double velocity, double acceleration, double goal) {
+        scurveInputs.set(position, velocity, acceleration, goal);
     }
 }
@@ -4,21 +4,40 @@ import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.configs.TalonFXConfigurator;
-import com.ctre.phoenix6.controls.*;
 import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.GravityTypeValue;
 import com.ctre.phoenix6.sim.TalonFXSimState;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.units.measure.Voltage;
 import frc.lib.generic.OdometryThread;
 import frc.lib.generic.hardware.motor.*;
+import frc.lib.generic.hardware.motor.hardware.ctre.TalonFXControlRequests;
 import frc.lib.generic.simulation.GenericPhysicsSimulation;
+import frc.lib.generic.simulation.SimulationRandomization;
 import frc.robot.GlobalConstants;
 
 import static frc.lib.generic.Feedforward.Type.ARM;
 import static frc.lib.generic.hardware.motor.MotorInputs.MOTOR_INPUTS_LENGTH;
 import static frc.robot.GlobalConstants.CURRENT_MODE;
-
+import static frc.robot.GlobalConstants.FASTER_THREAD_LOCK;
+
+/**
+ * A simulated TalonFX, whose position and velocity closed loops run in {@link #updateSimulation(double)}.
+ * <p>
+ * Phoenix's simulated devices run their closed loops on the wall clock, so physics that are stepped faster than real time
+ * would outrun them. This motor runs the simulation slot and the Motion Magic profile itself, on every physics step instead.
+ * Its closed loops always output volts, also when the configuration uses torque current FOC.
+ * Motion Magic jerk limits aren't simulated, and Expo profiles are approximated by a trapezoid with the velocity and
+ * acceleration they reach at 12 volts.
+ */
 public class SimulatedTalonMotor extends Motor {
+    /**
+     * How far the gains stray from the tuned ones in randomized runs, as if the mechanism wasn't quite what it was tuned on.
+     */
+    private static final double GAIN_SPREAD = 0.15;
+    private static final double MAX_VOLTAGE = 12;
+
     private MotorConfiguration currentConfiguration;
     private GenericPhysicsSimulation simulation;
 
@@ -31,17 +50,28 @@ public class SimulatedTalonMotor extends Motor {
     private final TalonFXConfiguration talonConfig = new TalonFXConfiguration();
     private final TalonFXConfigurator talonConfigurator;
 
-    private final VoltageOut voltageRequest = new VoltageOut(0);
-
-    private final PositionVoltage positionVoltageRequest = new PositionVoltage(0);
-    private final VelocityVoltage velocityVoltageRequest = new VelocityVoltage(0);
-
-    private final MotionMagicVoltage positionMMRequest = new MotionMagicVoltage(0);
-    private final MotionMagicVelocityVoltage velocityMMRequest = new MotionMagicVelocityVoltage(0);
+    private final TalonFXControlRequests controlRequests = new TalonFXControlRequests();
 
     private boolean shouldUseProfile = false;
     private double target = 0;
 
+    /**
+     * The latest request, set by the robot loop and followed by every physics step. Null while the motor is stopped.
+     */
+    private MotorProperties.ControlMode controlMode = null;
+    private double requestedOutput = 0, requestedFeedforward = 0;
+
+    private MotorProperties.Slot closedLoopSlot;
+    private TrapezoidProfile positionProfile;
+    private double maxProfileAcceleration = 0;
+
+    private TrapezoidProfile.State profileSetpoint = new TrapezoidProfile.State();
+    private final TrapezoidProfile.State profileGoal = new TrapezoidProfile.State();
+    private double velocitySetpoint = 0, integratedError = 0;
+    private boolean shouldResetClosedLoop = true;
+
+    private double appliedVoltage = 0;
+
     public SimulatedTalonMotor(String name, int port) {
         super(name);
 
@@ -64,35 +94,41 @@ public class SimulatedTalonMotor extends Motor {
 
     @Override
     public void setOutput(MotorProperties.ControlMode mode, double output) {
+        setOutput(mode, output, 0);
+    }
+
+    @Override
+    public void setOutput(MotorProperties.ControlMode mode, double output, double feedforward) {
         target = output;
 
-        switch (mode) {
-            case VOLTAGE -> talonFX.setControl(voltageRequest.withOutput(output));
+        // Only current control is left to Phoenix, the other modes are followed by the physics steps
+        if (mode == MotorProperties.ControlMode.CURRENT)
+            talonFX.setControl(controlRequests.getCurrentRequest(output));
 
-            case POSITION -> {
-                if (shouldUseProfile) {
-                    talonFX.setControl(positionMMRequest.withPosition(output).withSlot(0));
-                } else {
-                    talonFX.setControl(positionVoltageRequest.withPosition(output).withSlot(0));
-                }
-            }
+        FASTER_THREAD_LOCK.lock();
 
-            case VELOCITY -> {
-                if (shouldUseProfile) {
-                    talonFX.setControl(velocityMMRequest.withVelocity(output).withSlot(0));
-                } else {
-                    talonFX.setControl(velocityVoltageRequest.withVelocity(output).withSlot(0));
-                }
-            }
+        try {
+            if (mode != controlMode) shouldResetClosedLoop = true;
 
-            case CURRENT ->
-                    new UnsupportedOperationException("CTRE LOVES money and wants $150!!! dollars for this.. wtf.").printStackTrace();
+            controlMode = mode;
+            requestedOutput = output;
+            requestedFeedforward = feedforward;
+        } finally {
+            FASTER_THREAD_LOCK.unlock();
         }
     }
 
     @Override
     public void stopMotor() {
         talonFX.stopMotor();
+
+        FASTER_THREAD_LOCK.lock();
+
+        try {
+            controlMode = null;
+        } finally {
+            FASTER_THREAD_LOCK.unlock();
+        }
     }
 
     @Override
@@ -114,8 +150,9 @@ public class SimulatedTalonMotor extends Motor {
 //        talonConfig.MotorOutput.Inverted = configuration.inverted ? InvertedValue.Clockwise_Positive : InvertedValue.CounterClockwise_Positive;
         talonConfig.Feedback.SensorToMechanismRatio = configuration.gearRatio;
 
-        configureMotionMagic();
+        shouldUseProfile = TalonFXControlRequests.configureMotionMagic(talonConfig, configuration);
         configurePIDSlot();
+        configureProfile();
 
         applySoftwarePositionLimits();
 
@@ -125,18 +162,6 @@ public class SimulatedTalonMotor extends Motor {
         return talonConfigurator.apply(talonConfig) == StatusCode.OK;
     }
 
-    private void configureMotionMagic() {
-        if (currentConfiguration.profileMaxVelocity == 0 && currentConfiguration.profileMaxAcceleration == 0 && currentConfiguration.profileMaxJerk == 0 ||
-                currentConfiguration.profileMaxVelocity != 0 && currentConfiguration.profileMaxAcceleration == 0 && currentConfiguration.profileMaxJerk == 0)
-            return;
-
-        talonConfig.MotionMagic.MotionMagicCruiseVelocity = currentConfiguration.profileMaxVelocity;
-        talonConfig.MotionMagic.MotionMagicAcceleration = currentConfiguration.profileMaxAcceleration;
-        talonConfig.MotionMagic.MotionMagicJerk = currentConfiguration.profileMaxJerk;
-
-        shouldUseProfile = true;
-    }
-
     private void applySoftwarePositionLimits() {
         if (currentConfiguration.forwardSoftLimit != null) {
             talonConfig.SoftwareLimitSwitch.ForwardSoftLimitEnable = true;
@@ -150,18 +175,44 @@ public class SimulatedTalonMotor extends Motor {
     }
 
     private void configurePIDSlot() {
-        talonConfig.Slot0.kP = currentConfiguration.simulationSlot.kP;
-        talonConfig.Slot0.kI = currentConfiguration.simulationSlot.kI;
-        talonConfig.Slot0.kD = currentConfiguration.simulationSlot.kD;
+        final double feedbackScale = SimulationRandomization.getScale(getName() + "/Feedback", GAIN_SPREAD);
+        final double feedforwardScale = SimulationRandomization.getScale(getName() + "/Feedforward", GAIN_SPREAD);
+
+        talonConfig.Slot0.kP = currentConfiguration.simulationSlot.kP * feedbackScale;
+        talonConfig.Slot0.kI = currentConfiguration.simulationSlot.kI * feedbackScale;
+        talonConfig.Slot0.kD = currentConfiguration.simulationSlot.kD * feedbackScale;
 
-        talonConfig.Slot0.kA = currentConfiguration.simulationSlot.kA;
-        talonConfig.Slot0.kS = currentConfiguration.simulationSlot.kS;
-        talonConfig.Slot0.kV = currentConfiguration.simulationSlot.kV;
-        talonConfig.Slot0.kG = currentConfiguration.simulationSlot.kG;
+        talonConfig.Slot0.kA = currentConfiguration.simulationSlot.kA * feedforwardScale;
+        talonConfig.Slot0.kS = currentConfiguration.simulationSlot.kS * feedforwardScale;
+        talonConfig.Slot0.kV = currentConfiguration.simulationSlot.kV * feedforwardScale;
+        talonConfig.Slot0.kG = currentConfiguration.simulationSlot.kG * feedforwardScale;
 
         if (currentConfiguration.simulationSlot.feedforwardType != null)
             talonConfig.Slot0.GravityType = currentConfiguration.simulationSlot.feedforwardType == ARM
                     ? GravityTypeValue.Arm_Cosine : GravityTypeValue.Elevator_Static;
+
+        closedLoopSlot = new MotorProperties.Slot(
+                talonConfig.Slot0.kP, talonConfig.Slot0.kI, talonConfig.Slot0.kD,
+                talonConfig.Slot0.kV, talonConfig.Slot0.kA, talonConfig.Slot0.kS, talonConfig.Slot0.kG,
+                currentConfiguration.simulationSlot.feedforwardType);
+    }
+
+    private void configureProfile() {
+        double maxVelocity = currentConfiguration.profileMaxVelocity, maxAcceleration = currentConfiguration.profileMaxAcceleration;
+
+        if (currentConfiguration.profileType == MotorProperties.ProfileType.MOTION_MAGIC_EXPO && shouldUseProfile) {
+            final double expoMaxVelocity = MAX_VOLTAGE / currentConfiguration.profileExpoKV;
+
+            maxVelocity = maxVelocity == 0 ? expoMaxVelocity : Math.min(maxVelocity, expoMaxVelocity);
+            maxAcceleration = MAX_VOLTAGE / currentConfiguration.profileExpoKA;
+        }
+
+        // A zero cruise velocity doesn't limit the velocity of Motion Magic
+        positionProfile = shouldUseProfile && maxAcceleration != 0
+                ? new TrapezoidProfile(new TrapezoidProfile.Constraints(maxVelocity == 0 ? Double.POSITIVE_INFINITY : maxVelocity, maxAcceleration))
+                : null;
+        maxProfileAcceleration = shouldUseProfile ? currentConfiguration.profileMaxAcceleration : 0;
+        shouldResetClosedLoop = true;
     }
 
     @Override
@@ -192,7 +243,7 @@ public class SimulatedTalonMotor extends Motor {
 
         inputs.setSignalsToLog(signalsToLog);
 
-        inputs.voltage = voltageSignal.getValueAsDouble();
+        inputs.voltage = appliedVoltage;
         inputs.current = simulation.getCurrent();
         inputs.target = target;
         inputs.systemPosition = simulation.getSystemPositionRotations();
@@ -207,12 +258,101 @@ public class SimulatedTalonMotor extends Motor {
         inputs.threadSystemAcceleration = new double[]{inputs.systemAcceleration};
     }
 
-    public void updateSimulation() {
-        simulation.setVoltage(talonFXSimState.getMotorVoltage());
-        simulation.updateMotor();
+    /**
+     * The physics this motor runs, for simulations that couple several motors (e.g. a drivetrain).
+     * Replaced when the motor is configured.
+     */
+    public GenericPhysicsSimulation getPhysicsSimulation() {
+        return simulation;
+    }
+
+    /**
+     * Runs the closed loop and then the physics for one step. Called by the simulation scheduler while it holds the hardware lock.
+     */
+    public void updateSimulation(double timeSeconds) {
+        appliedVoltage = controlMode == MotorProperties.ControlMode.CURRENT
+                ? talonFXSimState.getMotorVoltage()
+                : stopAtSoftwarePositionLimits(MathUtil.clamp(calculateVoltage(timeSeconds), -MAX_VOLTAGE, MAX_VOLTAGE));
+
+        simulation.setVoltage(appliedVoltage);
+        simulation.updateMotor(timeSeconds);
 
         talonFXSimState.setRawRotorPosition(simulation.getMotorPositionRotations());
         talonFXSimState.setRotorVelocity(simulation.getMotorVelocityRotationsPerSecond());
         talonFXSimState.setRotorAcceleration(simulation.getMotorAccelerationRotationsPerSecondSquared());
     }
-}
\ No newline at end of file
+
+    private double calculateVoltage(double timeSeconds) {
+        if (controlMode == null) return 0;
+        if (controlMode == MotorProperties.ControlMode.VOLTAGE) return requestedOutput;
+        if (closedLoopSlot == null) return 0;
+
+        final double position = simulation.getSystemPositionRotations(), velocity = simulation.getSystemVelocityRotationsPerSecond();
+
+        if (shouldResetClosedLoop) {
+            profileSetpoint = new TrapezoidProfile.State(position, velocity);
+            velocitySetpoint = velocity;
+            integratedError = 0;
+            shouldResetClosedLoop = false;
+        }
+
+        double referencePosition = 0, referenceVelocity, referenceAcceleration = 0;
+
+        if (controlMode == MotorProperties.ControlMode.POSITION) {
+            referencePosition = requestedOutput;
+            referenceVelocity = 0;
+
+            if (positionProfile != null) {
+                final double previousVelocity = profileSetpoint.velocity;
+
+                profileGoal.position = requestedOutput;
+                profileSetpoint = positionProfile.calculate(timeSeconds, profileSetpoint, profileGoal);
+
+                referencePosition = profileSetpoint.position;
+                referenceVelocity = profileSetpoint.velocity;
+                referenceAcceleration = (profileSetpoint.velocity - previousVelocity) / timeSeconds;
+            }
+        } else {
+            referenceVelocity = requestedOutput;
+
+            if (maxProfileAcceleration != 0) {
+                final double previousVelocity = velocitySetpoint;
+                final double maxVelocityChange = maxProfileAcceleration * timeSeconds;
+
+                velocitySetpoint += MathUtil.clamp(requestedOutput - velocitySetpoint, -maxVelocityChange, maxVelocityChange);
+
+                referenceVelocity = velocitySetpoint;
+                referenceAcceleration = (velocitySetpoint - previousVelocity) / timeSeconds;
+            }
+        }
+
+        double error = controlMode == MotorProperties.ControlMode.POSITION ? referencePosition - position : referenceVelocity - velocity;
+
+        if (controlMode == MotorProperties.ControlMode.POSITION && currentConfiguration.closedLoopContinuousWrap)
+            error = MathUtil.inputModulus(error, -0.5, 0.5);
+
+        integratedError += error * timeSeconds;
+
+        // Like the Talon, the derivative acts on the velocity error of a position loop and the acceleration error of a velocity loop
+        final double errorDerivative = controlMode == MotorProperties.ControlMode.POSITION
+                ? referenceVelocity - velocity
+                : referenceAcceleration - simulation.getSystemAccelerationRotationsPerSecondSquared();
+
+        final double gravity = closedLoopSlot.feedforwardType == ARM
+                ? closedLoopSlot.kG * Math.cos(position * 2 * Math.PI)
+                : closedLoopSlot.kG;
+
+        return closedLoopSlot.kP * error + closedLoopSlot.kI * integratedError + closedLoopSlot.kD * errorDerivative
+                + closedLoopSlot.kS * Math.signum(referenceVelocity) + closedLoopSlot.kV * referenceVelocity
+                + closedLoopSlot.kA * referenceAcceleration + gravity + requestedFeedforward;
+    }
+
+    private double stopAtSoftwarePositionLimits(double voltage) {
+        final double position = simulation.getSystemPositionRotations();
+
+        if (voltage > 0 && currentConfiguration.forwardSoftLimit != null && position >= currentConfiguration.forwardSoftLimit) return 0;
+        if (voltage < 0 && currentConfiguration.reverseSoftLimit != null && position <= currentConfiguration.reverseSoftLimit) return 0;
+
+        return voltage;
+    }
+}
@@ -6,6 +6,7 @@ import frc.robot.GlobalConstants;
 import org.littletonrobotics.junction.Logger;
 
 import java.util.NoSuchElementException;
+import java.util.function.DoubleSupplier;
 
 import static frc.lib.generic.hardware.pigeon.PigeonInputs.PIGEON_INPUTS_LENGTH;
 import static frc.robot.GlobalConstants.CURRENT_MODE;
@@ -21,6 +22,10 @@ public class Pigeon implements LoggableHardware {
         HardwareManager.addHardware(this);
     }
 
+    public String getName() {
+        return name;
+    }
+
     public void configurePigeon(PigeonConfiguration pigeonConfiguration) {}
 
     public double getYawRotations() {
@@ -28,6 +33,14 @@ public class Pigeon implements LoggableHardware {
         return inputs.gyroYawRotations;
     }
 
+    /**
+     * The latest yaw sample of the odometry thread, for code that runs faster than the main loop.
+     * Falls back to {@link #getYawRotations()} when the yaw isn't updated by the odometry thread.
+     */
+    public double getLatestThreadedYawRotations() {
+        return getYawRotations();
+    }
+
     public double getRollRotations() {
         if (!getSignalsToLog()[1]) printSignalError("ROLL");
         return inputs.gyroRollRotations;
@@ -40,6 +53,8 @@ public class Pigeon implements LoggableHardware {
 
     public void setGyroYaw(double yawRotations) {}
 
+    public void setSimulatedYawSource(DoubleSupplier yawRotationsSource) {}
+
     /**
      * Signals are lazily loaded - only these explicity called will be updated. Thus you must call this method. when using a signal.
      */
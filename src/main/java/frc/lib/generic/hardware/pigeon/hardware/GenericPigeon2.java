@@ -1,6 +1,7 @@
 package frc.lib.generic.hardware.pigeon.hardware;
 
 import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.Pigeon2Configuration;
 import com.ctre.phoenix6.hardware.Pigeon2;
@@ -8,6 +9,7 @@ import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.units.measure.Angle;
 import frc.lib.generic.OdometryThread;
+import frc.lib.generic.hardware.DeviceConfigurator;
 import frc.lib.generic.hardware.HardwareManager;
 import frc.lib.generic.hardware.pigeon.Pigeon;
 import frc.lib.generic.hardware.pigeon.PigeonConfiguration;
@@ -52,7 +54,8 @@ public class GenericPigeon2 extends Pigeon {
 
         pigeon.optimizeBusUtilization();
 
-        pigeon.getConfigurator().apply(configuration.Pigeon2Features.withEnableCompass(false));
+        DeviceConfigurator.configure(getName(), () ->
+                pigeon.getConfigurator().apply(configuration.Pigeon2Features.withEnableCompass(false)) == StatusCode.OK);
     }
 
     @Override
@@ -102,6 +105,15 @@ public class GenericPigeon2 extends Pigeon {
     }
 
 
+    @Override
+    public double getLatestThreadedYawRotations() {
+        final Queue<Double> yawQueue = signalQueueList.get("yaw_pigeon2");
+
+        if (yawQueue == null) return super.getLatestThreadedYawRotations();
+
+        return OdometryThread.getInstance().getLatestValue(yawQueue);
+    }
+
     private void setupNonThreadedSignal(final BaseStatusSignal signal) {
         signal.setUpdateFrequency(50);
         HardwareManager.registerCTREStatusSignal(signal);
@@ -5,12 +5,15 @@ import frc.lib.generic.hardware.pigeon.Pigeon;
 import frc.lib.generic.hardware.pigeon.PigeonInputs;
 import frc.lib.generic.hardware.pigeon.PigeonSignal;
 
+import java.util.function.DoubleSupplier;
+
 import static frc.lib.generic.hardware.pigeon.PigeonInputs.PIGEON_INPUTS_LENGTH;
 import static frc.robot.GlobalConstants.ROBOT_PERIODIC_LOOP_TIME;
 import static frc.robot.RobotContainer.SWERVE;
 
 public class SimulatedIMU extends Pigeon {
     private double simulatedYawRotations = 0;
+    private DoubleSupplier yawRotationsSource = null;
     private final boolean[] signalsToLog = new boolean[PIGEON_INPUTS_LENGTH];
 
     public SimulatedIMU(String name) {
@@ -21,14 +24,23 @@ public class SimulatedIMU extends Pigeon {
         simulatedYawRotations += Units.radiansToRotations(omegaRadiansPerSecond * timeSeconds);
     }
 
+    /**
+     * Reads the yaw from a simulated chassis, instead of integrating the swerve's measured velocity.
+     * {@link #setGyroYaw} still resets the yaw, by offsetting the source.
+     */
+    @Override
+    public void setSimulatedYawSource(DoubleSupplier yawRotationsSource) {
+        this.yawRotationsSource = yawRotationsSource;
+    }
+
     @Override
     public double getYawRotations() {
-        return simulatedYawRotations;
+        return yawRotationsSource == null ? simulatedYawRotations : yawRotationsSource.getAsDouble() + simulatedYawRotations;
     }
 
     @Override
     public void setGyroYaw(double yawRotations) {
-        simulatedYawRotations = yawRotations;
+        simulatedYawRotations = yawRotationsSource == null ? yawRotations : yawRotations - yawRotationsSource.getAsDouble();
     }
 
     @Override
@@ -46,7 +58,8 @@ public class SimulatedIMU extends Pigeon {
 
         inputs.setSignalsToLog(signalsToLog);
 
-        update(SWERVE.getRobotRelativeVelocity().omegaRadiansPerSecond, ROBOT_PERIODIC_LOOP_TIME);
+        if (yawRotationsSource == null)
+            update(SWERVE.getRobotRelativeVelocity().omegaRadiansPerSecond, ROBOT_PERIODIC_LOOP_TIME);
 
         inputs.gyroYawRotations = getYawRotations();
         inputs.threadGyroYawRotations = new double[]{inputs.gyroYawRotations};
@@ -0,0 +1,80 @@
+package frc.lib.generic.simulation;
+
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.util.Units;
+
+/**
+ * A drive wheel that turns against the grip of its tire, for simulating a whole drivetrain.
+ * <p>
+ * The motor accelerates the wheel, and the drivetrain simulation applies the torque the ground puts on it through {@link #applyTorque}.
+ * Without a drivetrain, it spins freely like {@link SimpleMotorSimulation}.
+ */
+public class DriveWheelSimulation extends GenericPhysicsSimulation {
+    private final DCMotor gearbox;
+    private final double gearRatio, momentOfInertia;
+
+    private double voltage = 0, current = 0;
+    private double positionRadians = 0, velocityRadiansPerSecond = 0, accelerationRadiansPerSecondSquared = 0;
+
+    /**
+     * @param momentOfInertia The moment of inertia of the wheel and the gearbox, at the wheel
+     */
+    public DriveWheelSimulation(DCMotor gearbox, double gearRatio, double momentOfInertia) {
+        super(gearRatio);
+
+        this.gearbox = gearbox;
+        this.gearRatio = gearRatio;
+        this.momentOfInertia = momentOfInertia;
+    }
+
+    public double getMomentOfInertia() {
+        return momentOfInertia;
+    }
+
+    public double getVelocityRadiansPerSecond() {
+        return velocityRadiansPerSecond;
+    }
+
+    /**
+     * Applies an outside torque on the wheel over a step, e.g. the tire's grip on the ground.
+     */
+    public void applyTorque(double newtonMeters, double timeSeconds) {
+        velocityRadiansPerSecond += newtonMeters / momentOfInertia * timeSeconds;
+    }
+
+    @Override
+    public double getCurrent() {
+        return current;
+    }
+
+    @Override
+    public double getSystemPositionRotations() {
+        return Units.radiansToRotations(positionRadians);
+    }
+
+    @Override
+    public double getSystemVelocityRotationsPerSecond() {
+        return Units.radiansToRotations(velocityRadiansPerSecond);
+    }
+
+    @Override
+    public double getSystemAccelerationRotationsPerSecondSquared() {
+        return Units.radiansToRotations(accelerationRadiansPerSecondSquared);
+    }
+
+    @Override
+    public void setVoltage(double voltage) {
+        this.voltage = voltage;
+    }
+
+    @Override
+    public void updateMotor(double timeSeconds) {
+        final double previousVelocity = velocityRadiansPerSecond;
+
+        current = gearbox.getCurrent(velocityRadiansPerSecond * gearRatio, voltage);
+        velocityRadiansPerSecond += gearbox.getTorque(current) * gearRatio / momentOfInertia * timeSeconds;
+        positionRadians += velocityRadiansPerSecond * timeSeconds;
+
+        accelerationRadiansPerSecondSquared = (velocityRadiansPerSecond - previousVelocity) / timeSeconds;
+    }
+}
@@ -4,8 +4,6 @@ import edu.wpi.first.math.system.plant.DCMotor;
 import frc.lib.generic.simulation.extensions.ExtendedElevatorSim;
 import frc.lib.math.Conversions;
 
-import static frc.robot.GlobalConstants.ROBOT_PERIODIC_LOOP_TIME;
-
 public class ElevatorSimulation extends GenericPhysicsSimulation {
     private final ExtendedElevatorSim elevatorSimulation;
 
@@ -57,7 +55,7 @@ public class ElevatorSimulation extends GenericPhysicsSimulation {
     }
 
     @Override
-    public void updateMotor() {
-        elevatorSimulation.update((ROBOT_PERIODIC_LOOP_TIME));
+    public void updateMotor(double timeSeconds) {
+        elevatorSimulation.update(timeSeconds);
     }
 }
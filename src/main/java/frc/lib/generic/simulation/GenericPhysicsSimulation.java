@@ -33,5 +33,5 @@ public abstract class GenericPhysicsSimulation {
 
     public abstract void setVoltage(double voltage);
 
-    public abstract void updateMotor();
+    public abstract void updateMotor(double timeSeconds);
 }
\ No newline at end of file
@@ -5,8 +5,6 @@ import edu.wpi.first.math.system.plant.LinearSystemId;
 import edu.wpi.first.math.util.Units;
 import frc.lib.generic.simulation.extensions.ExtendedDCMotorSim;
 
-import static frc.robot.GlobalConstants.ROBOT_PERIODIC_LOOP_TIME;
-
 public class SimpleMotorSimulation extends GenericPhysicsSimulation {
     private final ExtendedDCMotorSim motorSimulation;
 
@@ -48,7 +46,7 @@ public class SimpleMotorSimulation extends GenericPhysicsSimulation {
     }
 
     @Override
-    public void updateMotor() {
-        motorSimulation.update(ROBOT_PERIODIC_LOOP_TIME);
+    public void updateMotor(double timeSeconds) {
+        motorSimulation.update(timeSeconds);
     }
 }
\ No newline at end of file
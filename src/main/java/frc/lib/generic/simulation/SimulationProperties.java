@@ -6,6 +6,7 @@ import edu.wpi.first.math.system.plant.DCMotor;
 public class SimulationProperties {
     public enum SimulationType {
         SIMPLE_MOTOR,
+        DRIVE_WHEEL,
         ELEVATOR,
         ARM
     }
@@ -57,7 +58,7 @@ public class SimulationProperties {
             this.simulateGravity = simulateGravity;
         }
 
-        // Constructor for simple + flywheel
+        // Constructor for simple + flywheel + drive wheel
         public Slot(SimulationType type, DCMotor gearbox, double gearRatio, double momentOfInertia) {
             this.type = type;
             this.gearbox = gearbox;
@@ -87,6 +88,7 @@ public class SimulationProperties {
                     }
                 }
 
+                case DRIVE_WHEEL -> new DriveWheelSimulation(gearbox, gearRatio, momentOfInertia);
                 case ELEVATOR ->
                         new ElevatorSimulation(gearbox, gearRatio, carriageMassKilograms, drumRadiusMeters, minimumHeightMeters, maximumHeightMeters, simulateGravity);
                 case ARM ->
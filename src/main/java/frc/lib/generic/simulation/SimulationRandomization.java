@@ -0,0 +1,38 @@
+package frc.lib.generic.simulation;
+
+import java.util.Random;
+
+/**
+ * Randomizes simulation parameters per run, so many runs of the same routine show its variance.
+ * <p>
+ * Every value is drawn from the run's seed and its own key, so it doesn't depend on the order things are created or configured in,
+ * and a run can be repeated from its seed alone. Until a seed is set, every value is the nominal one.
+ */
+public class SimulationRandomization {
+    private static Long seed = null;
+
+    /**
+     * Set this before the robot is created, as parameters are drawn when the hardware is configured.
+     */
+    public static void setSeed(long seed) {
+        SimulationRandomization.seed = seed;
+    }
+
+    public static boolean isRandomized() {
+        return seed != null;
+    }
+
+    /**
+     * @param spread The standard deviation of the scale's logarithm, 0.1 is about 10% either way
+     * @return A positive scale around 1, or exactly 1 when not randomized
+     */
+    public static double getScale(String key, double spread) {
+        if (seed == null) return 1;
+
+        return Math.exp(spread * getRandom(key).nextGaussian());
+    }
+
+    private static Random getRandom(String key) {
+        return new Random(seed * 31 + key.hashCode());
+    }
+}
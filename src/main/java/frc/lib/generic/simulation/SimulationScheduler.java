@@ -0,0 +1,121 @@
+package frc.lib.generic.simulation;
+
+import edu.wpi.first.wpilibj.Notifier;
+import frc.lib.generic.hardware.motor.hardware.simulated.SimulatedTalonMotor;
+import org.littletonrobotics.junction.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleConsumer;
+
+import static frc.robot.GlobalConstants.FASTER_THREAD_LOCK;
+import static frc.robot.GlobalConstants.ROBOT_PERIODIC_LOOP_TIME;
+
+/**
+ * Steps the physics of all simulated motors at a fixed rate, much faster than the robot loop.
+ * <p>
+ * The simulated TalonFX runs its closed loop far faster than the robot loop, so physics that only move once per loop
+ * make stiff mechanisms oscillate. Every step advances all physics by the same fixed time, and the number of steps
+ * taken is kept, so a run can be reproduced from it.
+ * <p>
+ * By default, {@link #update()} takes all steps of a robot loop at once, so the physics follow the robot clock rather than the wall clock.
+ * They can instead run in real time on their own thread. The simulated motors run their closed loops within each step,
+ * so a run doesn't depend on how fast it runs. Only current control is still left to Phoenix, on the wall clock.
+ */
+public class SimulationScheduler {
+    public static final double STEP_RATE_HERTZ = 1000;
+
+    private static final double STEP_SECONDS = 1 / STEP_RATE_HERTZ;
+    private static final int STEPS_PER_ROBOT_LOOP = (int) Math.round(ROBOT_PERIODIC_LOOP_TIME * STEP_RATE_HERTZ);
+
+    private static final List<SimulatedTalonMotor> SIMULATIONS = new ArrayList<>();
+    private static final List<DoubleConsumer> COUPLED_SIMULATIONS = new ArrayList<>();
+
+    private static Notifier notifier = null;
+    private static boolean isDeterministic = true;
+    /**
+     * Only written while holding the hardware lock, but read without it.
+     */
+    private static volatile long stepCount = 0;
+
+    public static void register(SimulatedTalonMotor simulation) {
+        FASTER_THREAD_LOCK.lock();
+
+        try {
+            SIMULATIONS.add(simulation);
+        } finally {
+            FASTER_THREAD_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Registers a simulation that couples several motors, e.g. a drivetrain. It steps right after the motors, with the step's duration.
+     */
+    public static void registerCoupledSimulation(DoubleConsumer simulation) {
+        FASTER_THREAD_LOCK.lock();
+
+        try {
+            COUPLED_SIMULATIONS.add(simulation);
+        } finally {
+            FASTER_THREAD_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Take all steps of a robot loop at once, or step in real time when false. Set this before the first update.
+     * Being deterministic only applies to the physics, see the class documentation.
+     */
+    public static void setDeterministic(boolean deterministic) {
+        isDeterministic = deterministic;
+    }
+
+    /**
+     * Call this once every robot loop, in <code>simulationPeriodic()</code>.
+     */
+    public static void update() {
+        Logger.recordOutput("Simulation/StepCount", stepCount);
+
+        if (!isDeterministic) {
+            if (notifier == null) startNotifier();
+            return;
+        }
+
+        for (int i = 0; i < STEPS_PER_ROBOT_LOOP; i++) {
+            step();
+        }
+    }
+
+    /**
+     * @return The number of fixed steps taken since the simulation started
+     */
+    public static long getStepCount() {
+        return stepCount;
+    }
+
+    private static void startNotifier() {
+        notifier = new Notifier(SimulationScheduler::step);
+        notifier.setName("SimulationScheduler");
+        notifier.startPeriodic(STEP_SECONDS);
+    }
+
+    /**
+     * Holds the hardware lock, so inputs never read a motor halfway through a step.
+     */
+    private static void step() {
+        FASTER_THREAD_LOCK.lock();
+
+        try {
+            for (SimulatedTalonMotor simulation : SIMULATIONS) {
+                simulation.updateSimulation(STEP_SECONDS);
+            }
+
+            for (DoubleConsumer simulation : COUPLED_SIMULATIONS) {
+                simulation.accept(STEP_SECONDS);
+            }
+
+            stepCount++;
+        } finally {
+            FASTER_THREAD_LOCK.unlock();
+        }
+    }
+}
@@ -6,8 +6,6 @@ import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.simulation.SingleJointedArmSim;
 import frc.lib.generic.simulation.extensions.ExtendedSingleJointedArmSim;
 
-import static frc.robot.GlobalConstants.ROBOT_PERIODIC_LOOP_TIME;
-
 public class SingleJointedArmSimulation extends GenericPhysicsSimulation {
     private final ExtendedSingleJointedArmSim armSimulation;
 
@@ -52,7 +50,7 @@ public class SingleJointedArmSimulation extends GenericPhysicsSimulation {
     }
 
     @Override
-    public void updateMotor() {
-        armSimulation.update(ROBOT_PERIODIC_LOOP_TIME);
+    public void updateMotor(double timeSeconds) {
+        armSimulation.update(timeSeconds);
     }
 }
\ No newline at end of file
@@ -61,6 +61,18 @@ public class Optimizations {
         return targetVelocityMPS * cosineScalar;
     }
 
+    /**
+     * Allocation free version of {@link #reduceSkew(double, Rotation2d, Rotation2d)}.
+     *
+     * @param targetVelocityMPS       the target velocity, in meters per second
+     * @param targetSteerAngleRadians the target steer angle, in radians
+     * @param currentAngleRadians     the current steer angle, in radians
+     * @return the reduced target velocity in metres per second
+     */
+    public static double reduceSkew(double targetVelocityMPS, double targetSteerAngleRadians, double currentAngleRadians) {
+        return targetVelocityMPS * Math.abs(Math.cos(targetSteerAngleRadians - currentAngleRadians));
+    }
+
     /**
      * When the steer motor moves, the drive motor moves as well due to the coupling.
      * This will affect the current position of the drive motor, so we need to remove the coupling from the position.
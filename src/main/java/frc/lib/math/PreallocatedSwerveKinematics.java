@@ -0,0 +1,137 @@
+package frc.lib.math;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+
+/**
+ * Swerve inverse kinematics that write into preallocated primitive buffers instead of returning new objects.
+ * <p>
+ * This is meant for the per-loop drive path, where {@link edu.wpi.first.math.kinematics.SwerveDriveKinematics}
+ * allocates matrices, {@link edu.wpi.first.math.kinematics.SwerveModuleState}s and {@link edu.wpi.first.math.geometry.Rotation2d}s on every call.
+ * Instances hold mutable state, so each one should only be used from a single thread.
+ */
+public class PreallocatedSwerveKinematics {
+    private static final double EPSILON = 1E-9;
+
+    private final double[] moduleX, moduleY;
+    private final double[] moduleSpeedsMPS, moduleAnglesRadians;
+
+    /**
+     * @param moduleLocations Location of all swerve modules relative to the robot center, in the same order as the modules
+     */
+    public PreallocatedSwerveKinematics(Translation2d... moduleLocations) {
+        if (moduleLocations.length < 2) {
+            new IllegalArgumentException("A swerve drive requires at least two modules").printStackTrace();
+        }
+
+        moduleX = new double[moduleLocations.length];
+        moduleY = new double[moduleLocations.length];
+        moduleSpeedsMPS = new double[moduleLocations.length];
+        moduleAnglesRadians = new double[moduleLocations.length];
+
+        for (int i = 0; i < moduleLocations.length; i++) {
+            moduleX[i] = moduleLocations[i].getX();
+            moduleY[i] = moduleLocations[i].getY();
+        }
+    }
+
+    /**
+     * Calculates the module speeds and angles for the given robot relative chassis speeds.
+     * A module with no speed keeps its previous angle, the same way WPILib's kinematics does.
+     * Read the results using {@link #getModuleSpeedMPS(int)} and {@link #getModuleAngleRadians(int)}.
+     */
+    public void toModuleStates(double vxMPS, double vyMPS, double omegaRadPerSec) {
+        for (int i = 0; i < moduleX.length; i++) {
+            final double moduleVx = vxMPS - omegaRadPerSec * moduleY[i];
+            final double moduleVy = vyMPS + omegaRadPerSec * moduleX[i];
+            final double speed = Math.hypot(moduleVx, moduleVy);
+
+            moduleSpeedsMPS[i] = speed;
+
+            if (speed > EPSILON)
+                moduleAnglesRadians[i] = Math.atan2(moduleVy, moduleVx);
+        }
+    }
+
+    public void toModuleStates(ChassisSpeeds chassisSpeeds) {
+        toModuleStates(chassisSpeeds.vxMetersPerSecond, chassisSpeeds.vyMetersPerSecond, chassisSpeeds.omegaRadiansPerSecond);
+    }
+
+    /**
+     * Scales down all module speeds proportionally if any of them is above the maximum attainable speed.
+     *
+     * @param maxSpeedMPS the maximum speed a module can reach, in metres per second
+     */
+    public void desaturateWheelSpeeds(double maxSpeedMPS) {
+        double highestSpeed = 0;
+
+        for (double speed : moduleSpeedsMPS)
+            highestSpeed = Math.max(highestSpeed, speed);
+
+        if (highestSpeed <= maxSpeedMPS) return;
+
+        final double scale = maxSpeedMPS / highestSpeed;
+
+        for (int i = 0; i < moduleSpeedsMPS.length; i++)
+            moduleSpeedsMPS[i] *= scale;
+    }
+
+    public double getModuleSpeedMPS(int moduleIndex) {
+        return moduleSpeedsMPS[moduleIndex];
+    }
+
+    public double getModuleAngleRadians(int moduleIndex) {
+        return moduleAnglesRadians[moduleIndex];
+    }
+
+    public int getNumberOfModules() {
+        return moduleX.length;
+    }
+
+    /**
+     * Allocation free version of {@link ChassisSpeeds#discretize(ChassisSpeeds, double)}.
+     * Writes the discretized speeds into the given output, which may be the same object as the input.
+     *
+     * @param input     the continuous speeds
+     * @param dtSeconds the duration of the timestep the speeds should be applied for
+     * @param output    the speeds to write into
+     */
+    public static void discretize(ChassisSpeeds input, double dtSeconds, ChassisSpeeds output) {
+        final double vx = input.vxMetersPerSecond, vy = input.vyMetersPerSecond, omega = input.omegaRadiansPerSecond;
+
+        output.omegaRadiansPerSecond = omega;
+
+        if (dtSeconds <= EPSILON) {
+            output.vxMetersPerSecond = vx;
+            output.vyMetersPerSecond = vy;
+            return;
+        }
+
+        final double dtheta = omega * dtSeconds;
+        final double halfDtheta = 0.5 * dtheta;
+        final double cosMinusOne = Math.cos(dtheta) - 1;
+
+        final double halfThetaByTanOfHalfDtheta = Math.abs(cosMinusOne) < EPSILON
+                ? 1.0 - 1.0 / 12.0 * dtheta * dtheta
+                : -(halfDtheta * Math.sin(dtheta)) / cosMinusOne;
+
+        // Equivalent to Pose2d#log of the pose the robot would reach, divided by the timestep
+        output.vxMetersPerSecond = vx * halfThetaByTanOfHalfDtheta + vy * halfDtheta;
+        output.vyMetersPerSecond = vy * halfThetaByTanOfHalfDtheta - vx * halfDtheta;
+    }
+
+    /**
+     * Allocation free version of {@link ChassisSpeeds#fromFieldRelativeSpeeds(ChassisSpeeds, edu.wpi.first.math.geometry.Rotation2d)}.
+     * Converts the speeds in place.
+     *
+     * @param speeds        field relative speeds, which will be overwritten with the robot relative speeds
+     * @param robotAngleCos cosine of the robot heading
+     * @param robotAngleSin sine of the robot heading
+     */
+    public static void fromFieldRelativeSpeeds(ChassisSpeeds speeds, double robotAngleCos, double robotAngleSin) {
+        final double vx = speeds.vxMetersPerSecond, vy = speeds.vyMetersPerSecond;
+
+        speeds.vxMetersPerSecond = vx * robotAngleCos + vy * robotAngleSin;
+        speeds.vyMetersPerSecond = -vx * robotAngleSin + vy * robotAngleCos;
+    }
+}
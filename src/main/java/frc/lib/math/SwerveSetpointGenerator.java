@@ -0,0 +1,231 @@
+package frc.lib.math;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.system.plant.DCMotor;
+
+/**
+ * Limits the change between consecutive swerve setpoints to what the modules can physically follow.
+ * <p>
+ * The requested chassis speeds are approached along a straight line from the previous setpoint,
+ * taking the largest step for which every module respects its drive acceleration and steer angular velocity limits.
+ * The drive acceleration is derived from the drive motor model, so it shrinks with speed (back EMF),
+ * with the stator current limit, with the share of the battery current budget each module gets and with wheel traction.
+ * <p>
+ * Everything is computed into preallocated buffers, so this is safe to call from the per-loop drive path.
+ * Instances hold mutable state, so each one should only be used from a single thread.
+ */
+public class SwerveSetpointGenerator {
+    private static final double EPSILON = 1E-9;
+    private static final int BISECTION_ITERATIONS = 10;
+    /**
+     * Below this speed a module barely moves the robot, so it is allowed to steer freely.
+     */
+    private static final double FREE_STEER_SPEED_MPS = 0.05;
+
+    private final PreallocatedSwerveKinematics desiredKinematics, trialKinematics;
+    private final int numberOfModules;
+
+    private final DCMotor driveMotor;
+    private final double wheelRadiusMeters, massPerModuleKg, tractionLimitedAcceleration;
+    private final double statorCurrentLimit, batteryCurrentLimit, maxSteerVelocityRadPerSec;
+
+    private final double[] previousModuleSpeedsMPS, previousModuleAnglesRadians;
+    private final double[] moduleSpeedsMPS, moduleAnglesRadians;
+    private final double[] maxDriveVelocityChanges;
+
+    private double previousVx, previousVy, previousOmega;
+
+    /**
+     * @param moduleLocations           Location of all swerve modules relative to the robot center
+     * @param driveMotor                The drive motor model, with the drive gear reduction already applied
+     * @param wheelRadiusMeters         The radius of the drive wheels
+     * @param robotMassKg               The mass of the robot, including bumpers and battery
+     * @param wheelCOF                  The coefficient of friction between the wheels and the carpet
+     * @param statorCurrentLimit        The stator current limit of each drive motor, in amps
+     * @param batteryCurrentLimit       The battery current budget of the whole drivetrain, in amps
+     * @param maxSteerVelocityRadPerSec The fastest the steer motors can rotate the modules
+     */
+    public SwerveSetpointGenerator(Translation2d[] moduleLocations, DCMotor driveMotor, double wheelRadiusMeters,
+                                   double robotMassKg, double wheelCOF, double statorCurrentLimit,
+                                   double batteryCurrentLimit, double maxSteerVelocityRadPerSec) {
+        this.desiredKinematics = new PreallocatedSwerveKinematics(moduleLocations);
+        this.trialKinematics = new PreallocatedSwerveKinematics(moduleLocations);
+        this.numberOfModules = moduleLocations.length;
+
+        this.driveMotor = driveMotor;
+        this.wheelRadiusMeters = wheelRadiusMeters;
+        this.massPerModuleKg = robotMassKg / numberOfModules;
+        this.tractionLimitedAcceleration = wheelCOF * 9.80665;
+        this.statorCurrentLimit = statorCurrentLimit;
+        this.batteryCurrentLimit = batteryCurrentLimit;
+        this.maxSteerVelocityRadPerSec = maxSteerVelocityRadPerSec;
+
+        previousModuleSpeedsMPS = new double[numberOfModules];
+        previousModuleAnglesRadians = new double[numberOfModules];
+        moduleSpeedsMPS = new double[numberOfModules];
+        moduleAnglesRadians = new double[numberOfModules];
+        maxDriveVelocityChanges = new double[numberOfModules];
+    }
+
+    /**
+     * Sets the previous setpoint to the measured state of the drivetrain.
+     * Should be called whenever the modules were driven without this generator, e.g. after the swerve was stopped.
+     *
+     * @param measuredSpeeds       the measured robot relative chassis speeds
+     * @param measuredModuleStates the measured module states
+     */
+    public void reset(ChassisSpeeds measuredSpeeds, SwerveModuleState[] measuredModuleStates) {
+        previousVx = measuredSpeeds.vxMetersPerSecond;
+        previousVy = measuredSpeeds.vyMetersPerSecond;
+        previousOmega = measuredSpeeds.omegaRadiansPerSecond;
+
+        for (int i = 0; i < numberOfModules && i < measuredModuleStates.length; i++) {
+            previousModuleSpeedsMPS[i] = measuredModuleStates[i].speedMetersPerSecond;
+            previousModuleAnglesRadians[i] = measuredModuleStates[i].angle.getRadians();
+        }
+    }
+
+    /**
+     * Generates the next feasible setpoint towards the desired robot relative speeds.
+     * Read the results using {@link #getModuleSpeedMPS(int)} and {@link #getModuleAngleRadians(int)}.
+     *
+     * @param desiredSpeeds  the requested robot relative chassis speeds
+     * @param dtSeconds      the time until the next setpoint will be generated
+     * @param batteryVoltage the current battery voltage
+     * @param maxSpeedMPS    the maximum speed a module can reach
+     */
+    public void generate(ChassisSpeeds desiredSpeeds, double dtSeconds, double batteryVoltage, double maxSpeedMPS) {
+        final double desiredScale = getDesaturationScale(desiredSpeeds, maxSpeedMPS);
+        final double desiredVx = desiredSpeeds.vxMetersPerSecond * desiredScale,
+                desiredVy = desiredSpeeds.vyMetersPerSecond * desiredScale,
+                desiredOmega = desiredSpeeds.omegaRadiansPerSecond * desiredScale;
+
+        for (int i = 0; i < numberOfModules; i++)
+            maxDriveVelocityChanges[i] = getMaxAcceleration(previousModuleSpeedsMPS[i], batteryVoltage) * dtSeconds;
+
+        final double maxSteerChange = maxSteerVelocityRadPerSec * dtSeconds;
+
+        double feasibleFraction = 1;
+
+        if (!isFeasible(desiredVx, desiredVy, desiredOmega, maxSteerChange)) {
+            double low = 0, high = 1;
+
+            for (int i = 0; i < BISECTION_ITERATIONS; i++) {
+                final double middle = 0.5 * (low + high);
+
+                if (isFeasible(interpolate(previousVx, desiredVx, middle), interpolate(previousVy, desiredVy, middle),
+                        interpolate(previousOmega, desiredOmega, middle), maxSteerChange)) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+
+            feasibleFraction = low;
+        }
+
+        previousVx = interpolate(previousVx, desiredVx, feasibleFraction);
+        previousVy = interpolate(previousVy, desiredVy, feasibleFraction);
+        previousOmega = interpolate(previousOmega, desiredOmega, feasibleFraction);
+
+        trialKinematics.toModuleStates(previousVx, previousVy, previousOmega);
+
+        for (int i = 0; i < numberOfModules; i++) {
+            moduleSpeedsMPS[i] = trialKinematics.getModuleSpeedMPS(i);
+            moduleAnglesRadians[i] = moduleSpeedsMPS[i] > EPSILON ? trialKinematics.getModuleAngleRadians(i) : previousModuleAnglesRadians[i];
+
+            previousModuleSpeedsMPS[i] = moduleSpeedsMPS[i];
+            previousModuleAnglesRadians[i] = moduleAnglesRadians[i];
+        }
+    }
+
+    public double getModuleSpeedMPS(int moduleIndex) {
+        return moduleSpeedsMPS[moduleIndex];
+    }
+
+    public double getModuleAngleRadians(int moduleIndex) {
+        return moduleAnglesRadians[moduleIndex];
+    }
+
+    private boolean isFeasible(double vx, double vy, double omega, double maxSteerChange) {
+        trialKinematics.toModuleStates(vx, vy, omega);
+
+        for (int i = 0; i < numberOfModules; i++) {
+            final double speed = trialKinematics.getModuleSpeedMPS(i);
+            final double previousSpeed = previousModuleSpeedsMPS[i];
+
+            double signedSpeed = speed;
+
+            if (speed > EPSILON) {
+                double steerChange = MathUtil.angleModulus(trialKinematics.getModuleAngleRadians(i) - previousModuleAnglesRadians[i]);
+
+                // The module can reach the opposite angle by driving backwards instead of turning around
+                if (Math.abs(steerChange) > Math.PI / 2) {
+                    steerChange = MathUtil.angleModulus(steerChange + Math.PI);
+                    signedSpeed = -speed;
+                }
+
+                final boolean canSteerFreely = speed < FREE_STEER_SPEED_MPS && Math.abs(previousSpeed) < FREE_STEER_SPEED_MPS;
+
+                if (!canSteerFreely && Math.abs(steerChange) > maxSteerChange + EPSILON)
+                    return false;
+            }
+
+            if (Math.abs(signedSpeed - previousSpeed) > maxDriveVelocityChanges[i] + EPSILON)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Calculates the largest acceleration a module can apply from its current speed.
+     * Speeding up is limited by the voltage left after back EMF, the stator current limit and the module's share of the battery budget.
+     * Since the direction of the next step isn't known yet, the stricter speeding up limit is always used.
+     */
+    private double getMaxAcceleration(double moduleSpeedMPS, double batteryVoltage) {
+        final double wheelSpeedRadPerSec = Math.abs(moduleSpeedMPS) / wheelRadiusMeters;
+
+        final double voltageLimitedCurrent = driveMotor.getCurrent(wheelSpeedRadPerSec, batteryVoltage);
+        final double batteryLimitedCurrent = getBatteryLimitedStatorCurrent(wheelSpeedRadPerSec, batteryVoltage);
+
+        final double current = Math.max(0, Math.min(statorCurrentLimit, Math.min(voltageLimitedCurrent, batteryLimitedCurrent)));
+        final double currentLimitedAcceleration = driveMotor.getTorque(current) / wheelRadiusMeters / massPerModuleKg;
+
+        return Math.min(currentLimitedAcceleration, tractionLimitedAcceleration);
+    }
+
+    /**
+     * The battery only sees the stator current scaled by the duty cycle, so the supply current is
+     * {@code I * (I * R + omega / Kv) / Vbattery}. Solves that for the stator current which uses exactly this module's share of the budget.
+     */
+    private double getBatteryLimitedStatorCurrent(double wheelSpeedRadPerSec, double batteryVoltage) {
+        final double resistance = driveMotor.rOhms;
+        final double backEMF = wheelSpeedRadPerSec / driveMotor.KvRadPerSecPerVolt;
+        final double modulePower = batteryCurrentLimit / numberOfModules * batteryVoltage;
+
+        return (-backEMF + Math.sqrt(backEMF * backEMF + 4 * resistance * modulePower)) / (2 * resistance);
+    }
+
+    /**
+     * Scaling the chassis speeds instead of the module speeds keeps the desired setpoint a valid chassis motion,
+     * which is needed to interpolate towards it.
+     */
+    private double getDesaturationScale(ChassisSpeeds desiredSpeeds, double maxSpeedMPS) {
+        desiredKinematics.toModuleStates(desiredSpeeds);
+
+        double highestSpeed = 0;
+
+        for (int i = 0; i < numberOfModules; i++)
+            highestSpeed = Math.max(highestSpeed, desiredKinematics.getModuleSpeedMPS(i));
+
+        return highestSpeed > maxSpeedMPS + EPSILON ? maxSpeedMPS / highestSpeed : 1;
+    }
+
+    private static double interpolate(double start, double end, double fraction) {
+        return start + (end - start) * fraction;
+    }
+}
@@ -0,0 +1,234 @@
+package frc.lib.math;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+
+/**
+ * Detects wheel slip on every odometry sample, and removes slipping modules from the odometry.
+ * <p>
+ * Each module's displacement is split into the part caused by the gyro measured rotation and a "translational" part.
+ * On a rigid chassis the translational parts of all modules are equal, so a module whose translational part is far from the others is slipping.
+ * The slipping modules' positions are then replaced with the displacement predicted by a least squares fit over the remaining modules,
+ * so the kinematics solve of the odometry effectively only uses the modules that grip.
+ * <p>
+ * Also calculates the skidding ratio of every sample, the same ratio {@link Optimizations#getSkiddingRatio} defines,
+ * which can be used to trust the odometry less while skidding.
+ * Nothing is allocated unless a slipping module's position is replaced, and instances hold mutable state, so each one should only be used from a single thread.
+ */
+public class SwerveSlipDetector {
+    private static final double EPSILON = 1E-9;
+
+    private final int numberOfModules;
+    private final double[] moduleX, moduleY;
+    private final double slipThresholdMeters, slipThresholdRatio;
+
+    private final double[] rawDistances, previousRawDistances, distanceOffsets;
+    private final double[] displacementX, displacementY, translationX, translationY;
+    private final double[] sortBuffer;
+    private final boolean[] slipping;
+
+    private double previousGyroYawRadians;
+    private boolean hasPreviousSample = false;
+
+    private double skiddingRatio = 1;
+    private int slippingModules = 0;
+
+    /**
+     * @param moduleLocations     Location of all swerve modules relative to the robot center, in the same order as the positions
+     * @param slipThresholdMeters the smallest translational difference per sample that counts as slip
+     * @param slipThresholdRatio  the translational difference per sample that counts as slip, relative to the chassis translation
+     */
+    public SwerveSlipDetector(Translation2d[] moduleLocations, double slipThresholdMeters, double slipThresholdRatio) {
+        numberOfModules = moduleLocations.length;
+
+        moduleX = new double[numberOfModules];
+        moduleY = new double[numberOfModules];
+
+        for (int i = 0; i < numberOfModules; i++) {
+            moduleX[i] = moduleLocations[i].getX();
+            moduleY[i] = moduleLocations[i].getY();
+        }
+
+        this.slipThresholdMeters = slipThresholdMeters;
+        this.slipThresholdRatio = slipThresholdRatio;
+
+        rawDistances = new double[numberOfModules];
+        previousRawDistances = new double[numberOfModules];
+        distanceOffsets = new double[numberOfModules];
+        displacementX = new double[numberOfModules];
+        displacementY = new double[numberOfModules];
+        translationX = new double[numberOfModules];
+        translationY = new double[numberOfModules];
+        sortBuffer = new double[numberOfModules];
+        slipping = new boolean[numberOfModules];
+    }
+
+    /**
+     * Checks the given odometry sample for slip, and corrects the positions of slipping modules in place.
+     * Must be called with every sample, in order, since it keeps track of the previous sample.
+     *
+     * @param positions       the raw module positions of the sample, which will be overwritten with the corrected positions
+     * @param gyroYawRadians  the gyro yaw of the sample
+     */
+    public void update(SwerveModulePosition[] positions, double gyroYawRadians) {
+        final double gyroDelta = hasPreviousSample ? MathUtil.angleModulus(gyroYawRadians - previousGyroYawRadians) : 0;
+
+        previousGyroYawRadians = gyroYawRadians;
+
+        for (int i = 0; i < numberOfModules; i++) {
+            rawDistances[i] = positions[i].distanceMeters;
+
+            final double distanceDelta = hasPreviousSample ? rawDistances[i] - previousRawDistances[i] : 0;
+
+            displacementX[i] = distanceDelta * positions[i].angle.getCos();
+            displacementY[i] = distanceDelta * positions[i].angle.getSin();
+
+            // Remove the rotation measured by the gyro, leaving only what should be the chassis translation
+            translationX[i] = displacementX[i] + gyroDelta * moduleY[i];
+            translationY[i] = displacementY[i] - gyroDelta * moduleX[i];
+        }
+
+        hasPreviousSample = true;
+
+        calculateSkiddingRatio();
+        findSlippingModules();
+
+        if (slippingModules > 0)
+            replaceSlippingModules(positions);
+
+        // Replaced modules keep their corrected distance from now on, so later samples continue from it
+        for (int i = 0; i < numberOfModules; i++) {
+            if (slipping[i])
+                distanceOffsets[i] = positions[i].distanceMeters - rawDistances[i];
+            else
+                positions[i].distanceMeters = rawDistances[i] + distanceOffsets[i];
+
+            previousRawDistances[i] = rawDistances[i];
+        }
+    }
+
+    /**
+     * @return the ratio between the largest and smallest translational module displacement of the latest sample, ranges from [1, INFINITY)
+     */
+    public double getSkiddingRatio() {
+        return skiddingRatio;
+    }
+
+    public int getSlippingModules() {
+        return slippingModules;
+    }
+
+    public boolean isSlipping(int moduleIndex) {
+        return slipping[moduleIndex];
+    }
+
+    private void calculateSkiddingRatio() {
+        double maxTranslation = 0, minTranslation = Double.POSITIVE_INFINITY;
+
+        for (int i = 0; i < numberOfModules; i++) {
+            final double translation = Math.hypot(translationX[i], translationY[i]);
+
+            maxTranslation = Math.max(maxTranslation, translation);
+            minTranslation = Math.min(minTranslation, translation);
+        }
+
+        // When barely translating, the ratio is just noise
+        skiddingRatio = maxTranslation < slipThresholdMeters ? 1 : maxTranslation / Math.max(minTranslation, EPSILON);
+    }
+
+    /**
+     * Compares every module to the median translation, which isn't pulled away by a single slipping module the way the mean is.
+     * At least two modules are needed for the fit, so if more modules look like they slip, none of them are replaced.
+     */
+    private void findSlippingModules() {
+        final double medianX = median(translationX), medianY = median(translationY);
+        final double threshold = Math.max(slipThresholdMeters, slipThresholdRatio * Math.hypot(medianX, medianY));
+
+        slippingModules = 0;
+
+        for (int i = 0; i < numberOfModules; i++) {
+            slipping[i] = Math.hypot(translationX[i] - medianX, translationY[i] - medianY) > threshold;
+
+            if (slipping[i]) slippingModules++;
+        }
+
+        if (slippingModules > numberOfModules - 2) {
+            for (int i = 0; i < numberOfModules; i++)
+                slipping[i] = false;
+
+            slippingModules = 0;
+        }
+    }
+
+    /**
+     * Fits the chassis motion (vx, vy, omega) to the gripping modules using least squares, and replaces the slipping modules with the fitted motion.
+     * Each gripping module contributes {@code dx = vx - omega * y} and {@code dy = vy + omega * x}, and the normal equations are solved in closed form.
+     */
+    private void replaceSlippingModules(SwerveModulePosition[] positions) {
+        int grippingModules = 0;
+        double sumX = 0, sumY = 0, sumSquaredDistance = 0;
+        double sumDisplacementX = 0, sumDisplacementY = 0, sumMoment = 0;
+
+        for (int i = 0; i < numberOfModules; i++) {
+            if (slipping[i]) continue;
+
+            grippingModules++;
+            sumX += moduleX[i];
+            sumY += moduleY[i];
+            sumSquaredDistance += moduleX[i] * moduleX[i] + moduleY[i] * moduleY[i];
+            sumDisplacementX += displacementX[i];
+            sumDisplacementY += displacementY[i];
+            sumMoment += moduleX[i] * displacementY[i] - moduleY[i] * displacementX[i];
+        }
+
+        final double denominator = sumSquaredDistance - (sumX * sumX + sumY * sumY) / grippingModules;
+
+        // The gripping modules can't tell rotation apart from translation, so nothing can be replaced
+        if (denominator < EPSILON) {
+            for (int i = 0; i < numberOfModules; i++)
+                slipping[i] = false;
+
+            slippingModules = 0;
+            return;
+        }
+
+        final double omega = (sumMoment + (sumY * sumDisplacementX - sumX * sumDisplacementY) / grippingModules) / denominator;
+        final double vx = (sumDisplacementX + omega * sumY) / grippingModules;
+        final double vy = (sumDisplacementY - omega * sumX) / grippingModules;
+
+        for (int i = 0; i < numberOfModules; i++) {
+            if (!slipping[i]) continue;
+
+            final double fittedX = vx - omega * moduleY[i], fittedY = vy + omega * moduleX[i];
+            final double fittedDistance = Math.hypot(fittedX, fittedY);
+
+            positions[i].distanceMeters = previousRawDistances[i] + distanceOffsets[i] + fittedDistance;
+
+            if (fittedDistance > EPSILON)
+                positions[i].angle = new Rotation2d(fittedX, fittedY);
+        }
+    }
+
+    private double median(double[] values) {
+        System.arraycopy(values, 0, sortBuffer, 0, numberOfModules);
+
+        // Insertion sort, since there are only a few modules
+        for (int i = 1; i < numberOfModules; i++) {
+            final double value = sortBuffer[i];
+            int j = i - 1;
+
+            while (j >= 0 && sortBuffer[j] > value) {
+                sortBuffer[j + 1] = sortBuffer[j];
+                j--;
+            }
+
+            sortBuffer[j + 1] = value;
+        }
+
+        final int middle = numberOfModules / 2;
+
+        return numberOfModules % 2 == 0 ? 0.5 * (sortBuffer[middle - 1] + sortBuffer[middle]) : sortBuffer[middle];
+    }
+}
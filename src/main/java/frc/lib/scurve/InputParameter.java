@@ -10,17 +10,39 @@ public class InputParameter {
     public double current_position, current_velocity = 0, current_acceleration = 0;
 
     //! Target state
-    public double target_position;
+    public double target_position, target_velocity = 0, target_acceleration = 0;
 
     public InputParameter(double current_position, double current_velocity, double current_acceleration, double target_position) {
+        this(current_position, current_velocity, current_acceleration, target_position, 0, 0);
+    }
+
+    public InputParameter(double current_position, double current_velocity, double current_acceleration,
+                          double target_position, double target_velocity, double target_acceleration) {
+        set(current_position, current_velocity, current_acceleration, target_position, target_velocity, target_acceleration);
+    }
+
+    public InputParameter() {
+        initialize();
+    }
+
+    //! Sets a target at rest
+    public void set(double current_position, double current_velocity, double current_acceleration, double target_position) {
+        set(current_position, current_velocity, current_acceleration, target_position, 0, 0);
+    }
+
+    public void set(double current_position, double current_velocity, double current_acceleration,
+                    double target_position, double target_velocity, double target_acceleration) {
         this.current_position = current_position;
         this.current_velocity = current_velocity;
         this.current_acceleration = current_acceleration;
         this.target_position = target_position;
+        this.target_velocity = target_velocity;
+        this.target_acceleration = target_acceleration;
     }
 
-    InputParameter() {
-        initialize();
+    void set(InputParameter other) {
+        set(other.current_position, other.current_velocity, other.current_acceleration,
+                other.target_position, other.target_velocity, other.target_acceleration);
     }
 
     boolean isEqual(InputParameter rhs) {
@@ -28,6 +50,8 @@ public class InputParameter {
                 && current_velocity == rhs.current_velocity
                 && current_acceleration == rhs.current_acceleration
                 && target_position == rhs.target_position
+                && target_velocity == rhs.target_velocity
+                && target_acceleration == rhs.target_acceleration
         );
     }
 }
@@ -2,8 +2,15 @@ package frc.lib.scurve;
 
 //! Output of the Scurve algorithm
 public class OutputParameter {
-    //! Current trajectory
-    public Trajectory trajectory = new Trajectory();
+    //! Current trajectory, either the calculated one or one shared from a ProfileCache
+    public Trajectory trajectory;
+
+    //! Trajectory that live calculations are written into
+    final Trajectory calculated_trajectory = new Trajectory();
+
+    public OutputParameter() {
+        trajectory = calculated_trajectory;
+    }
 
     // Current kinematic state
     public double new_position, new_velocity, new_acceleration, new_jerk;
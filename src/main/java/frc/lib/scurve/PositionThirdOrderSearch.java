@@ -0,0 +1,378 @@
+package frc.lib.scurve;
+
+import frc.lib.scurve.Profile.ControlSigns;
+import frc.lib.scurve.Profile.ReachedLimits;
+
+//! Time-optimal position profiles towards any target state, found numerically instead of with closed-form roots.
+//! Once it is fixed which limits a profile reaches, meeting the target velocity and acceleration leaves a single free parameter,
+//! so every family is scanned for sign changes of the position error, which are then refined with a bisection.
+//! Families are solved in a frame whose first jerk is positive, the other direction is the same problem mirrored.
+class PositionThirdOrderSearch {
+    //! Samples per scanned family
+    private static final int SCAN_SAMPLES = 64;
+    //! Bisection steps per bracketed root, enough to reach the resolution of a double
+    private static final int BISECTION_ITERATIONS = 100;
+    //! Sampled accelerations where the two velocity changes of the fallback are joined
+    private static final int JOINED_SAMPLES = 32;
+
+    //! Profiles without a cruising phase: the acceleration ramps up to a peak, down to a trough and up to the target.
+    //! Without reached limits, the trough is below or above zero, giving two branches.
+    //! JOINED is the fallback of two velocity changes joined at an arbitrary acceleration.
+    private enum Family {NONE_LOWER, NONE_UPPER, ACC0, ACC1, ACC0_ACC1, JOINED}
+
+    private double p0, v0, a0, pf, vf, af;
+    private double _vMax, _vMin, _aMax, _aMin, _jMax;
+
+    // State and limits in the current frame, relative to the start position
+    private double sign;
+    private double fv0, fa0, fpd, fvf, faf;
+    private double fvMax, faMax, faMin;
+
+    // Pre-calculated expressions of the current frame, from solving the velocity change of each family
+    private double none_threshold, acc0_threshold, acc1_threshold, acc0_acc1_velocity;
+
+    // The joining acceleration of the fallback, and the shape of its last evaluated profile
+    private double joined_acceleration, joined_jf;
+    private ControlSigns joined_control_signs;
+    private ReachedLimits joined_limits;
+
+    private final double[] candidate_time = new double[7];
+
+    private final double[] best_time = new double[7];
+    private boolean has_best;
+    private double best_duration, best_sign, best_jf;
+    private ControlSigns best_control_signs;
+    private ReachedLimits best_limits;
+
+    private final VelocityThirdOrderStep1 acceleration = new VelocityThirdOrderStep1(), deceleration = new VelocityThirdOrderStep1();
+
+    private final int scan_samples;
+
+    PositionThirdOrderSearch() {
+        this(SCAN_SAMPLES);
+    }
+
+    //! A finer scan finds roots that lie closer together, which is only worth it as a reference for testing
+    PositionThirdOrderSearch(int scan_samples) {
+        this.scan_samples = scan_samples;
+    }
+
+    //! Set the boundary conditions and limits of the next calculation
+    void set(double p0, double v0, double a0, double pf, double vf, double af,
+             double vMax, double vMin, double aMax, double aMin, double jMax) {
+        this.p0 = p0;
+        this.v0 = v0;
+        this.a0 = a0;
+        this.pf = pf;
+        this.vf = vf;
+        this.af = af;
+        this._vMax = vMax;
+        this._vMin = vMin;
+        this._aMax = aMax;
+        this._aMin = aMin;
+        this._jMax = jMax;
+    }
+
+    //! Writes the fastest profile of all families into the given one, returns whether any was valid
+    boolean get_profile(Profile profile) {
+        has_best = false;
+        best_duration = Double.POSITIVE_INFINITY;
+
+        search_frame(profile, 1.0);
+        search_frame(profile, -1.0);
+
+        if (!has_best) search_joined(profile);
+
+        if (!has_best) return false;
+
+        System.arraycopy(best_time, 0, profile.time, 0, 7);
+        return check(profile, best_control_signs, best_limits, best_jf, best_sign);
+    }
+
+    private void search_frame(Profile profile, double sign) {
+        set_frame(sign);
+
+        search_cruise(profile);
+
+        scan_squared(profile, Family.NONE_LOWER, fa0, faMax, none_threshold);
+        scan_squared(profile, Family.NONE_UPPER, fa0, faMax, none_threshold);
+        scan_squared(profile, Family.ACC0, faMin, Math.min(faf, faMax), acc0_threshold);
+        scan_squared(profile, Family.ACC1, Math.max(fa0, faMin), faMax, acc1_threshold);
+
+        // The plateau at the maximum acceleration ends once the velocity limit would be passed
+        final double max_plateau = (fvMax - fv0 - (2 * faMax * faMax - fa0 * fa0) / (2 * _jMax)) / faMax;
+        scan(profile, Family.ACC0_ACC1, Math.max(0.0, acc0_acc1_velocity / faMax), max_plateau);
+    }
+
+    //! Some targets need the acceleration to swing up and down again without reaching a limit (a UDUD profile without cruising),
+    //! which leaves one more free parameter than the families above. These are covered by joining two time-optimal velocity changes
+    //! at a sampled acceleration, and searching the joining velocity. The fastest sample is kept, which is valid but not exactly time-optimal.
+    private void search_joined(Profile profile) {
+        set_frame(1.0);
+
+        for (int i = 0; i <= JOINED_SAMPLES; i++) {
+            joined_acceleration = _aMin + (_aMax - _aMin) * i / JOINED_SAMPLES;
+            scan(profile, Family.JOINED, _vMin, _vMax);
+        }
+    }
+
+    private void set_frame(double sign) {
+        this.sign = sign;
+
+        fv0 = sign * v0;
+        fa0 = sign * a0;
+        fpd = sign * (pf - p0);
+        fvf = sign * vf;
+        faf = sign * af;
+        fvMax = sign > 0 ? _vMax : -_vMin;
+        faMax = sign > 0 ? _aMax : -_aMin;
+        faMin = sign > 0 ? _aMin : -_aMax;
+
+        final double velocity_change = fvf - fv0;
+        final double jMax = _jMax;
+
+        none_threshold = jMax * velocity_change + (fa0 * fa0 - faf * faf) / 2;
+        acc0_threshold = (2 * faMax * faMax - fa0 * fa0 + faf * faf - 2 * jMax * velocity_change) / 2;
+        acc1_threshold = (2 * jMax * velocity_change + fa0 * fa0 + 2 * faMin * faMin - faf * faf) / 2;
+        acc0_acc1_velocity = velocity_change - (2 * faMax * faMax - fa0 * fa0 - 2 * faMin * faMin + faf * faf) / (2 * jMax);
+    }
+
+    //! Accelerate to the velocity limit, cruise, and change to the target velocity and acceleration
+    private void search_cruise(Profile profile) {
+        if (fvMax <= 0) return;
+
+        if (!acceleration.get_profile(fv0, fa0, fvMax, 0.0, faMax, faMin, _jMax)
+                || !deceleration.get_profile(fvMax, 0.0, fvf, faf, faMax, faMin, _jMax)) {
+            return;
+        }
+
+        final double cruise_time = (fpd - acceleration.distance - deceleration.distance) / fvMax;
+
+        if (cruise_time < 0) return;
+
+        candidate_time[0] = acceleration.time_ramp0;
+        candidate_time[1] = acceleration.time_plateau;
+        candidate_time[2] = acceleration.time_ramp1;
+        candidate_time[3] = cruise_time;
+        candidate_time[4] = deceleration.time_ramp0;
+        candidate_time[5] = deceleration.time_plateau;
+        candidate_time[6] = deceleration.time_ramp1;
+
+        final ControlSigns control_signs = deceleration.direction == acceleration.direction ? ControlSigns.UDUD : ControlSigns.UDDU;
+        final boolean acc0 = acceleration.time_plateau > 0, acc1 = deceleration.time_plateau > 0;
+        final ReachedLimits limits = acc0 && acc1 ? ReachedLimits.ACC0_ACC1_VEL
+                : acc0 ? ReachedLimits.ACC0_VEL
+                : acc1 ? ReachedLimits.ACC1_VEL
+                : ReachedLimits.VEL;
+
+        consider(profile, control_signs, limits, acceleration.direction * _jMax);
+    }
+
+    //! Scans a family whose free parameter has to satisfy x^2 >= threshold, which splits the range around zero
+    private void scan_squared(Profile profile, Family family, double lower, double upper, double threshold) {
+        if (threshold <= 0) {
+            scan(profile, family, lower, upper);
+            return;
+        }
+
+        final double root = Math.sqrt(threshold);
+
+        scan(profile, family, lower, Math.min(upper, -root));
+        scan(profile, family, Math.max(lower, root), upper);
+    }
+
+    private void scan(Profile profile, Family family, double lower, double upper) {
+        if (!(upper >= lower)) return;
+
+        double previous_x = lower;
+        double previous_error = position_error(family, lower);
+
+        if (Math.abs(previous_error) < Profile.p_precision) consider(profile, family);
+
+        for (int i = 1; i <= scan_samples && upper > lower; i++) {
+            final double x = i == scan_samples ? upper : lower + (upper - lower) * i / scan_samples;
+            final double error = position_error(family, x);
+
+            if (Math.abs(error) < Profile.p_precision) {
+                consider(profile, family);
+            } else if (previous_error * error < 0) {
+                bisect(family, previous_x, previous_error, x);
+                consider(profile, family);
+            }
+
+            previous_x = x;
+            previous_error = error;
+        }
+    }
+
+    //! Refines a bracketed root, leaving the times of the best parameter in candidate_time
+    private void bisect(Family family, double lower, double lower_error, double upper) {
+        for (int i = 0; i < BISECTION_ITERATIONS; i++) {
+            final double middle = (lower + upper) / 2;
+
+            if (middle <= lower || middle >= upper) break;
+
+            final double error = position_error(family, middle);
+
+            if (Double.isNaN(error)) break;
+
+            //! Close enough, candidate_time already holds the times of the middle
+            if (Math.abs(error) < Profile.p_precision) return;
+
+            if (lower_error * error <= 0) {
+                upper = middle;
+            } else {
+                lower = middle;
+                lower_error = error;
+            }
+        }
+
+        final double lower_abs = Math.abs(position_error(family, lower));
+        final double upper_abs = Math.abs(position_error(family, upper));
+
+        if (!(upper_abs <= lower_abs)) position_error(family, lower);
+    }
+
+    //! Writes the times of a family's profile into candidate_time, and returns its position error, or NaN if the parameter is invalid
+    private double position_error(Family family, double x) {
+        if (family == Family.JOINED) return joined_position_error(x);
+
+        final double jMax = _jMax;
+
+        double a1, a5, t1 = 0.0, t5 = 0.0;
+
+        switch (family) {
+            case NONE_LOWER:
+                a1 = x;
+                a5 = -Math.sqrt(Math.max(0.0, x * x - none_threshold));
+                break;
+            case NONE_UPPER:
+                a1 = x;
+                a5 = Math.sqrt(Math.max(0.0, x * x - none_threshold));
+                break;
+            case ACC0:
+                a1 = faMax;
+                a5 = x;
+                t1 = Math.max(0.0, (x * x - acc0_threshold) / (jMax * faMax));
+                break;
+            case ACC1:
+                a1 = x;
+                a5 = faMin;
+                t5 = Math.max(0.0, (acc1_threshold - x * x) / (jMax * faMin));
+                break;
+            default:
+                a1 = faMax;
+                a5 = faMin;
+                t1 = x;
+                t5 = Math.max(0.0, (acc0_acc1_velocity - faMax * x) / faMin);
+                break;
+        }
+
+        if (a1 < fa0 - Profile.a_eps || a5 > a1 + Profile.a_eps || a5 > faf + Profile.a_eps) return Double.NaN;
+
+        candidate_time[0] = Math.max(0.0, (a1 - fa0) / jMax);
+        candidate_time[1] = t1;
+        candidate_time[3] = 0.0;
+        candidate_time[5] = t5;
+        candidate_time[6] = Math.max(0.0, (faf - a5) / jMax);
+
+        // Split the ramp down where the acceleration crosses zero, like the profiles with a cruising phase
+        if (a1 >= 0 && a5 <= 0) {
+            candidate_time[2] = a1 / jMax;
+            candidate_time[4] = -a5 / jMax;
+        } else {
+            candidate_time[2] = Math.max(0.0, (a1 - a5) / jMax);
+            candidate_time[4] = 0.0;
+        }
+
+        double p = 0.0, v = fv0, a = fa0;
+
+        for (int i = 0; i < 7; i++) {
+            final double t = candidate_time[i];
+            final double j = (i == 0 || i == 6) ? jMax : (i == 2 || i == 4) ? -jMax : 0.0;
+
+            p += t * (v + t * (a / 2 + t * j / 6));
+            v += t * (a + t * j / 2);
+            a += t * j;
+        }
+
+        return p - fpd;
+    }
+
+    //! Joins the velocity changes at the given velocity and the current joining acceleration, in the unmirrored frame
+    private double joined_position_error(double joined_velocity) {
+        if (!acceleration.get_profile(fv0, fa0, joined_velocity, joined_acceleration, faMax, faMin, _jMax)
+                || !deceleration.get_profile(joined_velocity, joined_acceleration, fvf, faf, faMax, faMin, _jMax)) {
+            return Double.NaN;
+        }
+
+        candidate_time[0] = acceleration.time_ramp0;
+        candidate_time[1] = acceleration.time_plateau;
+        candidate_time[2] = acceleration.time_ramp1;
+        candidate_time[3] = 0.0;
+        candidate_time[4] = deceleration.time_ramp0;
+        candidate_time[5] = deceleration.time_plateau;
+        candidate_time[6] = deceleration.time_ramp1;
+
+        joined_jf = acceleration.direction * _jMax;
+        joined_control_signs = deceleration.direction == acceleration.direction ? ControlSigns.UDUD : ControlSigns.UDDU;
+
+        // ACC0_ACC1 is only used for plateaus joined at zero acceleration, since checking it assumes that
+        final boolean acc0 = acceleration.time_plateau > 0, acc1 = deceleration.time_plateau > 0;
+        joined_limits = acc0 && acc1 && joined_acceleration == 0.0 ? ReachedLimits.ACC0_ACC1
+                : acc0 ? ReachedLimits.ACC0
+                : acc1 ? ReachedLimits.ACC1
+                : ReachedLimits.NONE;
+
+        return acceleration.distance + deceleration.distance - fpd;
+    }
+
+    private void consider(Profile profile, Family family) {
+        if (family == Family.JOINED) {
+            consider(profile, joined_control_signs, joined_limits, joined_jf);
+            return;
+        }
+
+        final ReachedLimits limits;
+
+        switch (family) {
+            case ACC0:
+                limits = ReachedLimits.ACC0;
+                break;
+            case ACC1:
+                limits = ReachedLimits.ACC1;
+                break;
+            case ACC0_ACC1:
+                limits = ReachedLimits.ACC0_ACC1;
+                break;
+            default:
+                limits = ReachedLimits.NONE;
+                break;
+        }
+
+        consider(profile, ControlSigns.UDDU, limits, _jMax);
+    }
+
+    //! Keeps the candidate profile if it is valid and faster than the best one so far
+    private void consider(Profile profile, ControlSigns control_signs, ReachedLimits limits, double frame_jf) {
+        System.arraycopy(candidate_time, 0, profile.time, 0, 7);
+
+        final double jf = sign * frame_jf;
+
+        if (!check(profile, control_signs, limits, jf, sign) || profile.get_duration() >= best_duration) return;
+
+        System.arraycopy(candidate_time, 0, best_time, 0, 7);
+        has_best = true;
+        best_duration = profile.get_duration();
+        best_sign = sign;
+        best_jf = jf;
+        best_control_signs = control_signs;
+        best_limits = limits;
+    }
+
+    private boolean check(Profile profile, ControlSigns control_signs, ReachedLimits limits, double jf, double sign) {
+        return sign > 0
+                ? profile.check(control_signs, limits, jf, _vMax, _vMin, _aMax, _aMin)
+                : profile.check(control_signs, limits, jf, _vMin, _vMax, _aMin, _aMax);
+    }
+}
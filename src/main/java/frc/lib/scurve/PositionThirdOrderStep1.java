@@ -4,6 +4,7 @@ class PositionThirdOrderStep1 {
     public static final double DBL_EPSILON = Math.ulp(1.0);
 
     double v0, a0;
+    double vf, af;
     double _vMax, _vMin, _aMax, _aMin, _jMax;
 
     // Pre-calculated expressions
@@ -12,11 +13,24 @@ class PositionThirdOrderStep1 {
     double a0_a0, a0_p3, a0_p4;
     double jMax_jMax;
 
-    PositionThirdOrderStep1(double p0, double v0, double a0, double pf,
-                            double vMax, double vMin, double aMax, double aMin,
-                            double jMax) {
+    //! Reusable root solver and root buffers, so solving doesn't allocate
+    private final Roots roots = new Roots();
+    private final Roots.PositiveSet roots_none = new Roots.PositiveSet(),
+            roots_acc0 = new Roots.PositiveSet(),
+            roots_acc1 = new Roots.PositiveSet();
+    private final double[] polynom_none = new double[4], polynom_acc0 = new double[4], polynom_acc1 = new double[4];
+
+    //! Numerical solver for targets in motion, and for the cases the closed-form solutions miss
+    private final PositionThirdOrderSearch search = new PositionThirdOrderSearch();
+
+    //! Set the boundary conditions and limits of the next calculation
+    void set(double p0, double v0, double a0, double pf, double vf, double af,
+             double vMax, double vMin, double aMax, double aMin,
+             double jMax) {
         this.v0 = v0;
         this.a0 = a0;
+        this.vf = vf;
+        this.af = af;
         this._vMax = vMax;
         this._vMin = vMin;
         this._aMax = aMax;
@@ -34,9 +48,11 @@ class PositionThirdOrderStep1 {
 
 // max values needs to be invariant to plus minus sign change
         jMax_jMax = jMax * jMax;
+
+        search.set(p0, v0, a0, pf, vf, af, vMax, vMin, aMax, aMin, jMax);
     }
 
-    private PositionResult time_all_vel(Profile profile, double vMax, double vMin, double aMax, double aMin,
+    private boolean time_all_vel(Profile profile, double vMax, double vMin, double aMax, double aMin,
                                         double jMax) {
 // ACC0_ACC1_VEL
         profile.time[0] = (-a0 + aMax) / jMax;
@@ -52,7 +68,7 @@ class PositionThirdOrderStep1 {
         profile.time[6] = profile.time[4];
 
         if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.ACC0_ACC1_VEL, jMax, vMax, vMin, aMax, aMin)) {
-            return new PositionResult(profile, true);
+            return true;
         }
 
         // ACC1_VEL
@@ -67,7 +83,7 @@ class PositionThirdOrderStep1 {
                         * t_acc0 * (a0_a0 - 2 * jMax * (v0 + vMax)))) / (24 * aMin * jMax_jMax * vMax);
 
         if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.ACC1_VEL, jMax, vMax, vMin, aMax, aMin)) {
-            return new PositionResult(profile, true);
+            return true;
         }
 
         // ACC0_VEL
@@ -85,7 +101,7 @@ class PositionThirdOrderStep1 {
         profile.time[6] = t_acc1;
 
         if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.ACC0_VEL, jMax, vMax, vMin, aMax, aMin)) {
-            return new PositionResult(profile, true);
+            return true;
         }
 
 // VEL
@@ -98,13 +114,13 @@ class PositionThirdOrderStep1 {
                 v0 / vMax + 1.0) * t_acc0 - t_acc1 + pd / vMax;
 
         if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.VEL, jMax, vMax, vMin, aMax, aMin)) {
-            return new PositionResult(profile, true);
+            return true;
         }
 
-        return new PositionResult(profile, false);
+        return false;
     }
 
-    PositionResult time_acc0_acc1(Profile profile, double vMax, double vMin, double aMax,
+    boolean time_acc0_acc1(Profile profile, double vMax, double vMin, double aMax,
                                   double aMin, double jMax) {
         double h1 = (3 * (-a0_p4 * aMin) + aMax * aMin * (
                 8 * (a0_p3 - 0) + 3 * aMax * aMin * (aMax - aMin) - 6 * aMax * a0_a0) +
@@ -126,7 +142,7 @@ class PositionThirdOrderStep1 {
                 profile.time[6] = profile.time[4];
 
                 if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.ACC0_ACC1, true, jMax, vMax, vMin, aMax, aMin)) {
-                    return new PositionResult(profile, true);
+                    return true;
                 }
             }
 
@@ -141,14 +157,14 @@ class PositionThirdOrderStep1 {
                 profile.time[6] = profile.time[4];
 
                 if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.ACC0_ACC1, true, jMax, vMax, vMin, aMax, aMin)) {
-                    return new PositionResult(profile, true);
+                    return true;
                 }
             }
         }
-        return new PositionResult(profile, false);
+        return false;
     }
 
-    PositionResult time_all_none_acc0_acc1(Profile profile, double vMax, double vMin, double aMax,
+    boolean time_all_none_acc0_acc1(Profile profile, double vMax, double vMin, double aMax,
                                            double aMin, double jMax) {
 
         // NONE UDDU / UDUD Strategy: t7 == 0 (equals UDDU), this one is in particular prone to numerical issues
@@ -157,7 +173,6 @@ class PositionThirdOrderStep1 {
         double t_min_none = a0 / jMax;
         double t_max_none = (aMax - aMin) / jMax;
 
-        double[] polynom_none = new double[4];
         polynom_none[0] = 0;
         polynom_none[1] = -2 * (a0_a0 - 2 * jMax * (v0)) / jMax_jMax;
         polynom_none[2] = 4 * (a0_p3 - 3 * jMax * (- a0 * v0)) / (3 * jMax * jMax_jMax) - 4 * pd / jMax;
@@ -174,7 +189,6 @@ class PositionThirdOrderStep1 {
                 12 * jMax * (jMax * ( - v0_v0 - 2 * aMax * pd) - aMax * aMax * ( - v0));
         double h2_acc0 = aMax * aMax;
 
-        double[] polynom_acc0 = new double[4];
         polynom_acc0[0] = -2 * aMax / jMax;
         polynom_acc0[1] = h2_acc0 / jMax_jMax;
         polynom_acc0[2] = 0;
@@ -191,7 +205,6 @@ class PositionThirdOrderStep1 {
                 aMin * (v0) + jMax * (v0_v0));
         double h2_acc1 = a0_a0 - a0 * aMin + 2 * jMax * v0;
 
-        double[] polynom_acc1 = new double[4];
         polynom_acc1[0] = 2 * (2 * a0 - aMin) / jMax;
         polynom_acc1[1] = (5 * a0_a0 + aMin * (aMin - 6 * a0) + 2 * jMax * v0) / jMax_jMax;
         polynom_acc1[2] = 2 * (a0 - aMin) * h2_acc1 / (jMax_jMax * jMax);
@@ -208,16 +221,18 @@ class PositionThirdOrderStep1 {
         boolean polynom_acc1_has_solution = (polynom_acc1[0] < 0.0) || (polynom_acc1[1] < 0.0) || (
                 polynom_acc1[2] < 0.0) || (polynom_acc1[3] <= 0.0);
 
-        Roots.PositiveSet roots_none = Roots.solveQuartMonic(polynom_none);
-        Roots.PositiveSet roots_acc0 = polynom_acc0_has_solution
-                ? Roots.solveQuartMonic(polynom_acc0)
-                : new Roots.PositiveSet();
-        Roots.PositiveSet roots_acc1 = polynom_acc1_has_solution
-                ? Roots.solveQuartMonic(polynom_acc1)
-                : new Roots.PositiveSet();
+        roots.solveQuartMonic(polynom_none, roots_none);
+
+        if (polynom_acc0_has_solution) roots.solveQuartMonic(polynom_acc0, roots_acc0);
+        else roots_acc0.clear();
+
+        if (polynom_acc1_has_solution) roots.solveQuartMonic(polynom_acc1, roots_acc1);
+        else roots_acc1.clear();
 
-        for (Double t : roots_none) {
-            if (t == null || t < t_min_none || t > t_max_none) {
+        for (int root_index = 0; root_index < roots_none.size(); root_index++) {
+            double t = roots_none.get(root_index);
+
+            if (t < t_min_none || t > t_max_none) {
                 continue;
             }
 
@@ -242,12 +257,14 @@ class PositionThirdOrderStep1 {
             profile.time[6] = -h0 + t / 2 + 0 / jMax;
 
             if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.NONE, jMax, vMax, vMin, aMax, aMin)) {
-                return new PositionResult(profile, true);
+                return true;
             }
         }
 
-        for (Double t : roots_acc0) {
-            if (t == null || t < t_min_acc0 || t > t_max_acc0) {
+        for (int root_index = 0; root_index < roots_acc0.size(); root_index++) {
+            double t = roots_acc0.get(root_index);
+
+            if (t < t_min_acc0 || t > t_max_acc0) {
                 continue;
             }
 
@@ -269,16 +286,18 @@ class PositionThirdOrderStep1 {
             profile.time[6] = ( - aMax) / jMax + t;
 
             if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.ACC0, jMax, vMax, vMin, aMax, aMin)) {
-                return new PositionResult(profile, true);
+                return true;
             }
         }
 
         if (!polynom_acc1_has_solution) {
-            return new PositionResult(profile, false);
+            return false;
         }
 
-        for (Double t : roots_acc1) {
-            if (t == null || t < t_min_acc1 || t > t_max_acc1) {
+        for (int root_index = 0; root_index < roots_acc1.size(); root_index++) {
+            double t = roots_acc1.get(root_index);
+
+            if (t < t_min_acc1 || t > t_max_acc1) {
                 continue;
             }
 
@@ -321,15 +340,15 @@ class PositionThirdOrderStep1 {
             profile.time[6] = ( - aMin) / jMax;
 
             if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.ACC1, true, jMax, vMax, vMin, aMax, aMin)) {
-                return new PositionResult(profile, true);
+                return true;
             }
         }
 
-        return new PositionResult(profile, false);
+        return false;
     }
 
 
-    PositionResult time_acc1_vel_two_step(Profile profile, double vMax, double vMin, double aMax,
+    boolean time_acc1_vel_two_step(Profile profile, double vMax, double vMin, double aMax,
                                           double aMin, double jMax) {
         profile.time[0] = 0;
         profile.time[1] = 0;
@@ -342,15 +361,13 @@ class PositionThirdOrderStep1 {
         profile.time[6] = profile.time[4];
 
         if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.ACC1_VEL, jMax, vMax, vMin, aMax, aMin)) {
-            return new PositionResult(profile, true);
+            return true;
         }
 
-        return new PositionResult(profile, false);
+        return false;
     }
 
-    PositionResult
-
-    time_acc0_two_step(Profile profile, double vMax, double vMin, double aMax,
+    boolean time_acc0_two_step(Profile profile, double vMax, double vMin, double aMax,
                        double aMin, double jMax) {
 // Two step
         profile.time[0] = 0;
@@ -362,7 +379,7 @@ class PositionThirdOrderStep1 {
         profile.time[6] = 0;
 
         if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.ACC0, jMax, vMax, vMin, aMax, aMin)) {
-            return new PositionResult(profile, true);
+            return true;
         }
 
         // Three step - Removed pf
@@ -376,7 +393,7 @@ class PositionThirdOrderStep1 {
             profile.time[6] = 0;
 
             if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.ACC0, jMax, vMax, vMin, aMax, aMin)) {
-                return new PositionResult(profile, true);
+                return true;
             }
         }
 
@@ -398,7 +415,7 @@ class PositionThirdOrderStep1 {
             profile.time[6] = 0;
 
             if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.ACC0, jMax, vMax, vMin, aMax, aMin)) {
-                return new PositionResult(profile, true);
+                return true;
             }
         }
 
@@ -415,16 +432,14 @@ class PositionThirdOrderStep1 {
             profile.time[6] = (0 - aMin) / jMax;
 
             if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.ACC0, jMax, vMax, vMin, aMax, aMin)) {
-                return new PositionResult(profile, true);
+                return true;
             }
         }
 
-        return new PositionResult(profile, false);
+        return false;
     }
 
-    PositionResult
-
-    time_vel_two_step(Profile profile, double vMax, double vMin, double aMax,
+    boolean time_vel_two_step(Profile profile, double vMax, double vMin, double aMax,
                       double aMin, double jMax) {
         double h1 = Math.sqrt((vMax) / jMax);
         // Four step
@@ -440,7 +455,7 @@ class PositionThirdOrderStep1 {
             profile.time[6] = h1;
 
             if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.VEL, jMax, vMax, vMin, aMax, aMin)) {
-                return new PositionResult(profile, true);
+                return true;
             }
         }
 
@@ -457,16 +472,14 @@ class PositionThirdOrderStep1 {
             profile.time[6] = h1;
 
             if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.VEL, jMax, vMax, vMin, aMax, aMin)) {
-                return new PositionResult(profile, true);
+                return true;
             }
         }
 
-        return new PositionResult(profile, false);
+        return false;
     }
 
-    PositionResult
-
-    time_none_two_step(Profile profile, double vMax, double vMin, double aMax,
+    boolean time_none_two_step(Profile profile, double vMax, double vMin, double aMax,
                        double aMin, double jMax) {
         // Two step
 
@@ -480,7 +493,7 @@ class PositionThirdOrderStep1 {
         profile.time[6] = 0;
 
         if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.NONE, jMax, vMax, vMin, aMax, aMin)) {
-            return new PositionResult(profile, true);
+            return true;
         }
 
 // Single step
@@ -494,43 +507,54 @@ class PositionThirdOrderStep1 {
         profile.time[6] = 0;
 
         if (profile.check(Profile.ControlSigns.UDDU, Profile.ReachedLimits.NONE, jMax, vMax, vMin, aMax, aMin)) {
-            return new PositionResult(profile, true);
+            return true;
         }
 
-        return new PositionResult(profile, false);
+        return false;
     }
 
-    Profile get_profile(Profile input) {
-        PositionResult result = new PositionResult(input, false);
-
+    //! Calculate the time-optimal profile into the given profile, returns whether a profile was found
+    boolean get_profile(Profile profile) {
         double vMax = pd >= 0 ? _vMax : _vMin;
         double vMin = pd >= 0 ? _vMin : _vMax;
         double aMax = pd >= 0 ? _aMax : _aMin;
         double aMin = pd >= 0 ? _aMin : _aMax;
         double jMax = pd >= 0 ? _jMax : -_jMax;
 
+        // The closed-form solutions below are only time-optimal from rest to rest,
+        // moving starts and targets in motion are searched numerically
+        if (v0 != 0.0 || a0 != 0.0 || vf != 0.0 || af != 0.0) {
+            return search.get_profile(profile);
+        }
+
+        boolean has_found;
+
         if (Math.abs(v0) < DBL_EPSILON && Math.abs(a0) < DBL_EPSILON && Math.abs(pd) < DBL_EPSILON) {
-            result = time_all_none_acc0_acc1(result.profile, vMax, vMin, aMax, aMin, jMax);
+            has_found = time_all_none_acc0_acc1(profile, vMax, vMin, aMax, aMin, jMax);
         } else {
-            result = time_all_vel(result.profile, vMax, vMin, aMax, aMin, jMax);
-            if (!result.has_found) result = time_all_none_acc0_acc1(result.profile, vMax, vMin, aMax, aMin, jMax);
-            if (!result.has_found) result = time_acc0_acc1(result.profile, vMax, vMin, aMax, aMin, jMax);
-            if (!result.has_found) result = time_all_vel(result.profile, vMin, vMax, aMin, aMax, -jMax);
-            if (!result.has_found) result = time_all_none_acc0_acc1(result.profile, vMin, vMax, aMin, aMax, -jMax);
-            if (!result.has_found) result = time_acc0_acc1(result.profile, vMin, vMax, aMin, aMax, -jMax);
+            has_found = time_all_vel(profile, vMax, vMin, aMax, aMin, jMax)
+                    || time_all_none_acc0_acc1(profile, vMax, vMin, aMax, aMin, jMax)
+                    || time_acc0_acc1(profile, vMax, vMin, aMax, aMin, jMax)
+                    || time_all_vel(profile, vMin, vMax, aMin, aMax, -jMax)
+                    || time_all_none_acc0_acc1(profile, vMin, vMax, aMin, aMax, -jMax)
+                    || time_acc0_acc1(profile, vMin, vMax, aMin, aMax, -jMax);
+        }
+
+        if (!has_found) {
+            has_found = time_none_two_step(profile, _vMax, _vMin, _aMax, _aMin, _jMax)
+                    || time_none_two_step(profile, _vMin, _vMax, _aMin, _aMax, -_jMax)
+                    || time_acc0_two_step(profile, _vMax, _vMin, _aMax, _aMin, _jMax)
+                    || time_acc0_two_step(profile, _vMin, _vMax, _aMin, _aMax, -_jMax)
+                    || time_vel_two_step(profile, _vMax, _vMin, _aMax, _aMin, _jMax)
+                    || time_vel_two_step(profile, _vMin, _vMax, _aMin, _aMax, -_jMax)
+                    || time_acc1_vel_two_step(profile, _vMax, _vMin, _aMax, _aMin, _jMax)
+                    || time_acc1_vel_two_step(profile, _vMin, _vMax, _aMin, _aMax, -_jMax);
         }
 
-        if (!result.has_found) {
-            result = time_none_two_step(result.profile, _vMax, _vMin, _aMax, _aMin, _jMax);
-            if (!result.has_found) result = time_none_two_step(result.profile, _vMin, _vMax, _aMin, _aMax, -_jMax);
-            if (!result.has_found) result = time_acc0_two_step(result.profile, _vMax, _vMin, _aMax, _aMin, _jMax);
-            if (!result.has_found) result = time_acc0_two_step(result.profile, _vMin, _vMax, _aMin, _aMax, -_jMax);
-            if (!result.has_found) result = time_vel_two_step(result.profile, _vMax, _vMin, _aMax, _aMin, _jMax);
-            if (!result.has_found) result = time_vel_two_step(result.profile, _vMin, _vMax, _aMin, _aMax, -_jMax);
-            if (!result.has_found) result = time_acc1_vel_two_step(result.profile, _vMax, _vMin, _aMax, _aMin, _jMax);
-            if (!result.has_found) result = time_acc1_vel_two_step(result.profile, _vMin, _vMax, _aMin, _aMax, -_jMax);
+        if (!has_found) {
+            has_found = search.get_profile(profile);
         }
 
-        return result.profile;
+        return has_found;
     }
 }
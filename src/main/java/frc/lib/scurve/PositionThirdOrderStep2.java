@@ -0,0 +1,176 @@
+package frc.lib.scurve;
+
+import frc.lib.scurve.Profile.ControlSigns;
+import frc.lib.scurve.Profile.ReachedLimits;
+
+//! Profiles towards any target state that take exactly a given duration, used to synchronize several DoFs.
+//! Searches for the cruising velocity: the parts before and after the cruise are time-optimal velocity changes,
+//! and whatever is left of the duration is spent cruising. Profiles that never cross zero acceleration aren't covered,
+//! so a caller needs a fallback when no profile is found.
+class PositionThirdOrderStep2 {
+    //! Samples of the cruising velocity between the velocity limits
+    private static final int SCAN_SAMPLES = 128;
+    //! Bisection steps per bracketed root or boundary of the valid velocities
+    private static final int BISECTION_ITERATIONS = 100;
+
+    private double tf;
+    private double v0, a0, pd, vf, af;
+    private double _vMax, _vMin, _aMax, _aMin, _jMax;
+
+    private final double[] best_time = new double[7];
+    private boolean has_best;
+    private double best_velocity_difference, best_jf;
+    private ControlSigns best_control_signs;
+    private ReachedLimits best_limits;
+
+    private final VelocityThirdOrderStep1 acceleration = new VelocityThirdOrderStep1(), deceleration = new VelocityThirdOrderStep1();
+
+    //! Set the duration, boundary conditions and limits of the next calculation
+    void set(double tf, double p0, double v0, double a0, double pf, double vf, double af,
+             double vMax, double vMin, double aMax, double aMin, double jMax) {
+        this.tf = tf;
+        this.v0 = v0;
+        this.a0 = a0;
+        this.pd = pf - p0;
+        this.vf = vf;
+        this.af = af;
+        this._vMax = vMax;
+        this._vMin = vMin;
+        this._aMax = aMax;
+        this._aMin = aMin;
+        this._jMax = jMax;
+    }
+
+    //! Writes a profile of the set duration into the given one, returns whether a valid one was found.
+    //! Of all valid profiles, the one cruising closest to the average velocity is chosen, as it is the least aggressive.
+    boolean get_profile(Profile profile) {
+        has_best = false;
+        best_velocity_difference = Double.POSITIVE_INFINITY;
+
+        double previous_velocity = _vMin;
+        double previous_error = position_error(previous_velocity);
+
+        if (Math.abs(previous_error) < Profile.p_precision) consider(profile, previous_velocity);
+
+        for (int i = 1; i <= SCAN_SAMPLES; i++) {
+            final double velocity = i == SCAN_SAMPLES ? _vMax : _vMin + (_vMax - _vMin) * i / SCAN_SAMPLES;
+            final double error = position_error(velocity);
+
+            final boolean previous_valid = !Double.isNaN(previous_error), valid = !Double.isNaN(error);
+
+            if (previous_valid != valid) {
+                // The root may be between the last valid velocity and the edge of the valid velocities
+                final double edge = find_edge(previous_valid ? previous_velocity : velocity, previous_valid ? velocity : previous_velocity);
+                final double edge_error = position_error(edge);
+                final double valid_velocity = previous_valid ? previous_velocity : velocity;
+                final double valid_error = previous_valid ? previous_error : error;
+
+                if (Math.abs(edge_error) < Profile.p_precision) {
+                    consider(profile, edge);
+                } else if (valid_error * edge_error < 0) {
+                    consider(profile, bisect(valid_velocity, valid_error, edge));
+                }
+            } else if (valid) {
+                if (Math.abs(error) < Profile.p_precision) {
+                    consider(profile, velocity);
+                } else if (previous_error * error < 0) {
+                    consider(profile, bisect(previous_velocity, previous_error, velocity));
+                }
+            }
+
+            previous_velocity = velocity;
+            previous_error = error;
+        }
+
+        if (!has_best) return false;
+
+        System.arraycopy(best_time, 0, profile.time, 0, 7);
+        return profile.check(best_control_signs, best_limits, best_jf, _vMax, _vMin, _aMax, _aMin);
+    }
+
+    //! Finds the last velocity that still fits into the duration, between a valid and an invalid one
+    private double find_edge(double valid_velocity, double invalid_velocity) {
+        for (int i = 0; i < BISECTION_ITERATIONS; i++) {
+            final double middle = (valid_velocity + invalid_velocity) / 2;
+
+            if (middle == valid_velocity || middle == invalid_velocity) break;
+
+            if (Double.isNaN(position_error(middle))) invalid_velocity = middle;
+            else valid_velocity = middle;
+        }
+
+        return valid_velocity;
+    }
+
+    private double bisect(double lower, double lower_error, double upper) {
+        for (int i = 0; i < BISECTION_ITERATIONS; i++) {
+            final double middle = (lower + upper) / 2;
+
+            if (middle == lower || middle == upper) break;
+
+            final double error = position_error(middle);
+
+            if (Double.isNaN(error)) break;
+
+            if (lower_error * error <= 0) {
+                upper = middle;
+            } else {
+                lower = middle;
+                lower_error = error;
+            }
+        }
+
+        return Math.abs(position_error(upper)) <= Math.abs(lower_error) ? upper : lower;
+    }
+
+    //! The position error when cruising at the given velocity, or NaN if the velocity changes alone take longer than the duration
+    private double position_error(double cruise_velocity) {
+        if (!acceleration.get_profile(v0, a0, cruise_velocity, 0.0, _aMax, _aMin, _jMax)
+                || !deceleration.get_profile(cruise_velocity, 0.0, vf, af, _aMax, _aMin, _jMax)) {
+            return Double.NaN;
+        }
+
+        final double cruise_time = tf - acceleration.get_duration() - deceleration.get_duration();
+
+        if (cruise_time < 0) return Double.NaN;
+
+        return acceleration.distance + cruise_velocity * cruise_time + deceleration.distance - pd;
+    }
+
+    //! Keeps the profile cruising at the given velocity if it is valid and closer to the average velocity than the best one so far
+    private void consider(Profile profile, double cruise_velocity) {
+        final double velocity_difference = Math.abs(cruise_velocity - pd / tf);
+
+        if (velocity_difference >= best_velocity_difference || Double.isNaN(position_error(cruise_velocity))) return;
+
+        final double cruise_time = tf - acceleration.get_duration() - deceleration.get_duration();
+
+        profile.time[0] = acceleration.time_ramp0;
+        profile.time[1] = acceleration.time_plateau;
+        profile.time[2] = acceleration.time_ramp1;
+        profile.time[3] = cruise_time;
+        profile.time[4] = deceleration.time_ramp0;
+        profile.time[5] = deceleration.time_plateau;
+        profile.time[6] = deceleration.time_ramp1;
+
+        final ControlSigns control_signs = deceleration.direction == acceleration.direction ? ControlSigns.UDUD : ControlSigns.UDDU;
+        final double jf = acceleration.direction * _jMax;
+        final boolean acc0 = acceleration.time_plateau > 0, acc1 = deceleration.time_plateau > 0, vel = cruise_time > 0;
+        final ReachedLimits limits;
+
+        if (vel) {
+            limits = acc0 && acc1 ? ReachedLimits.ACC0_ACC1_VEL : acc0 ? ReachedLimits.ACC0_VEL : acc1 ? ReachedLimits.ACC1_VEL : ReachedLimits.VEL;
+        } else {
+            limits = acc0 && acc1 ? ReachedLimits.ACC0_ACC1 : acc0 ? ReachedLimits.ACC0 : acc1 ? ReachedLimits.ACC1 : ReachedLimits.NONE;
+        }
+
+        if (!profile.check(control_signs, limits, jf, _vMax, _vMin, _aMax, _aMin)) return;
+
+        System.arraycopy(profile.time, 0, best_time, 0, 7);
+        has_best = true;
+        best_velocity_difference = velocity_difference;
+        best_jf = jf;
+        best_control_signs = control_signs;
+        best_limits = limits;
+    }
+}
@@ -10,11 +10,11 @@ class Profile {
     static double v_precision = 1e-8;
     static double a_precision = 1e-10;
 
-    public double[] time = new double[7], totalTime = new double[7], j = new double[7];
-    public double[] a = new double[8], v = new double[8], p = new double[8];
+    public final double[] time = new double[7], totalTime = new double[7], j = new double[7];
+    public final double[] a = new double[8], v = new double[8], p = new double[8];
 
     //! Target (final) kinematic state
-    public double pf;
+    public double pf, vf, af;
 
     public enum ReachedLimits {ACC0_ACC1_VEL, VEL, ACC0, ACC1, ACC0_ACC1, ACC0_VEL, ACC1_VEL, NONE}
 
@@ -60,11 +60,14 @@ class Profile {
         }
 
 
-        if (control_signs == ControlSigns.UDDU) {
-            j = new double[]{(time[0] > 0 ? jf : 0), 0, (time[2] > 0 ? -jf : 0), 0, (time[4] > 0 ? -jf : 0), 0, (time[6] > 0 ? jf : 0)};
-        } else {
-            j = new double[]{(time[0] > 0 ? jf : 0), 0, (time[2] > 0 ? -jf : 0), 0, (time[4] > 0 ? jf : 0), 0, (time[6] > 0 ? -jf : 0)};
-        }
+        //! Written in place, since this runs for every candidate profile
+        j[0] = time[0] > 0 ? jf : 0;
+        j[1] = 0;
+        j[2] = time[2] > 0 ? -jf : 0;
+        j[3] = 0;
+        j[4] = time[4] > 0 ? (control_signs == ControlSigns.UDDU ? -jf : jf) : 0;
+        j[5] = 0;
+        j[6] = time[6] > 0 ? (control_signs == ControlSigns.UDDU ? jf : -jf) : 0;
 
         direction = vMax > 0 ? Direction.UP : Direction.DOWN;
         double vUppLim = (direction == Direction.UP ? vMax : vMin) + v_eps;
@@ -111,17 +114,23 @@ class Profile {
         double aUppLim = (direction == Direction.UP ? aMax : aMin) + a_eps;
         double aLowLim = (direction == Direction.UP ? aMin : aMax) - a_eps;
 
-        return Math.abs(back(p) - pf) < p_precision && Math.abs(back(v)) < v_precision && Math.abs(back(a)) < a_precision
+        return Math.abs(back(p) - pf) < p_precision && Math.abs(back(v) - vf) < v_precision && Math.abs(back(a) - af) < a_precision
                 && a[1] >= aLowLim && a[3] >= aLowLim && a[5] >= aLowLim
                 && a[1] <= aUppLim && a[3] <= aUppLim && a[5] <= aUppLim
                 && v[3] <= vUppLim && v[4] <= vUppLim && v[5] <= vUppLim && v[6] <= vUppLim
                 && v[3] >= vLowLim && v[4] >= vLowLim && v[5] >= vLowLim && v[6] >= vLowLim;
     }
 
-    void set_boundary(double p0_new, double v0_new, double a0_new, double pf_new) {
+    void set_boundary(double p0_new, double v0_new, double a0_new, double pf_new, double vf_new, double af_new) {
         a[0] = a0_new;
         v[0] = v0_new;
         p[0] = p0_new;
         pf = pf_new;
+        vf = vf_new;
+        af = af_new;
+    }
+
+    double get_duration() {
+        return back(totalTime);
     }
 }
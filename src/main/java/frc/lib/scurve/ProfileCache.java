@@ -0,0 +1,89 @@
+package frc.lib.scurve;
+
+import java.util.Arrays;
+
+//! Rest-to-rest trajectories between every pair of a mechanism's preset positions, calculated once on a background thread.
+//! A cached trajectory is shared by reference, so it must never be recalculated into; SCurveGenerator only samples it.
+//! Until the background calculation is done, nothing is served and the generator keeps solving live.
+public class ProfileCache {
+    private final double[] presets;
+    private final Trajectory[][] trajectories;
+
+    private final double max_velocity, max_acceleration, max_jerk;
+
+    //! How far the mechanism may be from a preset and how fast it may move, to still count as resting at the preset
+    private final double position_tolerance, velocity_tolerance;
+
+    private volatile boolean is_ready = false;
+
+    public ProfileCache(double[] presets, double max_velocity, double max_acceleration, double max_jerk,
+                        double position_tolerance, double velocity_tolerance) {
+        this.presets = presets.clone();
+        this.max_velocity = max_velocity;
+        this.max_acceleration = max_acceleration;
+        this.max_jerk = max_jerk;
+        this.position_tolerance = position_tolerance;
+        this.velocity_tolerance = velocity_tolerance;
+
+        trajectories = new Trajectory[this.presets.length][this.presets.length];
+
+        final Thread thread = new Thread(() -> calculate(max_velocity, max_acceleration, max_jerk), "ProfileCache");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    //! Get the cached trajectory for the given input, or null if the input doesn't start and end resting at presets.
+    //! The acceleration isn't compared, since a measured acceleration at rest is mostly noise.
+    public Trajectory get(InputParameter input) {
+        if (!is_ready
+                || Math.abs(input.current_velocity) > velocity_tolerance
+                || input.target_velocity != 0.0 || input.target_acceleration != 0.0) {
+            return null;
+        }
+
+        final int start = find_preset(input.current_position, position_tolerance);
+        final int target = find_preset(input.target_position, 0.0);
+
+        return start < 0 || target < 0 ? null : trajectories[start][target];
+    }
+
+    //! Whether this cache was calculated for the same presets, limits and tolerances, so it can be reused instead of calculated again
+    public boolean matches(double[] presets, double max_velocity, double max_acceleration, double max_jerk,
+                           double position_tolerance, double velocity_tolerance) {
+        return Arrays.equals(this.presets, presets)
+                && this.max_velocity == max_velocity && this.max_acceleration == max_acceleration && this.max_jerk == max_jerk
+                && this.position_tolerance == position_tolerance && this.velocity_tolerance == velocity_tolerance;
+    }
+
+    public boolean is_ready() {
+        return is_ready;
+    }
+
+    private void calculate(double max_velocity, double max_acceleration, double max_jerk) {
+        final TargetCalculator calculator = new TargetCalculator();
+        final InputParameter input = new InputParameter();
+
+        for (int start = 0; start < presets.length; start++) {
+            for (int target = 0; target < presets.length; target++) {
+                final Trajectory trajectory = new Trajectory();
+
+                input.set(presets[start], 0.0, 0.0, presets[target]);
+
+                if (calculator.calculate(input, trajectory, max_velocity, max_acceleration, max_jerk)) {
+                    trajectories[start][target] = trajectory;
+                }
+            }
+        }
+
+        // Publishes the filled table to the control thread
+        is_ready = true;
+    }
+
+    private int find_preset(double position, double tolerance) {
+        for (int i = 0; i < presets.length; i++) {
+            if (Math.abs(position - presets[i]) <= tolerance) return i;
+        }
+
+        return -1;
+    }
+}
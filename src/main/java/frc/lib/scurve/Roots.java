@@ -1,23 +1,47 @@
 package frc.lib.scurve;
 
-import java.util.TreeSet;
-
 import static edu.wpi.first.math.MathUtil.clamp;
 
+//! Solves the polynomials of the S-curve profile. Holds its own buffers, so an instance should only be used from a single thread
 public class Roots {
-    // Use TreeSet instead of custom Set class
-    public static class PositiveSet extends TreeSet<Double> {
-        @Override
-        public boolean add(Double value) {
-            if (value >= 0) {
-                return super.add(value);
-            }
-            return false;
+    //! Sorted set of the unique non-negative roots, stored in a fixed primitive buffer
+    public static class PositiveSet {
+        //! A quartic has at most four roots
+        private final double[] values = new double[4];
+        private int size = 0;
+
+        public void clear() {
+            size = 0;
+        }
+
+        public boolean add(double value) {
+            if (!(value >= 0) || size == values.length) return false;
+
+            int index = 0;
+            while (index < size && values[index] < value) index++;
+
+            if (index < size && values[index] == value) return false;
+
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+
+            return true;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public double get(int index) {
+            return values[index];
         }
     }
 
-    // Solve resolvent equation of corresponding Quartic equation
-    public static double[] solveResolvent(double[] x, double a, double b, double c) {
+    private final double[] x3 = new double[3];
+
+    // Solve resolvent equation of corresponding Quartic equation, writes the roots into x and returns the number of real roots
+    public static int solveResolvent(double[] x, double a, double b, double c) {
         final double cos120 = -0.50;
         final double sin120 = 0.866025403784438646764;
 
@@ -39,7 +63,7 @@ public class Roots {
             x[0] = ux - a;
             x[1] = ux * cos120 - uyi * sin120 - a;
             x[2] = ux * cos120 + uyi * sin120 - a;
-            return new double[]{3, x[0], x[1], x[2]};
+            return 3;
         }
 
         double A = -Math.cbrt(Math.abs(r) + Math.sqrt(r2 - q3));
@@ -53,15 +77,15 @@ public class Roots {
         x[2] = Math.sqrt(3) * (A - B) / 2;
         if (Math.abs(x[2]) < Double.MIN_VALUE) {
             x[2] = x[1];
-            return new double[]{2, x[0], x[1], x[2]};
+            return 2;
         }
 
-        return new double[]{1, x[0], x[1], x[2]};
+        return 1;
     }
 
     // Calculate all roots of the monic quartic equation: x^4 + a*x^3 + b*x^2 + c*x + d = 0
-    public static PositiveSet solveQuartMonic(double a, double b, double c, double d) {
-        PositiveSet roots = new PositiveSet();
+    public void solveQuartMonic(double a, double b, double c, double d, PositiveSet roots) {
+        roots.clear();
 
         if (Math.abs(d) < Double.MIN_VALUE) {
             if (Math.abs(c) < Double.MIN_VALUE) {
@@ -75,13 +99,13 @@ public class Roots {
                     roots.add((-a - sqrtD) / 2);
                     roots.add((-a + sqrtD) / 2);
                 }
-                return roots;
+                return;
             }
 
             if (Math.abs(a) < Double.MIN_VALUE && Math.abs(b) < Double.MIN_VALUE) {
                 roots.add(0.0);
                 roots.add(-Math.cbrt(c));
-                return roots;
+                return;
             }
         }
 
@@ -89,15 +113,7 @@ public class Roots {
         double b3 = a * c - 4 * d;
         double c3 = -a * a * d - c * c + 4 * b * d;
 
-        double[] x3 = new double[3];
-
-        double[] results = solveResolvent(x3, a3, b3, c3);
-
-        int numberZeroes = (int) results[0];
-
-        x3[0] = results[1];
-        x3[1] = results[2];
-        x3[2] = results[3];
+        int numberZeroes = solveResolvent(x3, a3, b3, c3);
 
         double y = x3[0];
         // Choosing Y with maximal absolute value.
@@ -150,12 +166,10 @@ public class Roots {
             roots.add((-p2 - sqrtD) / 2);
             roots.add((-p2 + sqrtD) / 2);
         }
-
-        return roots;
     }
 
     // Calculate the quartic equation: x^4 + b*x^3 + c*x^2 + d*x + e = 0
-    public static PositiveSet solveQuartMonic(double[] polynom) {
-        return solveQuartMonic(polynom[0], polynom[1], polynom[2], polynom[3]);
+    public void solveQuartMonic(double[] polynom, PositiveSet roots) {
+        solveQuartMonic(polynom[0], polynom[1], polynom[2], polynom[3], roots);
     }
 }
@@ -3,10 +3,10 @@ package frc.lib.scurve;
 import static frc.lib.scurve.Result.Finished;
 import static frc.lib.scurve.Result.Working;
 
-//! Main interface for the SCurve algorithm
+//! Main interface for the SCurve algorithm. Doesn't allocate after construction, so it is safe to call every loop
 public class SCurveGenerator {
-    //! Current input, only for comparison for recalculation
-    private InputParameter current_input;
+    //! Copy of the last input, only for comparison for recalculation
+    private final InputParameter current_input = new InputParameter();
 
     //! Kinematic constraints
     public double max_velocity, max_acceleration, max_jerk;
@@ -15,11 +15,17 @@ public class SCurveGenerator {
     private boolean current_input_initialized = false;
     
     //! Calculator for new trajectories
-    public TargetCalculator calculator = new TargetCalculator();
+    public final TargetCalculator calculator = new TargetCalculator();
 
     //! Time step between updates (cycle time) in [s]
     public double delta_time;
 
+    //! Buffer for the sampled state: position, velocity, acceleration and jerk
+    private final double[] sampled_state = new double[4];
+
+    //! Precomputed trajectories between presets, used instead of solving when available
+    private ProfileCache profile_cache;
+
     public SCurveGenerator(double delta_time, double max_velocity, double max_acceleration, double max_jerk) {
         this.delta_time = delta_time ;
 
@@ -28,43 +34,48 @@ public class SCurveGenerator {
         this.max_jerk = max_jerk;
     }
 
+    //! Serve moves between presets from the given cache. Its limits must match the ones of this generator
+    public void set_profile_cache(ProfileCache profile_cache) {
+        this.profile_cache = profile_cache;
+    }
+
     //! Reset the instance (e.g. to force a new calculation in the next update)
     public void reset() {
         current_input_initialized = false;
     }
 
-    //! Calculate a new trajectory for the given input and check for interruption
-    private UpdateResult calculate(InputParameter input, OutputParameter output) {
-        return calculator.calculate(input, output, max_velocity, max_acceleration, max_jerk);
-    }
-
-    //! Get the next output state (with step delta_time) along the calculated trajectory for the given input
-    public UpdateResult update(InputParameter input, OutputParameter output) {
+    //! Get the next output state (with step delta_time) along the calculated trajectory for the given input.
+    //! The input is advanced to the new state, so passing it again continues along the same trajectory.
+    public Result update(InputParameter input, OutputParameter output) {
         if (!current_input_initialized || !input.isEqual(current_input)) {
-            UpdateResult calculate_result = calculate(input, output);
+            final Trajectory cached_trajectory = profile_cache == null ? null : profile_cache.get(input);
 
-            output.trajectory = calculate_result.output_parameter.trajectory;
+            if (cached_trajectory != null) {
+                output.trajectory = cached_trajectory;
+            } else {
+                calculator.calculate(input, output, max_velocity, max_acceleration, max_jerk);
+            }
 
-            current_input = calculate_result.input_parameter;
+            current_input.set(input);
             current_input_initialized = true;
             output.time = 0.0;
         }
 
         output.time += delta_time;
-        double[] newResults = output.trajectory.at_time(
-                output.time);
+        output.trajectory.at_time(output.time, sampled_state);
 
-        output.new_position = newResults[0];
-        output.new_velocity = newResults[1];
-        output.new_acceleration = newResults[2];
-        output.new_jerk = newResults[3];
+        output.new_position = sampled_state[0];
+        output.new_velocity = sampled_state[1];
+        output.new_acceleration = sampled_state[2];
+        output.new_jerk = sampled_state[3];
 
-        current_input = output.update_input_from_output(current_input);
+        output.update_input_from_output(current_input);
+        output.update_input_from_output(input);
 
         if (output.time > output.trajectory.get_duration()) {
-            return new UpdateResult(current_input, output, Finished);
+            return Finished;
         }
 
-        return new UpdateResult(current_input, output, Working);
+        return Working;
     }
 }
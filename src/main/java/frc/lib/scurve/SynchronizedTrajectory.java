@@ -0,0 +1,135 @@
+package frc.lib.scurve;
+
+import java.util.Arrays;
+
+//! A jerk-limited trajectory for several degrees of freedom that all arrive at the same time.
+//! Every DoF is first solved time-optimally, then the faster ones are stretched to the duration of the slowest one.
+//! Doesn't allocate after construction, so it can be recalculated and sampled every loop from a single thread.
+public class SynchronizedTrajectory {
+    //! Bisection steps when searching for the limits that stretch a DoF to the synchronized duration
+    private static final int SYNCHRONIZATION_ITERATIONS = 40;
+    //! Allowed difference between a DoF's duration and the synchronized duration in [s]
+    private static final double DURATION_TOLERANCE = 1e-4;
+
+    private final int degrees_of_freedom;
+
+    //! Kinematic constraints of every DoF
+    private final double[] max_velocity, max_acceleration, max_jerk;
+
+    private final Trajectory[] trajectories;
+    private final TargetCalculator calculator = new TargetCalculator();
+
+    //! The duration every DoF arrives at
+    private double duration = 0.0;
+
+    //! Constraints of different lengths are reported, and only the DoFs that have all three constraints are used
+    public SynchronizedTrajectory(double[] max_velocity, double[] max_acceleration, double[] max_jerk) {
+        degrees_of_freedom = Math.min(max_velocity.length, Math.min(max_acceleration.length, max_jerk.length));
+
+        if (max_velocity.length != degrees_of_freedom || max_acceleration.length != degrees_of_freedom || max_jerk.length != degrees_of_freedom) {
+            new IllegalArgumentException("All constraints must have the same number of degrees of freedom").printStackTrace();
+        }
+
+        this.max_velocity = Arrays.copyOf(max_velocity, degrees_of_freedom);
+        this.max_acceleration = Arrays.copyOf(max_acceleration, degrees_of_freedom);
+        this.max_jerk = Arrays.copyOf(max_jerk, degrees_of_freedom);
+
+        trajectories = new Trajectory[degrees_of_freedom];
+
+        for (int dof = 0; dof < degrees_of_freedom; dof++) {
+            trajectories[dof] = new Trajectory();
+        }
+    }
+
+    //! Calculate a new synchronized trajectory from the given inputs, one per DoF. Returns whether every DoF has a valid profile
+    public boolean calculate(InputParameter[] inputs) {
+        boolean found_profiles = true;
+        duration = 0.0;
+
+        for (int dof = 0; dof < degrees_of_freedom; dof++) {
+            found_profiles &= calculator.calculate(inputs[dof], trajectories[dof], max_velocity[dof], max_acceleration[dof], max_jerk[dof]);
+            duration = Math.max(duration, trajectories[dof].duration);
+        }
+
+        for (int dof = 0; dof < degrees_of_freedom; dof++) {
+            if (trajectories[dof].duration < duration - DURATION_TOLERANCE) {
+                found_profiles &= synchronize(inputs[dof], dof);
+            }
+        }
+
+        return found_profiles;
+    }
+
+    //! Get the kinematic state and the jerk of a single DoF at a given time, written into result as {position, velocity, acceleration, jerk}.
+    //! A DoF that can't be stretched all the way arrives early and holds its target until the duration.
+    public void at_time(int dof, double time, double[] result) {
+        trajectories[dof].at_time(time, result);
+    }
+
+    //! Get the duration of the synchronized trajectory
+    public double get_duration() {
+        return duration;
+    }
+
+    public int get_degrees_of_freedom() {
+        return degrees_of_freedom;
+    }
+
+    //! Stretches a DoF to the synchronized duration, first by solving for a profile of exactly that duration.
+    //! If there is none, its limits are scaled by (s, s^2, s^3) instead, which for a DoF starting and ending at rest
+    //! is the time-optimal profile slowed down by exactly 1/s. Otherwise the duration isn't exactly proportional,
+    //! so the scale is found with a bisection.
+    //! The scale never drops below the current velocity and acceleration, since the solver can't start outside its limits.
+    private boolean synchronize(InputParameter input, int dof) {
+        if (calculator.calculate_synchronized(input, trajectories[dof], duration, max_velocity[dof], max_acceleration[dof], max_jerk[dof])) {
+            return true;
+        }
+
+        final double minimum_scale = Math.min(1.0, Math.max(
+                Math.abs(input.current_velocity) / max_velocity[dof],
+                Math.sqrt(Math.abs(input.current_acceleration) / max_acceleration[dof])
+        ));
+
+        double fast_scale = 1.0;
+        double slow_scale = Math.max(minimum_scale, trajectories[dof].duration / duration);
+
+        if (calculate_scaled(input, dof, slow_scale) && Math.abs(trajectories[dof].duration - duration) < DURATION_TOLERANCE) {
+            return true;
+        }
+
+        // Find a scale slow enough to overshoot the synchronized duration, so the bisection has a bracket
+        while (trajectories[dof].duration < duration) {
+            if (slow_scale <= minimum_scale) {
+                // Can't be slowed down enough, so it arrives early
+                return calculate_scaled(input, dof, fast_scale);
+            }
+
+            fast_scale = slow_scale;
+            slow_scale = Math.max(minimum_scale, slow_scale / 2);
+
+            if (!calculate_scaled(input, dof, slow_scale)) return calculate_scaled(input, dof, fast_scale);
+        }
+
+        for (int i = 0; i < SYNCHRONIZATION_ITERATIONS && slow_scale < fast_scale - 1e-12; i++) {
+            final double middle_scale = (fast_scale + slow_scale) / 2;
+
+            final boolean found_profile = calculate_scaled(input, dof, middle_scale);
+
+            if (found_profile && Math.abs(trajectories[dof].duration - duration) < DURATION_TOLERANCE) return true;
+
+            // A failed solve says nothing about the duration, so the slower half is kept to stay on the safe side
+            if (!found_profile || trajectories[dof].duration < duration) fast_scale = middle_scale;
+            else slow_scale = middle_scale;
+        }
+
+        // Prefer arriving slightly early over delaying the whole trajectory
+        return calculate_scaled(input, dof, fast_scale);
+    }
+
+    private boolean calculate_scaled(InputParameter input, int dof, double scale) {
+        return calculator.calculate(input, trajectories[dof],
+                max_velocity[dof] * scale,
+                max_acceleration[dof] * scale * scale,
+                max_jerk[dof] * scale * scale * scale);
+    }
+}
@@ -1,27 +1,58 @@
 package frc.lib.scurve;
 
-import static frc.lib.scurve.Result.Working;
 import static frc.lib.scurve.Utilities.back;
 
+//! Calculates new trajectories. Reuses its solver, so an instance should only be used from a single thread
 public class TargetCalculator {
-    public UpdateResult calculate(InputParameter input, OutputParameter output_parameter, double max_velocity, double max_acceleration, double max_jerk) {
-        output_parameter.trajectory.profile.set_boundary(input.current_position, input.current_velocity,
-                input.current_acceleration, input.target_position);
+    private final PositionThirdOrderStep1 step1 = new PositionThirdOrderStep1();
+    private final PositionThirdOrderStep2 step2 = new PositionThirdOrderStep2();
 
-        final PositionThirdOrderStep1 step1 = new PositionThirdOrderStep1(
-                output_parameter.trajectory.profile.p[0], output_parameter.trajectory.profile.v[0],
-                output_parameter.trajectory.profile.a[0],
+    public void calculate(InputParameter input, OutputParameter output_parameter, double max_velocity, double max_acceleration, double max_jerk) {
+        calculate(input, output_parameter.calculated_trajectory, max_velocity, max_acceleration, max_jerk);
+        output_parameter.trajectory = output_parameter.calculated_trajectory;
+    }
+
+    //! Calculates the time-optimal trajectory into the given one, returns whether a valid profile was found
+    boolean calculate(InputParameter input, Trajectory trajectory, double max_velocity, double max_acceleration, double max_jerk) {
+        final Profile profile = trajectory.profile;
 
-                output_parameter.trajectory.profile.pf, max_velocity, -max_velocity,
+        profile.set_boundary(input.current_position, input.current_velocity, input.current_acceleration,
+                input.target_position, input.target_velocity, input.target_acceleration);
+
+        step1.set(
+                profile.p[0], profile.v[0], profile.a[0],
+                profile.pf, profile.vf, profile.af,
+                max_velocity, -max_velocity,
                 max_acceleration, -max_acceleration, max_jerk
         );
 
-        output_parameter.trajectory.profile = step1.get_profile(output_parameter.trajectory.profile);
+        final boolean found_profile = step1.get_profile(profile);
 
-        if (back(output_parameter.trajectory.profile.totalTime) > output_parameter.trajectory.duration)
-            output_parameter.trajectory.duration = back(output_parameter.trajectory.profile.totalTime);
+        trajectory.duration = back(profile.totalTime);
 
-        return new UpdateResult(input, output_parameter, Working);
+        return found_profile;
     }
-}
 
+    //! Calculates a trajectory that takes exactly the given duration into the given one, returns whether a valid profile was found
+    boolean calculate_synchronized(InputParameter input, Trajectory trajectory, double duration,
+                                   double max_velocity, double max_acceleration, double max_jerk) {
+        final Profile profile = trajectory.profile;
+
+        profile.set_boundary(input.current_position, input.current_velocity, input.current_acceleration,
+                input.target_position, input.target_velocity, input.target_acceleration);
+
+        step2.set(
+                duration,
+                profile.p[0], profile.v[0], profile.a[0],
+                profile.pf, profile.vf, profile.af,
+                max_velocity, -max_velocity,
+                max_acceleration, -max_acceleration, max_jerk
+        );
+
+        final boolean found_profile = step2.get_profile(profile);
+
+        trajectory.duration = back(profile.totalTime);
+
+        return found_profile;
+    }
+}
@@ -4,30 +4,21 @@ import static frc.lib.scurve.Utilities.back;
 import static frc.lib.scurve.Utilities.integrate;
 
 public class Trajectory {
-    Profile profile = new Profile();
+    final Profile profile = new Profile();
 
     double duration = 0.0;
 
-    double[] state_to_integrate_from(double time)  {
-        double[] result;
-
-        if (time >= duration) {
-            // Keep ant acceleration
-            double t_diff = time - back(profile.totalTime);
-            var integrated = integrate(t_diff, back(profile.p), back(profile.v), back(profile.a), 0.0);
-            result = new double[]{integrated[0], integrated[1], integrated[2], 0.0};
-            return result;
+    //! Writes position, velocity, acceleration and jerk into result
+    void state_to_integrate_from(double time, double[] result)  {
+        if (time >= duration || time >= back(profile.totalTime)) {
+            // Keep constant acceleration
+            integrate(time - back(profile.totalTime), back(profile.p), back(profile.v), back(profile.a), 0.0, result);
+            result[3] = 0.0;
+            return;
         }
 
         double t_diff_dof = time;
 
-        if (t_diff_dof >= back(profile.totalTime)) {
-            // Keep ant acceleration
-            var integrated = integrate(t_diff_dof - back(profile.totalTime), back(profile.p), back(profile.v), back(profile.a), 0.0);
-            result = new double[]{integrated[0], integrated[1], integrated[2], 0.0};
-            return result;
-        }
-
         int index_dof = 0;
         while (index_dof < profile.totalTime.length && profile.totalTime[index_dof] <= t_diff_dof) {
             index_dof++;
@@ -37,18 +28,17 @@ public class Trajectory {
             t_diff_dof -= profile.totalTime[index_dof - 1];
         }
 
-        var integrated = integrate(t_diff_dof, profile.p[index_dof], profile.v[index_dof], profile.a[index_dof], profile.j[index_dof]);
-        result = new double[]{integrated[0], integrated[1], integrated[2], profile.j[index_dof]};
-        return result;
+        integrate(t_diff_dof, profile.p[index_dof], profile.v[index_dof], profile.a[index_dof], profile.j[index_dof], result);
+        result[3] = profile.j[index_dof];
     }
 
-    //! Get the kinematic state, the jerk, and the section at a given time without vectors for a single DoF
-    public double[] at_time(double time)  {
-        return state_to_integrate_from(time);
+    //! Get the kinematic state and the jerk at a given time for a single DoF, written into result as {position, velocity, acceleration, jerk}
+    public void at_time(double time, double[] result)  {
+        state_to_integrate_from(time, result);
     }
 
     //! Get the duration of the (synchronized) trajectory
     public double get_duration()  {
         return duration;
     }
-}
\ No newline at end of file
+}
@@ -2,13 +2,11 @@ package frc.lib.scurve;
 
 public class Utilities {
 
-    //! Integrate with constant jerk for duration t. Returns new position, new velocity, and new acceleration.
-    public static double[] integrate(double t, double p0, double v0, double a0, double j) {
-        return new double[]{
-                p0 + t * (v0 + t * (a0 / 2 + t * j / 6)),
-                v0 + t * (a0 + t * j / 2),
-                a0 + t * j
-        };
+    //! Integrate with constant jerk for duration t. Writes new position, new velocity, and new acceleration into the first three cells of result.
+    public static void integrate(double t, double p0, double v0, double a0, double j, double[] result) {
+        result[0] = p0 + t * (v0 + t * (a0 / 2 + t * j / 6));
+        result[1] = v0 + t * (a0 + t * j / 2);
+        result[2] = a0 + t * j;
     }
 
     public static double back(double[] arr) {
@@ -0,0 +1,74 @@
+package frc.lib.scurve;
+
+//! Time-optimal change from one velocity and acceleration to another, ignoring the position.
+//! The acceleration ramps to a peak (or trough), holds it while it is at the limit, and ramps to the target acceleration.
+//! Used as the parts before and after the cruising phase of position profiles.
+class VelocityThirdOrderStep1 {
+    //! Durations of the first ramp, the plateau and the second ramp
+    double time_ramp0, time_plateau, time_ramp1;
+
+    //! Sign of the jerk during the first ramp
+    double direction;
+
+    //! Distance travelled during the change
+    double distance;
+
+    boolean get_profile(double v0, double a0, double vf, double af, double aMax, double aMin, double jMax) {
+        if (solve_direction(v0, a0, vf, af, aMax, jMax)) {
+            direction = 1.0;
+        } else if (solve_direction(-v0, -a0, -vf, -af, -aMin, jMax)) {
+            direction = -1.0;
+        } else {
+            return false;
+        }
+
+        distance = integrate_distance(v0, a0, direction * jMax);
+        return true;
+    }
+
+    double get_duration() {
+        return time_ramp0 + time_plateau + time_ramp1;
+    }
+
+    //! Solves with a positive jerk first, in a frame where the velocity has to increase
+    private boolean solve_direction(double v0, double a0, double vf, double af, double aMax, double jMax) {
+        if (a0 > aMax + Profile.a_eps || af > aMax + Profile.a_eps) return false;
+
+        final double lowest_peak = Math.max(a0, af);
+        final double peak_squared = jMax * (vf - v0) + (a0 * a0 + af * af) / 2;
+
+        if (peak_squared < 0) return false;
+
+        double peak = Math.sqrt(peak_squared);
+
+        // Within rounding, the peak is one of the boundary accelerations and that ramp has no duration
+        if (peak < lowest_peak - Profile.a_eps) return false;
+        peak = Math.max(peak, lowest_peak);
+
+        time_plateau = 0.0;
+
+        if (peak > aMax) {
+            peak = aMax;
+            time_plateau = Math.max(0.0, (vf - v0 - (2 * aMax * aMax - a0 * a0 - af * af) / (2 * jMax)) / aMax);
+        }
+
+        time_ramp0 = (peak - a0) / jMax;
+        time_ramp1 = (peak - af) / jMax;
+        return true;
+    }
+
+    private double integrate_distance(double v0, double a0, double jf) {
+        double p = 0.0, v = v0, a = a0;
+
+        p += time_ramp0 * (v + time_ramp0 * (a / 2 + time_ramp0 * jf / 6));
+        v += time_ramp0 * (a + time_ramp0 * jf / 2);
+        a += time_ramp0 * jf;
+
+        p += time_plateau * (v + time_plateau * a / 2);
+        v += time_plateau * a;
+
+        p += time_ramp1 * (v + time_ramp1 * (a / 2 - time_ramp1 * jf / 6));
+
+        return p;
+    }
+}
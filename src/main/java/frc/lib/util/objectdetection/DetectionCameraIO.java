@@ -30,6 +30,18 @@ public class DetectionCameraIO implements LoggableHardware {
         return inputs.closestTargetPitch;
     }
 
+    public double[] getYaws() {
+        return inputs.yaws;
+    }
+
+    public double[] getPitches() {
+        return inputs.pitches;
+    }
+
+    public double getLatestResultTimestampSeconds() {
+        return inputs.latestResultTimestampSeconds;
+    }
+
     @Override
     public void periodic() {
         refreshInputs(inputs);
@@ -46,5 +58,7 @@ public class DetectionCameraIO implements LoggableHardware {
         public double closestTargetYaw;
         public double closestTargetPitch;
         public double[] yaws;
+        public double[] pitches;
+        public double latestResultTimestampSeconds = 0;
     }
 }
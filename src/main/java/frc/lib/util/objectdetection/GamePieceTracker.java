@@ -0,0 +1,325 @@
+package frc.lib.util.objectdetection;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.wpilibj.Timer;
+import org.littletonrobotics.junction.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static frc.robot.RobotContainer.POSE_ESTIMATOR;
+
+/**
+ * Follows the game pieces seen by a detection camera on the field, instead of only the closest one in the current frame.
+ * <p>
+ * Every detection is projected onto the floor from where the robot was when the frame was taken, and matched to the
+ * closest existing track inside a statistical gate. Detections that match no track start new ones. Tracks coast through
+ * frames where they aren't seen, and are dropped after a while, so a target stays locked through dropped frames.
+ * <p>
+ * Runs every loop, so the buffers of a frame are kept and only grow when a frame has more detections than any before it.
+ */
+public class GamePieceTracker {
+    /**
+     * The 99% gate of the chi-squared distribution with 2 degrees of freedom
+     */
+    private static final double ASSOCIATION_GATE = 9.21;
+    private static final int CONFIRMATION_UPDATES = 3;
+    private static final double
+            MAXIMUM_COAST_SECONDS = 0.6,
+            MEASUREMENT_STANDARD_DEVIATION = 0.05,
+            MEASUREMENT_STANDARD_DEVIATION_PER_SQUARED_METER = 0.02,
+            LOCK_SWITCH_MARGIN_SECONDS = 0.3;
+
+    private final String tracksLogKey, trackCountLogKey;
+    private final DetectionCameraIO camera;
+    private final Transform3d robotToCamera;
+    /**
+     * The camera's rotation on the robot, row by row, so rays can be rotated without allocating.
+     */
+    private final double[] cameraRotationMatrix = new double[9];
+    private final double objectHeightMeters, maximumSpeedMetersPerSecond, maximumAngularSpeedRadiansPerSecond;
+
+    private final List<ObjectTrack> tracks = new ArrayList<>();
+    private final List<ObjectTrack> rankedTracks = new ArrayList<>();
+    private double[] rankedCosts = new double[0];
+
+    private int detectionCount = 0;
+    private double[] detectionXs = new double[0], detectionYs = new double[0], detectionVariances = new double[0];
+    private boolean[] isDetectionMatched = new boolean[0], isTrackMatched = new boolean[0];
+
+    private int pairCount = 0;
+    private double[] pairSquaredDistances = new double[0];
+    private int[] pairTrackIndices = new int[0], pairDetectionIndices = new int[0];
+
+    private Pose2d[] loggedTracks = new Pose2d[0];
+
+    private double lastResultTimestampSeconds = 0;
+    private int nextTrackID = 0;
+    private ObjectTrack lockedTrack = null;
+
+    /**
+     * @param robotToCamera                       Where the camera is on the robot
+     * @param objectHeightMeters                  The height of the tracked pieces' centers above the floor
+     * @param maximumSpeedMetersPerSecond         The robot's top speed, to estimate the time to reach a piece
+     * @param maximumAngularSpeedRadiansPerSecond The robot's top turning speed, to estimate the time to face a piece
+     */
+    public GamePieceTracker(String name, DetectionCameraIO camera, Transform3d robotToCamera, double objectHeightMeters,
+                            double maximumSpeedMetersPerSecond, double maximumAngularSpeedRadiansPerSecond) {
+        this.camera = camera;
+        this.robotToCamera = robotToCamera;
+        this.objectHeightMeters = objectHeightMeters;
+        this.maximumSpeedMetersPerSecond = maximumSpeedMetersPerSecond;
+        this.maximumAngularSpeedRadiansPerSecond = maximumAngularSpeedRadiansPerSecond;
+
+        // Every column is where the camera's rotation takes an axis
+        for (int column = 0; column < 3; column++) {
+            final Translation3d axis = new Translation3d(column == 0 ? 1 : 0, column == 1 ? 1 : 0, column == 2 ? 1 : 0)
+                    .rotateBy(robotToCamera.getRotation());
+
+            cameraRotationMatrix[column] = axis.getX();
+            cameraRotationMatrix[3 + column] = axis.getY();
+            cameraRotationMatrix[6 + column] = axis.getZ();
+        }
+
+        tracksLogKey = "ObjectTrackers/" + name + "/Tracks";
+        trackCountLogKey = "ObjectTrackers/" + name + "/TrackCount";
+    }
+
+    /**
+     * Call this once every loop, after the camera's inputs were refreshed.
+     */
+    public void update() {
+        final double resultTimestampSeconds = camera.getLatestResultTimestampSeconds();
+
+        if (resultTimestampSeconds > lastResultTimestampSeconds && camera.getYaws() != null) {
+            lastResultTimestampSeconds = resultTimestampSeconds;
+            processResult(resultTimestampSeconds);
+        }
+
+        final double currentTimestampSeconds = Timer.getFPGATimestamp();
+
+        for (int i = tracks.size() - 1; i >= 0; i--) {
+            if (currentTimestampSeconds - tracks.get(i).getLastUpdateTimestampSeconds() > MAXIMUM_COAST_SECONDS) tracks.remove(i);
+        }
+
+        logTracks();
+    }
+
+    /**
+     * @return The confirmed tracks, cheapest to drive to first
+     */
+    public List<ObjectTrack> getRankedTracks(Pose2d robotPose) {
+        rankedTracks.clear();
+
+        if (rankedCosts.length < tracks.size()) rankedCosts = new double[tracks.size()];
+
+        // Insertion sort, there are only a few tracks and it sorts the costs along without allocating
+        for (ObjectTrack track : tracks) {
+            if (!isConfirmed(track)) continue;
+
+            final double cost = getTravelCostSeconds(track, robotPose);
+            int index = rankedTracks.size();
+
+            rankedTracks.add(track);
+
+            for (; index > 0 && rankedCosts[index - 1] > cost; index--) {
+                rankedCosts[index] = rankedCosts[index - 1];
+                rankedTracks.set(index, rankedTracks.get(index - 1));
+            }
+
+            rankedCosts[index] = cost;
+            rankedTracks.set(index, track);
+        }
+
+        return rankedTracks;
+    }
+
+    /**
+     * Keeps returning the same track while it is followed, and only moves to another one that is clearly cheaper to reach.
+     *
+     * @return The track to drive to, or null if no piece is tracked
+     */
+    public ObjectTrack getLockedTrack(Pose2d robotPose) {
+        final List<ObjectTrack> ranked = getRankedTracks(robotPose);
+
+        if (ranked.isEmpty()) {
+            lockedTrack = null;
+            return null;
+        }
+
+        final ObjectTrack cheapestTrack = ranked.get(0);
+
+        if (lockedTrack == null || !ranked.contains(lockedTrack)
+                || getTravelCostSeconds(cheapestTrack, robotPose) < getTravelCostSeconds(lockedTrack, robotPose) - LOCK_SWITCH_MARGIN_SECONDS)
+            lockedTrack = cheapestTrack;
+
+        return lockedTrack;
+    }
+
+    public void clear() {
+        tracks.clear();
+        lockedTrack = null;
+    }
+
+    private void processResult(double resultTimestampSeconds) {
+        final Pose2d robotPoseAtResult = POSE_ESTIMATOR.getEstimatedPoseAtTimestamp(resultTimestampSeconds);
+
+        if (robotPoseAtResult == null) return;
+
+        for (ObjectTrack track : tracks) track.predict(resultTimestampSeconds);
+
+        final double[] yaws = camera.getYaws(), pitches = camera.getPitches();
+
+        ensureDetectionCapacity(yaws.length);
+        detectionCount = 0;
+
+        for (int i = 0; i < yaws.length; i++) {
+            projectToFloor(robotPoseAtResult, yaws[i], pitches[i]);
+        }
+
+        associateDetections(resultTimestampSeconds);
+    }
+
+    /**
+     * Intersects the ray of a detection with the plane of the pieces' centers, and adds the point as a detection with its
+     * measurement variance. Does nothing if the ray doesn't reach the plane.
+     */
+    private void projectToFloor(Pose2d robotPose, double yawDegrees, double pitchDegrees) {
+        final double cosine = robotPose.getRotation().getCos(), sine = robotPose.getRotation().getSin();
+
+        // The angles are on the image plane, with the yaw positive to the right
+        final double cameraRayY = -Math.tan(Math.toRadians(yawDegrees)), cameraRayZ = Math.tan(Math.toRadians(pitchDegrees));
+
+        final double robotRayX = cameraRotationMatrix[0] + cameraRotationMatrix[1] * cameraRayY + cameraRotationMatrix[2] * cameraRayZ;
+        final double robotRayY = cameraRotationMatrix[3] + cameraRotationMatrix[4] * cameraRayY + cameraRotationMatrix[5] * cameraRayZ;
+        final double rayZ = cameraRotationMatrix[6] + cameraRotationMatrix[7] * cameraRayY + cameraRotationMatrix[8] * cameraRayZ;
+
+        final double distanceAlongRay = (objectHeightMeters - robotToCamera.getZ()) / rayZ;
+
+        if (!(distanceAlongRay > 0)) return;
+
+        final double cameraX = robotPose.getX() + cosine * robotToCamera.getX() - sine * robotToCamera.getY();
+        final double cameraY = robotPose.getY() + sine * robotToCamera.getX() + cosine * robotToCamera.getY();
+
+        final double offsetX = (cosine * robotRayX - sine * robotRayY) * distanceAlongRay;
+        final double offsetY = (sine * robotRayX + cosine * robotRayY) * distanceAlongRay;
+        final double range = Math.hypot(offsetX, offsetY);
+        final double standardDeviation = MEASUREMENT_STANDARD_DEVIATION + MEASUREMENT_STANDARD_DEVIATION_PER_SQUARED_METER * range * range;
+
+        detectionXs[detectionCount] = cameraX + offsetX;
+        detectionYs[detectionCount] = cameraY + offsetY;
+        detectionVariances[detectionCount] = standardDeviation * standardDeviation;
+        detectionCount++;
+    }
+
+    /**
+     * Matches the closest track and detection pairs inside the gate first, then starts new tracks from the unmatched detections.
+     */
+    private void associateDetections(double timestampSeconds) {
+        ensurePairCapacity(tracks.size() * detectionCount);
+        pairCount = 0;
+
+        for (int trackIndex = 0; trackIndex < tracks.size(); trackIndex++) {
+            for (int detectionIndex = 0; detectionIndex < detectionCount; detectionIndex++) {
+                final double squaredDistance = tracks.get(trackIndex).getSquaredDistance(
+                        detectionXs[detectionIndex], detectionYs[detectionIndex], detectionVariances[detectionIndex]);
+
+                if (squaredDistance < ASSOCIATION_GATE) addPair(squaredDistance, trackIndex, detectionIndex);
+            }
+        }
+
+        if (isTrackMatched.length < tracks.size()) isTrackMatched = new boolean[tracks.size()];
+
+        Arrays.fill(isTrackMatched, false);
+        Arrays.fill(isDetectionMatched, false);
+
+        for (int pair = 0; pair < pairCount; pair++) {
+            final int trackIndex = pairTrackIndices[pair], detectionIndex = pairDetectionIndices[pair];
+
+            if (isTrackMatched[trackIndex] || isDetectionMatched[detectionIndex]) continue;
+
+            tracks.get(trackIndex).update(detectionXs[detectionIndex], detectionYs[detectionIndex], detectionVariances[detectionIndex], timestampSeconds);
+
+            isTrackMatched[trackIndex] = true;
+            isDetectionMatched[detectionIndex] = true;
+        }
+
+        for (int detectionIndex = 0; detectionIndex < detectionCount; detectionIndex++) {
+            if (isDetectionMatched[detectionIndex]) continue;
+
+            tracks.add(new ObjectTrack(nextTrackID++, detectionXs[detectionIndex], detectionYs[detectionIndex],
+                    detectionVariances[detectionIndex], timestampSeconds));
+        }
+    }
+
+    /**
+     * Inserts a pair, keeping the pairs sorted by their squared distance.
+     */
+    private void addPair(double squaredDistance, int trackIndex, int detectionIndex) {
+        int index = pairCount++;
+
+        for (; index > 0 && pairSquaredDistances[index - 1] > squaredDistance; index--) {
+            pairSquaredDistances[index] = pairSquaredDistances[index - 1];
+            pairTrackIndices[index] = pairTrackIndices[index - 1];
+            pairDetectionIndices[index] = pairDetectionIndices[index - 1];
+        }
+
+        pairSquaredDistances[index] = squaredDistance;
+        pairTrackIndices[index] = trackIndex;
+        pairDetectionIndices[index] = detectionIndex;
+    }
+
+    private void ensureDetectionCapacity(int capacity) {
+        if (detectionXs.length >= capacity) return;
+
+        detectionXs = new double[capacity];
+        detectionYs = new double[capacity];
+        detectionVariances = new double[capacity];
+        isDetectionMatched = new boolean[capacity];
+    }
+
+    private void ensurePairCapacity(int capacity) {
+        if (pairSquaredDistances.length >= capacity) return;
+
+        pairSquaredDistances = new double[capacity];
+        pairTrackIndices = new int[capacity];
+        pairDetectionIndices = new int[capacity];
+    }
+
+    private double getTravelCostSeconds(ObjectTrack track, Pose2d robotPose) {
+        final double differenceX = track.getX() - robotPose.getX(), differenceY = track.getY() - robotPose.getY();
+        final double turnRadians = Math.abs(Math.IEEEremainder(Math.atan2(differenceY, differenceX) - robotPose.getRotation().getRadians(), 2 * Math.PI));
+
+        return Math.hypot(differenceX, differenceY) / maximumSpeedMetersPerSecond + turnRadians / maximumAngularSpeedRadiansPerSecond;
+    }
+
+    private boolean isConfirmed(ObjectTrack track) {
+        return track.getUpdateCount() >= CONFIRMATION_UPDATES;
+    }
+
+    /**
+     * The logged array is only replaced when the number of confirmed tracks changes.
+     */
+    private void logTracks() {
+        int confirmedCount = 0;
+
+        for (ObjectTrack track : tracks) {
+            if (isConfirmed(track)) confirmedCount++;
+        }
+
+        if (loggedTracks.length != confirmedCount) loggedTracks = new Pose2d[confirmedCount];
+
+        int index = 0;
+
+        for (ObjectTrack track : tracks) {
+            if (isConfirmed(track)) loggedTracks[index++] = new Pose2d(track.getX(), track.getY(), Rotation2d.kZero);
+        }
+
+        Logger.recordOutput(tracksLogKey, loggedTracks);
+        Logger.recordOutput(trackCountLogKey, tracks.size());
+    }
+}
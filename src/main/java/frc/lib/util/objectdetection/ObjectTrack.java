@@ -0,0 +1,130 @@
+package frc.lib.util.objectdetection;
+
+/**
+ * A game piece followed over several frames, with a constant velocity Kalman filter on its position on the field.
+ * <p>
+ * The axes are independent, so each is filtered on its own with a 2x2 covariance, which keeps the filter allocation free.
+ * Pieces mostly lie still, the acceleration noise only lets a track follow a piece that was pushed around.
+ * The state is kept at the time of the last frame, since frames arrive late and the filter can't go back in time.
+ */
+public class ObjectTrack {
+    private static final double
+            ACCELERATION_NOISE = 0.1,
+            INITIAL_VELOCITY_VARIANCE = 1;
+
+    private final int id;
+    private final Axis x = new Axis(), y = new Axis();
+
+    private double lastUpdateTimestampSeconds, lastPredictionTimestampSeconds;
+    private int updateCount = 1;
+
+    ObjectTrack(int id, double measuredX, double measuredY, double measurementVariance, double timestampSeconds) {
+        this.id = id;
+
+        x.reset(measuredX, measurementVariance);
+        y.reset(measuredY, measurementVariance);
+
+        lastUpdateTimestampSeconds = timestampSeconds;
+        lastPredictionTimestampSeconds = timestampSeconds;
+    }
+
+    public int getID() {
+        return id;
+    }
+
+    public double getX() {
+        return x.position;
+    }
+
+    public double getY() {
+        return y.position;
+    }
+
+    public double getXVelocity() {
+        return x.velocity;
+    }
+
+    public double getYVelocity() {
+        return y.velocity;
+    }
+
+    public int getUpdateCount() {
+        return updateCount;
+    }
+
+    public double getLastUpdateTimestampSeconds() {
+        return lastUpdateTimestampSeconds;
+    }
+
+    /**
+     * Moves the track forward to the time of a new frame. Earlier times are ignored.
+     */
+    void predict(double timestampSeconds) {
+        final double dt = timestampSeconds - lastPredictionTimestampSeconds;
+
+        if (dt <= 0) return;
+
+        x.predict(dt);
+        y.predict(dt);
+
+        lastPredictionTimestampSeconds = timestampSeconds;
+    }
+
+    /**
+     * @return The squared Mahalanobis distance of a measurement from the track, to gate and associate measurements with
+     */
+    double getSquaredDistance(double measuredX, double measuredY, double measurementVariance) {
+        return x.getSquaredDistance(measuredX, measurementVariance) + y.getSquaredDistance(measuredY, measurementVariance);
+    }
+
+    void update(double measuredX, double measuredY, double measurementVariance, double timestampSeconds) {
+        x.update(measuredX, measurementVariance);
+        y.update(measuredY, measurementVariance);
+
+        lastUpdateTimestampSeconds = timestampSeconds;
+        updateCount++;
+    }
+
+    private static class Axis {
+        private double position, velocity;
+        private double positionVariance, covariance, velocityVariance;
+
+        private void reset(double measuredPosition, double measurementVariance) {
+            position = measuredPosition;
+            velocity = 0;
+
+            positionVariance = measurementVariance;
+            covariance = 0;
+            velocityVariance = INITIAL_VELOCITY_VARIANCE;
+        }
+
+        private void predict(double dt) {
+            position += velocity * dt;
+
+            // P = F P F^T + Q, with white noise acceleration
+            positionVariance += 2 * dt * covariance + dt * dt * velocityVariance + ACCELERATION_NOISE * dt * dt * dt / 3;
+            covariance += dt * velocityVariance + ACCELERATION_NOISE * dt * dt / 2;
+            velocityVariance += ACCELERATION_NOISE * dt;
+        }
+
+        private double getSquaredDistance(double measuredPosition, double measurementVariance) {
+            final double innovation = measuredPosition - position;
+
+            return innovation * innovation / (positionVariance + measurementVariance);
+        }
+
+        private void update(double measuredPosition, double measurementVariance) {
+            final double innovationVariance = positionVariance + measurementVariance;
+            final double positionGain = positionVariance / innovationVariance;
+            final double velocityGain = covariance / innovationVariance;
+            final double innovation = measuredPosition - position;
+
+            position += positionGain * innovation;
+            velocity += velocityGain * innovation;
+
+            velocityVariance -= velocityGain * covariance;
+            positionVariance *= 1 - positionGain;
+            covariance *= 1 - positionGain;
+        }
+    }
+}
@@ -25,14 +25,19 @@ public class PhotonDetectionCamera extends DetectionCameraIO {
 
         if (results.isEmpty()) return;
 
-        final List<PhotonTrackedTarget> latestResultTargets = results.get(0).getTargets();
-        final double[] array = new double[latestResultTargets.size()];
-
-        for(int i = 0; i < array.length; i++) {
-            array[i] = latestResultTargets.get(i).getYaw();
+        final PhotonPipelineResult latestResult = results.get(results.size() - 1);
+        final List<PhotonTrackedTarget> latestResultTargets = latestResult.getTargets();
+        final double[] yaws = new double[latestResultTargets.size()];
+        final double[] pitches = new double[yaws.length];
+
+        for(int i = 0; i < yaws.length; i++) {
+            yaws[i] = latestResultTargets.get(i).getYaw();
+            pitches[i] = latestResultTargets.get(i).getPitch();
         }
 
-        inputs.yaws = array;
+        inputs.yaws = yaws;
+        inputs.pitches = pitches;
+        inputs.latestResultTimestampSeconds = latestResult.getTimestampSeconds();
 
         final double[] targetYawValues = getClosestTargetYawValues(latestResultTargets);
 
@@ -1,44 +1,47 @@
 package frc.lib.util.objectdetection;
 
-import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Quaternion;
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Transform3d;
-import edu.wpi.first.math.geometry.Translation2d;
-import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.wpilibj.Timer;
+import frc.lib.util.objectdetection.SimulatedFieldObjects.FieldObject;
 
-import static frc.lib.math.MathUtils.getAngleFromPoseToPose;
-import static frc.lib.math.MathUtils.getPitchFromPoseToPose;
-import static frc.robot.RobotContainer.POSE_ESTIMATOR;
+import java.util.Arrays;
+import java.util.function.Consumer;
 
+/**
+ * Sees the objects of {@link SimulatedFieldObjects} that are inside its view.
+ * Only the objects in the grid cells under the view are tested, without allocating anything per object.
+ */
 public class SimulatedDetectionCamera extends DetectionCameraIO {
-    private static final Rotation2d HORIZONTAL_FOV = Rotation2d.fromDegrees(75);
+    private static final Rotation2d
+            HORIZONTAL_FOV = Rotation2d.fromDegrees(75),
+            VERTICAL_FOV = Rotation2d.fromDegrees(55);
     private static final double
             MAXIMUM_DISTANCE_METERS = 5,
             MINIMUM_DISTANCE_METERS = 0.05;
 
-    private static final Translation2d[] NOTES_ON_FIELD = new Translation2d[]{
-            new Translation2d(2.9, 7),
-            new Translation2d(2.9, 5.5),
-            new Translation2d(2.9, 4.1),
-            new Translation2d(8.3, 7.45),
-            new Translation2d(8.3, 5.75),
-            new Translation2d(8.3, 4.1),
-            new Translation2d(8.3, 2.45),
-            new Translation2d(8.3, 0.75),
-            new Translation2d(13.65, 7),
-            new Translation2d(13.65, 5.5),
-            new Translation2d(13.65, 4.1)
-    };
-
-    private final String name;
+    private static final double
+            HALF_HORIZONTAL_FOV_TANGENT = Math.tan(HORIZONTAL_FOV.getRadians() / 2),
+            HALF_VERTICAL_FOV_TANGENT = Math.tan(VERTICAL_FOV.getRadians() / 2);
+
     private final Transform3d robotToCamera;
+    private final Consumer<FieldObject> objectTester = this::testObject;
+
+    /**
+     * The camera's position, and the rows of the matrix that rotates the field's axes into the camera's.
+     */
+    private double cameraX, cameraY, cameraZ;
+    private final double[][] fieldToCamera = new double[3][3];
+
+    private double[] visibleYaws = new double[8], visiblePitches = new double[8];
+    private int visibleCount;
+    private double closestDistance, closestYaw, closestPitch;
 
     public SimulatedDetectionCamera(String name, Transform3d robotToCamera) {
         super(name);
 
-        this.name = name;
         this.robotToCamera = robotToCamera;
     }
 
@@ -46,59 +49,129 @@ public class SimulatedDetectionCamera extends DetectionCameraIO {
     protected void refreshInputs(DetectionCameraInputsAutoLogged inputs) {
         if (robotToCamera == null) return;
 
-        final double[] closestObjectValues = getClosestVisibleObjectYaw(POSE_ESTIMATOR.getCurrentPose());
+        updateCameraPose(new Pose3d(SimulatedFieldObjects.getRobotPose()).transformBy(robotToCamera));
 
-        if (closestObjectValues[0] != -10069 && closestObjectValues[1] != -10069) {
-            inputs.closestTargetYaw = -closestObjectValues[0];
-            inputs.closestTargetPitch = closestObjectValues[1];
-            inputs.yaws = new double[]{inputs.closestTargetYaw};
-        }
+        visibleCount = 0;
+        closestDistance = Double.POSITIVE_INFINITY;
+
+        final double[] viewBounds = getViewBounds();
+        SimulatedFieldObjects.forEachObjectNear(viewBounds[0], viewBounds[1], viewBounds[2], viewBounds[3], objectTester);
+
+        inputs.yaws = Arrays.copyOf(visibleYaws, visibleCount);
+        inputs.pitches = Arrays.copyOf(visiblePitches, visibleCount);
+        inputs.latestResultTimestampSeconds = Timer.getFPGATimestamp();
+
+        if (visibleCount == 0) return;
+
+        inputs.closestTargetYaw = closestYaw;
+        inputs.closestTargetPitch = closestPitch;
     }
 
-    private double[] getClosestVisibleObjectYaw(Pose2d robotPose) {
-        Rotation2d closestObjectYaw = null;
-        double closestDistance = Double.POSITIVE_INFINITY;
-        double closestPitch = 0;
+    private void updateCameraPose(Pose3d cameraPose) {
+        cameraX = cameraPose.getX();
+        cameraY = cameraPose.getY();
+        cameraZ = cameraPose.getZ();
+
+        final Quaternion quaternion = cameraPose.getRotation().getQuaternion();
+        final double w = quaternion.getW(), x = quaternion.getX(), y = quaternion.getY(), z = quaternion.getZ();
+
+        // The transpose of the camera's rotation matrix
+        fieldToCamera[0][0] = 1 - 2 * (y * y + z * z);
+        fieldToCamera[0][1] = 2 * (x * y + w * z);
+        fieldToCamera[0][2] = 2 * (x * z - w * y);
+        fieldToCamera[1][0] = 2 * (x * y - w * z);
+        fieldToCamera[1][1] = 1 - 2 * (x * x + z * z);
+        fieldToCamera[1][2] = 2 * (y * z + w * x);
+        fieldToCamera[2][0] = 2 * (x * z + w * y);
+        fieldToCamera[2][1] = 2 * (y * z - w * x);
+        fieldToCamera[2][2] = 1 - 2 * (x * x + y * y);
+    }
 
-        final Pose3d cameraPose = new Pose3d(robotPose).transformBy(robotToCamera);
+    /**
+     * The box on the floor that contains everything in view, from the headings of the view's four edges.
+     *
+     * @return {minimumX, minimumY, maximumX, maximumY}
+     */
+    private double[] getViewBounds() {
+        final double forwardX = fieldToCamera[0][0], forwardY = fieldToCamera[0][1];
 
-        for (Translation2d objectPlacement : NOTES_ON_FIELD) {
-            final Rotation2d angleToObject = getAngleFromPoseToPose(objectPlacement, cameraPose.toPose2d().getTranslation());
+        // Looking straight up or down, the view can reach every heading
+        if (Math.hypot(forwardX, forwardY) < 1E-6) return getBoundsBetween(0, 2 * Math.PI);
 
-            if (!isWithinHorizontalFOV(angleToObject, cameraPose.toPose2d()) || !isWithinDistance(objectPlacement, cameraPose.toPose2d()))
-                continue;
+        final double heading = Math.atan2(forwardY, forwardX);
+        double minimumAngle = 0, maximumAngle = 0;
 
-            final double distance = getObjectDistance(objectPlacement, robotPose);
+        for (int corner = 0; corner < 4; corner++) {
+            final double left = (corner & 1) == 0 ? HALF_HORIZONTAL_FOV_TANGENT : -HALF_HORIZONTAL_FOV_TANGENT;
+            final double up = (corner & 2) == 0 ? HALF_VERTICAL_FOV_TANGENT : -HALF_VERTICAL_FOV_TANGENT;
 
-            if (distance < closestDistance) {
-                closestObjectYaw = angleToObject.minus(robotPose.getRotation());
+            // The camera's axes are the rows of the field to camera rotation
+            final double edgeX = fieldToCamera[0][0] + left * fieldToCamera[1][0] + up * fieldToCamera[2][0];
+            final double edgeY = fieldToCamera[0][1] + left * fieldToCamera[1][1] + up * fieldToCamera[2][1];
 
-                 final Pose3d objectPose = new Pose3d(
-                        new Translation3d(objectPlacement.getX(), objectPlacement.getY(), 0),
-                        new Rotation3d()
-                );
+            final double angle = Math.IEEEremainder(Math.atan2(edgeY, edgeX) - heading, 2 * Math.PI);
 
-                closestPitch = getPitchFromPoseToPose(objectPose, cameraPose).getDegrees();
-                closestDistance = distance;
-            }
+            minimumAngle = Math.min(minimumAngle, angle);
+            maximumAngle = Math.max(maximumAngle, angle);
         }
 
-        if (closestObjectYaw == null) return new double[]{-10069, -10069};
-
-        return new double[]{closestObjectYaw.getDegrees(), closestPitch};
+        return getBoundsBetween(heading + minimumAngle, heading + maximumAngle);
     }
 
-    private boolean isWithinHorizontalFOV(Rotation2d objectYaw, Pose2d cameraPose) {
-        return Math.abs(objectYaw.minus(cameraPose.getRotation()).getRadians()) <= HORIZONTAL_FOV.getRadians() / 2;
+    private double[] getBoundsBetween(double firstHeading, double lastHeading) {
+        final double[] bounds = {cameraX, cameraY, cameraX, cameraY};
+
+        includeHeading(bounds, firstHeading);
+        includeHeading(bounds, lastHeading);
+
+        // The view bulges furthest along the axes it crosses
+        for (double axis = Math.ceil(firstHeading / (Math.PI / 2)) * (Math.PI / 2); axis < lastHeading; axis += Math.PI / 2)
+            includeHeading(bounds, axis);
+
+        return bounds;
     }
 
-    private boolean isWithinDistance(Translation2d objectPlacement, Pose2d cameraPose) {
-        final double distance = getObjectDistance(objectPlacement, cameraPose);
-        return distance <= MAXIMUM_DISTANCE_METERS && distance >= MINIMUM_DISTANCE_METERS;
+    private void includeHeading(double[] bounds, double heading) {
+        final double x = cameraX + MAXIMUM_DISTANCE_METERS * Math.cos(heading);
+        final double y = cameraY + MAXIMUM_DISTANCE_METERS * Math.sin(heading);
+
+        bounds[0] = Math.min(bounds[0], x);
+        bounds[1] = Math.min(bounds[1], y);
+        bounds[2] = Math.max(bounds[2], x);
+        bounds[3] = Math.max(bounds[3], y);
     }
 
-    private double getObjectDistance(Translation2d objectPlacement, Pose2d cameraPose) {
-        final Translation2d difference = objectPlacement.minus(cameraPose.getTranslation());
-        return difference.getNorm();
+    private void testObject(FieldObject object) {
+        final double differenceX = object.x - cameraX, differenceY = object.y - cameraY, differenceZ = object.z - cameraZ;
+        final double distance = Math.sqrt(differenceX * differenceX + differenceY * differenceY + differenceZ * differenceZ);
+
+        if (distance > MAXIMUM_DISTANCE_METERS || distance < MINIMUM_DISTANCE_METERS) return;
+
+        final double forward = fieldToCamera[0][0] * differenceX + fieldToCamera[0][1] * differenceY + fieldToCamera[0][2] * differenceZ;
+
+        if (forward <= 0) return;
+
+        final double left = fieldToCamera[1][0] * differenceX + fieldToCamera[1][1] * differenceY + fieldToCamera[1][2] * differenceZ;
+        final double up = fieldToCamera[2][0] * differenceX + fieldToCamera[2][1] * differenceY + fieldToCamera[2][2] * differenceZ;
+
+        if (Math.abs(left) > forward * HALF_HORIZONTAL_FOV_TANGENT || Math.abs(up) > forward * HALF_VERTICAL_FOV_TANGENT) return;
+
+        // Like PhotonVision, the angles are measured on the image plane, the yaw is positive to the right and the pitch upwards
+        final double yaw = -Math.toDegrees(Math.atan2(left, forward));
+        final double pitch = Math.toDegrees(Math.atan2(up, forward));
+
+        if (visibleCount == visibleYaws.length) {
+            visibleYaws = Arrays.copyOf(visibleYaws, visibleCount * 2);
+            visiblePitches = Arrays.copyOf(visiblePitches, visibleCount * 2);
+        }
+
+        visibleYaws[visibleCount] = yaw;
+        visiblePitches[visibleCount++] = pitch;
+
+        if (distance < closestDistance) {
+            closestDistance = distance;
+            closestYaw = yaw;
+            closestPitch = pitch;
+        }
     }
 }
@@ -0,0 +1,136 @@
+package frc.lib.util.objectdetection;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import org.littletonrobotics.junction.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The game pieces on the simulated field, shared by all simulated detection cameras.
+ * <p>
+ * Objects are kept in a grid of square cells, so a camera only tests the objects in the cells its view can reach.
+ * The world is updated once per robot loop with {@link #update(Pose2d)}, and every camera sees it from the same robot pose.
+ */
+public class SimulatedFieldObjects {
+    private static final double CELL_SIZE_METERS = 1;
+    private static final int
+            COLUMNS = 18,
+            ROWS = 9;
+
+    @SuppressWarnings("unchecked")
+    private static final List<FieldObject>[] CELLS = new List[COLUMNS * ROWS];
+    private static final Map<String, List<FieldObject>> OBJECTS_BY_TYPE = new HashMap<>();
+    private static final Map<String, Pose3d[]> LOGGED_POSES = new HashMap<>();
+
+    private static Pose2d robotPose = new Pose2d();
+    private static boolean hasChanged = true;
+
+    static {
+        for (int i = 0; i < CELLS.length; i++) CELLS[i] = new ArrayList<>();
+    }
+
+    public static class FieldObject {
+        public final String type;
+        public final double x, y, z;
+
+        private FieldObject(String type, double x, double y, double z) {
+            this.type = type;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+    }
+
+    public static FieldObject addObject(String type, double x, double y, double z) {
+        final FieldObject object = new FieldObject(type, x, y, z);
+
+        CELLS[getCell(getColumn(x), getRow(y))].add(object);
+        OBJECTS_BY_TYPE.computeIfAbsent(type, key -> new ArrayList<>()).add(object);
+
+        hasChanged = true;
+        return object;
+    }
+
+    /**
+     * @return Whether the object was still on the field
+     */
+    public static boolean removeObject(FieldObject object) {
+        if (!CELLS[getCell(getColumn(object.x), getRow(object.y))].remove(object)) return false;
+
+        OBJECTS_BY_TYPE.get(object.type).remove(object);
+
+        hasChanged = true;
+        return true;
+    }
+
+    public static void clear() {
+        for (List<FieldObject> cell : CELLS) cell.clear();
+        for (List<FieldObject> objects : OBJECTS_BY_TYPE.values()) objects.clear();
+
+        hasChanged = true;
+    }
+
+    /**
+     * The objects in all cells that overlap the given box on the floor. They may lie outside the box, so they still need to be tested.
+     */
+    static void forEachObjectNear(double minimumX, double minimumY, double maximumX, double maximumY, Consumer<FieldObject> consumer) {
+        final int lastColumn = getColumn(maximumX), lastRow = getRow(maximumY);
+
+        for (int column = getColumn(minimumX); column <= lastColumn; column++) {
+            for (int row = getRow(minimumY); row <= lastRow; row++) {
+                for (FieldObject object : CELLS[getCell(column, row)]) consumer.accept(object);
+            }
+        }
+    }
+
+    static Pose2d getRobotPose() {
+        return robotPose;
+    }
+
+    /**
+     * Call this once every robot loop, after the game pieces were picked up or placed.
+     *
+     * @param truePose Where the robot really is, which the cameras see from
+     */
+    public static void update(Pose2d truePose) {
+        robotPose = truePose;
+
+        if (hasChanged) updateLoggedPoses();
+
+        for (Map.Entry<String, Pose3d[]> poses : LOGGED_POSES.entrySet())
+            Logger.recordOutput("FieldObjects/" + poses.getKey(), poses.getValue());
+    }
+
+    private static void updateLoggedPoses() {
+        for (Map.Entry<String, List<FieldObject>> objects : OBJECTS_BY_TYPE.entrySet()) {
+            final Pose3d[] poses = new Pose3d[objects.getValue().size()];
+
+            for (int i = 0; i < poses.length; i++) {
+                final FieldObject object = objects.getValue().get(i);
+                poses[i] = new Pose3d(object.x, object.y, object.z, new Rotation3d());
+            }
+
+            LOGGED_POSES.put(objects.getKey(), poses);
+        }
+
+        hasChanged = false;
+    }
+
+    private static int getColumn(double x) {
+        return Math.max(0, Math.min(COLUMNS - 1, (int) Math.floor(x / CELL_SIZE_METERS)));
+    }
+
+    private static int getRow(double y) {
+        return Math.max(0, Math.min(ROWS - 1, (int) Math.floor(y / CELL_SIZE_METERS)));
+    }
+
+    private static int getCell(int column, int row) {
+        return row * COLUMNS + column;
+    }
+}
@@ -6,7 +6,9 @@ import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.wpilibj.Filesystem;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.lib.generic.hardware.DeviceConfigurator;
 import frc.lib.generic.hardware.HardwareManager;
+import frc.robot.simulation.SimulatedGamePieces;
 import org.json.simple.parser.ParseException;
 import org.littletonrobotics.junction.LoggedRobot;
 import org.littletonrobotics.junction.Logger;
@@ -17,6 +19,7 @@ import java.io.IOException;
 import static frc.lib.math.Optimizations.isColliding;
 import static frc.robot.RobotContainer.*;
 import static frc.robot.poseestimation.apriltagcamera.AprilTagCameraConstants.VISION_SIMULATION;
+import static frc.robot.subsystems.swerve.SwerveModuleConstants.CHASSIS_SIMULATION;
 
 public class Robot extends LoggedRobot {
     private final CommandScheduler commandScheduler = CommandScheduler.getInstance();
@@ -27,6 +30,7 @@ public class Robot extends LoggedRobot {
         robotContainer = new RobotContainer();
         SignalLogger.enableAutoLogging(false);
         HardwareManager.initialize(this);
+        DeviceConfigurator.applyQueuedConfigurations();
     }
 
     @Override
@@ -65,7 +69,7 @@ public class Robot extends LoggedRobot {
         final Pose2d startingPose = path.getStartingHolonomicPose().get();
 
         LEDS.setLEDToPositionIndicator(
-                POSE_ESTIMATOR.getCurrentPose().getTranslation(),
+                ROBOT_STATE.getPose().getTranslation(),
                 startingPose.getTranslation()
         );
     }
@@ -86,7 +90,10 @@ public class Robot extends LoggedRobot {
     @Override
     public void simulationPeriodic() {
         HardwareManager.updateSimulation();
-        VISION_SIMULATION.update(POSE_ESTIMATOR.getOdometryPose());
+
+        CHASSIS_SIMULATION.periodic();
+        VISION_SIMULATION.update(CHASSIS_SIMULATION.getPose());
+        SimulatedGamePieces.update(CHASSIS_SIMULATION.getPose());
 
         robotContainer.updateComponentPoses();
     }
@@ -8,6 +8,7 @@ import edu.wpi.first.wpilibj2.command.button.Trigger;
 import frc.lib.util.flippable.Flippable;
 import frc.robot.commands.Questionnaire;
 import frc.robot.poseestimation.poseestimator.PoseEstimator;
+import frc.robot.poseestimation.poseestimator.RobotState;
 import frc.robot.subsystems.algaeblaster.AlgaeBlaster;
 import frc.robot.subsystems.climb.Climb;
 import frc.robot.subsystems.coralintake.CoralIntake;
@@ -28,6 +29,8 @@ public class RobotContainer {
             REAR_RIGHT_CAMERA
     );
 
+    public static final RobotState ROBOT_STATE = new RobotState();
+
     public static final Swerve SWERVE = new Swerve();
     public static final Elevator ELEVATOR = new Elevator();
     public static final CoralIntake CORAL_INTAKE = new CoralIntake();
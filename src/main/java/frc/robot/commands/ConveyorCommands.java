@@ -21,12 +21,12 @@ public class ConveyorCommands {
         final ConditionalCommand prepareCoralSlowly = new ConditionalCommand(
                 CORAL_INTAKE.setMotorVoltage(-1).onlyWhile(CORAL_INTAKE::hasCoral)
                         .andThen(CORAL_INTAKE.setMotorVoltage(-1.5).withTimeout(0.2))
-                        .andThen(CORAL_INTAKE.setMotorVoltage(3).until(CORAL_INTAKE::hasCoral)),
+                        .andThen(CORAL_INTAKE.intakeGamePiece(3)),
 
-                CORAL_INTAKE.setMotorVoltage(3).until(CORAL_INTAKE::hasCoral)
+                CORAL_INTAKE.intakeGamePiece(3)
                         .andThen(CORAL_INTAKE.setMotorVoltage(-1).onlyWhile(CORAL_INTAKE::hasCoral)
                                 .andThen(CORAL_INTAKE.setMotorVoltage(-1).withTimeout(0.2)))
-                        .andThen(CORAL_INTAKE.setMotorVoltage(2).until(CORAL_INTAKE::hasCoral)),
+                        .andThen(CORAL_INTAKE.intakeGamePiece(2)),
 
                 CORAL_INTAKE::hasCoral
         );
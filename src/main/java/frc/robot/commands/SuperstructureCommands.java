@@ -0,0 +1,90 @@
+package frc.robot.commands;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.FunctionalCommand;
+import frc.lib.scurve.InputParameter;
+import frc.lib.scurve.SynchronizedTrajectory;
+import frc.robot.subsystems.algaeblaster.AlgaeBlasterConstants;
+import frc.robot.subsystems.algaeblaster.AlgaeBlasterConstants.BlasterArmState;
+import frc.robot.subsystems.elevator.ElevatorConstants;
+import frc.robot.subsystems.elevator.ElevatorConstants.ElevatorHeight;
+import org.littletonrobotics.junction.Logger;
+
+import java.util.function.Supplier;
+
+import static frc.robot.RobotContainer.ALGAE_BLASTER;
+import static frc.robot.RobotContainer.ELEVATOR;
+
+public class SuperstructureCommands {
+    private static final int ELEVATOR_INDEX = 0, ARM_INDEX = 1;
+
+    private static final SynchronizedTrajectory ELEVATOR_AND_ARM_TRAJECTORY = new SynchronizedTrajectory(
+            new double[]{ElevatorConstants.SYNCHRONIZED_MAX_VELOCITY, AlgaeBlasterConstants.SYNCHRONIZED_MAX_VELOCITY},
+            new double[]{ElevatorConstants.SYNCHRONIZED_MAX_ACCELERATION, AlgaeBlasterConstants.SYNCHRONIZED_MAX_ACCELERATION},
+            new double[]{ElevatorConstants.SYNCHRONIZED_MAX_JERK, AlgaeBlasterConstants.SYNCHRONIZED_MAX_JERK}
+    );
+
+    private static final InputParameter[] ELEVATOR_AND_ARM_INPUTS = {new InputParameter(), new InputParameter()};
+    private static final double[] SAMPLED_STATE = new double[4];
+
+    /**
+     * Moves the elevator and the algae blaster arm along one jerk limited trajectory, so both arrive at the same time
+     * and nothing has to wait for the slower mechanism.
+     * This command ends once both arrived, so it should be followed by commands that hold the positions.
+     * When it ends, both mechanisms hold their last setpoint with a position request, instead of keeping the last raw voltage.
+     *
+     * @param heightSupplier the target height of the elevator, read when the command starts
+     * @param armState       the target state of the arm
+     * @return the command
+     */
+    public static Command moveElevatorAndArm(Supplier<ElevatorHeight> heightSupplier, BlasterArmState armState) {
+        final Timer timer = new Timer();
+        final double[] lastSetpoints = new double[2];
+
+        return new FunctionalCommand(
+                () -> {
+                    calculateTrajectory(heightSupplier.get(), armState);
+                    timer.restart();
+
+                    lastSetpoints[ELEVATOR_INDEX] = ELEVATOR.getPosition();
+                    lastSetpoints[ARM_INDEX] = ALGAE_BLASTER.getPosition();
+                },
+                () -> {
+                    final double time = timer.get();
+
+                    ELEVATOR_AND_ARM_TRAJECTORY.at_time(ELEVATOR_INDEX, time, SAMPLED_STATE);
+                    ELEVATOR.followSetpoint(SAMPLED_STATE[0], SAMPLED_STATE[1], SAMPLED_STATE[2]);
+                    lastSetpoints[ELEVATOR_INDEX] = SAMPLED_STATE[0];
+
+                    ELEVATOR_AND_ARM_TRAJECTORY.at_time(ARM_INDEX, time, SAMPLED_STATE);
+                    ALGAE_BLASTER.followSetpoint(SAMPLED_STATE[0], SAMPLED_STATE[1]);
+                    lastSetpoints[ARM_INDEX] = SAMPLED_STATE[0];
+                },
+                interrupt -> {
+                    ELEVATOR.holdPosition(lastSetpoints[ELEVATOR_INDEX]);
+                    ALGAE_BLASTER.holdPosition(lastSetpoints[ARM_INDEX]);
+                },
+                () -> timer.hasElapsed(ELEVATOR_AND_ARM_TRAJECTORY.get_duration()),
+                ELEVATOR, ALGAE_BLASTER
+        );
+    }
+
+    private static void calculateTrajectory(ElevatorHeight height, BlasterArmState armState) {
+        ELEVATOR_AND_ARM_INPUTS[ELEVATOR_INDEX].set(ELEVATOR.getPosition(), ELEVATOR.getVelocity(), 0, height.getRotations());
+        ELEVATOR_AND_ARM_INPUTS[ARM_INDEX].set(ALGAE_BLASTER.getPosition(), ALGAE_BLASTER.getVelocity(), 0, armState.getRotations());
+
+        boolean foundTrajectory = ELEVATOR_AND_ARM_TRAJECTORY.calculate(ELEVATOR_AND_ARM_INPUTS);
+
+        // A mechanism moving faster than its synchronized limits can't be planned from, so plan from rest and let the feedback catch up instead
+        if (!foundTrajectory) {
+            ELEVATOR_AND_ARM_INPUTS[ELEVATOR_INDEX].current_velocity = 0;
+            ELEVATOR_AND_ARM_INPUTS[ARM_INDEX].current_velocity = 0;
+
+            foundTrajectory = ELEVATOR_AND_ARM_TRAJECTORY.calculate(ELEVATOR_AND_ARM_INPUTS);
+        }
+
+        Logger.recordOutput("Superstructure/FoundTrajectory", foundTrajectory);
+        Logger.recordOutput("Superstructure/TrajectoryDuration", ELEVATOR_AND_ARM_TRAJECTORY.get_duration());
+    }
+}
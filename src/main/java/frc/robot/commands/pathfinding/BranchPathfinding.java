@@ -1,15 +1,16 @@
 package frc.robot.commands.pathfinding;
 
-import com.pathplanner.lib.auto.AutoBuilder;
 import com.pathplanner.lib.path.GoalEndState;
 import com.pathplanner.lib.path.IdealStartingState;
 import com.pathplanner.lib.path.PathPlannerPath;
 import com.pathplanner.lib.path.Waypoint;
+import com.pathplanner.lib.trajectory.PathPlannerTrajectory;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Transform2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.ConditionalCommand;
 import edu.wpi.first.wpilibj2.command.DeferredCommand;
@@ -20,6 +21,7 @@ import frc.robot.utilities.FieldConstants;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.DoubleSupplier;
 import java.util.function.Supplier;
 
@@ -27,6 +29,7 @@ import static frc.robot.RobotContainer.*;
 import static frc.robot.commands.ConveyorCommands.moveFromIntakeToL4;
 import static frc.robot.commands.ConveyorCommands.scoreToL4;
 import static frc.robot.commands.CoralManipulationCommands.CURRENT_SCORING_LEVEL;
+import static frc.robot.commands.SuperstructureCommands.moveElevatorAndArm;
 import static frc.robot.commands.pathfinding.PathfindingCommands.pathfindToBranch;
 import static frc.robot.subsystems.algaeblaster.AlgaeBlasterConstants.BlasterArmState.*;
 import static frc.robot.subsystems.elevator.ElevatorConstants.ElevatorHeight.L4;
@@ -89,15 +92,16 @@ public class BranchPathfinding {
                         .onlyIf(() -> !SWERVE.isAtPose(branch.getBranchPose(), 0.01, 0.5)))))
                         .alongWith(
                                 CORAL_INTAKE.prepareThenTakeBack(),
-                                ELEVATOR.setTargetHeight(() -> CURRENT_SCORING_LEVEL.getMiddlePoint())
+                                moveElevatorAndArm(() -> CURRENT_SCORING_LEVEL.getMiddlePoint(), HORIZONTAL_IN)
+                                        .andThen(ELEVATOR.setTargetHeight(() -> CURRENT_SCORING_LEVEL.getMiddlePoint())
+                                                .alongWith(ALGAE_BLASTER.setArmStateContinuous(HORIZONTAL_IN)))
                         )
                         .until(() -> SWERVE.isAtPose(branch.getBranchPose(), 0.06, 0.5))
-                        .andThen(
+                        .andThen(ALGAE_BLASTER.setArmStateContinuous(HORIZONTAL_IN).withDeadline(
                              (ELEVATOR.setTargetHeight(() -> CURRENT_SCORING_LEVEL)
                              .until(() -> ELEVATOR.isAtTargetHeight(CURRENT_SCORING_LEVEL))
                             .andThen(ELEVATOR.maintainPosition()
-                                    .withDeadline(CORAL_INTAKE.prepareThenTakeBack().andThen(CORAL_INTAKE.releaseGamePiece()))))))
-                        .alongWith(ALGAE_BLASTER.setArmTargetState(HORIZONTAL_IN));
+                                    .withDeadline(CORAL_INTAKE.prepareThenTakeBack().andThen(CORAL_INTAKE.releaseGamePiece()))))));
 
 
         return new ConditionalCommand(
@@ -110,7 +114,7 @@ public class BranchPathfinding {
     public static Command getPathToFeeder(FieldConstants.Feeder feeder, double endVelocity) {
         return new DeferredCommand(
                 () -> {
-                    final Pose2d currentPose = POSE_ESTIMATOR.getCurrentPose();
+                    final Pose2d currentPose = ROBOT_STATE.getPose();
                     final Pose2d targetPose = feeder.getPose();
 
                     return followPath(currentPose, targetPose, endVelocity);
@@ -122,7 +126,7 @@ public class BranchPathfinding {
     public static Command getPathToBranch(PathfindingConstants.Branch branch, Transform2d transform2d, double endVelocity) {
         return new DeferredCommand(
                 () -> {
-                    final Pose2d currentPose = POSE_ESTIMATOR.getCurrentPose();
+                    final Pose2d currentPose = ROBOT_STATE.getPose();
                     final Pose2d targetPose = branch.getBranchPose().transformBy(transform2d);
 
                     return followPath(currentPose, targetPose, endVelocity);
@@ -138,7 +142,7 @@ public class BranchPathfinding {
     public static Command getPathToBranch(PathfindingConstants.Branch branch, double endVelocity) {
         return new DeferredCommand(
                 () -> {
-                    final Pose2d currentPose = POSE_ESTIMATOR.getCurrentPose();
+                    final Pose2d currentPose = ROBOT_STATE.getPose();
                     final Pose2d targetPose = branch.getBranchPose();
 
                     return followPath(currentPose, targetPose, endVelocity);
@@ -153,7 +157,7 @@ public class BranchPathfinding {
 
     public static Command pathfindToTarget(Supplier<Pose2d> targetPose, double endVelocity) {
         return new DeferredCommand(
-                () -> followPath(POSE_ESTIMATOR.getCurrentPose(), targetPose.get(), endVelocity),
+                () -> followPath(ROBOT_STATE.getPose(), targetPose.get(), endVelocity),
                 Set.of(SWERVE)
         );
     }
@@ -170,17 +174,46 @@ public class BranchPathfinding {
             return pidToPoseCommand(currentPose, targetPose);
         }
 
-        PathPlannerPath path = new PathPlannerPath(
-                waypoints,
-                PATHPLANNER_CONSTRAINTS,
-                new IdealStartingState(getTotalVelocity(currentVelocity), getHeading(currentVelocity, targetPose)),
-                new GoalEndState(endVelocity, targetPose.getRotation())
+        final PathPlannerTrajectory cachedTrajectory = PathCache.getTrajectory(currentPose, ROBOT_STATE.getFieldRelativeVelocity(), targetPose, endVelocity);
+
+        if (cachedTrajectory != null) {
+            return SwerveCommands.followTrajectory(() -> cachedTrajectory)
+                    .andThen(pidToPoseCommand(currentPose, targetPose));
+        }
+
+        final IdealStartingState startingState = new IdealStartingState(getTotalVelocity(currentVelocity), getHeading(currentVelocity, targetPose));
+        final double requestTimestampSeconds = Timer.getFPGATimestamp();
+        final CompletableFuture<PathPlannerService.GeneratedTrajectory> generatedTrajectory = PathPlannerService.generateTrajectory(
+                () -> new PathPlannerPath(waypoints, PATHPLANNER_CONSTRAINTS, startingState, new GoalEndState(endVelocity, targetPose.getRotation())),
+                currentVelocity,
+                currentPose.getRotation()
         );
 
-        path.preventFlipping = true;
+        // Converge on the target until the path is ready, then hand off to it from wherever the robot got to
+        return pidToPoseCommand(currentPose, targetPose)
+                .until(generatedTrajectory::isDone)
+                .andThen(new DeferredCommand(
+                        () -> followGeneratedTrajectory(generatedTrajectory, requestTimestampSeconds, targetPose),
+                        Set.of(SWERVE)
+                ))
+                .finallyDo(() -> generatedTrajectory.cancel(false));
+    }
+
+    private static Command followGeneratedTrajectory(CompletableFuture<PathPlannerService.GeneratedTrajectory> generatedTrajectory,
+                                                     double requestTimestampSeconds, Pose2d targetPose) {
+        final Pose2d robotPose = ROBOT_STATE.getPose();
+
+        if (robotPose.getTranslation().getDistance(targetPose.getTranslation()) < 0.35)
+            return pidToPoseCommand(robotPose, targetPose);
+
+        final PathPlannerTrajectory splicedTrajectory = PathPlannerService.getSplicedTrajectory(
+                generatedTrajectory, requestTimestampSeconds, robotPose, ROBOT_STATE.getFieldRelativeVelocity());
+
+        if (splicedTrajectory == null)
+            return pidToPoseCommand(robotPose, targetPose);
 
-        return AutoBuilder.followPath(path)
-                .andThen(pidToPoseCommand(currentPose, targetPose));
+        return SwerveCommands.followTrajectory(() -> splicedTrajectory)
+                .andThen(pidToPoseCommand(robotPose, targetPose));
     }
 
     private static Command pidToPoseCommand(Pose2d currentPose, Pose2d targetPose) {
@@ -212,7 +245,7 @@ public class BranchPathfinding {
             return new Rotation2d(velocity.vxMetersPerSecond, velocity.vyMetersPerSecond);
         }
 
-        final Translation2d offset = targetPose.getTranslation().minus(POSE_ESTIMATOR.getCurrentPose().getTranslation());
+        final Translation2d offset = targetPose.getTranslation().minus(ROBOT_STATE.getPose().getTranslation());
         return (offset.getNorm() < 0.01) ? targetPose.getRotation() : offset.getAngle();
     }
 }
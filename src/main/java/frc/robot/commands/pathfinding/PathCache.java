@@ -0,0 +1,277 @@
+package frc.robot.commands.pathfinding;
+
+import com.pathplanner.lib.path.GoalEndState;
+import com.pathplanner.lib.path.IdealStartingState;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.trajectory.PathPlannerTrajectory;
+import com.pathplanner.lib.util.FlippingUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import frc.lib.util.flippable.Flippable;
+import frc.robot.utilities.FieldConstants;
+import org.littletonrobotics.junction.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static frc.robot.commands.pathfinding.BranchPathfinding.L4DistanceFromReef;
+import static frc.robot.utilities.FieldConstants.BLUE_REEF_CENTER;
+import static frc.robot.utilities.FieldConstants.CLOSE_CAGE;
+import static frc.robot.utilities.FieldConstants.FAR_CAGE;
+import static frc.robot.utilities.FieldConstants.FIELD_LENGTH;
+import static frc.robot.utilities.FieldConstants.FIELD_WIDTH;
+import static frc.robot.utilities.FieldConstants.MIDDLE_CAGE;
+import static frc.robot.utilities.PathPlannerConstants.PATHPLANNER_CONSTRAINTS;
+import static frc.robot.utilities.PathPlannerConstants.ROBOT_CONFIG;
+
+/**
+ * Trajectories to the fixed destinations of teleop, generated on a background thread at boot instead of at button press.
+ * <p>
+ * The field is split into square start regions. For every destination, a trajectory is generated from rest at the center
+ * of every region in range. At runtime, the cached trajectory that passes closest to the robot is spliced onto its pose:
+ * it is followed from its point closest to the robot, and the offset between the two fades out over the first meter.
+ * <p>
+ * Everything is cached in blue alliance coordinates, red alliance requests are flipped into them and back.
+ * Trajectories are kept as plain arrays of samples, since thousands of full PathPlanner trajectories don't fit in memory.
+ * <p>
+ * There are at most 29 destinations times 72 regions, about 2,000 trajectories. The roboRIO only has two cores, so the
+ * generation thread rests after every trajectory for as long as generating it took, and never takes more than half a core
+ * from the main loop. How long it took and how much memory the samples take are logged once it's done.
+ */
+public class PathCache {
+    private static final double
+            REGION_SIZE_METERS = 1.5,
+            MAXIMUM_PATH_LENGTH_METERS = 6,
+            MINIMUM_PATH_LENGTH_METERS = 0.35,
+            REEF_CLEARANCE_METERS = 1.3,
+            WALL_CLEARANCE_METERS = 0.5,
+            CACHED_END_VELOCITY = 0.1;
+
+    private static final double
+            MAXIMUM_SPLICE_OFFSET_METERS = 1.2,
+            MATCHING_POSE_TOLERANCE_METERS = 0.01,
+            MATCHING_ROTATION_TOLERANCE_RADIANS = Math.toRadians(1);
+
+    /**
+     * The share of one core the generation may take, the rest of the time it sleeps.
+     */
+    private static final double GENERATION_DUTY_CYCLE = 0.5;
+
+    private static final int
+            COLUMNS = (int) Math.ceil(FIELD_LENGTH / REGION_SIZE_METERS),
+            ROWS = (int) Math.ceil(FIELD_WIDTH / REGION_SIZE_METERS);
+
+    private static final Translation2d[] REEF_CENTERS = {BLUE_REEF_CENTER, FlippingUtil.flipFieldPosition(BLUE_REEF_CENTER)};
+
+    private static final List<Pose2d> DESTINATIONS = new ArrayList<>();
+    private static volatile SampledTrajectory[][] cachedTrajectories = new SampledTrajectory[0][];
+    private static volatile boolean isReady = false;
+    private static volatile int generatedPathCount = 0;
+    private static volatile double generationSeconds = 0, cachedMegabytes = 0;
+
+    /**
+     * Starts generating all trajectories on a background thread. Call this once at boot, after PathPlanner was configured.
+     */
+    public static void startGenerating() {
+        if (!DESTINATIONS.isEmpty()) return;
+
+        for (FieldConstants.ReefFace face : FieldConstants.ReefFace.values()) {
+            for (PathfindingConstants.Branch branch : PathfindingConstants.Branch.values()) {
+                DESTINATIONS.add(toBlueAlliance(branch.getBranchPose(face)));
+                DESTINATIONS.add(toBlueAlliance(branch.getBranchPose(face).transformBy(L4DistanceFromReef)));
+            }
+        }
+
+        for (FieldConstants.Feeder feeder : FieldConstants.Feeder.values())
+            DESTINATIONS.add(toBlueAlliance(feeder.getPose()));
+
+        DESTINATIONS.add(toBlueAlliance(FAR_CAGE.get()));
+        DESTINATIONS.add(toBlueAlliance(MIDDLE_CAGE.get()));
+        DESTINATIONS.add(toBlueAlliance(CLOSE_CAGE.get()));
+
+        final SampledTrajectory[][] trajectories = new SampledTrajectory[DESTINATIONS.size()][COLUMNS * ROWS];
+        cachedTrajectories = trajectories;
+
+        final Thread generationThread = new Thread(() -> generateAll(trajectories), "PathCacheGeneration");
+
+        generationThread.setDaemon(true);
+        generationThread.setPriority(Thread.MIN_PRIORITY);
+        generationThread.start();
+    }
+
+    /**
+     * Splices the cached trajectory to the target onto the robot's current state.
+     *
+     * @param currentPose          The robot's pose, in the current alliance's coordinates
+     * @param fieldRelativeSpeeds  The robot's velocity, in the current alliance's coordinates
+     * @param targetPose           The destination, in the current alliance's coordinates
+     * @param endVelocity          The velocity to reach the destination with
+     * @return The spliced trajectory, or null if no cached trajectory fits and one should be generated instead
+     */
+    public static PathPlannerTrajectory getTrajectory(Pose2d currentPose, ChassisSpeeds fieldRelativeSpeeds, Pose2d targetPose, double endVelocity) {
+        final PathPlannerTrajectory trajectory = findTrajectory(currentPose, fieldRelativeSpeeds, targetPose, endVelocity);
+
+        Logger.recordOutput("PathCache/IsReady", isReady);
+        Logger.recordOutput("PathCache/GeneratedPaths", generatedPathCount);
+        Logger.recordOutput("PathCache/GenerationSeconds", generationSeconds);
+        Logger.recordOutput("PathCache/CachedMegabytes", cachedMegabytes);
+        Logger.recordOutput("PathCache/WasHit", trajectory != null);
+
+        return trajectory;
+    }
+
+    private static PathPlannerTrajectory findTrajectory(Pose2d currentPose, ChassisSpeeds fieldRelativeSpeeds, Pose2d targetPose, double endVelocity) {
+        if (Math.abs(endVelocity - CACHED_END_VELOCITY) > 0.05) return null;
+
+        final boolean isRedAlliance = Flippable.isRedAlliance();
+        final int destination = findDestination(isRedAlliance ? FlippingUtil.flipFieldPose(targetPose) : targetPose);
+
+        if (destination == -1) return null;
+
+        final Pose2d robotPose = isRedAlliance ? FlippingUtil.flipFieldPose(currentPose) : currentPose;
+        final ChassisSpeeds robotSpeeds = isRedAlliance ? FlippingUtil.flipFieldSpeeds(fieldRelativeSpeeds) : fieldRelativeSpeeds;
+
+        final int robotColumn = getColumn(robotPose.getX()), robotRow = getRow(robotPose.getY());
+
+        SampledTrajectory closestTrajectory = null;
+        int closestSample = 0;
+        double closestDistance = MAXIMUM_SPLICE_OFFSET_METERS;
+
+        // The closest path may start in a neighboring region
+        for (int column = Math.max(0, robotColumn - 1); column <= Math.min(COLUMNS - 1, robotColumn + 1); column++) {
+            for (int row = Math.max(0, robotRow - 1); row <= Math.min(ROWS - 1, robotRow + 1); row++) {
+                final SampledTrajectory trajectory = cachedTrajectories[destination][row * COLUMNS + column];
+
+                if (trajectory == null) continue;
+
+                final int sample = trajectory.getClosestSample(robotPose.getX(), robotPose.getY(),
+                        robotSpeeds.vxMetersPerSecond, robotSpeeds.vyMetersPerSecond);
+                final double distance = sample == -1 ? Double.POSITIVE_INFINITY
+                        : trajectory.getDistanceFromSample(sample, robotPose.getX(), robotPose.getY());
+
+                if (distance < closestDistance) {
+                    closestTrajectory = trajectory;
+                    closestSample = sample;
+                    closestDistance = distance;
+                }
+            }
+        }
+
+        if (closestTrajectory == null) return null;
+
+        return closestTrajectory.splice(closestSample, robotPose, robotSpeeds, isRedAlliance);
+    }
+
+    private static int findDestination(Pose2d blueTargetPose) {
+        for (int i = 0; i < DESTINATIONS.size(); i++) {
+            final Pose2d destination = DESTINATIONS.get(i);
+
+            if (destination.getTranslation().getDistance(blueTargetPose.getTranslation()) < MATCHING_POSE_TOLERANCE_METERS
+                    && Math.abs(destination.getRotation().minus(blueTargetPose.getRotation()).getRadians()) < MATCHING_ROTATION_TOLERANCE_RADIANS)
+                return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * The logger only records from the main thread, so the results are kept for {@link #getTrajectory} to log.
+     */
+    private static void generateAll(SampledTrajectory[][] trajectories) {
+        final long startNanos = System.nanoTime();
+        int generatedCount = 0;
+        long sampleCount = 0;
+
+        for (int destination = 0; destination < DESTINATIONS.size(); destination++) {
+            final Pose2d targetPose = DESTINATIONS.get(destination);
+
+            for (int column = 0; column < COLUMNS; column++) {
+                for (int row = 0; row < ROWS; row++) {
+                    final Translation2d start = new Translation2d((column + 0.5) * REGION_SIZE_METERS, (row + 0.5) * REGION_SIZE_METERS);
+
+                    if (!isValidStart(start, targetPose)) continue;
+
+                    final long generationStartNanos = System.nanoTime();
+
+                    try {
+                        final SampledTrajectory trajectory = new SampledTrajectory(generateTrajectory(start, targetPose));
+
+                        trajectories[destination][row * COLUMNS + column] = trajectory;
+                        generatedCount++;
+                        sampleCount += trajectory.getSampleCount();
+                    } catch (Exception exception) {
+                        exception.printStackTrace();
+                    }
+
+                    if (!restAfterGeneration(System.nanoTime() - generationStartNanos)) return;
+                }
+            }
+        }
+
+        generatedPathCount = generatedCount;
+        cachedMegabytes = sampleCount * SampledTrajectory.BYTES_PER_SAMPLE / 1E6;
+        generationSeconds = (System.nanoTime() - startNanos) / 1E9;
+        isReady = true;
+    }
+
+    /**
+     * @return Whether to keep generating, false if the thread was interrupted
+     */
+    private static boolean restAfterGeneration(long generationNanos) {
+        final long restNanos = (long) (generationNanos * (1 / GENERATION_DUTY_CYCLE - 1));
+
+        try {
+            Thread.sleep(restNanos / 1000000, (int) (restNanos % 1000000));
+            return true;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static boolean isValidStart(Translation2d start, Pose2d targetPose) {
+        final double pathLength = start.getDistance(targetPose.getTranslation());
+
+        if (pathLength < MINIMUM_PATH_LENGTH_METERS || pathLength > MAXIMUM_PATH_LENGTH_METERS) return false;
+
+        if (start.getX() < WALL_CLEARANCE_METERS || start.getX() > FIELD_LENGTH - WALL_CLEARANCE_METERS
+                || start.getY() < WALL_CLEARANCE_METERS || start.getY() > FIELD_WIDTH - WALL_CLEARANCE_METERS)
+            return false;
+
+        for (Translation2d reefCenter : REEF_CENTERS) {
+            if (start.getDistance(reefCenter) < REEF_CLEARANCE_METERS) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Generates the path the same way {@link BranchPathfinding} does live, from rest and already facing the target's heading.
+     */
+    private static PathPlannerTrajectory generateTrajectory(Translation2d start, Pose2d targetPose) {
+        final Rotation2d directionToTarget = targetPose.getTranslation().minus(start).getAngle();
+
+        final PathPlannerPath path = new PathPlannerPath(
+                PathPlannerPath.waypointsFromPoses(new Pose2d(start, directionToTarget), targetPose),
+                PATHPLANNER_CONSTRAINTS,
+                new IdealStartingState(0, targetPose.getRotation()),
+                new GoalEndState(CACHED_END_VELOCITY, targetPose.getRotation())
+        );
+
+        return path.generateTrajectory(new ChassisSpeeds(), targetPose.getRotation(), ROBOT_CONFIG);
+    }
+
+    private static Pose2d toBlueAlliance(Pose2d allianceCorrectedPose) {
+        return Flippable.isRedAlliance() ? FlippingUtil.flipFieldPose(allianceCorrectedPose) : allianceCorrectedPose;
+    }
+
+    private static int getColumn(double x) {
+        return Math.max(0, Math.min(COLUMNS - 1, (int) Math.floor(x / REGION_SIZE_METERS)));
+    }
+
+    private static int getRow(double y) {
+        return Math.max(0, Math.min(ROWS - 1, (int) Math.floor(y / REGION_SIZE_METERS)));
+    }
+}
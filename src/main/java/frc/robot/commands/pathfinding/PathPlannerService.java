@@ -0,0 +1,99 @@
+package frc.robot.commands.pathfinding;
+
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.trajectory.PathPlannerTrajectory;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.Timer;
+import org.littletonrobotics.junction.Logger;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import static frc.robot.utilities.PathPlannerConstants.ROBOT_CONFIG;
+
+/**
+ * Generates paths on a worker thread, so a path that isn't cached never stalls the main loop.
+ * <p>
+ * The robot keeps moving while a path is generated, so the result is spliced onto wherever the robot is once it's ready,
+ * the same way cached paths are.
+ */
+class PathPlannerService {
+    private static final double MAXIMUM_SPLICE_OFFSET_METERS = 1.2;
+
+    private static final ExecutorService WORKER = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "PathPlannerService");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param generationMilliseconds How long the worker took to generate this trajectory, without the time it was queued
+     */
+    record GeneratedTrajectory(SampledTrajectory trajectory, double generationMilliseconds) {
+    }
+
+    /**
+     * Queues the generation of a path. Cancel the future when the result isn't needed anymore, so queued paths are skipped.
+     *
+     * @param pathSupplier     Creates the path, on the worker thread
+     * @param startingSpeeds   The robot relative speeds to start the trajectory with
+     * @param startingRotation The rotation to start the trajectory with
+     */
+    static CompletableFuture<GeneratedTrajectory> generateTrajectory(Supplier<PathPlannerPath> pathSupplier, ChassisSpeeds startingSpeeds,
+                                                                     Rotation2d startingRotation) {
+        final CompletableFuture<GeneratedTrajectory> future = CompletableFuture.supplyAsync(() -> {
+            final long startNanos = System.nanoTime();
+            final SampledTrajectory trajectory = new SampledTrajectory(
+                    pathSupplier.get().generateTrajectory(startingSpeeds, startingRotation, ROBOT_CONFIG));
+
+            return new GeneratedTrajectory(trajectory, (System.nanoTime() - startNanos) / 1E6);
+        }, WORKER);
+
+        // Cancelling a path that isn't needed anymore isn't an error
+        future.exceptionally(throwable -> {
+            if (!(throwable instanceof CancellationException)) throwable.printStackTrace();
+            return null;
+        });
+
+        return future;
+    }
+
+    /**
+     * Call this once the future is done, to log how long the request took and splice its result onto the robot.
+     *
+     * @param requestTimestampSeconds When the path was requested
+     * @return The trajectory starting at the robot's current pose, or null if the generation failed or the robot is too
+     * far from the generated path, or turned too far from it, to follow it
+     */
+    static PathPlannerTrajectory getSplicedTrajectory(CompletableFuture<GeneratedTrajectory> future, double requestTimestampSeconds,
+                                                      Pose2d robotPose, ChassisSpeeds fieldRelativeSpeeds) {
+        if (!future.isDone() || future.isCompletedExceptionally()) {
+            Logger.recordOutput("PathPlannerService/DidHandOff", false);
+            return null;
+        }
+
+        final GeneratedTrajectory generatedTrajectory = future.join();
+        final PathPlannerTrajectory trajectory = splice(generatedTrajectory.trajectory(), robotPose, fieldRelativeSpeeds);
+
+        Logger.recordOutput("PathPlannerService/GenerationMilliseconds", generatedTrajectory.generationMilliseconds());
+        Logger.recordOutput("PathPlannerService/RequestToHandoffMilliseconds", (Timer.getFPGATimestamp() - requestTimestampSeconds) * 1000);
+        Logger.recordOutput("PathPlannerService/DidHandOff", trajectory != null);
+
+        return trajectory;
+    }
+
+    private static PathPlannerTrajectory splice(SampledTrajectory trajectory, Pose2d robotPose, ChassisSpeeds fieldRelativeSpeeds) {
+        final int sample = trajectory.getClosestSample(robotPose.getX(), robotPose.getY(),
+                fieldRelativeSpeeds.vxMetersPerSecond, fieldRelativeSpeeds.vyMetersPerSecond);
+
+        if (sample == -1 || trajectory.getDistanceFromSample(sample, robotPose.getX(), robotPose.getY()) > MAXIMUM_SPLICE_OFFSET_METERS)
+            return null;
+
+        return trajectory.splice(sample, robotPose, fieldRelativeSpeeds, false);
+    }
+}
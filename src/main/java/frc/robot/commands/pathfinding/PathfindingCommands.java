@@ -10,7 +10,7 @@ import frc.robot.subsystems.swerve.SwerveCommands;
 
 import java.util.Set;
 
-import static frc.robot.RobotContainer.POSE_ESTIMATOR;
+import static frc.robot.RobotContainer.ROBOT_STATE;
 import static frc.robot.RobotContainer.SWERVE;
 import static frc.robot.utilities.FieldConstants.*;
 import static frc.robot.utilities.FieldConstants.ReefFace.*;
@@ -81,7 +81,7 @@ public class PathfindingCommands {
     public static DeferredCommand pathfindToCage() {
         return new DeferredCommand(() -> {
             final Pose2d targetPose = decideCagePose();
-            final Pose2d intermediateTarget = new Pose2d(POSE_ESTIMATOR.getCurrentPose().getX(), targetPose.getY(), targetPose.getRotation());
+            final Pose2d intermediateTarget = new Pose2d(ROBOT_STATE.getPose().getX(), targetPose.getY(), targetPose.getRotation());
 
             final Command alignWithTargetY = SwerveCommands.goToPoseTrapezoidal(intermediateTarget, 0.1, 0.1);
 
@@ -91,7 +91,7 @@ public class PathfindingCommands {
     }
 
     public static ReefFace decideReefFace() {
-        final Translation2d robotPose = POSE_ESTIMATOR.getCurrentPose().getTranslation();
+        final Translation2d robotPose = ROBOT_STATE.getPose().getTranslation();
         final Translation2d distanceToReef = REEF_CENTER.get().minus(robotPose);
 
         final double angle = Math.toDegrees(Math.atan2(distanceToReef.getY(), distanceToReef.getX()));
@@ -108,14 +108,14 @@ public class PathfindingCommands {
     private static Pose2d decideFeederPose() {
         Pose2d originalPose = Feeder.BLUES_LEFT_REDS_RIGHT_FEEDER.getPose();
 
-        if (POSE_ESTIMATOR.getCurrentPose().getY() - FIELD_WIDTH / 2 < 0)
+        if (ROBOT_STATE.getPose().getY() - FIELD_WIDTH / 2 < 0)
             originalPose = Feeder.BLUES_RIGHT_REDS_LEFT_FEEDER.getPose();
 
         return originalPose;
     }
 
     private static Pose2d decideCagePose() {
-        final Pose2d robotPose = POSE_ESTIMATOR.getCurrentPose();
+        final Pose2d robotPose = ROBOT_STATE.getPose();
 
         final double closeCageDistanceY = Math.abs(robotPose.getY() - CLOSE_CAGE.get().getY()),
                 middleCageDistanceY = Math.abs(robotPose.getY() - MIDDLE_CAGE.get().getY()),
@@ -0,0 +1,164 @@
+package frc.robot.commands.pathfinding;
+
+import com.pathplanner.lib.trajectory.PathPlannerTrajectory;
+import com.pathplanner.lib.trajectory.PathPlannerTrajectoryState;
+import com.pathplanner.lib.util.DriveFeedforwards;
+import com.pathplanner.lib.util.FlippingUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static frc.robot.utilities.PathPlannerConstants.PATHPLANNER_CONSTRAINTS;
+
+/**
+ * The samples of a generated trajectory, without PathPlanner's per-state objects.
+ * It can be spliced onto a robot that isn't exactly at its start, like a robot that kept moving while it was generated.
+ * Every sample takes {@value #BYTES_PER_SAMPLE} bytes.
+ */
+class SampledTrajectory {
+    private static final double
+            MAXIMUM_SPLICE_VELOCITY_DIFFERENCE = 0.75,
+            BLEND_DISTANCE_METERS = 1;
+
+    static final int BYTES_PER_SAMPLE = 7 * Double.BYTES;
+
+    private static final DriveFeedforwards NO_FEEDFORWARDS = DriveFeedforwards.zeros(4);
+
+    private final double[] time, x, y, rotation, xVelocity, yVelocity, angularVelocity;
+
+    SampledTrajectory(PathPlannerTrajectory trajectory) {
+        final List<PathPlannerTrajectoryState> states = trajectory.getStates();
+        final int sampleCount = states.size();
+
+        time = new double[sampleCount];
+        x = new double[sampleCount];
+        y = new double[sampleCount];
+        rotation = new double[sampleCount];
+        xVelocity = new double[sampleCount];
+        yVelocity = new double[sampleCount];
+        angularVelocity = new double[sampleCount];
+
+        for (int i = 0; i < sampleCount; i++) {
+            final PathPlannerTrajectoryState state = states.get(i);
+
+            time[i] = state.timeSeconds;
+            x[i] = state.pose.getX();
+            y[i] = state.pose.getY();
+            rotation[i] = state.pose.getRotation().getRadians();
+            xVelocity[i] = state.fieldSpeeds.vxMetersPerSecond;
+            yVelocity[i] = state.fieldSpeeds.vyMetersPerSecond;
+            angularVelocity[i] = state.fieldSpeeds.omegaRadiansPerSecond;
+        }
+    }
+
+    /**
+     * @return The sample in the first half of the trajectory closest to the given position, that moves about as
+     * fast as the robot and in the same direction, or -1 if there is none
+     */
+    int getClosestSample(double robotX, double robotY, double robotXVelocity, double robotYVelocity) {
+        int closestSample = -1;
+        double closestDistance = Double.POSITIVE_INFINITY;
+
+        for (int i = 0; i <= time.length / 2; i++) {
+            final double distance = Math.hypot(x[i] - robotX, y[i] - robotY);
+
+            if (distance < closestDistance
+                    && Math.hypot(xVelocity[i] - robotXVelocity, yVelocity[i] - robotYVelocity) < MAXIMUM_SPLICE_VELOCITY_DIFFERENCE) {
+                closestSample = i;
+                closestDistance = distance;
+            }
+        }
+
+        return closestSample;
+    }
+
+    double getDistanceFromSample(int sample, double robotX, double robotY) {
+        return Math.hypot(x[sample] - robotX, y[sample] - robotY);
+    }
+
+    int getSampleCount() {
+        return time.length;
+    }
+
+    /**
+     * Follows the trajectory from the given sample, starting from the robot's pose and velocity, and fading into the
+     * sampled trajectory over {@link #BLEND_DISTANCE_METERS}. The velocity of the fading offset is added to the speeds,
+     * so they match the poses.
+     *
+     * @param shouldFlip Whether to flip the spliced states to the other alliance's side
+     * @return The spliced trajectory, or null if turning away the rotation offset would pass the angular velocity constraint
+     */
+    PathPlannerTrajectory splice(int firstSample, Pose2d robotPose, ChassisSpeeds fieldRelativeSpeeds, boolean shouldFlip) {
+        final double
+                xOffset = robotPose.getX() - x[firstSample],
+                yOffset = robotPose.getY() - y[firstSample],
+                rotationOffset = Math.IEEEremainder(robotPose.getRotation().getRadians() - rotation[firstSample], 2 * Math.PI),
+                xVelocityOffset = fieldRelativeSpeeds.vxMetersPerSecond - xVelocity[firstSample],
+                yVelocityOffset = fieldRelativeSpeeds.vyMetersPerSecond - yVelocity[firstSample];
+
+        if (!canAbsorbRotationOffset(firstSample, rotationOffset)) return null;
+
+        final List<PathPlannerTrajectoryState> states = new ArrayList<>(time.length - firstSample);
+        double distanceAlongPath = 0;
+
+        for (int i = firstSample; i < time.length; i++) {
+            if (i > firstSample) distanceAlongPath += Math.hypot(x[i] - x[i - 1], y[i] - y[i - 1]);
+
+            final double blend = Math.max(0, 1 - distanceAlongPath / BLEND_DISTANCE_METERS);
+            final double blendRate = getBlendRate(i, blend);
+            final PathPlannerTrajectoryState state = new PathPlannerTrajectoryState();
+
+            state.timeSeconds = time[i] - time[firstSample];
+            state.pose = new Pose2d(x[i] + xOffset * blend, y[i] + yOffset * blend, new Rotation2d(rotation[i] + rotationOffset * blend));
+            state.fieldSpeeds = new ChassisSpeeds(
+                    xVelocity[i] + xVelocityOffset * blend + xOffset * blendRate,
+                    yVelocity[i] + yVelocityOffset * blend + yOffset * blendRate,
+                    angularVelocity[i] + rotationOffset * blendRate);
+            state.linearVelocity = Math.hypot(state.fieldSpeeds.vxMetersPerSecond, state.fieldSpeeds.vyMetersPerSecond);
+            state.heading = new Rotation2d(Math.atan2(state.fieldSpeeds.vyMetersPerSecond, state.fieldSpeeds.vxMetersPerSecond));
+            state.feedforwards = NO_FEEDFORWARDS;
+
+            if (shouldFlip) {
+                state.pose = FlippingUtil.flipFieldPose(state.pose);
+                state.fieldSpeeds = FlippingUtil.flipFieldSpeeds(state.fieldSpeeds);
+                state.heading = FlippingUtil.flipFieldRotation(state.heading);
+            }
+
+            states.add(state);
+        }
+
+        return new PathPlannerTrajectory(states, List.of());
+    }
+
+    /**
+     * The blend fades over distance, so it changes as fast as the path moves while it isn't done.
+     *
+     * @return How fast the blend changes at a sample, per second
+     */
+    private double getBlendRate(int sample, double blend) {
+        return blend > 0 ? -Math.hypot(xVelocity[sample], yVelocity[sample]) / BLEND_DISTANCE_METERS : 0;
+    }
+
+    /**
+     * Whether the angular velocity stays within the constraints with the rotation offset turned away, or at least doesn't
+     * pass what the sampled trajectory already does.
+     */
+    private boolean canAbsorbRotationOffset(int firstSample, double rotationOffset) {
+        final double maximumAngularVelocity = PATHPLANNER_CONSTRAINTS.maxAngularVelocityRadPerSec();
+        double distanceAlongPath = 0;
+
+        for (int i = firstSample; i < time.length && distanceAlongPath < BLEND_DISTANCE_METERS; i++) {
+            if (i > firstSample) distanceAlongPath += Math.hypot(x[i] - x[i - 1], y[i] - y[i - 1]);
+
+            final double blend = Math.max(0, 1 - distanceAlongPath / BLEND_DISTANCE_METERS);
+            final double angularVelocityWithOffset = Math.abs(angularVelocity[i] + rotationOffset * getBlendRate(i, blend));
+
+            if (angularVelocityWithOffset > Math.max(maximumAngularVelocity, Math.abs(angularVelocity[i]))) return false;
+        }
+
+        return true;
+    }
+}
@@ -4,6 +4,7 @@ import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Transform3d;
+import frc.lib.generic.simulation.SimulationRandomization;
 import frc.robot.poseestimation.poseestimator.StandardDeviations;
 import org.photonvision.simulation.SimCameraProperties;
 import org.photonvision.simulation.VisionSystemSim;
@@ -28,7 +29,8 @@ public class AprilTagCameraConstants {
     private static final Rotation2d SIMULATION_CAMERA_FOV = Rotation2d.fromDegrees(70);
     private static final double
             SIMULATION_CAMERA_AVERAGE_PIXEL_ERROR = 0.25,
-            SIMULATION_CAMERA_PIXEL_STANDARD_DEVIATIONS = 0.08;
+            SIMULATION_CAMERA_PIXEL_STANDARD_DEVIATIONS = 0.08,
+            SIMULATION_CAMERA_NOISE_SPREAD = 0.3;
     public static final SimCameraProperties SIMULATION_CAMERA_PROPERTIES = new SimCameraProperties();
 
     static {
@@ -39,11 +41,14 @@ public class AprilTagCameraConstants {
     }
 
     private static void configureSimulationCameraProperties() {
+        final double noiseScale = SimulationRandomization.getScale("Camera/Noise", SIMULATION_CAMERA_NOISE_SPREAD);
+        final double latencyScale = SimulationRandomization.getScale("Camera/Latency", SIMULATION_CAMERA_NOISE_SPREAD);
+
         SIMULATION_CAMERA_PROPERTIES.setCalibration(SIMULATION_CAMERA_RESOLUTION_WIDTH, SIMULATION_CAMERA_RESOLUTION_HEIGHT, SIMULATION_CAMERA_FOV);
-        SIMULATION_CAMERA_PROPERTIES.setCalibError(SIMULATION_CAMERA_AVERAGE_PIXEL_ERROR, SIMULATION_CAMERA_PIXEL_STANDARD_DEVIATIONS);
+        SIMULATION_CAMERA_PROPERTIES.setCalibError(SIMULATION_CAMERA_AVERAGE_PIXEL_ERROR * noiseScale, SIMULATION_CAMERA_PIXEL_STANDARD_DEVIATIONS * noiseScale);
         SIMULATION_CAMERA_PROPERTIES.setFPS(SIMULATION_CAMERA_FPS);
-        SIMULATION_CAMERA_PROPERTIES.setAvgLatencyMs(SIMULATION_AVERAGE_CAMERA_LATENCY_MILLISECONDS);
-        SIMULATION_CAMERA_PROPERTIES.setLatencyStdDevMs(SIMULATION_CAMERA_LATENCY_STANDARD_DEVIATIONS_MILLISECONDS);
+        SIMULATION_CAMERA_PROPERTIES.setAvgLatencyMs(SIMULATION_AVERAGE_CAMERA_LATENCY_MILLISECONDS * latencyScale);
+        SIMULATION_CAMERA_PROPERTIES.setLatencyStdDevMs(SIMULATION_CAMERA_LATENCY_STANDARD_DEVIATIONS_MILLISECONDS * latencyScale);
         SIMULATION_CAMERA_PROPERTIES.setExposureTimeMs(SIMULATION_CAMERA_EXPOSURE_TIME_MILLISECONDS);
     }
 
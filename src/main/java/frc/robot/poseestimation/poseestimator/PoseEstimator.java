@@ -1,6 +1,7 @@
 package frc.robot.poseestimation.poseestimator;
 
 import com.pathplanner.lib.util.PathPlannerLogging;
+import edu.wpi.first.math.Matrix;
 import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.geometry.Pose2d;
@@ -8,6 +9,8 @@ import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveDriveOdometry;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import frc.lib.util.flippable.Flippable;
@@ -18,9 +21,12 @@ import org.littletonrobotics.junction.Logger;
 import java.util.Arrays;
 import java.util.Map;
 
+import static frc.robot.GlobalConstants.IS_SIMULATION;
+import static frc.robot.RobotContainer.ROBOT_STATE;
 import static frc.robot.RobotContainer.SWERVE;
 import static frc.robot.poseestimation.poseestimator.PoseEstimatorConstants.TAG_ID_TO_POSE;
 import static frc.robot.subsystems.swerve.SwerveConstants.SWERVE_KINEMATICS;
+import static frc.robot.subsystems.swerve.SwerveModuleConstants.CHASSIS_SIMULATION;
 
 /**
  * A class that estimates the robot's pose using team 6328's custom pose estimator.
@@ -31,6 +37,8 @@ public class PoseEstimator implements AutoCloseable {
     private final Field2d field = new Field2d();
     private final AprilTagCamera[] aprilTagCameras;
 
+    private double odometryStandardDeviationsScale = 1;
+
     /**
      * Constructs a new PoseEstimator.
      * This constructor disables the use of a relative robot pose source and instead uses april tags cameras for pose estimation.
@@ -58,6 +66,8 @@ public class PoseEstimator implements AutoCloseable {
         final Rotation2d resetRotation = Flippable.isRedAlliance() ? Rotation2d.k180deg : Rotation2d.kZero;
         swerveDrivePoseEstimator.resetRotation(resetRotation);
         swerveDriveOdometry.resetRotation(resetRotation);
+
+        ROBOT_STATE.overridePose(getCurrentPose());
     }
 
     /**
@@ -66,10 +76,14 @@ public class PoseEstimator implements AutoCloseable {
      * @param newPose the pose to reset to, relative to the blue alliance's driver station right corner
      */
     public void resetPose(Pose2d newPose) {
+        if (IS_SIMULATION) CHASSIS_SIMULATION.resetPose(newPose);
+
         SWERVE.setGyroHeading(newPose.getRotation());
 
         swerveDrivePoseEstimator.resetPose(newPose); // TODO: Might not work as intended
         swerveDriveOdometry.resetPose(newPose);
+
+        ROBOT_STATE.overridePose(getCurrentPose());
     }
 
     /**
@@ -97,13 +111,35 @@ public class PoseEstimator implements AutoCloseable {
      * @param gyroRotations        the gyro rotations accumulated since the last update
      */
     public void updatePoseEstimatorStates(SwerveModulePosition[][] swerveWheelPositions, Rotation2d[] gyroRotations, double[] timestamps) {
-        for (int i = 0; i < swerveWheelPositions.length; i++) {
+        updatePoseEstimatorStates(swerveWheelPositions, gyroRotations, timestamps, swerveWheelPositions.length);
+    }
+
+    /**
+     * Same as {@link #updatePoseEstimatorStates(SwerveModulePosition[][], Rotation2d[], double[])}, but only uses the first {@code updates} samples.
+     * This lets the caller reuse buffers that are bigger than the amount of samples in the current loop.
+     * The estimator copies the positions it keeps, so the buffers may be overwritten after this returns.
+     *
+     * @param updates the amount of valid samples in the given arrays
+     */
+    public void updatePoseEstimatorStates(SwerveModulePosition[][] swerveWheelPositions, Rotation2d[] gyroRotations, double[] timestamps, int updates) {
+        for (int i = 0; i < updates; i++) {
             if (swerveWheelPositions[i] == null) return;
             swerveDrivePoseEstimator.updateWithTime(timestamps[i], gyroRotations[i], swerveWheelPositions[i]);
             swerveDriveOdometry.update(gyroRotations[i], swerveWheelPositions[i]);
         }
     }
 
+    /**
+     * Sets how much less the odometry translation should be trusted than usual, e.g. while the wheels skid.
+     * WPILib's estimator can't change its odometry standard deviations after construction,
+     * so the vision translation standard deviations are divided by the scale instead, which weighs the two the same way.
+     *
+     * @param scale the factor to multiply the odometry translation standard deviations by, at least 1
+     */
+    public void setOdometryStandardDeviationsScale(double scale) {
+        odometryStandardDeviationsScale = Math.max(scale, 1);
+    }
+
     /**
      * Gets the estimated pose of the robot at the target timestamp.
      *
@@ -143,10 +179,15 @@ public class PoseEstimator implements AutoCloseable {
         final AprilTagCamera[] newResultCameras = getCamerasWithResults();
 
         for (AprilTagCamera aprilTagCamera : newResultCameras) {
+            final Matrix<N3, N1> standardDeviations = aprilTagCamera.calculateStandardDeviations().toMatrix();
+
+            standardDeviations.set(0, 0, standardDeviations.get(0, 0) / odometryStandardDeviationsScale);
+            standardDeviations.set(1, 0, standardDeviations.get(1, 0) / odometryStandardDeviationsScale);
+
             swerveDrivePoseEstimator.addVisionMeasurement(
                     aprilTagCamera.getEstimatedRobotPose(),
                     aprilTagCamera.getLatestResultTimestampSeconds(),
-                    aprilTagCamera.calculateStandardDeviations().toMatrix()
+                    standardDeviations
             );
         }
     }
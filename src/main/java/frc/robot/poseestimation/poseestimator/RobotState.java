@@ -0,0 +1,92 @@
+package frc.robot.poseestimation.poseestimator;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.Timer;
+import org.littletonrobotics.junction.Logger;
+
+import static frc.robot.GlobalConstants.ROBOT_PERIODIC_LOOP_TIME;
+import static frc.robot.subsystems.swerve.SwerveConstants.SWERVE_KINEMATICS;
+
+/**
+ * Holds a snapshot of the robot's pose and velocities, computed once per loop right after the odometry update.
+ * Commands and subsystems should read from here instead of querying the pose estimator and modules every time,
+ * so every reader in the same loop sees the same values and nothing is recomputed.
+ * Snapshots are replaced as a whole, so they can also be read from other threads.
+ */
+public class RobotState {
+    /**
+     * An immutable view of the robot's state for a single loop. The contained objects must not be mutated by readers.
+     *
+     * @param timestampSeconds      the FPGA timestamp the snapshot was taken at
+     * @param pose                  the estimated pose, relative to the blue alliance's driver station right corner
+     * @param robotRelativeVelocity the measured chassis velocity, relative to the robot
+     * @param fieldRelativeVelocity the measured chassis velocity, relative to the field
+     * @param moduleStates          the measured module states
+     */
+    public record Snapshot(double timestampSeconds, Pose2d pose, ChassisSpeeds robotRelativeVelocity,
+                           ChassisSpeeds fieldRelativeVelocity, SwerveModuleState[] moduleStates) {
+    }
+
+    private volatile Snapshot snapshot = new Snapshot(0, Pose2d.kZero, new ChassisSpeeds(), new ChassisSpeeds(), new SwerveModuleState[0]);
+    private double previousTotalVelocity = 0;
+
+    /**
+     * Publishes a new snapshot. Should be called once per loop, right after the odometry update.
+     *
+     * @param pose         the latest estimated pose
+     * @param moduleStates the latest measured module states
+     */
+    public void update(Pose2d pose, SwerveModuleState[] moduleStates) {
+        final ChassisSpeeds robotRelativeVelocity = SWERVE_KINEMATICS.toChassisSpeeds(moduleStates);
+        final double currentTotalVelocity = Math.hypot(robotRelativeVelocity.vxMetersPerSecond, robotRelativeVelocity.vyMetersPerSecond);
+
+        Logger.recordOutput("TOTAL_VELOCITY_VECTOR", currentTotalVelocity);
+        Logger.recordOutput("TOTAL_ACCELERATION_VECTOR", (currentTotalVelocity - previousTotalVelocity) / ROBOT_PERIODIC_LOOP_TIME);
+
+        previousTotalVelocity = currentTotalVelocity;
+
+        publish(pose, robotRelativeVelocity, moduleStates);
+    }
+
+    /**
+     * Replaces the pose of the current snapshot, keeping the measured velocities.
+     * This is only meant for pose resets, so readers later in the same loop don't use the pose from before the reset.
+     *
+     * @param pose the pose the estimator was reset to
+     */
+    public void overridePose(Pose2d pose) {
+        publish(pose, snapshot.robotRelativeVelocity(), snapshot.moduleStates());
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public Pose2d getPose() {
+        return snapshot.pose();
+    }
+
+    public ChassisSpeeds getRobotRelativeVelocity() {
+        return snapshot.robotRelativeVelocity();
+    }
+
+    public ChassisSpeeds getFieldRelativeVelocity() {
+        return snapshot.fieldRelativeVelocity();
+    }
+
+    public SwerveModuleState[] getModuleStates() {
+        return snapshot.moduleStates();
+    }
+
+    private void publish(Pose2d pose, ChassisSpeeds robotRelativeVelocity, SwerveModuleState[] moduleStates) {
+        snapshot = new Snapshot(
+                Timer.getFPGATimestamp(),
+                pose,
+                robotRelativeVelocity,
+                ChassisSpeeds.fromRobotRelativeSpeeds(robotRelativeVelocity, pose.getRotation()),
+                moduleStates
+        );
+    }
+}
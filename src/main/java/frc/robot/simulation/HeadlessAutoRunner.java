@@ -0,0 +1,192 @@
+package frc.robot.simulation;
+
+import edu.wpi.first.hal.AllianceStationID;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.lib.generic.hardware.HardwareManager;
+import frc.lib.generic.simulation.SimulationRandomization;
+import frc.lib.generic.simulation.SimulationScheduler;
+import frc.robot.Robot;
+import org.json.simple.JSONValue;
+import org.littletonrobotics.junction.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static frc.robot.GlobalConstants.ROBOT_PERIODIC_LOOP_TIME;
+import static frc.robot.RobotContainer.*;
+import static frc.robot.subsystems.swerve.SwerveModuleConstants.CHASSIS_SIMULATION;
+
+/**
+ * Runs an autonomous routine in simulation without the GUI, as fast as the CPU allows.
+ * <p>
+ * The robot runs on its own thread while the HAL clock is paused. This thread scripts the driver station and steps the clock
+ * one robot loop at a time, so a run takes only as long as its loops take to compute. The simulated mechanisms are stepped
+ * deterministically within each loop, closed loops included, see {@link frc.lib.generic.hardware.motor.hardware.simulated.SimulatedTalonMotor}.
+ * <p>
+ * Prints the result of the run as a single JSON line: every scoring event, the cycle times between them and the final pose.
+ * Poses are where the robot actually is, see {@link SwerveChassisSimulation}. Runs with a seed randomize the simulation by it.
+ * Nothing is published to NetworkTables or written to log files, so runs can go in parallel.
+ * Run it with <code>./gradlew simulateAuto -Pauto="Middle L4x1 LEFT"</code>.
+ */
+public class HeadlessAutoRunner {
+    private static final double DISABLED_SECONDS = 0.5;
+    static final double DEFAULT_AUTONOMOUS_SECONDS = 15;
+
+    private final Map<String, String> options;
+
+    private final List<Map<String, Object>> scoringEvents = new ArrayList<>();
+    private final List<Double> cycleTimes = new ArrayList<>();
+
+    private HeadlessAutoRunner(Map<String, String> options) {
+        this.options = options;
+    }
+
+    /**
+     * @param args <code>--auto &lt;name&gt;</code>, and optionally <code>--alliance Blue1..Red3</code>,
+     *             <code>--pose x,y,degrees</code>, <code>--duration seconds</code>, <code>--seed number</code> and <code>--output file</code>
+     */
+    public static void main(String... args) throws IOException {
+        final Map<String, String> options = parseOptions(args);
+        final String json = JSONValue.toJSONString(new HeadlessAutoRunner(options).run());
+
+        System.out.println(json);
+
+        if (options.containsKey("output"))
+            Files.writeString(Path.of(options.get("output")), json + System.lineSeparator());
+
+        Logger.end();
+        System.exit(0);
+    }
+
+    private Map<String, Object> run() {
+        if (!HAL.initialize(500, 0))
+            throw new IllegalStateException("Failed to initialize the HAL");
+
+        SimHooks.pauseTiming();
+        SimulationScheduler.setDeterministic(true);
+        HardwareManager.setHeadless();
+
+        if (options.containsKey("seed"))
+            SimulationRandomization.setSeed(Long.parseLong(options.get("seed")));
+
+        setDriverStation(false, false);
+
+        final Robot robot = new Robot();
+        final Thread robotThread = new Thread(robot::startCompetition, "Robot");
+
+        robotThread.setDaemon(true);
+        robotThread.start();
+        SimHooks.waitForProgramStart();
+
+        SmartDashboard.putString("Which Auto?/selected", options.getOrDefault("auto", "Selectable Path"));
+
+        if (options.containsKey("pose"))
+            POSE_ESTIMATOR.resetPose(parsePose(options.get("pose")));
+
+        step(DISABLED_SECONDS);
+
+        final double autonomousSeconds = Double.parseDouble(options.getOrDefault("duration", String.valueOf(DEFAULT_AUTONOMOUS_SECONDS)));
+        final long startNanos = System.nanoTime();
+
+        setDriverStation(true, true);
+        runAutonomous(autonomousSeconds);
+        setDriverStation(false, false);
+        step(ROBOT_PERIODIC_LOOP_TIME);
+
+        final double wallSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+        robot.endCompetition();
+
+        return createResult(autonomousSeconds, wallSeconds);
+    }
+
+    private void runAutonomous(double autonomousSeconds) {
+        final int loops = (int) Math.round(autonomousSeconds / ROBOT_PERIODIC_LOOP_TIME);
+
+        int releasedCoral = CORAL_INTAKE.getReleasedCoralCount();
+        double lastScoreTime = 0;
+
+        for (int loop = 1; loop <= loops; loop++) {
+            step(ROBOT_PERIODIC_LOOP_TIME);
+
+            if (CORAL_INTAKE.getReleasedCoralCount() == releasedCoral) continue;
+
+            final double time = loop * ROBOT_PERIODIC_LOOP_TIME;
+
+            releasedCoral = CORAL_INTAKE.getReleasedCoralCount();
+            scoringEvents.add(createEvent(time, CHASSIS_SIMULATION.getPose()));
+            cycleTimes.add(time - lastScoreTime);
+            lastScoreTime = time;
+        }
+    }
+
+    /**
+     * Steps the clock, returning once the robot loops in that time have run.
+     */
+    private static void step(double seconds) {
+        SimHooks.stepTiming(seconds);
+    }
+
+    private void setDriverStation(boolean enabled, boolean autonomous) {
+        DriverStationSim.setAllianceStationId(AllianceStationID.valueOf(options.getOrDefault("alliance", "Blue1")));
+        DriverStationSim.setDsAttached(true);
+        DriverStationSim.setAutonomous(autonomous);
+        DriverStationSim.setEnabled(enabled);
+        DriverStationSim.notifyNewData();
+    }
+
+    private Map<String, Object> createResult(double autonomousSeconds, double wallSeconds) {
+        final Map<String, Object> result = new LinkedHashMap<>(options);
+
+        result.put("scoringEvents", scoringEvents);
+        result.put("cycleTimes", cycleTimes);
+        result.put("finalPose", createEvent(autonomousSeconds, CHASSIS_SIMULATION.getPose()));
+        result.put("finalEstimatedPose", createEvent(autonomousSeconds, ROBOT_STATE.getPose()));
+        result.put("simulatedSeconds", autonomousSeconds);
+        result.put("wallSeconds", wallSeconds);
+
+        return result;
+    }
+
+    private static Map<String, Object> createEvent(double time, Pose2d pose) {
+        final Map<String, Object> event = new LinkedHashMap<>();
+
+        event.put("time", time);
+        event.put("x", pose.getX());
+        event.put("y", pose.getY());
+        event.put("degrees", pose.getRotation().getDegrees());
+
+        return event;
+    }
+
+    private static Pose2d parsePose(String pose) {
+        final String[] values = pose.split(",");
+
+        return new Pose2d(Double.parseDouble(values[0]), Double.parseDouble(values[1]),
+                Rotation2d.fromDegrees(Double.parseDouble(values[2])));
+    }
+
+    static Map<String, String> parseOptions(String... args) {
+        final Map<String, String> options = new HashMap<>();
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--"))
+                throw new IllegalArgumentException("Expected an option, got " + args[i]);
+
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        return options;
+    }
+}
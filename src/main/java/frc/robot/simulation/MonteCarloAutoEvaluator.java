@@ -0,0 +1,171 @@
+package frc.robot.simulation;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs an autonomous routine many times with randomized simulations, and sums up how often and how fast it scores.
+ * <p>
+ * Every run is a {@link HeadlessAutoRunner} in its own JVM, as the robot is built from static state.
+ * Runs are spread over all cores, and each gets its own seed, so any run can be repeated alone with the runner.
+ * <p>
+ * Run it with <code>./gradlew evaluateAuto -Pauto="Middle L4x1 LEFT" -Pruns=200</code>.
+ */
+public class MonteCarloAutoEvaluator {
+    private static final int DEFAULT_RUNS = 100;
+    private static final long DEFAULT_BASE_SEED = 2025;
+    private static final double STARTUP_TIMEOUT_SECONDS = 60;
+
+    /**
+     * @param args The options of {@link HeadlessAutoRunner}, and optionally <code>--runs count</code>,
+     *             <code>--workers count</code>, <code>--base-seed number</code> and <code>--scores-to-succeed count</code>
+     */
+    public static void main(String... args) throws Exception {
+        final Map<String, String> options = HeadlessAutoRunner.parseOptions(args);
+
+        final int runs = Integer.parseInt(options.getOrDefault("runs", String.valueOf(DEFAULT_RUNS)));
+        final int workers = Integer.parseInt(options.getOrDefault("workers", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        final long baseSeed = Long.parseLong(options.getOrDefault("base-seed", String.valueOf(DEFAULT_BASE_SEED)));
+        final int scoresToSucceed = Integer.parseInt(options.getOrDefault("scores-to-succeed", "1"));
+        final double durationSeconds = Double.parseDouble(options.getOrDefault("duration", String.valueOf(HeadlessAutoRunner.DEFAULT_AUTONOMOUS_SECONDS)));
+        final long timeoutSeconds = (long) (STARTUP_TIMEOUT_SECONDS + 2 * durationSeconds);
+
+        final List<String> runnerArguments = getRunnerArguments(options);
+        final Path resultsDirectory = Files.createTempDirectory("auto-evaluation");
+        final ExecutorService executor = Executors.newFixedThreadPool(workers);
+        final List<Future<JSONObject>> results = new ArrayList<>();
+
+        for (int run = 0; run < runs; run++) {
+            final long seed = baseSeed + run;
+            results.add(executor.submit(() -> runWorker(runnerArguments, seed, resultsDirectory, timeoutSeconds)));
+        }
+
+        final List<Long> failedSeeds = new ArrayList<>();
+        final List<Double> firstScoreTimes = new ArrayList<>(), cycleTimes = new ArrayList<>();
+        int successes = 0;
+
+        for (int run = 0; run < runs; run++) {
+            final JSONObject result = getResult(results.get(run));
+
+            if (result == null) {
+                failedSeeds.add(baseSeed + run);
+                continue;
+            }
+
+            final JSONArray scoringEvents = (JSONArray) result.get("scoringEvents");
+            final JSONArray runCycleTimes = (JSONArray) result.get("cycleTimes");
+
+            if (scoringEvents.size() >= scoresToSucceed) successes++;
+            if (!scoringEvents.isEmpty()) firstScoreTimes.add(((Number) ((JSONObject) scoringEvents.get(0)).get("time")).doubleValue());
+
+            for (Object cycleTime : runCycleTimes) {
+                cycleTimes.add(((Number) cycleTime).doubleValue());
+            }
+        }
+
+        executor.shutdown();
+
+        System.out.printf("Auto \"%s\": %d runs, %d crashed or timed out%s%n", options.getOrDefault("auto", "Selectable Path"), runs, failedSeeds.size(),
+                failedSeeds.isEmpty() ? "" : " (seeds " + failedSeeds + ")");
+        System.out.printf("Success rate (%d+ scores): %.1f%%%n", scoresToSucceed, 100.0 * successes / Math.max(1, runs - failedSeeds.size()));
+        System.out.println("Time to first score: " + describeDistribution(firstScoreTimes));
+        System.out.println("Cycle time: " + describeDistribution(cycleTimes));
+        System.out.println("Results of every run: " + resultsDirectory);
+    }
+
+    /**
+     * @return The result of the run, or null if it crashed or couldn't be started
+     */
+    private static JSONObject getResult(Future<JSONObject> result) throws InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException exception) {
+            exception.getCause().printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * @return The result of the run, or null if it crashed or timed out
+     */
+    private static JSONObject runWorker(List<String> runnerArguments, long seed, Path resultsDirectory, long timeoutSeconds)
+            throws IOException, InterruptedException {
+        final Path output = resultsDirectory.resolve("run-" + seed + ".json");
+        final List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Djava.library.path=" + System.getProperty("java.library.path"),
+                "-cp", System.getProperty("java.class.path"),
+                HeadlessAutoRunner.class.getName(),
+                "--seed", String.valueOf(seed),
+                "--output", output.toString()));
+
+        command.addAll(runnerArguments);
+
+        final Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(resultsDirectory.resolve("run-" + seed + ".log").toFile())
+                .start();
+
+        if (!process.waitFor(timeoutSeconds, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            new TimeoutException("Run with seed " + seed + " took over " + timeoutSeconds + " seconds").printStackTrace();
+            return null;
+        }
+
+        if (process.exitValue() != 0 || !Files.exists(output)) return null;
+
+        try {
+            return (JSONObject) new JSONParser().parse(Files.readString(output));
+        } catch (ParseException exception) {
+            exception.printStackTrace();
+            return null;
+        }
+    }
+
+    private static String describeDistribution(List<Double> values) {
+        if (values.isEmpty()) return "no samples";
+
+        final double[] sorted = values.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+
+        return String.format("mean %.2fs, p10 %.2fs, median %.2fs, p90 %.2fs, worst %.2fs (%d samples)",
+                Arrays.stream(sorted).average().orElse(0),
+                getPercentile(sorted, 0.1), getPercentile(sorted, 0.5), getPercentile(sorted, 0.9),
+                sorted[sorted.length - 1], sorted.length);
+    }
+
+    private static double getPercentile(double[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(percentile * sorted.length))];
+    }
+
+    /**
+     * @return The options that are passed on to every run, without the ones of the evaluation itself
+     */
+    private static List<String> getRunnerArguments(Map<String, String> options) {
+        final List<String> arguments = new ArrayList<>();
+
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            if (List.of("runs", "workers", "base-seed", "scores-to-succeed", "seed", "output").contains(option.getKey())) continue;
+
+            arguments.add("--" + option.getKey());
+            arguments.add(option.getValue());
+        }
+
+        return arguments;
+    }
+}
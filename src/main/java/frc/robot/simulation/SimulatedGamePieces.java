@@ -0,0 +1,175 @@
+package frc.robot.simulation;
+
+import com.pathplanner.lib.util.FlippingUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.util.Units;
+import frc.lib.util.objectdetection.SimulatedFieldObjects;
+import frc.lib.util.objectdetection.SimulatedFieldObjects.FieldObject;
+import frc.robot.utilities.FieldConstants.Feeder;
+import org.littletonrobotics.junction.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static frc.robot.RobotContainer.ALGAE_BLASTER;
+import static frc.robot.RobotContainer.CORAL_INTAKE;
+import static frc.robot.utilities.FieldConstants.BLUE_REEF_CENTER;
+
+/**
+ * The 2025 game pieces on the simulated field, as seen by the simulated detection cameras.
+ * <p>
+ * Coral is loaded at the feeders and leaves the robot whenever the coral intake releases it. Coral released at the reef
+ * counts as scored, anywhere else it falls to the floor. Swinging the algae blaster next to the reef knocks the algae in
+ * front of it to the floor.
+ */
+public class SimulatedGamePieces {
+    public static final String
+            CORAL = "Coral",
+            ALGAE = "Algae";
+
+    private static final double
+            STAGED_PIECE_X = Units.inchesToMeters(48),
+            STAGED_PIECE_SPACING = Units.inchesToMeters(72),
+            STAGED_CORAL_HEIGHT = 0.15,
+            STAGED_ALGAE_HEIGHT = 0.5,
+            CORAL_RADIUS = Units.inchesToMeters(4.5) / 2,
+            ALGAE_RADIUS = Units.inchesToMeters(16.25) / 2;
+
+    private static final double
+            REEF_ALGAE_DISTANCE = 0.7,
+            LOW_REEF_ALGAE_HEIGHT = 0.91,
+            HIGH_REEF_ALGAE_HEIGHT = 1.31,
+            KNOCKED_ALGAE_DISTANCE = 0.95,
+            KNOCKED_ALGAE_SIDEWAYS_DISTANCE = 0.5;
+
+    private static final double
+            FEEDER_REACH_METERS = 0.5,
+            REEF_SCORING_DISTANCE_METERS = 1.6,
+            BLASTER_REACH_METERS = 0.5,
+            BLASTING_VELOCITY = 20;
+
+    private static final Transform2d ROBOT_TO_RELEASE_POINT = new Transform2d(0.45, 0, Rotation2d.kZero);
+    private static final Translation2d[] REEF_CENTERS = {BLUE_REEF_CENTER, FlippingUtil.flipFieldPosition(BLUE_REEF_CENTER)};
+
+    private static final List<FieldObject> REEF_ALGAE = new ArrayList<>();
+
+    private static boolean isHoldingCoral = true;
+    private static int lastReleasedCoralCount = 0, scoredCoralCount = 0;
+
+    static {
+        placeStartingPieces();
+    }
+
+    /**
+     * Call this once every robot loop, in <code>simulationPeriodic()</code>. Also updates {@link SimulatedFieldObjects}.
+     *
+     * @param truePose Where the simulated robot really is
+     */
+    public static void update(Pose2d truePose) {
+        updateCoral(truePose);
+        updateAlgae(truePose);
+
+        SimulatedFieldObjects.update(truePose);
+
+        Logger.recordOutput("GamePieces/IsHoldingCoral", isHoldingCoral);
+        Logger.recordOutput("GamePieces/ScoredCoralCount", scoredCoralCount);
+    }
+
+    private static void updateCoral(Pose2d robotPose) {
+        final int releasedCoralCount = CORAL_INTAKE.getReleasedCoralCount();
+
+        if (releasedCoralCount != lastReleasedCoralCount) {
+            lastReleasedCoralCount = releasedCoralCount;
+
+            if (isHoldingCoral) releaseCoral(robotPose.transformBy(ROBOT_TO_RELEASE_POINT).getTranslation());
+
+            isHoldingCoral = false;
+        }
+
+        if (!isHoldingCoral && CORAL_INTAKE.isIntaking() && isAtFeeder(robotPose))
+            isHoldingCoral = true;
+    }
+
+    private static void releaseCoral(Translation2d releasePoint) {
+        for (Translation2d reefCenter : REEF_CENTERS) {
+            if (releasePoint.getDistance(reefCenter) < REEF_SCORING_DISTANCE_METERS) {
+                scoredCoralCount++;
+                return;
+            }
+        }
+
+        SimulatedFieldObjects.addObject(CORAL, releasePoint.getX(), releasePoint.getY(), CORAL_RADIUS);
+    }
+
+    private static void updateAlgae(Pose2d robotPose) {
+        if (Math.abs(ALGAE_BLASTER.getVelocity()) < BLASTING_VELOCITY) return;
+
+        final Translation2d blasterPoint = robotPose.transformBy(ROBOT_TO_RELEASE_POINT).getTranslation();
+        final Iterator<FieldObject> reefAlgae = REEF_ALGAE.iterator();
+
+        while (reefAlgae.hasNext()) {
+            final FieldObject algae = reefAlgae.next();
+
+            if (Math.hypot(algae.x - blasterPoint.getX(), algae.y - blasterPoint.getY()) > BLASTER_REACH_METERS) continue;
+
+            reefAlgae.remove();
+            SimulatedFieldObjects.removeObject(algae);
+            knockAlgaeOff(algae);
+        }
+    }
+
+    /**
+     * Drops the algae at the foot of its reef face, off to the side of the robot that knocked it.
+     */
+    private static void knockAlgaeOff(FieldObject algae) {
+        final Translation2d algaePosition = new Translation2d(algae.x, algae.y);
+        final Translation2d reefCenter = algaePosition.nearest(List.of(REEF_CENTERS));
+        final Rotation2d direction = algaePosition.minus(reefCenter).getAngle();
+
+        final Translation2d landingPoint = reefCenter
+                .plus(new Translation2d(KNOCKED_ALGAE_DISTANCE, direction))
+                .plus(new Translation2d(KNOCKED_ALGAE_SIDEWAYS_DISTANCE, direction.plus(Rotation2d.kCCW_90deg)));
+
+        SimulatedFieldObjects.addObject(ALGAE, landingPoint.getX(), landingPoint.getY(), ALGAE_RADIUS);
+    }
+
+    private static boolean isAtFeeder(Pose2d robotPose) {
+        for (Feeder feeder : Feeder.values()) {
+            if (feeder.getPose().getTranslation().getDistance(robotPose.getTranslation()) < FEEDER_REACH_METERS)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Places the coral and algae staged in front of both alliances, and the algae on both reefs.
+     */
+    private static void placeStartingPieces() {
+        for (int i = -1; i <= 1; i++) {
+            final Translation2d stagedPiece = new Translation2d(STAGED_PIECE_X, BLUE_REEF_CENTER.getY() + i * STAGED_PIECE_SPACING);
+
+            placeForBothAlliances(CORAL, stagedPiece, STAGED_CORAL_HEIGHT);
+            placeForBothAlliances(ALGAE, stagedPiece, STAGED_ALGAE_HEIGHT);
+        }
+
+        for (int face = 0; face < 6; face++) {
+            final Translation2d reefAlgae = BLUE_REEF_CENTER.plus(new Translation2d(REEF_ALGAE_DISTANCE, Rotation2d.fromDegrees(60 * face)));
+
+            REEF_ALGAE.addAll(placeForBothAlliances(ALGAE, reefAlgae, face % 2 == 0 ? HIGH_REEF_ALGAE_HEIGHT : LOW_REEF_ALGAE_HEIGHT));
+        }
+    }
+
+    private static List<FieldObject> placeForBothAlliances(String type, Translation2d bluePosition, double height) {
+        final Translation2d redPosition = FlippingUtil.flipFieldPosition(bluePosition);
+
+        return List.of(
+                SimulatedFieldObjects.addObject(type, bluePosition.getX(), bluePosition.getY(), height),
+                SimulatedFieldObjects.addObject(type, redPosition.getX(), redPosition.getY(), height)
+        );
+    }
+}
@@ -0,0 +1,314 @@
+package frc.robot.simulation;
+
+import com.pathplanner.lib.util.FlippingUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.util.Units;
+import frc.lib.generic.hardware.motor.Motor;
+import frc.lib.generic.hardware.motor.hardware.simulated.SimulatedTalonMotor;
+import frc.lib.generic.simulation.DriveWheelSimulation;
+import frc.lib.generic.simulation.GenericPhysicsSimulation;
+import frc.lib.generic.simulation.SimulationRandomization;
+import frc.lib.generic.simulation.SimulationScheduler;
+import org.littletonrobotics.junction.Logger;
+
+import static frc.robot.GlobalConstants.FASTER_THREAD_LOCK;
+import static frc.robot.GlobalConstants.GRAVITY;
+import static frc.robot.utilities.FieldConstants.BLUE_REEF_CENTER;
+import static frc.robot.utilities.FieldConstants.FIELD_LENGTH;
+import static frc.robot.utilities.FieldConstants.FIELD_WIDTH;
+import static frc.robot.utilities.PathPlannerConstants.ROBOT_CONFIG;
+
+/**
+ * Simulates the swerve as one rigid body, pushed around by the grip of its tires. This is where the simulated robot actually is.
+ * <p>
+ * Every step, each tire pushes to cancel its slip against the ground, both along and across the wheel.
+ * The push is limited by the tire's friction and the weight on it, which shifts as the robot accelerates.
+ * Past that limit the wheel spins or skids, and the drive encoders count ground the robot didn't cover.
+ * The robot stops against the field walls and the reefs.
+ * <p>
+ * The drive encoders, the gyro and the vision simulation all read this simulation, so the pose estimator sees
+ * what it would see on a field. Steps run with the motors, see {@link SimulationScheduler}.
+ */
+public class SwerveChassisSimulation {
+    /**
+     * Half the length of the bumpers, as in the PathPlanner settings.
+     */
+    private static final double ROBOT_HALF_LENGTH_METERS = 0.4;
+    private static final double CENTER_OF_GRAVITY_HEIGHT_METERS = 0.3;
+
+    private static final double REEF_APOTHEM_METERS = Units.inchesToMeters(65.5) / 2;
+    private static final Translation2d[] REEF_CENTERS = {BLUE_REEF_CENTER, FlippingUtil.flipFieldPosition(BLUE_REEF_CENTER)};
+
+    private static final double TIRE_FRICTION_SPREAD = 0.15;
+
+    private final Motor[] driveMotors, steerMotors;
+    private final double[] moduleX, moduleY;
+    private final double wheelRadiusMeters;
+
+    private final double massKilograms = ROBOT_CONFIG.massKG, momentOfInertia = ROBOT_CONFIG.MOI;
+    private final double tireFriction = ROBOT_CONFIG.moduleConfig.wheelCOF * SimulationRandomization.getScale("TireFriction", TIRE_FRICTION_SPREAD);
+
+    private final double[] robotCornersX = new double[4], robotCornersY = new double[4];
+    private final double[] reefCornersX = new double[6], reefCornersY = new double[6];
+
+    private double x = 0, y = 0, headingRadians = 0;
+    private double velocityX = 0, velocityY = 0, omegaRadiansPerSecond = 0;
+    private double forwardAcceleration = 0, leftwardAcceleration = 0;
+
+    private int slippingModules = 0;
+    private boolean isColliding = false;
+
+    private volatile Pose2d pose = new Pose2d();
+
+    /**
+     * @param driveMotors The drive motors, simulated with a {@link DriveWheelSimulation}
+     * @param steerMotors The steer motors, in the same order, whose position is the module angle
+     */
+    public SwerveChassisSimulation(Motor[] driveMotors, Motor[] steerMotors, Translation2d[] moduleLocations, double wheelRadiusMeters) {
+        this.driveMotors = driveMotors;
+        this.steerMotors = steerMotors;
+        this.wheelRadiusMeters = wheelRadiusMeters;
+
+        moduleX = new double[moduleLocations.length];
+        moduleY = new double[moduleLocations.length];
+
+        for (int i = 0; i < moduleLocations.length; i++) {
+            moduleX[i] = moduleLocations[i].getX();
+            moduleY[i] = moduleLocations[i].getY();
+        }
+
+        SimulationScheduler.registerCoupledSimulation(this::update);
+    }
+
+    public Pose2d getPose() {
+        return pose;
+    }
+
+    /**
+     * @return The heading, continuous over turns, for the simulated gyro
+     */
+    public double getYawRotations() {
+        return Units.radiansToRotations(headingRadians);
+    }
+
+    /**
+     * Places the robot, still, at the given pose. Like placing the robot on the field before a match.
+     */
+    public void resetPose(Pose2d newPose) {
+        FASTER_THREAD_LOCK.lock();
+
+        try {
+            x = newPose.getX();
+            y = newPose.getY();
+            headingRadians = newPose.getRotation().getRadians();
+            velocityX = velocityY = omegaRadiansPerSecond = 0;
+            pose = newPose;
+        } finally {
+            FASTER_THREAD_LOCK.unlock();
+        }
+    }
+
+    /**
+     * Call this every loop, to log the simulation.
+     */
+    public void periodic() {
+        Logger.recordOutput("Poses/Robot/Simulation/GroundTruthPose", pose);
+        Logger.recordOutput("Swerve/Simulation/SlippingModules", slippingModules);
+        Logger.recordOutput("Swerve/Simulation/IsColliding", isColliding);
+    }
+
+    private void update(double timeSeconds) {
+        final double cos = Math.cos(headingRadians), sin = Math.sin(headingRadians);
+
+        double forceX = 0, forceY = 0, torque = 0;
+        slippingModules = 0;
+
+        for (int i = 0; i < moduleX.length; i++) {
+            final DriveWheelSimulation wheel = getDriveWheel(driveMotors[i]);
+            final GenericPhysicsSimulation steer = ((SimulatedTalonMotor) steerMotors[i]).getPhysicsSimulation();
+
+            if (wheel == null || steer == null) continue;
+
+            final double moduleAngle = headingRadians + Units.rotationsToRadians(steer.getSystemPositionRotations());
+            final double directionX = Math.cos(moduleAngle), directionY = Math.sin(moduleAngle);
+
+            final double offsetX = moduleX[i] * cos - moduleY[i] * sin, offsetY = moduleX[i] * sin + moduleY[i] * cos;
+            final double contactVelocityX = velocityX - omegaRadiansPerSecond * offsetY, contactVelocityY = velocityY + omegaRadiansPerSecond * offsetX;
+
+            final double rollingVelocity = contactVelocityX * directionX + contactVelocityY * directionY;
+            final double lateralVelocity = contactVelocityY * directionX - contactVelocityX * directionY;
+
+            final double rollingArm = offsetX * directionY - offsetY * directionX, lateralArm = offsetX * directionX + offsetY * directionY;
+
+            // The force that cancels the slip within this step. The chassis is shared by all modules, so each takes only its share.
+            double rollingForce = (wheel.getVelocityRadiansPerSecond() * wheelRadiusMeters - rollingVelocity) / (timeSeconds *
+                    (wheelRadiusMeters * wheelRadiusMeters / wheel.getMomentOfInertia()
+                            + moduleX.length * (1 / massKilograms + rollingArm * rollingArm / momentOfInertia)));
+            double lateralForce = -lateralVelocity / (timeSeconds *
+                    moduleX.length * (1 / massKilograms + lateralArm * lateralArm / momentOfInertia));
+
+            final double maximumForce = tireFriction * getNormalForce(i), force = Math.hypot(rollingForce, lateralForce);
+
+            if (force > maximumForce) {
+                rollingForce *= maximumForce / force;
+                lateralForce *= maximumForce / force;
+                slippingModules++;
+            }
+
+            wheel.applyTorque(-rollingForce * wheelRadiusMeters, timeSeconds);
+
+            forceX += rollingForce * directionX - lateralForce * directionY;
+            forceY += rollingForce * directionY + lateralForce * directionX;
+            torque += rollingForce * rollingArm + lateralForce * lateralArm;
+        }
+
+        final double accelerationX = forceX / massKilograms, accelerationY = forceY / massKilograms;
+
+        forwardAcceleration = accelerationX * cos + accelerationY * sin;
+        leftwardAcceleration = accelerationY * cos - accelerationX * sin;
+
+        velocityX += accelerationX * timeSeconds;
+        velocityY += accelerationY * timeSeconds;
+        omegaRadiansPerSecond += torque / momentOfInertia * timeSeconds;
+
+        x += velocityX * timeSeconds;
+        y += velocityY * timeSeconds;
+        headingRadians += omegaRadiansPerSecond * timeSeconds;
+
+        isColliding = false;
+        collideWithWalls();
+
+        for (Translation2d reefCenter : REEF_CENTERS) {
+            collideWithReef(reefCenter);
+        }
+
+        pose = new Pose2d(x, y, new Rotation2d(headingRadians));
+    }
+
+    /**
+     * The weight on a module, shifted towards the back while accelerating forwards and to the right while accelerating leftwards.
+     */
+    private double getNormalForce(int module) {
+        final double staticForce = massKilograms * GRAVITY / moduleX.length;
+        final double transferredForce = massKilograms * CENTER_OF_GRAVITY_HEIGHT_METERS / moduleX.length
+                * (forwardAcceleration / moduleX[module] + leftwardAcceleration / moduleY[module]);
+
+        return Math.max(0, staticForce - transferredForce);
+    }
+
+    private void collideWithWalls() {
+        updateRobotCorners();
+
+        double minimumX = Double.POSITIVE_INFINITY, maximumX = Double.NEGATIVE_INFINITY;
+        double minimumY = Double.POSITIVE_INFINITY, maximumY = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < 4; i++) {
+            minimumX = Math.min(minimumX, robotCornersX[i]);
+            maximumX = Math.max(maximumX, robotCornersX[i]);
+            minimumY = Math.min(minimumY, robotCornersY[i]);
+            maximumY = Math.max(maximumY, robotCornersY[i]);
+        }
+
+        if (minimumX < 0) pushOut(-minimumX, 1, 0);
+        if (maximumX > FIELD_LENGTH) pushOut(maximumX - FIELD_LENGTH, -1, 0);
+        if (minimumY < 0) pushOut(-minimumY, 0, 1);
+        if (maximumY > FIELD_WIDTH) pushOut(maximumY - FIELD_WIDTH, 0, -1);
+    }
+
+    /**
+     * Separates the robot from the reef's hexagon along the axis they overlap the least on, as both are convex.
+     */
+    private void collideWithReef(Translation2d reefCenter) {
+        final double reefCircumradius = REEF_APOTHEM_METERS / Math.cos(Math.PI / 6);
+
+        if (Math.hypot(x - reefCenter.getX(), y - reefCenter.getY()) > reefCircumradius + ROBOT_HALF_LENGTH_METERS * Math.sqrt(2))
+            return;
+
+        updateRobotCorners();
+
+        for (int i = 0; i < 6; i++) {
+            reefCornersX[i] = reefCenter.getX() + reefCircumradius * Math.cos(Math.PI / 6 + Math.PI / 3 * i);
+            reefCornersY[i] = reefCenter.getY() + reefCircumradius * Math.sin(Math.PI / 6 + Math.PI / 3 * i);
+        }
+
+        double smallestOverlap = Double.POSITIVE_INFINITY, normalX = 0, normalY = 0;
+
+        for (int axis = 0; axis < 5; axis++) {
+            // The robot's two axes, then the normals of the reef's faces, which face every 60 degrees
+            final double axisAngle = axis < 2 ? headingRadians + Math.PI / 2 * axis : Math.PI / 3 * (axis - 2);
+            final double axisX = Math.cos(axisAngle), axisY = Math.sin(axisAngle);
+
+            final double overlap = Math.min(
+                    getProjectionMaximum(robotCornersX, robotCornersY, axisX, axisY) - getProjectionMinimum(reefCornersX, reefCornersY, axisX, axisY),
+                    getProjectionMaximum(reefCornersX, reefCornersY, axisX, axisY) - getProjectionMinimum(robotCornersX, robotCornersY, axisX, axisY));
+
+            if (overlap <= 0) return;
+
+            if (overlap < smallestOverlap) {
+                final double direction = Math.signum((x - reefCenter.getX()) * axisX + (y - reefCenter.getY()) * axisY);
+
+                smallestOverlap = overlap;
+                normalX = direction * axisX;
+                normalY = direction * axisY;
+            }
+        }
+
+        pushOut(smallestOverlap, normalX, normalY);
+    }
+
+    /**
+     * Moves the robot out of an obstacle along the normal, and stops it from moving further in.
+     */
+    private void pushOut(double depth, double normalX, double normalY) {
+        x += depth * normalX;
+        y += depth * normalY;
+
+        final double approachVelocity = velocityX * normalX + velocityY * normalY;
+
+        if (approachVelocity < 0) {
+            velocityX -= approachVelocity * normalX;
+            velocityY -= approachVelocity * normalY;
+        }
+
+        isColliding = true;
+        updateRobotCorners();
+    }
+
+    private void updateRobotCorners() {
+        final double cos = Math.cos(headingRadians), sin = Math.sin(headingRadians);
+
+        for (int i = 0; i < 4; i++) {
+            final double cornerX = (i == 0 || i == 3 ? 1 : -1) * ROBOT_HALF_LENGTH_METERS;
+            final double cornerY = (i < 2 ? 1 : -1) * ROBOT_HALF_LENGTH_METERS;
+
+            robotCornersX[i] = x + cornerX * cos - cornerY * sin;
+            robotCornersY[i] = y + cornerX * sin + cornerY * cos;
+        }
+    }
+
+    private static double getProjectionMinimum(double[] cornersX, double[] cornersY, double axisX, double axisY) {
+        double minimum = Double.POSITIVE_INFINITY;
+
+        for (int i = 0; i < cornersX.length; i++) {
+            minimum = Math.min(minimum, cornersX[i] * axisX + cornersY[i] * axisY);
+        }
+
+        return minimum;
+    }
+
+    private static double getProjectionMaximum(double[] cornersX, double[] cornersY, double axisX, double axisY) {
+        double maximum = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < cornersX.length; i++) {
+            maximum = Math.max(maximum, cornersX[i] * axisX + cornersY[i] * axisY);
+        }
+
+        return maximum;
+    }
+
+    private static DriveWheelSimulation getDriveWheel(Motor driveMotor) {
+        return ((SimulatedTalonMotor) driveMotor).getPhysicsSimulation() instanceof DriveWheelSimulation wheel ? wheel : null;
+    }
+}
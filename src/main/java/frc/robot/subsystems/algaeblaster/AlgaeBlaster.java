@@ -52,6 +52,33 @@ public class AlgaeBlaster extends GenericSubsystem {
         return ARM_BLASTER_MOTOR.getSystemPosition();
     }
 
+    public double getVelocity() {
+        return ARM_BLASTER_MOTOR.getSystemVelocity();
+    }
+
+    /**
+     * Tracks a single setpoint of a trajectory sampled outside the motor, using the same gains as {@link #algaeBlasterFullThrottle}.
+     * Should be called every loop while following the trajectory.
+     *
+     * @param positionRotations the setpoint's position
+     * @param velocity          the setpoint's velocity, in rotations per second
+     */
+    public void followSetpoint(double positionRotations, double velocity) {
+        final double output =
+                (positionRotations - ARM_BLASTER_MOTOR.getSystemPosition()) * kP
+                        + velocity * kV
+                        + kS * Math.signum(velocity);
+
+        ARM_BLASTER_MOTOR.setOutput(MotorProperties.ControlMode.VOLTAGE, output);
+    }
+
+    /**
+     * Sends a single position request, which the motor keeps holding until another output is set.
+     */
+    public void holdPosition(double positionRotations) {
+        ARM_BLASTER_MOTOR.setOutput(MotorProperties.ControlMode.POSITION, positionRotations);
+    }
+
     public boolean isStill() {
         return Math.abs(ARM_BLASTER_MOTOR.getSystemPosition()) < 4;
     }
@@ -11,6 +11,8 @@ import frc.lib.generic.simulation.SimulationProperties;
 import frc.lib.generic.visualization.mechanisms.MechanismFactory;
 import frc.lib.generic.visualization.mechanisms.SingleJointedArmMechanism2d;
 
+import java.util.Arrays;
+
 import static edu.wpi.first.units.Units.Second;
 import static edu.wpi.first.units.Units.Volts;
 import static frc.lib.generic.hardware.motor.MotorProperties.SparkType.FLEX;
@@ -51,6 +53,20 @@ public class AlgaeBlasterConstants {
             ARM_MINIMUM_ROTATION = -0.1,
             ARM_MAXIMUM_ROTATION = 0.6;
 
+    private static final double
+            PROFILE_MAX_VELOCITY = 60,
+            PROFILE_MAX_ACCELERATION = 37,
+            PROFILE_MAX_JERK = 370;
+
+    /**
+     * Limits of the arm when it moves along one trajectory with the elevator, in system rotations.
+     * The same as the limits of its own profile, which has no jerk limit yet, since switching it to an S-curve needs retuning.
+     */
+    public static final double
+            SYNCHRONIZED_MAX_VELOCITY = PROFILE_MAX_VELOCITY,
+            SYNCHRONIZED_MAX_ACCELERATION = PROFILE_MAX_ACCELERATION,
+            SYNCHRONIZED_MAX_JERK = PROFILE_MAX_JERK;
+
     protected static final SingleJointedArmMechanism2d BLASTER_ARM_MECHANISM = MechanismFactory.createSingleJointedArmMechanism("Algae Blaster Mechanism", 4);
 
     static {
@@ -64,8 +80,10 @@ public class AlgaeBlasterConstants {
 
         blasterMotorConfiguration.slot = new MotorProperties.Slot(0.145, 0, 0, 0.084973, 0, 0.13081, 0, Feedforward.Type.ARM);
 
-        blasterMotorConfiguration.profileMaxVelocity = 60;
-        blasterMotorConfiguration.profileMaxAcceleration = 37;
+        blasterMotorConfiguration.profileMaxVelocity = PROFILE_MAX_VELOCITY;
+        blasterMotorConfiguration.profileMaxAcceleration = PROFILE_MAX_ACCELERATION;
+        // Used once the profile is jerk limited
+        blasterMotorConfiguration.profilePresets = Arrays.stream(BlasterArmState.values()).mapToDouble(BlasterArmState::getRotations).toArray();
 
         blasterMotorConfiguration.closedLoopTolerance = 0.03;
 
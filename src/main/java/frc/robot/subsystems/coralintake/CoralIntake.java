@@ -14,13 +14,15 @@ import static frc.robot.subsystems.coralintake.CoralIntakeConstants.INTAKE_MOTOR
 
 public class CoralIntake extends GenericSubsystem {
     private int hasSeenCoralCounter = 0;
+    private int releasedCoralCount = 0;
+    private boolean isIntaking = false;
 
     public Command prepareGamePiece() {
-        return setMotorVoltage(1.8).until(this::hasCoral);
+        return intakeGamePiece(1.8);
     }
 
     public Command prepareThenTakeBack() {
-        return setMotorVoltage(1.8).until(this::hasCoral)
+        return intakeGamePiece(1.8)
                 .andThen(setMotorVoltage(-0.2).withTimeout(0.1));
     }
 
@@ -41,28 +43,44 @@ public class CoralIntake extends GenericSubsystem {
     }
 
     public Command releaseToL4Mechanism() {
-        return (((setMotorVoltage(2).until(this::hasCoral))
+        return (((intakeGamePiece(2))
                 .andThen(setMotorVoltage(1.42)).until(ALGAE_BLASTER::hasCoralInL4Mechanism)));
     }
 
     public Command scoreToL4() {
-        return setMotorVoltage(-5).withTimeout(0.3); //TODO: HAS CHANGED
+        return setMotorVoltage(-5).withTimeout(0.3) //TODO: HAS CHANGED
+                .finallyDo(this::countReleasedCoral);
     }
 
     public Command releaseGamePiece() {
         return setMotorVoltage(3).until(() -> !hasCoral())
-                .andThen(setMotorVoltage(5)).withTimeout(0.43);
+                .andThen(setMotorVoltage(5)).withTimeout(0.43)
+                .finallyDo(this::countReleasedCoral);
     }
 
     public Command removeAlgae() {
         return setMotorVoltage(3);
     }
 
+    /**
+     * Turns inwards until the coral reaches the beam break, e.g. to load it from a feeder.
+     */
+    public Command intakeGamePiece(double voltage) {
+        return setMotorVoltage(voltage, true).until(this::hasCoral);
+    }
+
     public Command setMotorVoltage(double voltage) {
+        return setMotorVoltage(voltage, false);
+    }
+
+    private Command setMotorVoltage(double voltage, boolean isIntakeCommand) {
         return new FunctionalCommand(
-                () -> {},
+                () -> isIntaking = isIntakeCommand,
                 () -> setVoltage(voltage),
-                (interrupt) -> INTAKE_MOTOR.stopMotor(),
+                (interrupt) -> {
+                    isIntaking = false;
+                    INTAKE_MOTOR.stopMotor();
+                },
                 () -> false,
                 this
         );
@@ -91,6 +109,27 @@ public class CoralIntake extends GenericSubsystem {
         return hasSeenCoralCounter > 1;
     }
 
+    /**
+     * @return Whether an {@link #intakeGamePiece} command is running. Releasing coral and removing algae turn the
+     * motor the same way, but don't count
+     */
+    @AutoLogOutput(key = "IsIntakingCoral")
+    public boolean isIntaking() {
+        return isIntaking;
+    }
+
+    /**
+     * Counts every release that ran to the end, so scoring can be followed without game piece sensors (e.g. in simulation).
+     */
+    @AutoLogOutput(key = "ReleasedCoralCount")
+    public int getReleasedCoralCount() {
+        return releasedCoralCount;
+    }
+
+    private void countReleasedCoral(boolean interrupted) {
+        if (!interrupted) releasedCoralCount++;
+    }
+
     private void setVoltage(double voltage) {
         INTAKE_MOTOR.setOutput(MotorProperties.ControlMode.VOLTAGE, voltage);
     }
@@ -58,7 +58,7 @@ public class Elevator extends GenericSubsystem {
         return new FunctionalCommand(
                 () -> {
                 },
-                () -> MASTER_MOTOR.setOutput(MotorProperties.ControlMode.VOLTAGE, KG),
+                () -> ELEVATOR_MOTORS.setOutput(MotorProperties.ControlMode.VOLTAGE, KG),
                 interrupt -> stopMotors(),
                 () -> false,
                 this
@@ -67,15 +67,46 @@ public class Elevator extends GenericSubsystem {
 
     public boolean isAtTargetHeight(ElevatorHeight level) {
         if (level == null) return false;
-        return Math.abs(MASTER_MOTOR.getSystemPosition() - level.getRotations()) < 0.12;
+        return Math.abs(ELEVATOR_MOTORS.getSystemPosition() - level.getRotations()) < 0.12;
     }
 
     public boolean isAtTargetPosition() {
-        return MASTER_MOTOR.isAtPositionSetpoint();
+        return ELEVATOR_MOTORS.isAtPositionSetpoint();
+    }
+
+    public double getPosition() {
+        return ELEVATOR_MOTORS.getSystemPosition();
+    }
+
+    public double getVelocity() {
+        return ELEVATOR_MOTORS.getSystemVelocity();
+    }
+
+    /**
+     * Tracks a single setpoint of a trajectory sampled outside the motor, e.g. one synchronized with other mechanisms.
+     * Should be called every loop while following the trajectory.
+     *
+     * @param positionRotations the setpoint's position
+     * @param velocity          the setpoint's velocity, in rotations per second
+     * @param acceleration      the setpoint's acceleration, in rotations per second squared
+     */
+    public void followSetpoint(double positionRotations, double velocity, double acceleration) {
+        final double currentPosition = ELEVATOR_MOTORS.getSystemPosition();
+
+        ELEVATOR_MOTORS.setOutput(MotorProperties.ControlMode.VOLTAGE,
+                SYNCHRONIZED_FEEDFORWARD.calculate(currentPosition, velocity, acceleration)
+                        + SYNCHRONIZED_KP * (positionRotations - currentPosition));
+    }
+
+    /**
+     * Sends a single position request, which the motors keep holding until another output is set.
+     */
+    public void holdPosition(double positionRotations) {
+        setMotorPosition(positionRotations);
     }
 
     public double getCurrentHeight() {
-        return Conversions.rotationsToMetres(MASTER_MOTOR.getSystemPosition(), WHEEL_DIAMETER);
+        return Conversions.rotationsToMetres(ELEVATOR_MOTORS.getSystemPosition(), WHEEL_DIAMETER);
     }
 
     public Command runCurrentZeroing() {
@@ -87,13 +118,13 @@ public class Elevator extends GenericSubsystem {
                     timer.restart();
                     count[0] = 0;
                 },
-                () -> MASTER_MOTOR.setOutput(MotorProperties.ControlMode.VOLTAGE, 1),
+                () -> ELEVATOR_MOTORS.setOutput(MotorProperties.ControlMode.VOLTAGE, 1),
                 (interrupt) -> {
-                    MASTER_MOTOR.stopMotor();
-                    MASTER_MOTOR.setMotorEncoderPosition(ELEVATOR_MAX_EXTENSION_ROTATIONS);
+                    ELEVATOR_MOTORS.stopMotor();
+                    ELEVATOR_MOTORS.setMotorEncoderPosition(ELEVATOR_MAX_EXTENSION_ROTATIONS);
                 },
                 () -> {
-                    if (MASTER_MOTOR.getCurrent() > 31.0) count[0]++;
+                    if (ELEVATOR_MOTORS.getCurrent() > 31.0) count[0]++;
                     else count[0] = 0;
 
                     return count[0] > 4 && timer.hasElapsed(0.1);
@@ -106,7 +137,7 @@ public class Elevator extends GenericSubsystem {
         return new FunctionalCommand(
                 () -> {
                 },
-                () -> MASTER_MOTOR.setOutput(MotorProperties.ControlMode.VOLTAGE, -1.5),
+                () -> ELEVATOR_MOTORS.setOutput(MotorProperties.ControlMode.VOLTAGE, -1.5),
                 (interrupt) -> stop(),
                 () -> false,
                 this
@@ -117,7 +148,7 @@ public class Elevator extends GenericSubsystem {
         return new FunctionalCommand(
                 () -> {
                 },
-                () -> MASTER_MOTOR.setOutput(MotorProperties.ControlMode.VOLTAGE, 1.5),
+                () -> ELEVATOR_MOTORS.setOutput(MotorProperties.ControlMode.VOLTAGE, 1.5),
                 (interrupt) -> stop(),
                 () -> false,
                 this
@@ -125,14 +156,12 @@ public class Elevator extends GenericSubsystem {
     }
 
     public void stop() {
-        MASTER_MOTOR.stopMotor();
-        SLAVE_MOTOR.stopMotor();
+        ELEVATOR_MOTORS.stopMotor();
     }
 
     @Override
     public void setIdleMode(MotorProperties.IdleMode idleMode) {
-        MASTER_MOTOR.setIdleMode(idleMode);
-        SLAVE_MOTOR.setIdleMode(idleMode);
+        ELEVATOR_MOTORS.setIdleMode(idleMode);
     }
 
     @Override
@@ -142,21 +171,21 @@ public class Elevator extends GenericSubsystem {
 
     @Override
     public void sysIdDrive(double voltage) {
-        MASTER_MOTOR.setOutput(MotorProperties.ControlMode.VOLTAGE, voltage);
+        ELEVATOR_MOTORS.setOutput(MotorProperties.ControlMode.VOLTAGE, voltage);
     }
 
     @Override
     public void sysIdUpdateLog(SysIdRoutineLog log) {
         log.motor("ELEVATOR_MOTOR")
-                .voltage(Volts.of(MASTER_MOTOR.getVoltage()))
-                .angularPosition(Rotations.of(MASTER_MOTOR.getSystemPosition()))
-                .angularVelocity(RotationsPerSecond.of(MASTER_MOTOR.getSystemVelocity()));
+                .voltage(Volts.of(ELEVATOR_MOTORS.getVoltage()))
+                .angularPosition(Rotations.of(ELEVATOR_MOTORS.getSystemPosition()))
+                .angularVelocity(RotationsPerSecond.of(ELEVATOR_MOTORS.getSystemVelocity()));
     }
 
     public void printPose() {
         if (ELEVATOR_MECHANISM != null) {
-            final double currentElevatorPosition = Conversions.rotationsToMetres(MASTER_MOTOR.getSystemPosition(), WHEEL_DIAMETER);
-            final double targetElevatorPosition = Conversions.rotationsToMetres(MASTER_MOTOR.getClosedLoopTarget(), WHEEL_DIAMETER);
+            final double currentElevatorPosition = Conversions.rotationsToMetres(ELEVATOR_MOTORS.getSystemPosition(), WHEEL_DIAMETER);
+            final double targetElevatorPosition = Conversions.rotationsToMetres(ELEVATOR_MOTORS.getClosedLoopTarget(), WHEEL_DIAMETER);
             final Pose3d current3dPose = new Pose3d(0, 0, currentElevatorPosition / 2, new Rotation3d(0, 0, 0));
 
             Logger.recordOutput("Components/ElevatorPose", current3dPose);
@@ -167,11 +196,10 @@ public class Elevator extends GenericSubsystem {
     }
 
     private void setMotorPosition(double targetPosition) {
-        MASTER_MOTOR.setOutput(MotorProperties.ControlMode.POSITION, targetPosition);
+        ELEVATOR_MOTORS.setOutput(MotorProperties.ControlMode.POSITION, targetPosition);
     }
 
     private void stopMotors() {
-        MASTER_MOTOR.stopMotor();
-        SLAVE_MOTOR.stopMotor();
+        ELEVATOR_MOTORS.stopMotor();
     }
 }
\ No newline at end of file
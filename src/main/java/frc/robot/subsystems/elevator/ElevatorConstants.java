@@ -4,12 +4,16 @@ import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import frc.lib.generic.Feedforward;
 import frc.lib.generic.hardware.motor.*;
+import frc.lib.generic.hardware.motor.hardware.MotorGroup;
 import frc.lib.generic.simulation.SimulationProperties;
 import frc.lib.generic.visualization.mechanisms.ElevatorMechanism2d;
 import frc.lib.generic.visualization.mechanisms.MechanismFactory;
 
+import java.util.Arrays;
+
 import static edu.wpi.first.units.Units.Second;
 import static edu.wpi.first.units.Units.Volts;
+import static frc.robot.GlobalConstants.IS_SIMULATION;
 import static frc.robot.utilities.PortsConstants.ElevatorPorts.MASTER_MOTOR_PORT;
 import static frc.robot.utilities.PortsConstants.ElevatorPorts.SLAVE_MOTOR_PORT;
 
@@ -51,16 +55,48 @@ public class ElevatorConstants {
             Second.of(7)
     );
 
-    public static final Motor
+    private static final Motor
             MASTER_MOTOR = MotorFactory.createSpark("ELEVATOR_MASTER_MOTOR", MASTER_MOTOR_PORT, MotorProperties.SparkType.FLEX),
             SLAVE_MOTOR = MotorFactory.createSpark("ELEVATOR_SLAVE_MOTOR", SLAVE_MOTOR_PORT, MotorProperties.SparkType.FLEX);
 
+    public static final MotorGroup ELEVATOR_MOTORS = new MotorGroup("ELEVATOR_MOTORS", MASTER_MOTOR, SLAVE_MOTOR);
+
     protected static final double
             ELEVATOR_MAX_EXTENSION_ROTATIONS = 2.2483952045440674,
             WHEEL_DIAMETER = 0.0328,
             GEAR_RATIO = 4*(10/3.0),
             KG = 0.18348;
 
+    private static final double
+            PROFILE_MAX_VELOCITY = 8,
+            PROFILE_MAX_ACCELERATION = 75,
+            PROFILE_MAX_JERK = 750;
+
+    /**
+     * Limits of the elevator when it moves along one trajectory with the algae blaster arm, in mechanism rotations.
+     * The same as the limits of its own profile, which has no jerk limit yet, since switching it to an S-curve needs retuning.
+     */
+    public static final double
+            SYNCHRONIZED_MAX_VELOCITY = PROFILE_MAX_VELOCITY,
+            SYNCHRONIZED_MAX_ACCELERATION = PROFILE_MAX_ACCELERATION,
+            SYNCHRONIZED_MAX_JERK = PROFILE_MAX_JERK;
+
+    private static final MotorProperties.Slot
+            ELEVATOR_SLOT = new MotorProperties.Slot(
+                    //1.1196,0,0,
+                    2.1,0,0,
+                    1.466,0,0.094165, KG, Feedforward.Type.ELEVATOR),
+            ELEVATOR_SIMULATION_SLOT = new MotorProperties.Slot(17.5, 0, 0.6, 0, 0, 0, 0, Feedforward.Type.ELEVATOR);// S=1.313
+
+    /**
+     * The gains of the active motor slot, used to track the setpoints of a synchronized trajectory.
+     */
+    private static final MotorProperties.Slot SYNCHRONIZED_SLOT = IS_SIMULATION ? ELEVATOR_SIMULATION_SLOT : ELEVATOR_SLOT;
+
+    protected static final double SYNCHRONIZED_KP = SYNCHRONIZED_SLOT.kP;
+    protected static final Feedforward SYNCHRONIZED_FEEDFORWARD = new Feedforward(SYNCHRONIZED_SLOT.feedforwardType,
+            new Feedforward.FeedForwardConstants(SYNCHRONIZED_SLOT.kS, SYNCHRONIZED_SLOT.kV, SYNCHRONIZED_SLOT.kA, SYNCHRONIZED_SLOT.kG));
+
     protected static final ElevatorMechanism2d ELEVATOR_MECHANISM = MechanismFactory.createElevatorMechanism("Elevator Mechanism", 1);
 
     static {
@@ -74,20 +110,18 @@ public class ElevatorConstants {
 
         ELEVATOR_MOTORS_CONFIGURATION.idleMode = MotorProperties.IdleMode.BRAKE;
 
-        ELEVATOR_MOTORS_CONFIGURATION.profileMaxVelocity = 8;
-        ELEVATOR_MOTORS_CONFIGURATION.profileMaxAcceleration = 75;
+        ELEVATOR_MOTORS_CONFIGURATION.profileMaxVelocity = PROFILE_MAX_VELOCITY;
+        ELEVATOR_MOTORS_CONFIGURATION.profileMaxAcceleration = PROFILE_MAX_ACCELERATION;
+        // Used once the profile is jerk limited
+        ELEVATOR_MOTORS_CONFIGURATION.profilePresets = Arrays.stream(ElevatorHeight.values()).mapToDouble(ElevatorHeight::getRotations).toArray();
 
         ELEVATOR_MOTORS_CONFIGURATION.supplyCurrentLimit = 63;
 
         ELEVATOR_MOTORS_CONFIGURATION.inverted = true;
         ELEVATOR_MOTORS_CONFIGURATION.gearRatio = GEAR_RATIO;
 
-        ELEVATOR_MOTORS_CONFIGURATION.slot = new MotorProperties.Slot(
-                //1.1196,0,0,
-                2.1,0,0,
-                1.466,0,0.094165, KG, Feedforward.Type.ELEVATOR);
-
-        ELEVATOR_MOTORS_CONFIGURATION.simulationSlot = new MotorProperties.Slot(17.5, 0, 0.6, 0, 0, 0, 0, Feedforward.Type.ELEVATOR);// S=1.313
+        ELEVATOR_MOTORS_CONFIGURATION.slot = ELEVATOR_SLOT;
+        ELEVATOR_MOTORS_CONFIGURATION.simulationSlot = ELEVATOR_SIMULATION_SLOT;
         ELEVATOR_MOTORS_CONFIGURATION.simulationProperties = new SimulationProperties.Slot(
                 SimulationProperties.SimulationType.ELEVATOR,
                 DCMotor.getNeoVortex(2),
@@ -99,17 +133,15 @@ public class ElevatorConstants {
                 false
         );
 
-        MASTER_MOTOR.configure(ELEVATOR_MOTORS_CONFIGURATION);
-        SLAVE_MOTOR.configure(ELEVATOR_MOTORS_CONFIGURATION);
+        ELEVATOR_MOTORS.configure(ELEVATOR_MOTORS_CONFIGURATION);
 
-        MASTER_MOTOR.setupSignalUpdates(MotorSignal.VOLTAGE);
-        MASTER_MOTOR.setupSignalUpdates(MotorSignal.CURRENT);
-        MASTER_MOTOR.setupSignalUpdates(MotorSignal.POSITION);
-        MASTER_MOTOR.setupSignalUpdates(MotorSignal.VELOCITY);
-        MASTER_MOTOR.setupSignalUpdates(MotorSignal.ACCELERATION);
-        MASTER_MOTOR.setupSignalUpdates(MotorSignal.CLOSED_LOOP_TARGET);
+        ELEVATOR_MOTORS.setupSignalUpdates(MotorSignal.VOLTAGE);
+        ELEVATOR_MOTORS.setupSignalUpdates(MotorSignal.CURRENT);
+        ELEVATOR_MOTORS.setupSignalUpdates(MotorSignal.POSITION);
+        ELEVATOR_MOTORS.setupSignalUpdates(MotorSignal.VELOCITY);
+        ELEVATOR_MOTORS.setupSignalUpdates(MotorSignal.ACCELERATION);
+        ELEVATOR_MOTORS.setupSignalUpdates(MotorSignal.CLOSED_LOOP_TARGET);
 
-        SLAVE_MOTOR.setupSignalUpdates(MotorSignal.VOLTAGE);
-        SLAVE_MOTOR.setFollower(MASTER_MOTOR, true);
+        ELEVATOR_MOTORS.followLeader(true);
     }
 }
\ No newline at end of file
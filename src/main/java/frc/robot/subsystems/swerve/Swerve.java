@@ -1,38 +1,62 @@
 package frc.robot.subsystems.swerve;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
-import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.sysid.SysIdRoutineLog;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import frc.lib.generic.GenericSubsystem;
 import frc.lib.generic.OdometryThread;
 import frc.lib.math.Optimizations;
-import frc.robot.RobotContainer;
+import frc.lib.math.PreallocatedSwerveKinematics;
+import frc.robot.poseestimation.poseestimator.RobotState;
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
 
+import java.util.concurrent.locks.ReentrantLock;
+
+import static frc.robot.GlobalConstants.ROBOT_PERIODIC_LOOP_TIME;
 import static frc.robot.RobotContainer.POSE_ESTIMATOR;
-import static frc.robot.RobotContainer.SWERVE;
+import static frc.robot.RobotContainer.ROBOT_STATE;
 import static frc.robot.subsystems.swerve.SwerveConstants.*;
 import static frc.robot.subsystems.swerve.SwerveModuleConstants.MODULES;
 import static frc.robot.utilities.PathPlannerConstants.ROBOT_CONFIG;
 
 public class Swerve extends GenericSubsystem {
+    private final ChassisSpeeds commandedSpeeds = new ChassisSpeeds(), discretizedSpeeds = new ChassisSpeeds();
+
+    private SwerveModulePosition[][] odometryWheelPositions = new SwerveModulePosition[0][];
+    private Rotation2d[] odometryGyroRotations = new Rotation2d[0];
+
+    private double odometryStandardDeviationsScale = 1;
+
     private double lastTimestamp = Timer.getFPGATimestamp();
-    private double previousTotalVelocity = 0;
+    private double lastDrivePeriodSeconds = ROBOT_PERIODIC_LOOP_TIME;
+    private boolean shouldResetSetpoint = true;
+
+    /**
+     * Guards the module outputs, which are written by both the main loop and the {@link SwerveControlThread}.
+     */
+    private final ReentrantLock moduleOutputLock = new ReentrantLock();
+    private final SwerveControlThread controlThread = new SwerveControlThread(this, moduleOutputLock);
 
     public boolean isAtPose(Pose2d target, double allowedDistanceFromTargetMeters, double allowedRotationalErrorDegrees) {
-        Logger.recordOutput("Distance from target", POSE_ESTIMATOR.getCurrentPose().getTranslation().getDistance(target.getTranslation()));
-        Logger.recordOutput("Distance from target ROT", Math.abs(POSE_ESTIMATOR.getCurrentPose().getRotation().minus(target.getRotation()).getDegrees()));
+        final Pose2d currentPose = ROBOT_STATE.getPose();
+
+        final double distanceFromTarget = currentPose.getTranslation().getDistance(target.getTranslation());
+        final double rotationalError = Math.abs(currentPose.getRotation().minus(target.getRotation()).getDegrees());
 
-        return POSE_ESTIMATOR.getCurrentPose().getTranslation().getDistance(target.getTranslation()) < allowedDistanceFromTargetMeters &&
-                Math.abs(POSE_ESTIMATOR.getCurrentPose().getRotation().minus(target.getRotation()).getDegrees()) < allowedRotationalErrorDegrees;
+        Logger.recordOutput("Distance from target", distanceFromTarget);
+        Logger.recordOutput("Distance from target ROT", rotationalError);
+
+        return distanceFromTarget < allowedDistanceFromTargetMeters &&
+                rotationalError < allowedRotationalErrorDegrees;
     }
 
     @Override
@@ -62,19 +86,11 @@ public class Swerve extends GenericSubsystem {
 
     @AutoLogOutput(key="Swerve/velocity")
     public ChassisSpeeds getRobotRelativeVelocity() {
-        final ChassisSpeeds speeds = SWERVE_KINEMATICS.toChassisSpeeds(getModuleStates());
-
-        double currentTotalVelocity = Math.hypot(speeds.vxMetersPerSecond, speeds.vyMetersPerSecond);
-
-        Logger.recordOutput("TOTAL_VELOCITY_VECTOR", currentTotalVelocity);
-        Logger.recordOutput("TOTAL_ACCELERATION_VECTOR", (currentTotalVelocity - previousTotalVelocity)/0.02);
-
-        previousTotalVelocity = currentTotalVelocity;
-        return speeds;
+        return ROBOT_STATE.getRobotRelativeVelocity();
     }
 
     public ChassisSpeeds getFieldRelativeVelocity() {
-        return ChassisSpeeds.fromRobotRelativeSpeeds(getRobotRelativeVelocity(), POSE_ESTIMATOR.getCurrentPose().getRotation());
+        return ROBOT_STATE.getFieldRelativeVelocity();
     }
 
     public void runDriveMotorWheelCharacterization(double voltage) {
@@ -93,51 +109,147 @@ public class Swerve extends GenericSubsystem {
 
     @Override
     public void periodic() {
+        updateOdometry();
+
+        ROBOT_STATE.update(POSE_ESTIMATOR.getCurrentPose(), getModuleStates());
+
+        controlThread.publishAnchor(ROBOT_STATE.getPose(), getLatestOdometryTimestamp());
+    }
+
+    /**
+     * Hands the pose and trajectory control over to the {@link SwerveControlThread}, which drives until the goal is cleared.
+     */
+    protected void publishControlGoal(SwerveControlThread.Goal goal) {
+        controlThread.publishGoal(goal);
+    }
+
+    /**
+     * Stops the {@link SwerveControlThread} from driving, and stops the modules.
+     */
+    protected void clearControlGoal() {
+        controlThread.publishGoal(SwerveControlThread.Goal.IDLE);
+        stop();
+    }
+
+    private double getLatestOdometryTimestamp() {
+        final double[] odometryTimestamps = OdometryThread.getInstance().getLatestTimestamps();
+
+        return odometryTimestamps == null || odometryTimestamps.length == 0
+                ? Timer.getFPGATimestamp()
+                : odometryTimestamps[odometryTimestamps.length - 1];
+    }
+
+    private void updateOdometry() {
         final double[] odometryUpdatesYawRotations = GYRO.getInputs().threadGyroYawRotations;
         final int odometryUpdates = odometryUpdatesYawRotations.length;
 
         if (OdometryThread.getInstance().getLatestTimestamps().length == 0) return;
 
-        final SwerveModulePosition[][] swerveWheelPositions = new SwerveModulePosition[odometryUpdates][];
-        final Rotation2d[] gyroRotations = new Rotation2d[odometryUpdates];
+        ensureOdometryBufferCapacity(odometryUpdates);
+
+        int validOdometryUpdates = 0;
+        double maxSkiddingRatio = 1;
+        int maxSlippingModules = 0;
+
+        while (validOdometryUpdates < odometryUpdates && updateSwerveWheelPositions(validOdometryUpdates)) {
+            final double yawRotations = odometryUpdatesYawRotations[validOdometryUpdates];
+
+            SLIP_DETECTOR.update(odometryWheelPositions[validOdometryUpdates], Units.rotationsToRadians(yawRotations));
+            maxSkiddingRatio = Math.max(maxSkiddingRatio, SLIP_DETECTOR.getSkiddingRatio());
+            maxSlippingModules = Math.max(maxSlippingModules, SLIP_DETECTOR.getSlippingModules());
 
-        for (int i = 0; i < odometryUpdates; i++) {
-            swerveWheelPositions[i] = getSwerveWheelPositions(i);
-            gyroRotations[i] = Rotation2d.fromRotations(odometryUpdatesYawRotations[i]);
+            odometryGyroRotations[validOdometryUpdates] = Rotation2d.fromRotations(yawRotations);
+            validOdometryUpdates++;
         }
 
+        updateOdometryStandardDeviationsScale(maxSkiddingRatio);
+
+        Logger.recordOutput("Swerve/SkiddingRatio", maxSkiddingRatio);
+        Logger.recordOutput("Swerve/SlippingModules", maxSlippingModules);
+
         if (Optimizations.isColliding()) {
             return;
         }
 
         POSE_ESTIMATOR.updatePoseEstimatorStates(
-                swerveWheelPositions,
-                gyroRotations,
-                OdometryThread.getInstance().getLatestTimestamps()
+                odometryWheelPositions,
+                odometryGyroRotations,
+                OdometryThread.getInstance().getLatestTimestamps(),
+                validOdometryUpdates
+        );
+    }
+
+    /**
+     * Trusts the odometry less while the wheels skid. The scale jumps up with the skidding ratio,
+     * and decays back slowly since the error the skid caused stays in the pose until vision corrects it.
+     */
+    private void updateOdometryStandardDeviationsScale(double skiddingRatio) {
+        final double skiddingScale = MathUtil.clamp(
+                1 + (skiddingRatio - 1) * SKIDDING_RATIO_TO_ODOMETRY_STANDARD_DEVIATIONS_SCALE,
+                1,
+                MAX_ODOMETRY_STANDARD_DEVIATIONS_SCALE
         );
+
+        odometryStandardDeviationsScale = Math.max(skiddingScale, 1 + (odometryStandardDeviationsScale - 1) * ODOMETRY_STANDARD_DEVIATIONS_SCALE_DECAY);
+
+        POSE_ESTIMATOR.setOdometryStandardDeviationsScale(odometryStandardDeviationsScale);
     }
 
     public void driveRobotRelative(ChassisSpeeds chassisSpeeds, boolean shouldUseClosedLoop) {
-        chassisSpeeds = discretize(chassisSpeeds);
+        driveRobotRelative(chassisSpeeds, shouldUseClosedLoop, null);
+    }
 
-        if (Optimizations.isStill(chassisSpeeds)) {
+    /**
+     * Drives from the {@link SwerveControlThread}, which can't read the module inputs the main loop updates.
+     *
+     * @param steerAnglesRotations The current steer angles, read under {@link frc.robot.GlobalConstants#FASTER_THREAD_LOCK},
+     *                             or null to read them from the module inputs
+     */
+    protected void driveRobotRelative(ChassisSpeeds chassisSpeeds, boolean shouldUseClosedLoop, double[] steerAnglesRotations) {
+        moduleOutputLock.lock();
+
+        try {
+            driveModules(chassisSpeeds, shouldUseClosedLoop, steerAnglesRotations);
+        } finally {
+            moduleOutputLock.unlock();
+        }
+    }
+
+    private void driveModules(ChassisSpeeds chassisSpeeds, boolean shouldUseClosedLoop, double[] steerAnglesRotations) {
+        discretize(chassisSpeeds, discretizedSpeeds);
+
+        if (Optimizations.isStill(discretizedSpeeds)) {
             stop();
             return;
         }
 
-        final SwerveModuleState[] swerveModuleStates = SWERVE_KINEMATICS.toSwerveModuleStates(chassisSpeeds);
+        if (shouldResetSetpoint) {
+            SETPOINT_GENERATOR.reset(ROBOT_STATE.getRobotRelativeVelocity(), ROBOT_STATE.getModuleStates());
+            shouldResetSetpoint = false;
+        }
 
-        SwerveDriveKinematics.desaturateWheelSpeeds(swerveModuleStates, ROBOT_CONFIG.moduleConfig.maxDriveVelocityMPS);
+        SETPOINT_GENERATOR.generate(
+                discretizedSpeeds,
+                lastDrivePeriodSeconds,
+                RobotController.getBatteryVoltage(),
+                ROBOT_CONFIG.moduleConfig.maxDriveVelocityMPS
+        );
 
-        for (int i = 0; i < MODULES.length; i++)
-            MODULES[i].setTargetState(swerveModuleStates[i], shouldUseClosedLoop);
+        for (int i = 0; i < MODULES.length; i++) {
+            MODULES[i].setTargetState(
+                    SETPOINT_GENERATOR.getModuleSpeedMPS(i),
+                    Units.radiansToRotations(SETPOINT_GENERATOR.getModuleAngleRadians(i)),
+                    shouldUseClosedLoop,
+                    steerAnglesRotations == null ? MODULES[i].getSteerEncoderPosition() : steerAnglesRotations[i]
+            );
+        }
     }
 
     public void rotateToTargetFromPresetGoal() {
         driveFieldRelative(
                 0,
                 0,
-                SWERVE_ROTATION_CONTROLLER.calculate(POSE_ESTIMATOR.getCurrentPose().getRotation().getDegrees()),
+                SWERVE_ROTATION_CONTROLLER.calculate(ROBOT_STATE.getPose().getRotation().getDegrees()),
                 true
         );
     }
@@ -150,7 +262,7 @@ public class Swerve extends GenericSubsystem {
     }
 
     protected void driveWithTarget(double xPower, double yPower, boolean robotCentric) {
-        final Rotation2d currentAngle = RobotContainer.POSE_ESTIMATOR.getCurrentPose().getRotation();
+        final Rotation2d currentAngle = ROBOT_STATE.getPose().getRotation();
 
         final double controllerOutput = Units.degreesToRadians(SWERVE_ROTATION_CONTROLLER.calculate(currentAngle.getDegrees()));
 
@@ -160,80 +272,85 @@ public class Swerve extends GenericSubsystem {
             driveFieldRelative(xPower, yPower, controllerOutput, false);
     }
 
-    protected void driveToPosePID(Pose2d target) {
-        final Pose2d currentPose = POSE_ESTIMATOR.getCurrentPose();
-
-        driveFieldRelative(
-                PID_TRANSLATION_X_CONTROLLER.calculate(
-                        currentPose.getX(),
-                        target.getX()),
-                PID_TRANSLATION_Y_CONTROLLER.calculate(
-                        currentPose.getY(),
-                        target.getY()),
-                SWERVE_ROTATION_CONTROLLER.calculate(currentPose.getRotation().getDegrees()),
-                true
-        );
-    }
+    protected void driveToPoseTrapezoidal() {
+        final Pose2d currentPose = ROBOT_STATE.getPose();
+        final Rotation2d robotHeading = currentPose.getRotation();
 
-    protected void driveToPoseTrapezoidal(Pose2d target) {
-        final Pose2d currentPose = POSE_ESTIMATOR.getCurrentPose();
+        PROFILED_POSE_CONTROLLER.calculate(currentPose, commandedSpeeds);
+        PreallocatedSwerveKinematics.fromFieldRelativeSpeeds(commandedSpeeds, robotHeading.getCos(), robotHeading.getSin());
 
-        driveFieldRelative(
-                PROFILED_TRANSLATION_CONTROLLER.calculate(currentPose.getX(), target.getX()),
-                PROFILED_STRAFE_CONTROLLER.calculate(currentPose.getY(), target.getY()),
-                SWERVE_ROTATION_CONTROLLER.calculate(currentPose.getRotation().getDegrees()),
-                true
-        );
+        driveRobotRelative(commandedSpeeds, true);
     }
 
     protected void driveFieldRelative(double xPower, double yPower, double thetaPower, boolean shouldUseClosedLoop) {
-        ChassisSpeeds speeds = powerSpeedsToChassisSpeeds(new ChassisSpeeds(xPower, yPower, thetaPower));
-        speeds = ChassisSpeeds.fromFieldRelativeSpeeds(speeds, RobotContainer.POSE_ESTIMATOR.getCurrentPose().getRotation());
+        final Rotation2d robotHeading = ROBOT_STATE.getPose().getRotation();
+
+        powerSpeedsToChassisSpeeds(xPower, yPower, thetaPower, commandedSpeeds);
+        PreallocatedSwerveKinematics.fromFieldRelativeSpeeds(commandedSpeeds, robotHeading.getCos(), robotHeading.getSin());
 
-        driveRobotRelative(speeds, shouldUseClosedLoop);
+        driveRobotRelative(commandedSpeeds, shouldUseClosedLoop);
     }
 
     public void driveRobotRelative(double xPower, double yPower, double thetaPower, boolean shouldUseClosedLoop) {
-        final ChassisSpeeds speeds = powerSpeedsToChassisSpeeds(new ChassisSpeeds(xPower, yPower, thetaPower));
-        driveRobotRelative(speeds, shouldUseClosedLoop);
+        powerSpeedsToChassisSpeeds(xPower, yPower, thetaPower, commandedSpeeds);
+        driveRobotRelative(commandedSpeeds, shouldUseClosedLoop);
     }
 
-    protected void resetTranslationalControllers() {
-        PROFILED_TRANSLATION_CONTROLLER.reset(POSE_ESTIMATOR.getCurrentPose().getX(), SWERVE.getFieldRelativeVelocity().vxMetersPerSecond);
-        PROFILED_STRAFE_CONTROLLER.reset(POSE_ESTIMATOR.getCurrentPose().getY(), SWERVE.getFieldRelativeVelocity().vyMetersPerSecond);
+    protected void resetProfiledPoseController(Pose2d target) {
+        final RobotState.Snapshot robotState = ROBOT_STATE.getSnapshot();
+
+        PROFILED_POSE_CONTROLLER.reset(robotState.pose(), robotState.fieldRelativeVelocity());
+        PROFILED_POSE_CONTROLLER.setGoal(target);
     }
 
     protected void resetRotationController() {
-        SWERVE_ROTATION_CONTROLLER.reset(POSE_ESTIMATOR.getCurrentPose().getRotation().getDegrees(), getFieldRelativeVelocity().omegaRadiansPerSecond);
-    }
+        final RobotState.Snapshot robotState = ROBOT_STATE.getSnapshot();
 
-    protected void setGoalTranslationalControllers(Pose2d target) {
-        PROFILED_TRANSLATION_CONTROLLER.setGoal(target.getX());
-        PROFILED_STRAFE_CONTROLLER.setGoal(target.getY());
+        SWERVE_ROTATION_CONTROLLER.reset(robotState.pose().getRotation().getDegrees(), robotState.fieldRelativeVelocity().omegaRadiansPerSecond);
     }
 
     protected void setGoalRotationController(Rotation2d target) {
         SWERVE_ROTATION_CONTROLLER.setGoal(target.getDegrees());
     }
 
-    protected SwerveModulePosition[] getSwerveWheelPositions(int odometryUpdateIndex) {
-        final SwerveModulePosition[] swerveModulePositions = new SwerveModulePosition[MODULES.length];
-
+    /**
+     * Writes the module positions of the given odometry update into the preallocated odometry buffer.
+     *
+     * @return false if one of the modules has no sample for the given index
+     */
+    private boolean updateSwerveWheelPositions(int odometryUpdateIndex) {
         for (int i = 0; i < MODULES.length; i++) {
-            swerveModulePositions[i] = MODULES[i].getOdometryPosition(odometryUpdateIndex);
+            if (!MODULES[i].updateOdometryPosition(odometryUpdateIndex, odometryWheelPositions[odometryUpdateIndex][i]))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * The odometry buffers only grow, so after the first few loops the odometry update doesn't allocate any arrays.
+     */
+    private void ensureOdometryBufferCapacity(int odometryUpdates) {
+        if (odometryWheelPositions.length >= odometryUpdates) return;
+
+        final SwerveModulePosition[][] newWheelPositions = new SwerveModulePosition[odometryUpdates][];
+        System.arraycopy(odometryWheelPositions, 0, newWheelPositions, 0, odometryWheelPositions.length);
 
-            if (swerveModulePositions[i] == null) return null;
+        for (int i = odometryWheelPositions.length; i < odometryUpdates; i++) {
+            newWheelPositions[i] = new SwerveModulePosition[MODULES.length];
+
+            for (int j = 0; j < MODULES.length; j++)
+                newWheelPositions[i][j] = new SwerveModulePosition();
         }
 
-        return swerveModulePositions;
+        odometryWheelPositions = newWheelPositions;
+        odometryGyroRotations = new Rotation2d[odometryUpdates];
     }
 
-    protected ChassisSpeeds powerSpeedsToChassisSpeeds(ChassisSpeeds chassisSpeeds) {
-        return new ChassisSpeeds(
-                chassisSpeeds.vxMetersPerSecond * MAX_SPEED_MPS,
-                chassisSpeeds.vyMetersPerSecond * MAX_SPEED_MPS,
-                chassisSpeeds.omegaRadiansPerSecond
-        );
+    protected void powerSpeedsToChassisSpeeds(double xPower, double yPower, double thetaPower, ChassisSpeeds output) {
+        output.vxMetersPerSecond = xPower * MAX_SPEED_MPS;
+        output.vyMetersPerSecond = yPower * MAX_SPEED_MPS;
+        output.omegaRadiansPerSecond = thetaPower;
     }
 
     @AutoLogOutput(key = "Swerve/CurrentStates")
@@ -258,8 +375,16 @@ public class Swerve extends GenericSubsystem {
     }
 
     public void stop() {
-        for (SwerveModule currentModule : MODULES)
-            currentModule.stop();
+        moduleOutputLock.lock();
+
+        try {
+            for (SwerveModule currentModule : MODULES)
+                currentModule.stop();
+
+            shouldResetSetpoint = true;
+        } finally {
+            moduleOutputLock.unlock();
+        }
     }
 
     /**
@@ -267,15 +392,16 @@ public class Swerve extends GenericSubsystem {
      * This should fix the chassis speeds, so they won't make the robot skew while rotating.
      *
      * @param chassisSpeeds The chassis speeds to fix skewing for
-     * @return the fixed speeds
+     * @param output        The speeds to write the fixed speeds into
      */
-    protected ChassisSpeeds discretize(ChassisSpeeds chassisSpeeds) {
+    protected void discretize(ChassisSpeeds chassisSpeeds, ChassisSpeeds output) {
         final double currentTimestamp = Timer.getFPGATimestamp();
         final double difference = currentTimestamp - lastTimestamp;
 
         lastTimestamp = currentTimestamp;
+        lastDrivePeriodSeconds = MathUtil.clamp(difference, 0, 2 * ROBOT_PERIODIC_LOOP_TIME);
 
-        return ChassisSpeeds.discretize(chassisSpeeds, difference);
+        PreallocatedSwerveKinematics.discretize(chassisSpeeds, difference, output);
     }
 
     public double getTotalCurrent() {
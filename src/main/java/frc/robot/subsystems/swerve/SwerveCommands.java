@@ -1,23 +1,31 @@
 package frc.robot.subsystems.swerve;
 
 import com.pathplanner.lib.auto.AutoBuilder;
+import com.pathplanner.lib.path.PathPlannerPath;
+import com.pathplanner.lib.trajectory.PathPlannerTrajectory;
+import com.pathplanner.lib.util.PathPlannerLogging;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.FunctionalCommand;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
+import frc.lib.util.flippable.Flippable;
 import frc.lib.util.flippable.FlippableRotation2d;
 import org.littletonrobotics.junction.Logger;
 
 import java.util.function.BooleanSupplier;
 import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
 
 import static frc.robot.RobotContainer.SWERVE;
 import static frc.robot.subsystems.swerve.SwerveConstants.SWERVE_ROTATION_CONTROLLER;
 import static frc.robot.subsystems.swerve.SwerveModuleConstants.MODULES;
 import static frc.robot.utilities.PathPlannerConstants.PATHPLANNER_CONSTRAINTS;
+import static frc.robot.utilities.PathPlannerConstants.ROBOT_CONFIG;
 
 public class SwerveCommands {
     public static Command stopDriving() {
@@ -44,37 +52,85 @@ public class SwerveCommands {
         return AutoBuilder.pathfindToPose(targetPose, PATHPLANNER_CONSTRAINTS);
     }
 
+    /**
+     * Drives to the given pose using PID. The controllers run on the {@link SwerveControlThread}.
+     */
     public static Command goToPosePID(Pose2d targetPose) {
         return new FunctionalCommand(
                 () -> {
                     Logger.recordOutput("Poses/Targets/TargetPIDPose", targetPose);
 
-                    SWERVE.resetRotationController();
-                    SWERVE.setGoalRotationController(targetPose.getRotation());
-                    },
+                    SWERVE.publishControlGoal(SwerveControlThread.Goal.pose(targetPose));
+                },
+                () -> {},
+                interrupt -> SWERVE.clearControlGoal(),
+                () -> SWERVE.isAtPose(targetPose, 0.044, 0.4),
+                SWERVE
+        );
+    }
+
+    /**
+     * Follows the given path from its ideal starting state. The trajectory controller runs on the {@link SwerveControlThread}.
+     * <p>
+     * The trajectories of both alliances are generated when the command is created, so starting it never stalls the loop.
+     */
+    public static Command followPath(PathPlannerPath path) {
+        final PathPlannerPath flippedPath = path.preventFlipping ? path : path.flipPath();
+        final PathPlannerTrajectory
+                blueTrajectory = generateIdealTrajectory(path),
+                redTrajectory = path.preventFlipping ? blueTrajectory : generateIdealTrajectory(flippedPath);
+
+        return followTrajectory(() -> {
+            final boolean shouldFlip = Flippable.isRedAlliance();
+
+            PathPlannerLogging.logActivePath(shouldFlip ? flippedPath : path);
+
+            return shouldFlip ? redTrajectory : blueTrajectory;
+        });
+    }
+
+    /**
+     * Follows a trajectory that is already in the current alliance's coordinates, supplied when the command starts.
+     */
+    public static Command followTrajectory(Supplier<PathPlannerTrajectory> trajectorySupplier) {
+        final SwerveControlThread.Goal[] goal = new SwerveControlThread.Goal[1];
+
+        return new FunctionalCommand(
                 () -> {
-                    SWERVE.driveToPosePID(targetPose);
+                    final PathPlannerTrajectory trajectory = trajectorySupplier.get();
+
+                    Logger.recordOutput("Poses/Targets/TrajectoryEndPose", trajectory.getEndState().pose);
+
+                    goal[0] = SwerveControlThread.Goal.trajectory(trajectory);
+                    SWERVE.publishControlGoal(goal[0]);
                 },
+                () -> {},
                 interrupt -> {
-                    SWERVE.stop();
+                    PathPlannerLogging.logActivePath(null);
+
+                    // Keep the modules moving if the path hands off to another command at speed
+                    if (interrupt || goal[0].trajectory().getEndState().linearVelocity < 0.1)
+                        SWERVE.clearControlGoal();
+                    else
+                        SWERVE.publishControlGoal(SwerveControlThread.Goal.IDLE);
                 },
-                () ->
-                    SWERVE.isAtPose(targetPose, 0.044, 0.4)
-                ,
+                () -> Timer.getFPGATimestamp() - goal[0].startTimestampSeconds() >= goal[0].trajectory().getTotalTimeSeconds(),
                 SWERVE
         );
     }
 
+    /**
+     * Paths without an ideal starting state start from rest, already facing their goal's rotation, like the cached ones.
+     */
+    private static PathPlannerTrajectory generateIdealTrajectory(PathPlannerPath path) {
+        return path.getIdealTrajectory(ROBOT_CONFIG).orElseGet(() ->
+                path.generateTrajectory(new ChassisSpeeds(), path.getGoalEndState().rotation(), ROBOT_CONFIG));
+    }
+
     public static Command goToPoseTrapezoidal(Pose2d targetPose, double allowedDistanceFromTargetMeters, double allowedRotationalErrorDegrees) {
         return new FunctionalCommand(
-                () -> {
-                    SWERVE.resetRotationController();
-                    SWERVE.resetTranslationalControllers();
-
-                    SWERVE.setGoalRotationController(targetPose.getRotation());
-                    SWERVE.setGoalTranslationalControllers(targetPose);
-                },
-                () -> SWERVE.driveToPoseTrapezoidal(targetPose),
+                () -> SWERVE.resetProfiledPoseController(targetPose),
+                SWERVE::driveToPoseTrapezoidal,
                 interrupt -> SWERVE.stop(),
                 () -> SWERVE.isAtPose(targetPose, allowedDistanceFromTargetMeters, allowedRotationalErrorDegrees),
                 SWERVE
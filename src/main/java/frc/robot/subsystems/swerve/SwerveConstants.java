@@ -1,20 +1,27 @@
 package frc.robot.subsystems.swerve;
 
 import com.pathplanner.lib.config.PIDConstants;
+import com.pathplanner.lib.controllers.PPHolonomicDriveController;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine;
 import frc.lib.generic.PID;
 import frc.lib.generic.ProfiledPID;
+import frc.lib.generic.ProfiledPoseController;
 import frc.lib.generic.hardware.pigeon.Pigeon;
 import frc.lib.generic.hardware.pigeon.PigeonConfiguration;
 import frc.lib.generic.hardware.pigeon.PigeonFactory;
 import frc.lib.generic.hardware.pigeon.PigeonSignal;
+import frc.lib.math.SwerveSetpointGenerator;
+import frc.lib.math.SwerveSlipDetector;
 
 import static edu.wpi.first.units.Units.Second;
 import static edu.wpi.first.units.Units.Volts;
 import static frc.robot.GlobalConstants.IS_SIMULATION;
-import static frc.robot.utilities.PathPlannerConstants.ROBOT_CONFIG;
+import static frc.robot.GlobalConstants.ODOMETRY_FREQUENCY_HERTZ;
+import static frc.robot.GlobalConstants.ROBOT_PERIODIC_LOOP_TIME;
+import static frc.robot.utilities.PathPlannerConstants.*;
 import static frc.robot.utilities.PortsConstants.SwervePorts.GYRO_PORT;
 
 public class SwerveConstants {
@@ -40,6 +47,32 @@ public class SwerveConstants {
             DRIVE_NEUTRAL_DEADBAND = 0.15,
             ROTATION_NEUTRAL_DEADBAND = 0.15;
 
+    protected static final double
+            DRIVE_BATTERY_CURRENT_LIMIT = 240,
+            MAX_STEER_VELOCITY_RAD_PER_S = DCMotor.getNEO(1).withReduction(STEER_GEAR_RATIO).freeSpeedRadPerSec * 0.8;
+
+    protected static final SwerveSetpointGenerator SETPOINT_GENERATOR = new SwerveSetpointGenerator(
+            ROBOT_CONFIG.moduleLocations,
+            ROBOT_CONFIG.moduleConfig.driveMotor,
+            ROBOT_CONFIG.moduleConfig.wheelRadiusMeters,
+            ROBOT_CONFIG.massKG,
+            ROBOT_CONFIG.moduleConfig.wheelCOF,
+            SwerveModuleConstants.DRIVE_STATOR_CURRENT_LIMIT,
+            DRIVE_BATTERY_CURRENT_LIMIT,
+            MAX_STEER_VELOCITY_RAD_PER_S
+    );
+
+    /**
+     * A module counts as slipping when its translation differs from the other modules' by 2mm per odometry sample (0.4 m/s),
+     * or by 15% of the chassis translation when driving fast.
+     */
+    protected static final SwerveSlipDetector SLIP_DETECTOR = new SwerveSlipDetector(ROBOT_CONFIG.moduleLocations, 0.002, 0.15);
+
+    protected static final double
+            SKIDDING_RATIO_TO_ODOMETRY_STANDARD_DEVIATIONS_SCALE = 2,
+            MAX_ODOMETRY_STANDARD_DEVIATIONS_SCALE = 10,
+            ODOMETRY_STANDARD_DEVIATIONS_SCALE_DECAY = 0.9;
+
     private static final TrapezoidProfile.Constraints TRANSLATIONAL_PROFILES_CONSTRAINTS = IS_SIMULATION
             ? new TrapezoidProfile.Constraints(3, 3)
             : new TrapezoidProfile.Constraints(3, 1.2);
@@ -48,20 +81,46 @@ public class SwerveConstants {
             ? new PIDConstants(1.1, 0, 0)
             : new PIDConstants(1.6958, 0, 0.009);
 
-    protected static final ProfiledPID PROFILED_TRANSLATION_CONTROLLER = new ProfiledPID(TRANSLATIONAL_PROFILES_CONSTANTS, 0, TRANSLATIONAL_PROFILES_CONSTRAINTS);
-    protected static final ProfiledPID PROFILED_STRAFE_CONTROLLER = new ProfiledPID(TRANSLATIONAL_PROFILES_CONSTANTS, 0, TRANSLATIONAL_PROFILES_CONSTRAINTS);
-
-    protected static final PID PID_TRANSLATION_X_CONTROLLER = IS_SIMULATION
-            ? new PID(1.2, 0, 0, 0.001)
-            : new PID(1.105,0,0);
-    protected static final PID PID_TRANSLATION_Y_CONTROLLER = IS_SIMULATION
-            ? new PID(1.2, 0, 0, 0.001)
-            : new PID(1.135,0.013,0);
+    /**
+     * Profiles X, Y and heading together. The translation gains are in power per metre like the other translation controllers,
+     * so they are scaled to metres per second. The rotation gains are converted from per degree to per radian.
+     */
+    protected static final ProfiledPoseController PROFILED_POSE_CONTROLLER = new ProfiledPoseController(
+            new PID(TRANSLATIONAL_PROFILES_CONSTANTS.kP * MAX_SPEED_MPS, TRANSLATIONAL_PROFILES_CONSTANTS.kI * MAX_SPEED_MPS, TRANSLATIONAL_PROFILES_CONSTANTS.kD * MAX_SPEED_MPS),
+            new PID(Math.toDegrees(IS_SIMULATION ? 0.2 : 0.2205), 0, 0),
+            TRANSLATIONAL_PROFILES_CONSTRAINTS.maxVelocity,
+            TRANSLATIONAL_PROFILES_CONSTRAINTS.maxAcceleration,
+            Math.toRadians(360),
+            Math.toRadians(360),
+            ROBOT_PERIODIC_LOOP_TIME
+    );
 
     protected static final ProfiledPID SWERVE_ROTATION_CONTROLLER = IS_SIMULATION
             ? new ProfiledPID(0.2, 0, 0,0, new TrapezoidProfile.Constraints(360, 360))
             : new ProfiledPID(0.2205, 0, 0/*0.0005*/, new TrapezoidProfile.Constraints(360, 360));
 
+    /**
+     * The pose controllers, owned by the {@link SwerveControlThread}. The rotation gains match {@link #SWERVE_ROTATION_CONTROLLER},
+     * but it is a separate instance since it runs on another thread and at a shorter period.
+     */
+    protected static final double CONTROL_THREAD_PERIOD_SECONDS = 1.0 / ODOMETRY_FREQUENCY_HERTZ;
+
+    protected static final PID CONTROL_THREAD_X_CONTROLLER = IS_SIMULATION
+            ? new PID(1.2, 0, 0, 0.001, CONTROL_THREAD_PERIOD_SECONDS)
+            : new PID(1.105, 0, 0, 0, CONTROL_THREAD_PERIOD_SECONDS);
+    protected static final PID CONTROL_THREAD_Y_CONTROLLER = IS_SIMULATION
+            ? new PID(1.2, 0, 0, 0.001, CONTROL_THREAD_PERIOD_SECONDS)
+            : new PID(1.135, 0.013, 0, 0, CONTROL_THREAD_PERIOD_SECONDS);
+    protected static final PID CONTROL_THREAD_ROTATION_CONTROLLER = IS_SIMULATION
+            ? new PID(0.2, 0, 0, 0, CONTROL_THREAD_PERIOD_SECONDS)
+            : new PID(0.2205, 0, 0, 0, CONTROL_THREAD_PERIOD_SECONDS);
+
+    protected static final PPHolonomicDriveController CONTROL_THREAD_TRAJECTORY_CONTROLLER = new PPHolonomicDriveController(
+            PATHPLANNER_TRANSLATION_PID,
+            PATHPLANNER_ROTATION_PID,
+            CONTROL_THREAD_PERIOD_SECONDS
+    );
+
     protected static final Pigeon GYRO = PigeonFactory.createPigeon2("GYRO", GYRO_PORT);
 
     public static double yawOffset = 0;
@@ -89,10 +148,6 @@ public class SwerveConstants {
         SWERVE_ROTATION_CONTROLLER.enableContinuousInput(-180, 180);
         SWERVE_ROTATION_CONTROLLER.setTolerance(1);
 
-        PROFILED_TRANSLATION_CONTROLLER.setTolerance(0.08);
-        PROFILED_STRAFE_CONTROLLER.setTolerance(0.08);
-
-        PID_TRANSLATION_Y_CONTROLLER.setTolerance(0.03);
-        PID_TRANSLATION_X_CONTROLLER.setTolerance(0.03);
+        CONTROL_THREAD_ROTATION_CONTROLLER.enableContinuousInput(-180, 180);
     }
 }
@@ -0,0 +1,329 @@
+package frc.robot.subsystems.swerve;
+
+import com.pathplanner.lib.trajectory.PathPlannerTrajectory;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+import frc.lib.generic.OdometryThread;
+import frc.lib.math.PreallocatedSwerveKinematics;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+
+import static frc.robot.GlobalConstants.*;
+import static frc.robot.RobotContainer.ROBOT_STATE;
+import static frc.robot.subsystems.swerve.SwerveConstants.*;
+import static frc.robot.subsystems.swerve.SwerveModuleConstants.MODULES;
+
+/**
+ * Runs the swerve pose and trajectory controllers at the odometry frequency, instead of the 50 Hz command loop.
+ * <p>
+ * Every time the odometry thread publishes a new sample, this thread integrates it into its own pose
+ * and calculates a new drive output from it. The pose estimator stays the source of truth -
+ * {@link Swerve#periodic()} publishes its pose every loop, and this thread re-anchors its local pose onto it.
+ * <p>
+ * Commands talk to the thread through lock free mailboxes: they publish a {@link Goal}, and the thread picks it up on its next tick.
+ * Nothing on this thread logs, since the logger may only be used from the main thread.
+ */
+public class SwerveControlThread {
+    /**
+     * What the control thread should currently drive towards. Goals are immutable, so publishing a new one is atomic.
+     *
+     * @param type                  the kind of goal
+     * @param targetPose            the pose to drive to, only used by {@link Type#POSE}
+     * @param trajectory            the trajectory to follow, only used by {@link Type#TRAJECTORY}
+     * @param startTimestampSeconds the FPGA timestamp the goal was published at
+     */
+    public record Goal(Type type, Pose2d targetPose, PathPlannerTrajectory trajectory, double startTimestampSeconds) {
+        public enum Type {IDLE, POSE, TRAJECTORY}
+
+        public static final Goal IDLE = new Goal(Type.IDLE, null, null, 0);
+
+        public static Goal pose(Pose2d targetPose) {
+            return new Goal(Type.POSE, targetPose, null, Timer.getFPGATimestamp());
+        }
+
+        public static Goal trajectory(PathPlannerTrajectory trajectory) {
+            return new Goal(Type.TRAJECTORY, null, trajectory, Timer.getFPGATimestamp());
+        }
+    }
+
+    private record PoseAnchor(Pose2d pose, double timestampSeconds) {
+    }
+
+    private static final int POSE_HISTORY_SIZE = 32;
+    private static final double EPSILON = 1E-9;
+
+    private final Swerve swerve;
+    private final Lock moduleOutputLock;
+
+    private final AtomicReference<Goal> goalMailbox = new AtomicReference<>(Goal.IDLE);
+    private final AtomicReference<PoseAnchor> anchorMailbox = new AtomicReference<>(null);
+
+    //Everything below is only touched by the control thread
+    private final double[] latestModuleDistancesMeters = new double[MODULES.length],
+            latestModuleAnglesRadians = new double[MODULES.length],
+            latestSteerAnglesRotations = new double[MODULES.length],
+            previousModuleDistancesMeters = new double[MODULES.length];
+    private double latestGyroYawRadians, previousGyroYawRadians;
+    private double latestSampleTimestamp, previousSampleTimestamp = Double.NaN;
+
+    private final double[] historyTimestamps = new double[POSE_HISTORY_SIZE],
+            historyX = new double[POSE_HISTORY_SIZE],
+            historyY = new double[POSE_HISTORY_SIZE],
+            historyTheta = new double[POSE_HISTORY_SIZE];
+    private int historyHead = 0, historyCount = 0;
+
+    private double poseX, poseY, poseTheta;
+    private boolean hasPose = false;
+    private PoseAnchor lastAnchor = null;
+
+    private Goal activeGoal = Goal.IDLE;
+    private final ChassisSpeeds outputSpeeds = new ChassisSpeeds();
+
+    protected SwerveControlThread(Swerve swerve, Lock moduleOutputLock) {
+        this.swerve = swerve;
+        this.moduleOutputLock = moduleOutputLock;
+
+        if (CURRENT_MODE == Mode.REPLAY) return;
+
+        final Notifier notifier = new Notifier(this::periodic);
+        notifier.setName("SwerveControlThread");
+        notifier.startPeriodic(1.0 / ODOMETRY_FREQUENCY_HERTZ);
+    }
+
+    protected void publishGoal(Goal goal) {
+        goalMailbox.set(goal);
+    }
+
+    /**
+     * Publishes the pose estimator's pose, so the thread's local pose doesn't drift away from it.
+     *
+     * @param pose             the estimated pose
+     * @param timestampSeconds the timestamp of the odometry sample the pose is based on
+     */
+    protected void publishAnchor(Pose2d pose, double timestampSeconds) {
+        anchorMailbox.set(new PoseAnchor(pose, timestampSeconds));
+    }
+
+    private void periodic() {
+        if (!readLatestSample()) return;
+
+        integrateOdometry();
+        applyLatestAnchor();
+
+        // Until the first anchor arrives there is no pose to control from
+        if (!hasPose) return;
+
+        final Goal goal = goalMailbox.get();
+
+        if (goal != activeGoal) {
+            activeGoal = goal;
+            resetControllers(goal);
+        }
+
+        if (goal.type() == Goal.Type.IDLE) return;
+
+        if (goal.type() == Goal.Type.POSE)
+            calculatePoseOutput(goal.targetPose());
+        else
+            calculateTrajectoryOutput(goal);
+
+        moduleOutputLock.lock();
+
+        try {
+            // The goal might have been cleared while this tick was calculating, in which case the modules were already stopped
+            if (goalMailbox.get() == goal)
+                swerve.driveRobotRelative(outputSpeeds, true, latestSteerAnglesRotations);
+        } finally {
+            moduleOutputLock.unlock();
+        }
+    }
+
+    /**
+     * @return false if the odometry thread hasn't published a new sample since the last tick
+     */
+    private boolean readLatestSample() {
+        FASTER_THREAD_LOCK.lock();
+
+        try {
+            final double sampleTimestamp = OdometryThread.getInstance().getLatestSampleTimestamp();
+
+            if (sampleTimestamp == latestSampleTimestamp && !Double.isNaN(previousSampleTimestamp)) return false;
+
+            latestSampleTimestamp = sampleTimestamp;
+
+            for (int i = 0; i < MODULES.length; i++) {
+                latestModuleDistancesMeters[i] = MODULES[i].getLatestDriveDistanceMeters();
+                latestSteerAnglesRotations[i] = MODULES[i].getLatestSteerAngleRotations();
+                latestModuleAnglesRadians[i] = 2 * Math.PI * latestSteerAnglesRotations[i];
+            }
+
+            latestGyroYawRadians = 2 * Math.PI * GYRO.getLatestThreadedYawRotations();
+        } finally {
+            FASTER_THREAD_LOCK.unlock();
+        }
+
+        return true;
+    }
+
+    /**
+     * Integrates the change since the previous sample into the local pose, the same way {@link Pose2d#exp} does.
+     * Translation comes from the average module displacement and rotation from the gyro.
+     */
+    private void integrateOdometry() {
+        final boolean isFirstSample = Double.isNaN(previousSampleTimestamp);
+
+        double dx = 0, dy = 0;
+
+        for (int i = 0; i < MODULES.length; i++) {
+            final double distanceDelta = latestModuleDistancesMeters[i] - previousModuleDistancesMeters[i];
+
+            dx += distanceDelta * Math.cos(latestModuleAnglesRadians[i]);
+            dy += distanceDelta * Math.sin(latestModuleAnglesRadians[i]);
+
+            previousModuleDistancesMeters[i] = latestModuleDistancesMeters[i];
+        }
+
+        final double dtheta = MathUtil.angleModulus(latestGyroYawRadians - previousGyroYawRadians);
+
+        previousGyroYawRadians = latestGyroYawRadians;
+        previousSampleTimestamp = latestSampleTimestamp;
+
+        if (isFirstSample || !hasPose) return;
+
+        dx /= MODULES.length;
+        dy /= MODULES.length;
+
+        final double sinTheta = Math.sin(dtheta), cosTheta = Math.cos(dtheta);
+        final double s, c;
+
+        if (Math.abs(dtheta) < EPSILON) {
+            s = 1.0 - 1.0 / 6.0 * dtheta * dtheta;
+            c = 0.5 * dtheta;
+        } else {
+            s = sinTheta / dtheta;
+            c = (1 - cosTheta) / dtheta;
+        }
+
+        final double robotRelativeX = dx * s - dy * c, robotRelativeY = dx * c + dy * s;
+        final double headingCos = Math.cos(poseTheta), headingSin = Math.sin(poseTheta);
+
+        poseX += robotRelativeX * headingCos - robotRelativeY * headingSin;
+        poseY += robotRelativeX * headingSin + robotRelativeY * headingCos;
+        poseTheta = MathUtil.angleModulus(poseTheta + dtheta);
+
+        addToHistory();
+    }
+
+    /**
+     * Moves the local pose so that its pose at the anchor's timestamp matches the anchor,
+     * keeping the motion that was integrated since then.
+     */
+    private void applyLatestAnchor() {
+        final PoseAnchor anchor = anchorMailbox.get();
+
+        if (anchor == null || anchor == lastAnchor) return;
+
+        lastAnchor = anchor;
+
+        final Pose2d anchorPose = anchor.pose();
+
+        if (!hasPose) {
+            poseX = anchorPose.getX();
+            poseY = anchorPose.getY();
+            poseTheta = anchorPose.getRotation().getRadians();
+            hasPose = true;
+
+            addToHistory();
+            return;
+        }
+
+        final int historyIndex = findHistoryIndex(anchor.timestampSeconds());
+
+        final double rotationCorrection = MathUtil.angleModulus(anchorPose.getRotation().getRadians() - historyTheta[historyIndex]);
+        final double correctionCos = Math.cos(rotationCorrection), correctionSin = Math.sin(rotationCorrection);
+        final double translationCorrectionX = anchorPose.getX() - (historyX[historyIndex] * correctionCos - historyY[historyIndex] * correctionSin),
+                translationCorrectionY = anchorPose.getY() - (historyX[historyIndex] * correctionSin + historyY[historyIndex] * correctionCos);
+
+        for (int i = 0; i < historyCount; i++) {
+            final int index = Math.floorMod(historyHead - 1 - i, POSE_HISTORY_SIZE);
+            final double x = historyX[index], y = historyY[index];
+
+            historyX[index] = x * correctionCos - y * correctionSin + translationCorrectionX;
+            historyY[index] = x * correctionSin + y * correctionCos + translationCorrectionY;
+            historyTheta[index] = MathUtil.angleModulus(historyTheta[index] + rotationCorrection);
+        }
+
+        final double x = poseX, y = poseY;
+
+        poseX = x * correctionCos - y * correctionSin + translationCorrectionX;
+        poseY = x * correctionSin + y * correctionCos + translationCorrectionY;
+        poseTheta = MathUtil.angleModulus(poseTheta + rotationCorrection);
+    }
+
+    private void addToHistory() {
+        historyTimestamps[historyHead] = latestSampleTimestamp;
+        historyX[historyHead] = poseX;
+        historyY[historyHead] = poseY;
+        historyTheta[historyHead] = poseTheta;
+
+        historyHead = (historyHead + 1) % POSE_HISTORY_SIZE;
+        historyCount = Math.min(historyCount + 1, POSE_HISTORY_SIZE);
+    }
+
+    /**
+     * @return the index of the newest history entry that isn't newer than the given timestamp, or the oldest entry if they all are
+     */
+    private int findHistoryIndex(double timestampSeconds) {
+        int index = Math.floorMod(historyHead - 1, POSE_HISTORY_SIZE);
+
+        for (int i = 0; i < historyCount; i++) {
+            index = Math.floorMod(historyHead - 1 - i, POSE_HISTORY_SIZE);
+
+            if (historyTimestamps[index] <= timestampSeconds) break;
+        }
+
+        return index;
+    }
+
+    private void resetControllers(Goal goal) {
+        CONTROL_THREAD_X_CONTROLLER.reset();
+        CONTROL_THREAD_Y_CONTROLLER.reset();
+        CONTROL_THREAD_ROTATION_CONTROLLER.reset();
+
+        if (goal.type() == Goal.Type.TRAJECTORY)
+            CONTROL_THREAD_TRAJECTORY_CONTROLLER.reset(getLocalPose(), ROBOT_STATE.getRobotRelativeVelocity());
+    }
+
+    private void calculatePoseOutput(Pose2d targetPose) {
+        outputSpeeds.vxMetersPerSecond = CONTROL_THREAD_X_CONTROLLER.calculate(poseX, targetPose.getX()) * MAX_SPEED_MPS;
+        outputSpeeds.vyMetersPerSecond = CONTROL_THREAD_Y_CONTROLLER.calculate(poseY, targetPose.getY()) * MAX_SPEED_MPS;
+        outputSpeeds.omegaRadiansPerSecond = MathUtil.clamp(
+                CONTROL_THREAD_ROTATION_CONTROLLER.calculate(Math.toDegrees(poseTheta), targetPose.getRotation().getDegrees()),
+                -MAX_ROTATION_RAD_PER_S,
+                MAX_ROTATION_RAD_PER_S
+        );
+
+        PreallocatedSwerveKinematics.fromFieldRelativeSpeeds(outputSpeeds, Math.cos(poseTheta), Math.sin(poseTheta));
+    }
+
+    private void calculateTrajectoryOutput(Goal goal) {
+        final double elapsedSeconds = Timer.getFPGATimestamp() - goal.startTimestampSeconds();
+        final ChassisSpeeds speeds = CONTROL_THREAD_TRAJECTORY_CONTROLLER.calculateRobotRelativeSpeeds(
+                getLocalPose(),
+                goal.trajectory().sample(elapsedSeconds)
+        );
+
+        outputSpeeds.vxMetersPerSecond = speeds.vxMetersPerSecond;
+        outputSpeeds.vyMetersPerSecond = speeds.vyMetersPerSecond;
+        outputSpeeds.omegaRadiansPerSecond = speeds.omegaRadiansPerSecond;
+    }
+
+    private Pose2d getLocalPose() {
+        return new Pose2d(poseX, poseY, Rotation2d.fromRadians(poseTheta));
+    }
+}
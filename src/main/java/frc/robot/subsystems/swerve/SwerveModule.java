@@ -4,6 +4,7 @@ import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.sysid.SysIdRoutineLog;
 import frc.lib.generic.hardware.encoder.Encoder;
 import frc.lib.generic.hardware.encoder.EncoderInputs;
@@ -24,7 +25,10 @@ public class SwerveModule {
     private final Motor steerMotor, driveMotor;
     private final Encoder steerEncoder;
 
-    private SwerveModuleState targetState = new SwerveModuleState();
+    private double targetSpeedMetersPerSecond = 0, targetAngleRotations = 0;
+
+    private double lastOdometryAngleRotations = 0;
+    private Rotation2d lastOdometryAngle = Rotation2d.kZero;
 
     public SwerveModule(Motor driveMotor, Motor steerMotor, Encoder steerEncoder) {
         this.steerMotor = steerMotor;
@@ -56,39 +60,94 @@ public class SwerveModule {
     }
 
     protected void setTargetState(SwerveModuleState state, boolean shouldUseClosedLoop) {
-        this.targetState = state;
+        setTargetState(state.speedMetersPerSecond, state.angle.getRotations(), shouldUseClosedLoop);
+    }
+
+    /**
+     * Allocation free version of {@link #setTargetState(SwerveModuleState, boolean)}, used by the per-loop drive path.
+     *
+     * @param speedMetersPerSecond the target speed of the module
+     * @param angleRotations       the target angle of the module, in rotations
+     */
+    protected void setTargetState(double speedMetersPerSecond, double angleRotations, boolean shouldUseClosedLoop) {
+        setTargetState(speedMetersPerSecond, angleRotations, shouldUseClosedLoop, getSteerEncoderPosition());
+    }
+
+    /**
+     * @param steerEncoderPositionRotations The current steer encoder position, for threads that can't read the inputs.
+     *                                      The steer closed loop runs on it too, instead of on the encoder's inputs
+     */
+    protected void setTargetState(double speedMetersPerSecond, double angleRotations, boolean shouldUseClosedLoop, double steerEncoderPositionRotations) {
+        final double currentAngleRotations = toAngleRotations(steerEncoderPositionRotations);
 
-        targetState.optimize(getCurrentAngle());
+        if (Math.abs(MathUtil.inputModulus(angleRotations - currentAngleRotations, -0.5, 0.5)) > 0.25) {
+            speedMetersPerSecond = -speedMetersPerSecond;
+            angleRotations += 0.5;
+        }
 
-        targetState.speedMetersPerSecond = Optimizations.reduceSkew(targetState.speedMetersPerSecond, targetState.angle, getCurrentAngle());
+        targetAngleRotations = MathUtil.inputModulus(angleRotations, -0.5, 0.5);
+        targetSpeedMetersPerSecond = Optimizations.reduceSkew(
+                speedMetersPerSecond,
+                Units.rotationsToRadians(targetAngleRotations),
+                Units.rotationsToRadians(currentAngleRotations)
+        );
 
-        setTargetAngle(targetState.angle);
-        setTargetVelocity(targetState.speedMetersPerSecond, shouldUseClosedLoop);
+        steerMotor.setOutput(MotorProperties.ControlMode.POSITION, targetAngleRotations, 0, steerEncoderPositionRotations);
+        setTargetVelocity(targetSpeedMetersPerSecond, shouldUseClosedLoop);
     }
 
     /**
      * The odometry thread can update itself faster than the main code loop.
      * Instead of using the latest odometry update, the accumulated odometry positions since the last loop to get a more accurate position.
+     * The position is written into an existing object, and the angle object is only replaced when the steer angle changed since the previous sample.
      *
      * @param odometryUpdateIndex the index of the odometry update
-     * @return the position of the module at the given odometry update index
+     * @param position            the position to write into
+     * @return false if there is no sample for the given index
      */
-    protected SwerveModulePosition getOdometryPosition(int odometryUpdateIndex) {
-        final int driveInputsLength = getDriveMotorInputs().threadSystemPosition.length;
-        final int steerInputsLength = getSteerEncoderInputs().threadPosition.length;
+    protected boolean updateOdometryPosition(int odometryUpdateIndex, SwerveModulePosition position) {
+        final double[] drivePositions = getDriveMotorInputs().threadSystemPosition;
+        final double[] steerPositions = getSteerEncoderInputs().threadPosition;
 
-        if (steerInputsLength != driveInputsLength || odometryUpdateIndex >= driveInputsLength) {
-            return null;
+        if (steerPositions.length != drivePositions.length || odometryUpdateIndex >= drivePositions.length) {
+            return false;
         }
 
-        return new SwerveModulePosition(
-                getDriveMetersTraveled(getDriveMotorInputs().threadSystemPosition)[odometryUpdateIndex],
-                Rotation2d.fromRotations(getSteerEncoderInputs().threadPosition[odometryUpdateIndex])
-        );
+        final double angleRotations = steerPositions[odometryUpdateIndex];
+
+        if (angleRotations != lastOdometryAngleRotations) {
+            lastOdometryAngleRotations = angleRotations;
+            lastOdometryAngle = Rotation2d.fromRotations(angleRotations);
+        }
+
+        position.distanceMeters = drivePositions[odometryUpdateIndex] * PRECOMPUTED_WHEEL_RADIUS_PI;
+        position.angle = lastOdometryAngle;
+
+        return true;
+    }
+
+    /**
+     * The distance the wheel travelled according to the latest odometry thread sample.
+     * Should be read while holding {@link frc.robot.GlobalConstants#FASTER_THREAD_LOCK}.
+     */
+    protected double getLatestDriveDistanceMeters() {
+        return driveMotor.getLatestThreadedSystemPosition() * PRECOMPUTED_WHEEL_RADIUS_PI;
+    }
+
+    /**
+     * The steer angle according to the latest odometry thread sample, in rotations.
+     * Should be read while holding {@link frc.robot.GlobalConstants#FASTER_THREAD_LOCK}.
+     */
+    protected double getLatestSteerAngleRotations() {
+        return steerEncoder.getLatestThreadedPosition();
     }
 
     protected void setTargetAngle(Rotation2d angle) {
-        steerMotor.setOutput(MotorProperties.ControlMode.POSITION, angle.getRotations());
+        setTargetAngle(angle.getRotations());
+    }
+
+    protected void setTargetAngle(double angleRotations) {
+        steerMotor.setOutput(MotorProperties.ControlMode.POSITION, angleRotations);
     }
 
     protected void setTargetVelocity(double velocityMetresPerSecond, boolean shouldUseClosedLoop) {
@@ -107,15 +166,23 @@ public class SwerveModule {
     }
 
     protected SwerveModuleState getCurrentState() {
-        return new SwerveModuleState(Conversions.rpsToMps(driveMotor.getSystemVelocity(), WHEEL_DIAMETER), getCurrentAngle());
+        return new SwerveModuleState(Conversions.rpsToMps(driveMotor.getSystemVelocity(), WHEEL_DIAMETER), Rotation2d.fromRotations(getCurrentAngleRotations()));
     }
 
     protected SwerveModuleState getTargetState() {
-        return targetState;
+        return new SwerveModuleState(targetSpeedMetersPerSecond, Rotation2d.fromRotations(targetAngleRotations));
     }
 
-    private Rotation2d getCurrentAngle() {
-        return Rotation2d.fromRotations( MathUtil.inputModulus(steerEncoder.getEncoderPosition(),-180,180));
+    protected double getSteerEncoderPosition() {
+        return steerEncoder.getEncoderPosition();
+    }
+
+    private double getCurrentAngleRotations() {
+        return toAngleRotations(getSteerEncoderPosition());
+    }
+
+    private double toAngleRotations(double steerEncoderPositionRotations) {
+        return MathUtil.inputModulus(steerEncoderPositionRotations, -180, 180);
     }
 
     private EncoderInputs getSteerEncoderInputs() {
@@ -125,14 +192,4 @@ public class SwerveModule {
     private MotorInputs getDriveMotorInputs() {
         return driveMotor.getInputs();
     }
-
-    private double[] getDriveMetersTraveled(double[] rotationsPositions) {
-        final double[] metersTraveled = new double[rotationsPositions.length];
-
-        for (int i = 0; i < rotationsPositions.length; i++) {
-            metersTraveled[i] = rotationsPositions[i] * PRECOMPUTED_WHEEL_RADIUS_PI;
-        }
-
-        return metersTraveled;
-    }
 }
@@ -5,10 +5,15 @@ import edu.wpi.first.math.system.plant.DCMotor;
 import frc.lib.generic.hardware.encoder.*;
 import frc.lib.generic.hardware.motor.*;
 import frc.lib.generic.simulation.SimulationProperties;
+import frc.robot.simulation.SwerveChassisSimulation;
 
 import static frc.lib.generic.hardware.motor.MotorSignal.*;
+import static frc.robot.GlobalConstants.IS_SIMULATION;
+import static frc.robot.subsystems.swerve.SwerveConstants.GYRO;
 import static frc.robot.subsystems.swerve.SwerveConstants.DRIVE_GEAR_RATIO;
 import static frc.robot.subsystems.swerve.SwerveConstants.STEER_GEAR_RATIO;
+import static frc.robot.subsystems.swerve.SwerveConstants.WHEEL_DIAMETER;
+import static frc.robot.utilities.PathPlannerConstants.ROBOT_CONFIG;
 import static frc.robot.utilities.PortsConstants.SwervePorts.FL_DRIVE_MOTOR_PORT;
 import static frc.robot.utilities.PortsConstants.SwervePorts.FL_STEER_ENCODER_PORT;
 import static frc.robot.utilities.PortsConstants.SwervePorts.FL_STEER_MOTOR_PORT;
@@ -89,6 +94,17 @@ public class SwerveModuleConstants {
             new SwerveModule(RR_DRIVE_MOTOR, RR_STEER_MOTOR, RR_STEER_ENCODER)
     };
 
+    /**
+     * Where the simulated robot actually is. The gyro reads its heading, and the drive motors turn against its tires.
+     */
+    public static final SwerveChassisSimulation CHASSIS_SIMULATION = IS_SIMULATION
+            ? new SwerveChassisSimulation(DRIVE_MOTORS, STEER_MOTORS, ROBOT_CONFIG.moduleLocations, WHEEL_DIAMETER / 2)
+            : null;
+
+    static {
+        if (IS_SIMULATION) GYRO.setSimulatedYawSource(CHASSIS_SIMULATION::getYawRotations);
+    }
+
     private static void configureSteerEncoder(Encoder steerEncoder, Rotation2d angleOffset) {
         final EncoderConfiguration encoderConfiguration = new EncoderConfiguration();
 
@@ -143,7 +159,7 @@ public class SwerveModuleConstants {
         driveMotorConfiguration.dutyCycleOpenLoopRampPeriod = OPEN_LOOP_RAMP;
         driveMotorConfiguration.dutyCycleClosedLoopRampPeriod = CLOSED_LOOP_RAMP;
 
-        driveMotorConfiguration.simulationProperties = new SimulationProperties.Slot(SimulationProperties.SimulationType.SIMPLE_MOTOR,
+        driveMotorConfiguration.simulationProperties = new SimulationProperties.Slot(SimulationProperties.SimulationType.DRIVE_WHEEL,
                 DCMotor.getKrakenX60(1),
                 DRIVE_GEAR_RATIO,
                 0.003);
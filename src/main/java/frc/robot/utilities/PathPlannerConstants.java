@@ -12,6 +12,7 @@ import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import frc.lib.util.LocalADStarAK;
 import frc.lib.util.flippable.Flippable;
 import frc.robot.commands.CoralManipulationCommands;
+import frc.robot.commands.pathfinding.PathCache;
 import frc.robot.subsystems.elevator.ElevatorConstants;
 import frc.robot.subsystems.swerve.SwerveConstants;
 import org.json.simple.parser.ParseException;
@@ -20,6 +21,7 @@ import java.io.IOException;
 
 import static frc.robot.GlobalConstants.IS_SIMULATION;
 import static frc.robot.RobotContainer.POSE_ESTIMATOR;
+import static frc.robot.RobotContainer.ROBOT_STATE;
 import static frc.robot.RobotContainer.SWERVE;
 
 public class PathPlannerConstants {
@@ -29,9 +31,12 @@ public class PathPlannerConstants {
             ? new PathConstraints(SwerveConstants.MAX_SPEED_MPS, 2, 6, 4)
             : new PathConstraints(SwerveConstants.MAX_SPEED_MPS, 3.3, Math.PI*1.3, Math.PI*1.3);
 
-    public static final PPHolonomicDriveController PATHPLANNER_DRIVE_CONTROLLER = IS_SIMULATION
-            ? new PPHolonomicDriveController(new PIDConstants(4.5, 0.0, 0), new PIDConstants(0.9, 0.0, 0))
-            : new PPHolonomicDriveController(new PIDConstants(2.75, 0.0, 0), new PIDConstants(1.77, 0.0, 0));
+    public static final PIDConstants
+            PATHPLANNER_TRANSLATION_PID = IS_SIMULATION ? new PIDConstants(4.5, 0.0, 0) : new PIDConstants(2.75, 0.0, 0),
+            PATHPLANNER_ROTATION_PID = IS_SIMULATION ? new PIDConstants(0.9, 0.0, 0) : new PIDConstants(1.77, 0.0, 0);
+
+    public static final PPHolonomicDriveController PATHPLANNER_DRIVE_CONTROLLER =
+            new PPHolonomicDriveController(PATHPLANNER_TRANSLATION_PID, PATHPLANNER_ROTATION_PID);
 
     public static void initializePathPlanner() {
         Pathfinding.setPathfinder(new LocalADStarAK());
@@ -40,6 +45,7 @@ public class PathPlannerConstants {
         setupNamedCommands();
 
         PathfindingCommand.warmupCommand().schedule();
+        PathCache.startGenerating();
     }
 
     private static void setupNamedCommands() {
@@ -49,7 +55,7 @@ public class PathPlannerConstants {
 
     private static void configurePathPlanner() {
         AutoBuilder.configure(
-                POSE_ESTIMATOR::getCurrentPose,
+                ROBOT_STATE::getPose,
                 POSE_ESTIMATOR::resetPose,
                 SWERVE::getRobotRelativeVelocity,
                 (ChassisSpeeds speeds) -> SWERVE.driveRobotRelative(speeds, true),
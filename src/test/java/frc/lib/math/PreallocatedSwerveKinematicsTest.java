@@ -0,0 +1,97 @@
+package frc.lib.math;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+class PreallocatedSwerveKinematicsTest {
+    private static final Translation2d[] MODULE_LOCATIONS = {
+            new Translation2d(0.28, 0.28),
+            new Translation2d(0.28, -0.28),
+            new Translation2d(-0.28, 0.28),
+            new Translation2d(-0.28, -0.28)
+    };
+
+    private static final double MAX_SPEED_MPS = 4.5, EPSILON = 1E-9;
+
+    private final PreallocatedSwerveKinematics kinematics = new PreallocatedSwerveKinematics(MODULE_LOCATIONS);
+    private final ChassisSpeeds speeds = new ChassisSpeeds();
+
+    @Test
+    void matchesWPILibKinematics() {
+        final SwerveDriveKinematics wpilibKinematics = new SwerveDriveKinematics(MODULE_LOCATIONS);
+        final Random random = new Random(6328);
+
+        for (int i = 0; i < 1000; i++) {
+            final ChassisSpeeds fieldRelative = new ChassisSpeeds(
+                    random.nextDouble(-5, 5), random.nextDouble(-5, 5), random.nextDouble(-10, 10));
+            final Rotation2d heading = Rotation2d.fromRadians(random.nextDouble(-Math.PI, Math.PI));
+            final double dt = random.nextDouble(0.005, 0.05);
+
+            final ChassisSpeeds expectedSpeeds = ChassisSpeeds.discretize(
+                    ChassisSpeeds.fromFieldRelativeSpeeds(fieldRelative, heading), dt);
+            final SwerveModuleState[] expectedStates = wpilibKinematics.toSwerveModuleStates(expectedSpeeds);
+            SwerveDriveKinematics.desaturateWheelSpeeds(expectedStates, MAX_SPEED_MPS);
+
+            speeds.vxMetersPerSecond = fieldRelative.vxMetersPerSecond;
+            speeds.vyMetersPerSecond = fieldRelative.vyMetersPerSecond;
+            speeds.omegaRadiansPerSecond = fieldRelative.omegaRadiansPerSecond;
+
+            PreallocatedSwerveKinematics.fromFieldRelativeSpeeds(speeds, heading.getCos(), heading.getSin());
+            PreallocatedSwerveKinematics.discretize(speeds, dt, speeds);
+
+            Assertions.assertEquals(expectedSpeeds.vxMetersPerSecond, speeds.vxMetersPerSecond, EPSILON);
+            Assertions.assertEquals(expectedSpeeds.vyMetersPerSecond, speeds.vyMetersPerSecond, EPSILON);
+            Assertions.assertEquals(expectedSpeeds.omegaRadiansPerSecond, speeds.omegaRadiansPerSecond, EPSILON);
+
+            kinematics.toModuleStates(speeds);
+            kinematics.desaturateWheelSpeeds(MAX_SPEED_MPS);
+
+            for (int module = 0; module < MODULE_LOCATIONS.length; module++) {
+                Assertions.assertEquals(expectedStates[module].speedMetersPerSecond, kinematics.getModuleSpeedMPS(module), EPSILON);
+                Assertions.assertEquals(expectedStates[module].angle.getRadians(), kinematics.getModuleAngleRadians(module), EPSILON);
+            }
+        }
+    }
+
+    @Test
+    void controlPathDoesNotAllocate() {
+        final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+
+        // Warm up so the measured loop runs compiled code
+        runControlPath(200_000);
+
+        final long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        runControlPath(100_000);
+        final long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        // A single ChassisSpeeds per iteration would already be megabytes, this only leaves room for the measurement itself
+        Assertions.assertTrue(allocatedBytes < 4096, "Control path allocated " + allocatedBytes + " bytes");
+    }
+
+    private void runControlPath(int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            final double heading = i * 1E-3;
+
+            speeds.vxMetersPerSecond = 3 * Math.sin(heading);
+            speeds.vyMetersPerSecond = 2 * Math.cos(heading);
+            speeds.omegaRadiansPerSecond = 4 * Math.sin(2 * heading);
+
+            PreallocatedSwerveKinematics.fromFieldRelativeSpeeds(speeds, Math.cos(heading), Math.sin(heading));
+            PreallocatedSwerveKinematics.discretize(speeds, 0.02, speeds);
+
+            kinematics.toModuleStates(speeds);
+            kinematics.desaturateWheelSpeeds(MAX_SPEED_MPS);
+
+            Optimizations.reduceSkew(kinematics.getModuleSpeedMPS(0), kinematics.getModuleAngleRadians(0), heading);
+        }
+    }
+}
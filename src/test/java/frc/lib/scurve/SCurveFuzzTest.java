@@ -0,0 +1,293 @@
+package frc.lib.scurve;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Fuzzes the S-curve solver with random starts, targets and limits, on all cores.
+ * <p>
+ * Every case is generated from its own seed, so a failing case can be replayed from the seed alone.
+ * Failing seeds are appended to {@code fuzz-regressions.txt}, which is replayed on every run.
+ * A quick pass runs by default, set the number of cases with {@code ./gradlew test -PscurveFuzzCases=5000000}.
+ */
+class SCurveFuzzTest {
+    private static final long BASE_SEED = 2025;
+    private static final String REGRESSIONS_RESOURCE = "fuzz-regressions.txt";
+    private static final Path REGRESSIONS_FILE = Path.of("src/test/resources/frc/lib/scurve", REGRESSIONS_RESOURCE);
+
+    private static final double DURATION_TOLERANCE = 1E-7, LIMIT_TOLERANCE = 1E-9, CONTINUITY_STEP = 1E-7;
+    /**
+     * The rounding allowed between the states of the solver and integrating its phases again.
+     */
+    private static final double KINEMATIC_TOLERANCE = 1E-9;
+
+    private static final ThreadLocal<FuzzCase> FUZZ_CASES = ThreadLocal.withInitial(FuzzCase::new);
+
+    @Test
+    void fuzzSolver() throws IOException {
+        final long cases = Long.getLong("scurve.fuzz.cases", 20000);
+
+        final long[] failingSeeds = LongStream.range(BASE_SEED, BASE_SEED + cases)
+                .parallel()
+                .filter(seed -> FUZZ_CASES.get().run(seed) != null)
+                .sorted()
+                .toArray();
+
+        if (failingSeeds.length > 0) recordRegressions(failingSeeds);
+
+        Assertions.assertEquals(0, failingSeeds.length, "Failing seeds: " + describe(failingSeeds));
+    }
+
+    @Test
+    void replaysRecordedFailures() throws IOException {
+        for (long seed : readRegressions()) {
+            final String failure = FUZZ_CASES.get().run(seed);
+
+            Assertions.assertNull(failure, "Seed " + seed + ": " + failure);
+        }
+    }
+
+    private static String describe(long[] failingSeeds) {
+        return Arrays.stream(failingSeeds)
+                .limit(20)
+                .mapToObj(seed -> seed + " (" + FUZZ_CASES.get().run(seed) + ")")
+                .collect(Collectors.joining(", "));
+    }
+
+    private static List<Long> readRegressions() throws IOException {
+        final List<Long> seeds = new ArrayList<>();
+
+        try (InputStream stream = SCurveFuzzTest.class.getResourceAsStream(REGRESSIONS_RESOURCE)) {
+            if (stream == null) return seeds;
+
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                line = line.trim();
+
+                if (!line.isEmpty() && !line.startsWith("#")) seeds.add(Long.parseLong(line));
+            }
+        }
+
+        return seeds;
+    }
+
+    /**
+     * Appends new failing seeds to the fixture in the source tree, so they can be committed.
+     * Does nothing when the tests don't run from the project directory.
+     */
+    private static void recordRegressions(long[] failingSeeds) throws IOException {
+        if (!Files.exists(REGRESSIONS_FILE)) return;
+
+        final List<Long> recordedSeeds = readRegressions();
+        final StringBuilder newSeeds = new StringBuilder();
+
+        for (long seed : failingSeeds) {
+            if (!recordedSeeds.contains(seed)) newSeeds.append(seed).append(System.lineSeparator());
+        }
+
+        Files.writeString(REGRESSIONS_FILE, newSeeds, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * The duration of a move that first brings the acceleration to zero, then stops, and then moves from rest to rest.
+     * That move is always feasible, so the time-optimal profile can't be longer. Independent of the solver, and exact from rest.
+     */
+    private static double getStopThenMoveDuration(double position, double velocity, double acceleration, double target,
+                                                  double maxVelocity, double maxAcceleration, double maxJerk) {
+        final double rampTime = Math.abs(acceleration) / maxJerk;
+
+        position += rampTime * (velocity + rampTime * (acceleration / 2 - rampTime * Math.signum(acceleration) * maxJerk / 6));
+        velocity += acceleration * rampTime / 2;
+
+        // Stopping from zero acceleration is symmetric, so it covers the average velocity over its duration
+        final double stopTime = Math.abs(velocity) * maxJerk >= maxAcceleration * maxAcceleration
+                ? Math.abs(velocity) / maxAcceleration + maxAcceleration / maxJerk
+                : 2 * Math.sqrt(Math.abs(velocity) / maxJerk);
+
+        position += velocity * stopTime / 2;
+
+        return rampTime + stopTime + getRestToRestDuration(Math.abs(target - position), maxVelocity, maxAcceleration, maxJerk);
+    }
+
+    /**
+     * The minimum duration of a move from rest to rest, from the closed-form double S trajectory.
+     */
+    private static double getRestToRestDuration(double distance, double maxVelocity, double maxAcceleration, double maxJerk) {
+        final double rampTime = maxAcceleration / maxJerk;
+        final double accelerationTime = maxVelocity * maxJerk >= maxAcceleration * maxAcceleration
+                ? maxVelocity / maxAcceleration + rampTime
+                : 2 * Math.sqrt(maxVelocity / maxJerk);
+
+        // Reaches the maximum velocity, and accelerating and decelerating cover accelerationTime * maxVelocity
+        if (distance >= accelerationTime * maxVelocity)
+            return distance / maxVelocity + accelerationTime;
+
+        final double limitedAccelerationTime = rampTime / 2 + Math.sqrt(rampTime * rampTime / 4 + distance / maxAcceleration);
+
+        if (limitedAccelerationTime >= 2 * rampTime)
+            return 2 * limitedAccelerationTime;
+
+        return 4 * Math.cbrt(distance / (2 * maxJerk));
+    }
+
+    /**
+     * The solver and buffers of a single thread.
+     */
+    private static class FuzzCase {
+        private final TargetCalculator calculator = new TargetCalculator();
+        private final Trajectory trajectory = new Trajectory();
+        private final InputParameter input = new InputParameter();
+
+        private final double[] before = new double[4], after = new double[4];
+
+        private double maxVelocity, maxAcceleration, maxJerk;
+
+        /**
+         * @return why the case failed, or null if it passed
+         */
+        String run(long seed) {
+            final SplittableRandom random = new SplittableRandom(seed);
+
+            maxVelocity = random.nextDouble(0.5, 20);
+            maxAcceleration = random.nextDouble(1, 200);
+            maxJerk = random.nextDouble(10, 5000);
+
+            double currentVelocity = 0, currentAcceleration = 0;
+
+            // A third of the cases start at rest, the others anywhere that doesn't pass the velocity limit just by bringing the acceleration to zero
+            if (random.nextInt(3) != 0) {
+                do {
+                    currentVelocity = random.nextDouble(-maxVelocity, maxVelocity);
+                    currentAcceleration = random.nextDouble(-maxAcceleration, maxAcceleration);
+                } while (Math.abs(currentVelocity + currentAcceleration * Math.abs(currentAcceleration) / (2 * maxJerk)) > maxVelocity);
+            }
+
+            input.set(random.nextDouble(-5, 5), currentVelocity, currentAcceleration, random.nextDouble(-5, 5));
+
+            if (!calculator.calculate(input, trajectory, maxVelocity, maxAcceleration, maxJerk))
+                return "no profile found";
+
+            String failure = checkLimits();
+            if (failure == null) failure = checkKinematics();
+            if (failure == null) failure = checkContinuity();
+            if (failure == null) failure = checkMinimalDuration();
+
+            return failure;
+        }
+
+        private String checkLimits() {
+            final Profile profile = trajectory.profile;
+
+            for (int i = 0; i < 7; i++) {
+                if (Math.abs(profile.j[i]) > maxJerk + LIMIT_TOLERANCE)
+                    return "jerk " + profile.j[i] + " in phase " + i;
+
+                if (Math.abs(profile.a[i + 1]) > maxAcceleration + LIMIT_TOLERANCE)
+                    return "acceleration " + profile.a[i + 1] + " after phase " + i;
+
+                if (Math.abs(profile.v[i + 1]) > maxVelocity + LIMIT_TOLERANCE)
+                    return "velocity " + profile.v[i + 1] + " after phase " + i;
+
+                // The velocity peaks inside a phase where the acceleration crosses zero
+                if (profile.a[i] * profile.a[i + 1] < 0) {
+                    final double peakVelocity = profile.v[i] - profile.a[i] * profile.a[i] / (2 * profile.j[i]);
+
+                    if (Math.abs(peakVelocity) > maxVelocity + LIMIT_TOLERANCE)
+                        return "velocity " + peakVelocity + " inside phase " + i;
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Integrates the phases from the current state, without the solver's own states, and checks that they reach the target.
+         */
+        private String checkKinematics() {
+            final Profile profile = trajectory.profile;
+
+            double p = input.current_position, v = input.current_velocity, a = input.current_acceleration;
+
+            for (int i = 0; i < 7; i++) {
+                final double t = profile.time[i], j = profile.j[i];
+
+                if (!(t >= 0)) return "phase " + i + " takes " + t;
+
+                p += t * (v + t * (a / 2 + t * j / 6));
+                v += t * (a + t * j / 2);
+                a += t * j;
+
+                if (Math.abs(p - profile.p[i + 1]) > KINEMATIC_TOLERANCE
+                        || Math.abs(v - profile.v[i + 1]) > KINEMATIC_TOLERANCE
+                        || Math.abs(a - profile.a[i + 1]) > KINEMATIC_TOLERANCE)
+                    return "phase " + i + " doesn't integrate to its end state";
+            }
+
+            if (Math.abs(p - input.target_position) > Profile.p_precision
+                    || Math.abs(v) > Profile.v_precision
+                    || Math.abs(a) > Profile.a_precision)
+                return "phases integrate to " + p + ", " + v + ", " + a + " instead of the target";
+
+            return null;
+        }
+
+        private String checkContinuity() {
+            trajectory.at_time(0, after);
+
+            if (after[0] != input.current_position || after[1] != input.current_velocity || after[2] != input.current_acceleration)
+                return "doesn't start at the current state";
+
+            final double maxSpeed = Math.max(maxVelocity, Math.abs(input.current_velocity));
+            final double maxPositionStep = 2 * CONTINUITY_STEP * maxSpeed + LIMIT_TOLERANCE;
+            final double maxVelocityStep = 2 * CONTINUITY_STEP * maxAcceleration + LIMIT_TOLERANCE;
+            final double maxAccelerationStep = 2 * CONTINUITY_STEP * maxJerk + LIMIT_TOLERANCE;
+
+            for (int i = 0; i < 7; i++) {
+                final double boundary = trajectory.profile.totalTime[i];
+
+                trajectory.at_time(Math.max(0, boundary - CONTINUITY_STEP), before);
+                trajectory.at_time(boundary + CONTINUITY_STEP, after);
+
+                if (Math.abs(after[0] - before[0]) > maxPositionStep
+                        || Math.abs(after[1] - before[1]) > maxVelocityStep
+                        || Math.abs(after[2] - before[2]) > maxAccelerationStep)
+                    return "jumps at the end of phase " + i;
+            }
+
+            trajectory.at_time(trajectory.duration, after);
+
+            if (Math.abs(after[0] - input.target_position) > Profile.p_precision
+                    || Math.abs(after[1]) > Profile.v_precision
+                    || Math.abs(after[2]) > Profile.a_precision)
+                return "doesn't end at the target";
+
+            return null;
+        }
+
+        private String checkMinimalDuration() {
+            final double referenceDuration = getStopThenMoveDuration(input.current_position, input.current_velocity,
+                    input.current_acceleration, input.target_position, maxVelocity, maxAcceleration, maxJerk);
+
+            if (trajectory.duration > referenceDuration + DURATION_TOLERANCE * Math.max(1, referenceDuration))
+                return "duration " + trajectory.duration + " is longer than the reference " + referenceDuration;
+
+            return null;
+        }
+    }
+}
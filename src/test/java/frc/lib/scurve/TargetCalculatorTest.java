@@ -0,0 +1,113 @@
+package frc.lib.scurve;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class TargetCalculatorTest {
+    private static final double MAX_VELOCITY = 8, MAX_ACCELERATION = 75, MAX_JERK = 750;
+    private static final double MAX_POSITION = 3, SAMPLE_PERIOD = 0.001, LIMIT_TOLERANCE = 1E-9;
+
+    private final TargetCalculator calculator = new TargetCalculator();
+    private final Trajectory trajectory = new Trajectory();
+    private final InputParameter input = new InputParameter();
+    private final double[] state = new double[4];
+
+    @Test
+    void reachesMovingTargets() {
+        final Random random = new Random(6328);
+
+        for (int i = 0; i < 2000; i++) {
+            setRandomInput(random, true);
+
+            Assertions.assertTrue(calculator.calculate(input, trajectory, MAX_VELOCITY, MAX_ACCELERATION, MAX_JERK));
+            assertReachesTarget();
+            assertWithinLimits();
+        }
+    }
+
+    @Test
+    void searchMatchesClosedFormFromRest() {
+        final Random random = new Random(254);
+        final PositionThirdOrderSearch search = new PositionThirdOrderSearch();
+        final Profile profile = new Profile();
+
+        for (int i = 0; i < 2000; i++) {
+            final double start = random.nextDouble(-MAX_POSITION, MAX_POSITION), target = random.nextDouble(-MAX_POSITION, MAX_POSITION);
+
+            input.set(start, 0, 0, target);
+            Assertions.assertTrue(calculator.calculate(input, trajectory, MAX_VELOCITY, MAX_ACCELERATION, MAX_JERK));
+
+            profile.set_boundary(start, 0, 0, target, 0, 0);
+            search.set(start, 0, 0, target, 0, 0, MAX_VELOCITY, -MAX_VELOCITY, MAX_ACCELERATION, -MAX_ACCELERATION, MAX_JERK);
+
+            Assertions.assertTrue(search.get_profile(profile));
+            Assertions.assertEquals(trajectory.duration, profile.get_duration(), 1E-6);
+        }
+    }
+
+    @Test
+    void synchronizedProfilesTakeTheRequestedDuration() {
+        final Random random = new Random(1690);
+
+        for (int i = 0; i < 1000; i++) {
+            final boolean fromRest = i % 2 == 0;
+
+            setRandomInput(random, !fromRest);
+
+            Assertions.assertTrue(calculator.calculate(input, trajectory, MAX_VELOCITY, MAX_ACCELERATION, MAX_JERK));
+
+            final double duration = trajectory.duration * random.nextDouble(1.01, 3);
+            final boolean foundProfile = calculator.calculate_synchronized(input, trajectory, duration, MAX_VELOCITY, MAX_ACCELERATION, MAX_JERK);
+
+            // Moving boundaries may need a profile shape the cruise search doesn't cover, which the caller falls back from
+            if (fromRest) Assertions.assertTrue(foundProfile);
+            if (!foundProfile) continue;
+
+            Assertions.assertEquals(duration, trajectory.duration, 1E-9);
+            assertReachesTarget();
+            assertWithinLimits();
+        }
+    }
+
+    /**
+     * Picks random states inside the limits, that also don't have to pass the velocity limit just by bringing the acceleration to zero.
+     */
+    private void setRandomInput(Random random, boolean moving) {
+        double currentVelocity = 0, currentAcceleration = 0, targetVelocity = 0, targetAcceleration = 0;
+
+        if (moving) {
+            do {
+                currentVelocity = random.nextDouble(-MAX_VELOCITY, MAX_VELOCITY);
+                currentAcceleration = random.nextDouble(-MAX_ACCELERATION, MAX_ACCELERATION);
+            } while (Math.abs(currentVelocity + currentAcceleration * Math.abs(currentAcceleration) / (2 * MAX_JERK)) > MAX_VELOCITY);
+
+            do {
+                targetVelocity = random.nextDouble(-MAX_VELOCITY, MAX_VELOCITY);
+                targetAcceleration = random.nextDouble(-MAX_ACCELERATION, MAX_ACCELERATION);
+            } while (Math.abs(targetVelocity - targetAcceleration * Math.abs(targetAcceleration) / (2 * MAX_JERK)) > MAX_VELOCITY);
+        }
+
+        input.set(random.nextDouble(-MAX_POSITION, MAX_POSITION), currentVelocity, currentAcceleration,
+                random.nextDouble(-MAX_POSITION, MAX_POSITION), targetVelocity, targetAcceleration);
+    }
+
+    private void assertReachesTarget() {
+        trajectory.at_time(trajectory.duration, state);
+
+        Assertions.assertEquals(input.target_position, state[0], Profile.p_precision);
+        Assertions.assertEquals(input.target_velocity, state[1], Profile.v_precision);
+        Assertions.assertEquals(input.target_acceleration, state[2], Profile.a_precision);
+    }
+
+    private void assertWithinLimits() {
+        for (double time = 0; time < trajectory.duration; time += SAMPLE_PERIOD) {
+            trajectory.at_time(time, state);
+
+            Assertions.assertTrue(Math.abs(state[1]) <= MAX_VELOCITY + LIMIT_TOLERANCE);
+            Assertions.assertTrue(Math.abs(state[2]) <= MAX_ACCELERATION + LIMIT_TOLERANCE);
+            Assertions.assertTrue(Math.abs(state[3]) <= MAX_JERK + LIMIT_TOLERANCE);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package frc.lib.util.objectdetection;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class ObjectTrackTest {
+    private static final double FRAME_PERIOD = 0.03, MEASUREMENT_VARIANCE = 0.05 * 0.05, ASSOCIATION_GATE = 9.21;
+
+    @Test
+    void settlesOnStillPieces() {
+        final Random random = new Random(2025);
+        final ObjectTrack track = new ObjectTrack(0, 3, 2, MEASUREMENT_VARIANCE, 0);
+
+        for (int frame = 1; frame <= 100; frame++) {
+            track.predict(frame * FRAME_PERIOD);
+            track.update(3 + random.nextGaussian() * 0.05, 2 + random.nextGaussian() * 0.05, MEASUREMENT_VARIANCE, frame * FRAME_PERIOD);
+        }
+
+        Assertions.assertEquals(3, track.getX(), 0.05);
+        Assertions.assertEquals(2, track.getY(), 0.05);
+        Assertions.assertEquals(0, Math.hypot(track.getXVelocity(), track.getYVelocity()), 0.2);
+    }
+
+    @Test
+    void followsMovingPieces() {
+        final ObjectTrack track = new ObjectTrack(0, 0, 0, MEASUREMENT_VARIANCE, 0);
+
+        for (int frame = 1; frame <= 100; frame++) {
+            final double time = frame * FRAME_PERIOD;
+
+            track.predict(time);
+            track.update(time, -0.5 * time, MEASUREMENT_VARIANCE, time);
+        }
+
+        Assertions.assertEquals(1, track.getXVelocity(), 0.05);
+        Assertions.assertEquals(-0.5, track.getYVelocity(), 0.05);
+    }
+
+    @Test
+    void keepsTheGateOpenThroughDroppedFrames() {
+        final ObjectTrack track = new ObjectTrack(0, 0, 0, MEASUREMENT_VARIANCE, 0);
+
+        for (int frame = 1; frame <= 20; frame++) {
+            track.predict(frame * FRAME_PERIOD);
+            track.update(frame * FRAME_PERIOD, 0, MEASUREMENT_VARIANCE, frame * FRAME_PERIOD);
+        }
+
+        final double tightDistance = track.getSquaredDistance(20 * FRAME_PERIOD + 0.5, 0, MEASUREMENT_VARIANCE);
+
+        // Half a second without frames, the piece kept moving
+        track.predict(20 * FRAME_PERIOD + 0.5);
+
+        Assertions.assertTrue(tightDistance > ASSOCIATION_GATE);
+        Assertions.assertTrue(track.getSquaredDistance(20 * FRAME_PERIOD + 0.5, 0, MEASUREMENT_VARIANCE) < ASSOCIATION_GATE);
+        Assertions.assertTrue(track.getSquaredDistance(20 * FRAME_PERIOD + 0.5, 1, MEASUREMENT_VARIANCE) > ASSOCIATION_GATE);
+    }
+}